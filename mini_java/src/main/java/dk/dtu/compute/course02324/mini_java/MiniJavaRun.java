@@ -1,7 +1,12 @@
 package dk.dtu.compute.course02324.mini_java;
 
 import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.optimization.OptimizationLevel;
+import dk.dtu.compute.course02324.mini_java.optimization.PassManager;
 import dk.dtu.compute.course02324.mini_java.semantics.*;
+import dk.dtu.compute.course02324.mini_java.typed.Frame;
+import dk.dtu.compute.course02324.mini_java.typed.FusedLowering;
+import dk.dtu.compute.course02324.mini_java.typed.TypedProgram;
 
 import java.util.List;
 
@@ -48,6 +53,61 @@ public class MiniJavaRun {
         System.out.println();
     }
 
+    /**
+     * Optimizes the statement with the pipeline of the given level, prints the
+     * statistics of the passes, and then type checks and evaluates the
+     * optimized statement.
+     */
+    public static void printTypeEvaluate(Statement statement, OptimizationLevel level) {
+        PassManager passManager = new PassManager(level.pipeline());
+        Statement optimized = passManager.run(statement);
+        System.out.println("Optimization " + level.pipeline() + ":");
+        System.out.print(passManager.report());
+        printTypeEvaluate(optimized);
+    }
+
+    /**
+     * Type checks and evaluates a statement like {@link #printTypeEvaluate(Statement)},
+     * but checks and lowers the statement in a single pass (see {@link FusedLowering}),
+     * which is cheaper for scripts that are executed only once. The problems
+     * are the same; the variables are printed in the order of their first
+     * occurrence.
+     */
+    public static void printTypeEvaluateOnce(Statement statement) {
+        System.out.println("Result by our program (one pass):");
+
+        ProgramSerializerVisitor ps = new ProgramSerializerVisitor();
+        ps.visit(statement);
+        System.out.println(ps.result());
+
+        FusedLowering lowering = new FusedLowering();
+        TypedProgram program = lowering.lower(statement);
+
+        if (program == null) {
+            System.out.println("There were some problems in the statement:");
+            for (String problem : lowering.problems) {
+                System.out.println(problem);
+            }
+        } else {
+            System.out.println("Expression type checks correctly. Variable types:");
+            for (int slot = 0; slot < program.slotCount(); slot++) {
+                System.out.println(program.type(slot).getName() + " " + program.variable(slot).name + ";");
+            }
+
+            System.out.println("Program  starting. Output:");
+
+            Frame frame = program.run(System.out);
+
+            System.out.println("Program finished!");
+
+            System.out.println("Values of variables in the end");
+
+            program.values(frame.variables).forEach((var, value) -> System.out.println(var.name + " = " + value));
+        }
+        System.out.println("------------------------------");
+        System.out.println();
+    }
+
     public static void main(String... args) {
 
         System.out.println("Result provided by Java");
@@ -0,0 +1,46 @@
+package dk.dtu.compute.course02324.mini_java.analysis;
+
+import dk.dtu.compute.course02324.mini_java.infrastructure.VisitAcceptor;
+import dk.dtu.compute.course02324.mini_java.model.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Collects the variables which are read and the variables which are written
+ * in a statement or expression, including nested loops and the assignments
+ * nested in expressions. A declaration without expression neither reads nor
+ * writes its variable, since it does not change its value.
+ */
+public class AccessedVariables extends WrittenVariables {
+
+    /** The variables read in the visited statements and expressions */
+    final public Set<Var> read = new HashSet<>();
+
+    /** Returns the accessed variables of the given statement or expression. */
+    public static AccessedVariables in(VisitAcceptor node) {
+        AccessedVariables visitor = new AccessedVariables();
+        node.accept(visitor);
+        return visitor;
+    }
+
+    @Override
+    public void visit(Var var) {
+        read.add(var);
+    }
+
+    /** Returns whether executing the two visited nodes in either order could have different results. */
+    public boolean conflictsWith(AccessedVariables other) {
+        return intersects(written, other.written) || intersects(written, other.read) || intersects(read, other.written);
+    }
+
+    private static boolean intersects(Set<Var> a, Set<Var> b) {
+        for (Var var: a) {
+            if (b.contains(var)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
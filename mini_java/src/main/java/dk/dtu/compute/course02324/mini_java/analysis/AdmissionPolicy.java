@@ -0,0 +1,70 @@
+package dk.dtu.compute.course02324.mini_java.analysis;
+
+import dk.dtu.compute.course02324.mini_java.model.Statement;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Decides, based on the statically estimated cost of a program (see
+ * {@link CostEstimatorVisitor}), how a program should be scheduled: cheap
+ * programs can be routed to a low latency pool, programs with a provable but
+ * higher bound are run normally, and programs without a provable bound or
+ * with a bound above a limit are rejected (or throttled) by the scheduler.
+ * For symbolic bounds, the numeric worst case is used.
+ */
+public class AdmissionPolicy {
+
+    public enum Decision {
+        LOW_LATENCY,
+        STANDARD,
+        REJECT
+    }
+
+    /** The maximal cost of programs, which are routed to the low latency pool */
+    final public long lowLatencyLimit;
+
+    /** The maximal cost of programs, which are accepted at all */
+    final public long limit;
+
+    final private CostModel model;
+
+    public AdmissionPolicy(long lowLatencyLimit, long limit, @NotNull CostModel model) {
+        if (lowLatencyLimit > limit) {
+            throw new IllegalArgumentException("The low latency limit must not exceed the limit.");
+        }
+        this.lowLatencyLimit = lowLatencyLimit;
+        this.limit = limit;
+        this.model = model;
+    }
+
+    /** Decides how a program with the given cost bound should be scheduled. */
+    public Decision decide(@NotNull CostBound cost) {
+        if (!cost.isBounded() || cost.value > limit) {
+            return Decision.REJECT;
+        } else if (cost.value <= lowLatencyLimit) {
+            return Decision.LOW_LATENCY;
+        } else {
+            return Decision.STANDARD;
+        }
+    }
+
+    /** Estimates the cost of a type-checked program and decides how it should be scheduled. */
+    public Decision decide(@NotNull Statement program) {
+        CostEstimatorVisitor estimator = new CostEstimatorVisitor(model);
+        estimator.visit(program);
+        return decide(estimator.cost(program));
+    }
+
+    /**
+     * Estimates the cost of a type-checked program, using the bounds of an
+     * {@link IntervalAnalysis}, and decides how it should be scheduled.
+     */
+    public Decision decide(@NotNull Statement program, @NotNull ProgramTypeVisitor types) {
+        IntervalAnalysis intervals = new IntervalAnalysis(types);
+        intervals.visit(program);
+        CostEstimatorVisitor estimator = new CostEstimatorVisitor(model, intervals);
+        estimator.visit(program);
+        return decide(estimator.cost(program));
+    }
+
+}
@@ -0,0 +1,287 @@
+package dk.dtu.compute.course02324.mini_java.analysis;
+
+import dk.dtu.compute.course02324.mini_java.infrastructure.VisitAcceptor;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramVisitor;
+import dk.dtu.compute.course02324.mini_java.semantics.SymbolTable;
+import dk.dtu.compute.course02324.mini_java.utils.IntList;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * The control flow of a MiniJava statement, as needed by a
+ * {@link DataflowAnalysis}. The graph consists of <em>points</em>, which are
+ * the places where something relevant for the analysis happens, in the order
+ * in which they are executed: a variable is read ({@link #USE}), written
+ * ({@link #DEFINE}, also by assignments nested in expressions), declared
+ * without a value ({@link #DECLARE}), a value is printed ({@link #PRINT}), or
+ * the condition of a loop is about to be evaluated ({@link #LOOP}). Literals
+ * and operators do not have points.<p>
+ *
+ * The points are grouped into basic blocks. The points of the condition of a
+ * while-loop are in the header block of the loop, which is followed by the
+ * blocks of the body and the block after the loop; the last block of the
+ * body jumps back to the header. Since MiniJava programs are structured,
+ * the blocks of a loop (including nested loops) are numbered consecutively
+ * from its header to the block before the block after the loop.<p>
+ *
+ * The variables of the statement are numbered densely in the order they
+ * occur (by a {@link SymbolTable}), so that sets of variables can be
+ * represented as bitsets.
+ */
+public class ControlFlowGraph {
+
+    final public static int USE = 0;
+    final public static int DEFINE = 1;
+    final public static int DECLARE = 2;
+    final public static int PRINT = 3;
+    final public static int LOOP = 4;
+
+    // points
+    final private List<VisitAcceptor> nodes = new ArrayList<>();
+    final private IntList kinds = new IntList();
+    final private IntList pointVariables = new IntList();
+    final private IntList owners = new IntList();
+    /** The first point of the evaluation of the node of each point (including its subexpressions) */
+    final private IntList starts = new IntList();
+
+    // blocks
+    private int[][] blockPoints;
+    private int[][] successors;
+    private int[][] predecessors;
+    /** For a loop header, the block after the loop; otherwise -1 */
+    final private IntList loopExits = new IntList();
+
+    // variables
+    final private SymbolTable symbols = new SymbolTable();
+
+    /** The points of each node; a node shared in the tree can have several points */
+    final private Map<VisitAcceptor, IntList> occurrences = new IdentityHashMap<>();
+
+    private ControlFlowGraph() {
+    }
+
+    /** Computes the control flow graph of a statement. */
+    public static ControlFlowGraph of(@NotNull Statement statement) {
+        ControlFlowGraph graph = new ControlFlowGraph();
+        Builder builder = graph.new Builder();
+        statement.accept(builder);
+        builder.finish();
+        return graph;
+    }
+
+    /**
+     * Creates the blocks and points while visiting the statement in the order
+     * of its execution.
+     */
+    private class Builder extends ProgramVisitor {
+
+        final private List<IntList> points = new ArrayList<>();
+        final private List<IntList> successorLists = new ArrayList<>();
+
+        private int block = addBlock();
+
+        private int addBlock() {
+            points.add(new IntList(4));
+            successorLists.add(new IntList(2));
+            loopExits.add(-1);
+            return points.size() - 1;
+        }
+
+        private void addPoint(int kind, VisitAcceptor node, Var variable, int start) {
+            int point = nodes.size();
+            starts.add(start < 0 || start > point ? point : start);
+            nodes.add(node);
+            kinds.add(kind);
+            pointVariables.add(variable != null ? id(variable) : -1);
+            owners.add(block);
+            points.get(block).add(point);
+            occurrences.computeIfAbsent(node, key -> new IntList(1)).add(point);
+        }
+
+        private int id(Var variable) {
+            return symbols.intern(variable);
+        }
+
+        private void finish() {
+            int count = points.size();
+            blockPoints = new int[count][];
+            successors = new int[count][];
+            IntList[] predecessorLists = new IntList[count];
+            for (int block = 0; block < count; block++) {
+                blockPoints[block] = points.get(block).toArray();
+                successors[block] = successorLists.get(block).toArray();
+                predecessorLists[block] = new IntList(2);
+            }
+            for (int block = 0; block < count; block++) {
+                for (int successor: successors[block]) {
+                    predecessorLists[successor].add(block);
+                }
+            }
+            predecessors = new int[count][];
+            for (int block = 0; block < count; block++) {
+                predecessors[block] = predecessorLists[block].toArray();
+            }
+        }
+
+        @Override
+        public void visit(Sequence sequence) {
+            for (Statement statement: sequence.statements) {
+                statement.accept(this);
+            }
+        }
+
+        @Override
+        public void visit(Declaration declaration) {
+            int start = nodes.size();
+            if (declaration.expression != null) {
+                declaration.expression.accept(this);
+                addPoint(DEFINE, declaration, declaration.variable, start);
+            } else {
+                addPoint(DECLARE, declaration, declaration.variable, start);
+            }
+        }
+
+        @Override
+        public void visit(PrintStatement printStatement) {
+            int start = nodes.size();
+            printStatement.expression.accept(this);
+            addPoint(PRINT, printStatement, null, start);
+        }
+
+        @Override
+        public void visit(WhileLoop whileLoop) {
+            int header = addBlock();
+            successorLists.get(block).add(header);
+            block = header;
+            addPoint(LOOP, whileLoop, null, -1);
+            whileLoop.expression.accept(this);
+            // the condition can not contain loops, so all its points are in the header
+            int body = addBlock();
+            successorLists.get(header).add(body);
+            block = body;
+            whileLoop.statement.accept(this);
+            successorLists.get(block).add(header);
+            int exit = addBlock();
+            successorLists.get(header).add(exit);
+            loopExits.set(header, exit);
+            block = exit;
+        }
+
+        @Override
+        public void visit(Assignment assignment) {
+            int start = nodes.size();
+            assignment.expression.accept(this);
+            addPoint(DEFINE, assignment, assignment.variable, start);
+        }
+
+        @Override
+        public void visit(Literal literal) {
+        }
+
+        @Override
+        public void visit(Var var) {
+            addPoint(USE, var, var, -1);
+        }
+
+        @Override
+        public void visit(OperatorExpression operatorExpression) {
+            for (Expression operand: operatorExpression.operands) {
+                operand.accept(this);
+            }
+        }
+
+    }
+
+    public int pointCount() {
+        return nodes.size();
+    }
+
+    /** Returns the node of the program, which a point belongs to. */
+    public VisitAcceptor node(int point) {
+        return nodes.get(point);
+    }
+
+    public int kind(int point) {
+        return kinds.get(point);
+    }
+
+    /** Returns the id of the variable used, defined or declared at a point, or -1. */
+    public int variable(int point) {
+        return pointVariables.get(point);
+    }
+
+    /**
+     * Returns the first point of the evaluation of the node of a point, i.e.
+     * the first point of its subexpressions, or the point itself. Both points
+     * are always in the same block.
+     */
+    public int start(int point) {
+        return starts.get(point);
+    }
+
+    /** Returns the block containing a point. */
+    public int block(int point) {
+        return owners.get(point);
+    }
+
+    /** Returns the points of a node in the order of the program; empty if the node does not have points. */
+    public int[] points(@NotNull VisitAcceptor node) {
+        IntList points = occurrences.get(node);
+        return points != null ? points.toArray() : new int[0];
+    }
+
+    public int blockCount() {
+        return blockPoints.length;
+    }
+
+    /** Returns the points of a block in the order of execution. The array must not be changed. */
+    int[] blockPoints(int block) {
+        return blockPoints[block];
+    }
+
+    /** The array must not be changed. */
+    int[] successors(int block) {
+        return successors[block];
+    }
+
+    /** The array must not be changed. */
+    int[] predecessors(int block) {
+        return predecessors[block];
+    }
+
+    /** For the header block of a loop, returns the block after the loop; otherwise -1. */
+    public int loopExit(int block) {
+        return loopExits.get(block);
+    }
+
+    public int variableCount() {
+        return symbols.size();
+    }
+
+    /** Returns the id of a variable, or -1 if it does not occur in the program. */
+    public int id(@NotNull Var variable) {
+        return symbols.id(variable);
+    }
+
+    /** Returns the variable with the given id. */
+    public Var variableOf(int id) {
+        return symbols.variable(id);
+    }
+
+    /** Returns the symbol table with the ids of the variables. */
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    /** Returns the variables whose bits are set in a bitset. */
+    public Set<Var> variables(long[] bits) {
+        Set<Var> result = new LinkedHashSet<>();
+        for (int id = DataflowAnalysis.next(bits, 0); id >= 0; id = DataflowAnalysis.next(bits, id + 1)) {
+            result.add(symbols.variable(id));
+        }
+        return result;
+    }
+
+}
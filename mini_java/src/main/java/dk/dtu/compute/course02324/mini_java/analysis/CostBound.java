@@ -0,0 +1,115 @@
+package dk.dtu.compute.course02324.mini_java.analysis;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An upper bound for the cost of executing a statement or evaluating an
+ * expression. A bound is either numeric, symbolic or unbounded. A symbolic
+ * bound is given by a formula in terms of the values of some variables when
+ * a loop is entered (for example <code>12 + (i + 1) * 42</code>); in addition
+ * to the formula, a symbolic bound also provides a numeric worst case
+ * {@link #value}, which is obtained by assuming that each of these variables
+ * has the maximal int value. Numeric values saturate at
+ * {@link Long#MAX_VALUE}.
+ */
+public class CostBound {
+
+    public enum Kind {
+        NUMERIC,
+        SYMBOLIC,
+        UNBOUNDED
+    }
+
+    final public static CostBound ZERO = new CostBound(Kind.NUMERIC, 0, "0");
+
+    final public static CostBound UNBOUNDED = new CostBound(Kind.UNBOUNDED, Long.MAX_VALUE, "unbounded");
+
+    final public Kind kind;
+
+    /** The numeric bound (or the numeric worst case of a symbolic bound) */
+    final public long value;
+
+    /** The bound as a formula */
+    final public String formula;
+
+    private CostBound(@NotNull Kind kind, long value, @NotNull String formula) {
+        this.kind = kind;
+        this.value = value;
+        this.formula = formula;
+    }
+
+    /** Returns a numeric bound. */
+    public static CostBound numeric(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("A cost bound can not be negative.");
+        }
+        return new CostBound(Kind.NUMERIC, value, Long.toString(value));
+    }
+
+    /**
+     * Returns a symbolic bound with the given formula and the given numeric
+     * worst case.
+     */
+    public static CostBound symbolic(@NotNull String formula, long worstCase) {
+        return new CostBound(Kind.SYMBOLIC, worstCase, formula);
+    }
+
+    public boolean isBounded() {
+        return kind != Kind.UNBOUNDED;
+    }
+
+    /** Returns a bound for the sum of the costs bounded by this and the other bound. */
+    public CostBound plus(@NotNull CostBound other) {
+        if (kind == Kind.UNBOUNDED || other.kind == Kind.UNBOUNDED) {
+            return UNBOUNDED;
+        }
+        long sum = saturatedAdd(value, other.value);
+        if (kind == Kind.NUMERIC && other.kind == Kind.NUMERIC) {
+            return numeric(sum);
+        } else if (value == 0 && kind == Kind.NUMERIC) {
+            return other;
+        } else if (other.value == 0 && other.kind == Kind.NUMERIC) {
+            return this;
+        }
+        return symbolic(formula + " + " + other.formula, sum);
+    }
+
+    /** Returns a bound for the product of the costs bounded by this and the other bound. */
+    public CostBound times(@NotNull CostBound other) {
+        if (kind == Kind.UNBOUNDED || other.kind == Kind.UNBOUNDED) {
+            return UNBOUNDED;
+        }
+        long product = saturatedMultiply(value, other.value);
+        if (kind == Kind.NUMERIC && other.kind == Kind.NUMERIC) {
+            return numeric(product);
+        } else if (kind == Kind.NUMERIC && value == 1) {
+            return other;
+        } else if (other.kind == Kind.NUMERIC && other.value == 1) {
+            return this;
+        } else if ((kind == Kind.NUMERIC && value == 0) || (other.kind == Kind.NUMERIC && other.value == 0)) {
+            return ZERO;
+        }
+        return symbolic(factor(this) + " * " + factor(other), product);
+    }
+
+    private static String factor(CostBound bound) {
+        return bound.formula.contains(" + ") ? "(" + bound.formula + ")" : bound.formula;
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    private static long saturatedMultiply(long a, long b) {
+        long high = Math.multiplyHigh(a, b);
+        long product = a * b;
+        return high != 0 || product < 0 ? Long.MAX_VALUE : product;
+    }
+
+    @Override
+    public String toString() {
+        return formula;
+    }
+
+}
@@ -0,0 +1,266 @@
+package dk.dtu.compute.course02324.mini_java.analysis;
+
+import dk.dtu.compute.course02324.mini_java.infrastructure.VisitAcceptor;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramVisitor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+import static dk.dtu.compute.course02324.mini_java.model.Operator.MINUS2;
+import static dk.dtu.compute.course02324.mini_java.model.Operator.PLUS2;
+
+/**
+ * Statically estimates an upper bound for the cost of executing a type-checked
+ * MiniJava program, based on the weights of a {@link CostModel}. The visitor
+ * computes the cost of every node of the program; for statements, this is the
+ * cost of executing the statement (including all iterations of loops), for
+ * expressions, the cost of evaluating the expression once.<p>
+ *
+ * The number of iterations of a while-loop can be bounded only if the loop is
+ * counted (see {@link InductionVariable}); for all other loops, the cost is
+ * {@link CostBound#UNBOUNDED unbounded}. The bound for the number of iterations
+ * is derived from the range of the induction variable when the loop is entered,
+ * which the visitor tracks for int variables that are assigned constants or
+ * constants added to other variables. If the value of the induction variable
+ * is not known, the bound is symbolic in the value of that variable when the
+ * loop is entered. If the results of an {@link IntervalAnalysis} are given,
+ * its bounds on the number of iterations are used where they are smaller.
+ */
+public class CostEstimatorVisitor extends ProgramVisitor {
+
+    /** The weights of the nodes */
+    final private CostModel model;
+
+    /** The results of an interval analysis of the program, or <code>null</code> */
+    final private IntervalAnalysis intervals;
+
+    /** The cost bound of each visited node */
+    final public Map<VisitAcceptor, CostBound> costs = new IdentityHashMap<>();
+
+    /** The bound on the number of iterations for each visited while-loop */
+    final public Map<WhileLoop, CostBound> tripCounts = new IdentityHashMap<>();
+
+    /** The ranges of the int variables at the current point of the program */
+    private Map<Var, Range> ranges = new HashMap<>();
+
+    /** The variables written in the loops enclosing the current point of the program */
+    final private Set<Var> writtenInEnclosingLoops = new HashSet<>();
+
+    /** The range of the last visited expression */
+    private Range range = Range.TOP;
+
+    public CostEstimatorVisitor() {
+        this(CostModel.DEFAULT);
+    }
+
+    public CostEstimatorVisitor(@NotNull CostModel model) {
+        this(model, null);
+    }
+
+    public CostEstimatorVisitor(@NotNull CostModel model, IntervalAnalysis intervals) {
+        this.model = model;
+        this.intervals = intervals;
+    }
+
+    /** Estimates the cost of a statement. */
+    public void visit(Statement statement) {
+        statement.accept(this);
+    }
+
+    /** Returns the bound of the cost of a visited statement or expression. */
+    public CostBound cost(@NotNull VisitAcceptor node) {
+        return costs.get(node);
+    }
+
+    @Override
+    public void visit(Sequence sequence) {
+        CostBound cost = CostBound.ZERO;
+        for (Statement statement: sequence.statements) {
+            statement.accept(this);
+            cost = cost.plus(costs.get(statement));
+        }
+        costs.put(sequence, cost);
+    }
+
+    @Override
+    public void visit(Declaration declaration) {
+        CostBound cost = CostBound.numeric(model.declaration);
+        if (declaration.expression != null) {
+            declaration.expression.accept(this);
+            cost = cost.plus(costs.get(declaration.expression));
+            ranges.put(declaration.variable, range);
+        }
+        costs.put(declaration, cost);
+    }
+
+    @Override
+    public void visit(PrintStatement printStatement) {
+        printStatement.expression.accept(this);
+        costs.put(printStatement, CostBound.numeric(model.print).plus(costs.get(printStatement.expression)));
+    }
+
+    @Override
+    public void visit(WhileLoop whileLoop) {
+        InductionVariable inductionVariable = InductionVariable.of(whileLoop);
+        Set<Var> written = WrittenVariables.of(whileLoop);
+
+        whileLoop.expression.accept(this);
+        CostBound condition = CostBound.numeric(model.loopIteration).plus(costs.get(whileLoop.expression));
+        Range entry = range;
+
+        CostBound trips = CostBound.UNBOUNDED;
+        Map<Var, Range> before = ranges;
+        ranges = new HashMap<>(before);
+        ranges.keySet().removeAll(written);
+        if (entry.symbol == null && entry.hi < 0) {
+            // the loop is not entered at all
+            trips = CostBound.ZERO;
+        } else if (inductionVariable != null) {
+            Var variable = inductionVariable.variable;
+            int step = inductionVariable.step;
+            if (entry.symbol == null && entry.hi == Integer.MAX_VALUE && !writtenInEnclosingLoops.contains(variable)) {
+                entry = Range.symbol(variable.name);
+            }
+            trips = tripBound(entry, step);
+            if (entry.symbol != null || entry.hi >= 0) {
+                ranges.put(variable, new Range(0, entry.symbol, entry.hi));
+            }
+        }
+
+        if (intervals != null) {
+            long bound = intervals.tripBound(whileLoop);
+            if (bound >= 0 && bound < trips.value) {
+                trips = CostBound.numeric(bound);
+            }
+        }
+
+        Set<Var> newlyWritten = new HashSet<>(written);
+        newlyWritten.removeAll(writtenInEnclosingLoops);
+        writtenInEnclosingLoops.addAll(newlyWritten);
+        whileLoop.statement.accept(this);
+        writtenInEnclosingLoops.removeAll(newlyWritten);
+
+        ranges = new HashMap<>(before);
+        ranges.keySet().removeAll(written);
+        if (inductionVariable != null && trips.value > 0) {
+            // the loop terminates with a negative value (or is not entered at all)
+            ranges.put(inductionVariable.variable, new Range(Math.min(entry.lo, -inductionVariable.step), null, -1));
+        }
+
+        CostBound body = costs.get(whileLoop.statement);
+        tripCounts.put(whileLoop, trips);
+        costs.put(whileLoop, trips.plus(CostBound.numeric(1)).times(condition).plus(trips.times(body)));
+    }
+
+    /**
+     * Computes the bound on the number of iterations of a counted loop, whose
+     * induction variable is in the given range when the loop is entered.
+     */
+    private static CostBound tripBound(Range entry, int step) {
+        if (entry.symbol == null) {
+            return CostBound.numeric(entry.hi < 0 ? 0 : entry.hi / step + 1);
+        }
+        long worstCase = Math.max(0, (Integer.MAX_VALUE + entry.hi) / step + 1);
+        String value = entry.symbol + offset(entry.hi);
+        if (step == 1) {
+            return CostBound.symbolic(entry.symbol + offset(entry.hi + 1), worstCase);
+        } else if (entry.hi == 0) {
+            return CostBound.symbolic(value + " / " + step + " + 1", worstCase);
+        } else {
+            return CostBound.symbolic("(" + value + ") / " + step + " + 1", worstCase);
+        }
+    }
+
+    private static String offset(long offset) {
+        if (offset == 0) {
+            return "";
+        }
+        return offset > 0 ? " + " + offset : " - " + (-offset);
+    }
+
+    @Override
+    public void visit(Assignment assignment) {
+        assignment.expression.accept(this);
+        ranges.put(assignment.variable, range);
+        costs.put(assignment, CostBound.numeric(model.assignment).plus(costs.get(assignment.expression)));
+    }
+
+    @Override
+    public void visit(Literal literal) {
+        if (literal instanceof IntLiteral intLiteral) {
+            range = new Range(intLiteral.literal, null, intLiteral.literal);
+        } else {
+            range = Range.TOP;
+        }
+        costs.put(literal, CostBound.numeric(model.literal));
+    }
+
+    @Override
+    public void visit(Var var) {
+        range = ranges.getOrDefault(var, Range.TOP);
+        costs.put(var, CostBound.numeric(model.variable));
+    }
+
+    @Override
+    public void visit(OperatorExpression operatorExpression) {
+        CostBound cost = CostBound.numeric(model.operator(operatorExpression.operator));
+        List<Range> operandRanges = new ArrayList<>();
+        for (Expression operand: operatorExpression.operands) {
+            operand.accept(this);
+            cost = cost.plus(costs.get(operand));
+            operandRanges.add(range);
+        }
+        range = Range.TOP;
+        if (operatorExpression.operator == PLUS2 || operatorExpression.operator == MINUS2) {
+            int sign = operatorExpression.operator == PLUS2 ? 1 : -1;
+            if (operatorExpression.operands.get(1) instanceof IntLiteral literal) {
+                range = operandRanges.get(0).shift(sign * (long) literal.literal);
+            } else if (sign == 1 && operatorExpression.operands.get(0) instanceof IntLiteral literal) {
+                range = operandRanges.get(1).shift(literal.literal);
+            }
+        }
+        costs.put(operatorExpression, cost);
+    }
+
+    /**
+     * A range of int values. The lower bound is numeric; the upper bound is
+     * either numeric or the value of a variable when the innermost loop
+     * controlled by it was entered (the symbol) plus a numeric offset.
+     */
+    private static class Range {
+
+        final static Range TOP = new Range(Integer.MIN_VALUE, null, Integer.MAX_VALUE);
+
+        final long lo;
+
+        final String symbol;
+
+        final long hi;
+
+        Range(long lo, String symbol, long hi) {
+            this.lo = lo;
+            this.symbol = symbol;
+            this.hi = hi;
+        }
+
+        static Range symbol(String symbol) {
+            return new Range(Integer.MIN_VALUE, symbol, 0);
+        }
+
+        /** Returns the range of the values plus the given constant, or TOP if this could overflow. */
+        Range shift(long delta) {
+            long newLo = lo + delta;
+            long newHi = hi + delta;
+            if (newLo < Integer.MIN_VALUE) {
+                return TOP;
+            }
+            if (symbol == null ? newHi > Integer.MAX_VALUE : delta > 0) {
+                return TOP;
+            }
+            return new Range(newLo, symbol, newHi);
+        }
+
+    }
+
+}
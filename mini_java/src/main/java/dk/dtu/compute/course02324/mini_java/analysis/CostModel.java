@@ -0,0 +1,62 @@
+package dk.dtu.compute.course02324.mini_java.analysis;
+
+import dk.dtu.compute.course02324.mini_java.model.Operator;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The weights used by the {@link CostEstimatorVisitor} for the different kinds
+ * of nodes of a program. Each weight is the cost of executing the node once,
+ * not including the cost of its subexpressions or substatements.<p>
+ *
+ * The {@link #DEFAULT default} weights are rough estimates in nanoseconds of
+ * the cost of the nodes in the
+ * {@link dk.dtu.compute.course02324.mini_java.semantics.ProgramExecutorVisitor
+ * ProgramExecutorVisitor}, which only need to be right relative to each
+ * other. Weights measured on the running machine can be obtained from
+ * {@link dk.dtu.compute.course02324.mini_java.profiling.CostModelCalibration
+ * CostModelCalibration}; for other execution engines, a model with other
+ * weights can be created with the constructor.
+ */
+public class CostModel {
+
+    final public static CostModel DEFAULT = new CostModel(20, 5, 60, 40, 300, 30, 100,
+            Map.of(Operator.DIV, 170, Operator.MOD, 170));
+
+    final public int literal;
+
+    final public int variable;
+
+    final public int assignment;
+
+    final public int declaration;
+
+    final public int print;
+
+    /** The cost of one check of a while-loop's condition (not including the expression) */
+    final public int loopIteration;
+
+    /** The cost of operators, which do not have a specific weight */
+    final public int operator;
+
+    final private Map<Operator, Integer> operators;
+
+    public CostModel(int literal, int variable, int assignment, int declaration, int print,
+                     int loopIteration, int operator, Map<Operator, Integer> operators) {
+        this.literal = literal;
+        this.variable = variable;
+        this.assignment = assignment;
+        this.declaration = declaration;
+        this.print = print;
+        this.loopIteration = loopIteration;
+        this.operator = operator;
+        this.operators = operators.isEmpty() ? Map.of() : new EnumMap<>(operators);
+    }
+
+    /** Returns the weight of an operator. */
+    public int operator(Operator operator) {
+        return operators.getOrDefault(operator, this.operator);
+    }
+
+}
@@ -0,0 +1,273 @@
+package dk.dtu.compute.course02324.mini_java.analysis;
+
+import dk.dtu.compute.course02324.mini_java.infrastructure.VisitAcceptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A dataflow analysis over a {@link ControlFlowGraph}, whose values are sets
+ * represented as bitsets (arrays of longs), which are joined by union. A
+ * subclass defines the effect of each point on a value with
+ * {@link #transfer(int, long[])}; {@link #solve()} then computes the least
+ * fixpoint with a worklist of blocks.<p>
+ *
+ * To keep the memory small for large programs, the values are stored only
+ * at the beginning and the end of each block. When the value before or
+ * after a point is asked for, the values at all points of its block are
+ * computed from them and kept until a point of another block is asked for,
+ * so that querying all points of a block in any order takes time linear in
+ * its size. "Before" and "after" always refer to the order of execution,
+ * also for backward analyses.
+ */
+public abstract class DataflowAnalysis {
+
+    public enum Direction { FORWARD, BACKWARD }
+
+    final protected ControlFlowGraph graph;
+
+    final private Direction direction;
+
+    /** The number of longs of each value */
+    final protected int words;
+
+    /** The value at the beginning of each block */
+    private long[][] entries;
+
+    /** The value at the end of each block */
+    private long[][] exits;
+
+    /** The number of times a block was processed by the last call of {@link #solve()} */
+    private int iterations;
+
+    /** The values at the points of the block, which was queried last */
+    private BlockValues queried;
+
+    /**
+     * The values at the points of a block: the value before the i-th point
+     * of the block (in the order of execution) is <code>values[i]</code>, and
+     * the value after the last point is the last value.
+     */
+    private static final class BlockValues {
+
+        final private int block;
+
+        final private long[][] values;
+
+        private BlockValues(int block, long[][] values) {
+            this.block = block;
+            this.values = values;
+        }
+
+    }
+
+    protected DataflowAnalysis(@NotNull ControlFlowGraph graph, @NotNull Direction direction, int bits) {
+        this.graph = graph;
+        this.direction = direction;
+        this.words = (bits + 63) >>> 6;
+    }
+
+    /**
+     * Applies the effect of a point to a value. For a forward analysis, the
+     * value before the point is changed into the value after the point; for a
+     * backward analysis, the value after the point is changed into the value
+     * before the point.
+     */
+    protected abstract void transfer(int point, long[] value);
+
+    /**
+     * Sets the value at the beginning (forward) or end (backward) of the
+     * program. By default, the value is the empty set.
+     */
+    protected void boundary(long[] value) {
+    }
+
+    /** Computes the values of all blocks and returns this analysis. */
+    public DataflowAnalysis solve() {
+        int blocks = graph.blockCount();
+        entries = new long[blocks][words];
+        exits = new long[blocks][words];
+        iterations = 0;
+        queried = null;
+
+        boolean forward = direction == Direction.FORWARD;
+        // a circular queue of blocks, which contains each block at most once
+        int[] queue = new int[blocks];
+        boolean[] queued = new boolean[blocks];
+        int head = 0;
+        int size = blocks;
+        for (int i = 0; i < blocks; i++) {
+            queue[i] = forward ? i : blocks - 1 - i;
+            queued[i] = true;
+        }
+        long[] value = new long[words];
+        while (size > 0) {
+            int block = queue[head];
+            head = (head + 1) % blocks;
+            size--;
+            queued[block] = false;
+            iterations++;
+
+            Arrays.fill(value, 0);
+            int[] sources = forward ? graph.predecessors(block) : graph.successors(block);
+            if (forward ? block == 0 : sources.length == 0) {
+                boundary(value);
+            }
+            for (int source: sources) {
+                union(value, forward ? exits[source] : entries[source]);
+            }
+            System.arraycopy(value, 0, forward ? entries[block] : exits[block], 0, words);
+            int[] points = graph.blockPoints(block);
+            if (forward) {
+                for (int point: points) {
+                    transfer(point, value);
+                }
+            } else {
+                for (int i = points.length - 1; i >= 0; i--) {
+                    transfer(points[i], value);
+                }
+            }
+            long[] result = forward ? exits[block] : entries[block];
+            if (!Arrays.equals(value, result)) {
+                System.arraycopy(value, 0, result, 0, words);
+                for (int target: forward ? graph.successors(block) : graph.predecessors(block)) {
+                    if (!queued[target]) {
+                        queued[target] = true;
+                        queue[(head + size) % blocks] = target;
+                        size++;
+                    }
+                }
+            }
+        }
+        return this;
+    }
+
+    /** Returns the number of times a block was processed until the analysis converged. */
+    public int iterations() {
+        return iterations;
+    }
+
+    /** Returns the value at the beginning of a block. The array must not be changed. */
+    public long[] blockEntry(int block) {
+        checkSolved();
+        return entries[block];
+    }
+
+    /** Returns the value at the end of a block. The array must not be changed. */
+    public long[] blockExit(int block) {
+        checkSolved();
+        return exits[block];
+    }
+
+    /** Returns a new array with the value before a point. */
+    public long[] before(int point) {
+        return at(point, false);
+    }
+
+    /** Returns a new array with the value after a point. */
+    public long[] after(int point) {
+        return at(point, true);
+    }
+
+    private long[] at(int point, boolean after) {
+        checkSolved();
+        int block = graph.block(point);
+        BlockValues blockValues = queried;
+        if (blockValues == null || blockValues.block != block) {
+            blockValues = new BlockValues(block, blockValues(block));
+            queried = blockValues;
+        }
+        // the points of a block are numbered in increasing order
+        int index = Arrays.binarySearch(graph.blockPoints(block), point);
+        return blockValues.values[after ? index + 1 : index].clone();
+    }
+
+    /** Computes the values before each point of a block and after its last point. */
+    private long[][] blockValues(int block) {
+        int[] points = graph.blockPoints(block);
+        long[][] values = new long[points.length + 1][];
+        if (direction == Direction.FORWARD) {
+            long[] value = entries[block].clone();
+            values[0] = value.clone();
+            for (int i = 0; i < points.length; i++) {
+                transfer(points[i], value);
+                values[i + 1] = value.clone();
+            }
+        } else {
+            long[] value = exits[block].clone();
+            values[points.length] = value.clone();
+            for (int i = points.length - 1; i >= 0; i--) {
+                transfer(points[i], value);
+                values[i] = value.clone();
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns the union of the values before the evaluation of a node,
+     * including its subexpressions, at all its points (a node which is shared
+     * in the tree has several points); the empty set if the node does not
+     * have points.
+     */
+    public long[] before(@NotNull VisitAcceptor node) {
+        long[] result = new long[words];
+        for (int point: graph.points(node)) {
+            union(result, before(graph.start(point)));
+        }
+        return result;
+    }
+
+    /** Returns the union of the values after all points of a node; the empty set if it does not have points. */
+    public long[] after(@NotNull VisitAcceptor node) {
+        long[] result = new long[words];
+        for (int point: graph.points(node)) {
+            union(result, after(point));
+        }
+        return result;
+    }
+
+    private void checkSolved() {
+        if (entries == null) {
+            throw new IllegalStateException("The analysis must be solved first.");
+        }
+    }
+
+    /** Adds all elements of <code>source</code> to <code>target</code>. */
+    public static void union(long[] target, long[] source) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] |= source[i];
+        }
+    }
+
+    public static boolean get(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    public static void clear(long[] bits, int index) {
+        bits[index >>> 6] &= ~(1L << index);
+    }
+
+    /** Returns the first set bit at or after the given index, or -1 if there is none. */
+    public static int next(long[] bits, int index) {
+        int word = index >>> 6;
+        if (word >= bits.length) {
+            return -1;
+        }
+        long remaining = bits[word] & (-1L << index);
+        while (true) {
+            if (remaining != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(remaining);
+            }
+            if (++word == bits.length) {
+                return -1;
+            }
+            remaining = bits[word];
+        }
+    }
+
+}
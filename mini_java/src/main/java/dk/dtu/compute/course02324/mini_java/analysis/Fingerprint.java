@@ -0,0 +1,47 @@
+package dk.dtu.compute.course02324.mini_java.analysis;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A 128-bit structural hash of a node of a MiniJava program, as computed by
+ * {@link Fingerprints}. Two nodes with the same structure have the same
+ * fingerprint, in every JVM; nodes with a different structure have different
+ * fingerprints with overwhelming probability.
+ */
+public final class Fingerprint {
+
+    final public long high;
+
+    final public long low;
+
+    public Fingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /** Parses a fingerprint from the 32 hex digits of its {@link #toString()}. */
+    public static Fingerprint parse(@NotNull String hex) {
+        if (hex.length() != 32) {
+            throw new IllegalArgumentException("A fingerprint has 32 hex digits: " + hex);
+        }
+        return new Fingerprint(Long.parseUnsignedLong(hex.substring(0, 16), 16),
+                Long.parseUnsignedLong(hex.substring(16), 16));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Fingerprint that && high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) low;
+    }
+
+    /** Returns the fingerprint as 32 hex digits. */
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+
+}
@@ -0,0 +1,243 @@
+package dk.dtu.compute.course02324.mini_java.analysis;
+
+import dk.dtu.compute.course02324.mini_java.infrastructure.VisitAcceptor;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramVisitor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Computes the {@link Fingerprint}s of the nodes of MiniJava programs in a
+ * single bottom-up pass, in the manner of a Merkle tree: the fingerprint of
+ * a node is a hash of its kind, its own attributes (operators, type
+ * keywords, the bits of literals, names of variables, prefixes of print
+ * statements) and the fingerprints of its children. So, two nodes have the
+ * same fingerprint if and only if they have the same structure (up to hash
+ * collisions), and equal subtrees can be found by their fingerprints.<p>
+ *
+ * The fingerprints do not depend on the identity of the nodes, on hash codes
+ * of Java objects or on ordinals of enums, so they are the same in every JVM.
+ * The hash function is MurmurHash3 (x64, 128 bit) applied to the attributes
+ * as 64-bit words.<p>
+ *
+ * The fingerprint of every visited node is cached, so that asking for the
+ * fingerprints of the subtrees of a program, or of programs sharing
+ * subtrees, does not compute them again. The nodes must not be changed
+ * after their fingerprint was computed; an instance is not thread-safe.
+ */
+public class Fingerprints extends ProgramVisitor {
+
+    // the kinds of nodes
+    final private static long SEQUENCE = 1;
+    final private static long DECLARATION = 2;
+    final private static long PRINT = 3;
+    final private static long WHILE = 4;
+    final private static long COUNTED = 5;
+    final private static long CLOSED_FORM = 6;
+    final private static long ASSIGNMENT = 7;
+    final private static long INT_LITERAL = 8;
+    final private static long FLOAT_LITERAL = 9;
+    final private static long VAR = 10;
+    final private static long OPERATOR = 11;
+
+    /** The absence of an optional child */
+    final private static long NONE = 0;
+
+    /** The fingerprint of each visited node */
+    final private Map<VisitAcceptor, Fingerprint> fingerprints = new IdentityHashMap<>();
+
+    /** The fingerprint of the last visited node */
+    private Fingerprint result;
+
+    /** Returns the fingerprint of a node, which is computed with those of all its descendants if necessary. */
+    public Fingerprint of(@NotNull VisitAcceptor node) {
+        Fingerprint fingerprint = fingerprints.get(node);
+        if (fingerprint == null) {
+            node.accept(this);
+            fingerprint = result;
+            fingerprints.put(node, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    /** Returns the fingerprint of a node, without keeping the fingerprints of its descendants. */
+    public static Fingerprint compute(@NotNull VisitAcceptor node) {
+        return new Fingerprints().of(node);
+    }
+
+    /** Returns the number of nodes, whose fingerprints are cached. */
+    public int size() {
+        return fingerprints.size();
+    }
+
+    @Override
+    public void visit(Sequence sequence) {
+        Hasher hasher = new Hasher(SEQUENCE).add(sequence.statements.size());
+        for (Statement statement: sequence.statements) {
+            hasher.add(of(statement));
+        }
+        result = hasher.finish();
+    }
+
+    @Override
+    public void visit(Declaration declaration) {
+        result = new Hasher(DECLARATION).add(declaration.type.getName()).add(declaration.variable.name)
+                .addOptional(declaration.expression).finish();
+    }
+
+    @Override
+    public void visit(PrintStatement printStatement) {
+        result = new Hasher(PRINT).add(printStatement.prefix).addOptional(printStatement.expression).finish();
+    }
+
+    @Override
+    public void visit(WhileLoop whileLoop) {
+        result = new Hasher(WHILE).add(of(whileLoop.expression)).add(of(whileLoop.statement)).finish();
+    }
+
+    @Override
+    public void visit(CountedLoop countedLoop) {
+        result = new Hasher(COUNTED).add(countedLoop.variable.name).add(countedLoop.step)
+                .add(of(countedLoop.statement)).finish();
+    }
+
+    @Override
+    public void visit(ClosedFormLoop closedFormLoop) {
+        Hasher hasher = new Hasher(CLOSED_FORM).add(closedFormLoop.variable.name).add(closedFormLoop.step)
+                .add(of(closedFormLoop.statement)).add(closedFormLoop.accumulations.size());
+        for (ClosedFormLoop.Accumulation accumulation: closedFormLoop.accumulations) {
+            hasher.add(accumulation.target.name).add(accumulation.negated ? 1 : 0).add(accumulation.term.name())
+                    .add(accumulation.constant);
+            if (accumulation.invariant != null) {
+                hasher.add(1).add(accumulation.invariant.name);
+            } else {
+                hasher.add(NONE);
+            }
+        }
+        result = hasher.finish();
+    }
+
+    @Override
+    public void visit(Assignment assignment) {
+        result = new Hasher(ASSIGNMENT).add(assignment.variable.name).add(of(assignment.expression)).finish();
+    }
+
+    @Override
+    public void visit(Literal literal) {
+        if (literal instanceof IntLiteral intLiteral) {
+            result = new Hasher(INT_LITERAL).add(intLiteral.literal).finish();
+        } else if (literal instanceof FloatLiteral floatLiteral) {
+            result = new Hasher(FLOAT_LITERAL).add(Float.floatToRawIntBits(floatLiteral.literal)).finish();
+        } else {
+            throw new IllegalArgumentException("Unknown literal: " + literal);
+        }
+    }
+
+    @Override
+    public void visit(Var var) {
+        result = new Hasher(VAR).add(var.name).finish();
+    }
+
+    @Override
+    public void visit(OperatorExpression operatorExpression) {
+        Hasher hasher = new Hasher(OPERATOR).add(operatorExpression.operator.name())
+                .add(operatorExpression.operands.size());
+        for (Expression operand: operatorExpression.operands) {
+            hasher.add(of(operand));
+        }
+        result = hasher.finish();
+    }
+
+    /**
+     * Hashes a sequence of 64-bit words into 128 bits, processing two words
+     * at a time like the blocks of MurmurHash3 (x64, 128 bit).
+     */
+    private class Hasher {
+
+        final private static long C1 = 0x87c37b91114253d5L;
+        final private static long C2 = 0x4cf5ad432745937fL;
+
+        private long h1 = 0x9368e53c2f6af274L;
+        private long h2 = 0x586dcd208f7cd3fdL;
+
+        private long words = 0;
+
+        private long pending;
+
+        Hasher(long kind) {
+            add(kind);
+        }
+
+        Hasher add(long word) {
+            if ((words & 1) == 0) {
+                pending = word;
+            } else {
+                block(pending, word);
+            }
+            words++;
+            return this;
+        }
+
+        Hasher add(Fingerprint fingerprint) {
+            return add(fingerprint.high).add(fingerprint.low);
+        }
+
+        /** Adds the length and the UTF-16 code units of a string, four per word. */
+        Hasher add(String string) {
+            add(string.length());
+            long word = 0;
+            for (int i = 0; i < string.length(); i++) {
+                word = word << 16 | string.charAt(i);
+                if (i % 4 == 3) {
+                    add(word);
+                    word = 0;
+                }
+            }
+            if (string.length() % 4 != 0) {
+                add(word);
+            }
+            return this;
+        }
+
+        Hasher addOptional(Expression expression) {
+            return expression != null ? add(1).add(of(expression)) : add(NONE);
+        }
+
+        private void block(long k1, long k2) {
+            h1 ^= Long.rotateLeft(k1 * C1, 31) * C2;
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= Long.rotateLeft(k2 * C2, 33) * C1;
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        Fingerprint finish() {
+            if ((words & 1) == 1) {
+                h1 ^= Long.rotateLeft(pending * C1, 31) * C2;
+            }
+            h1 ^= words * 8;
+            h2 ^= words * 8;
+            h1 += h2;
+            h2 += h1;
+            h1 = mix(h1);
+            h2 = mix(h2);
+            h1 += h2;
+            h2 += h1;
+            return new Fingerprint(h1, h2);
+        }
+
+        private static long mix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb93fe53ad4c3L;
+            k ^= k >>> 33;
+            return k;
+        }
+
+    }
+
+}
@@ -0,0 +1,82 @@
+package dk.dtu.compute.course02324.mini_java.analysis;
+
+import dk.dtu.compute.course02324.mini_java.model.Sequence;
+import dk.dtu.compute.course02324.mini_java.model.Statement;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Partitions the statements of a sequence into groups, which can be executed
+ * independently of each other: two statements are in the same group if one
+ * of them writes a variable which the other one reads or writes (see
+ * {@link AccessedVariables#conflictsWith}), or if they are connected by a
+ * chain of such statements. Executing the groups in any order, or
+ * concurrently, each group with its statements in their original order, has
+ * the same effect on the variables as executing the sequence.
+ */
+public class IndependentStatements {
+
+    private IndependentStatements() {
+    }
+
+    /**
+     * Returns the groups of the indices of the statements of a sequence. The
+     * indices in each group are ascending, and the groups are ordered by their
+     * first index.
+     */
+    public static List<int[]> partition(@NotNull Sequence sequence) {
+        List<Statement> statements = sequence.statements;
+        int size = statements.size();
+        AccessedVariables[] accessed = new AccessedVariables[size];
+        for (int i = 0; i < size; i++) {
+            accessed[i] = AccessedVariables.in(statements.get(i));
+        }
+
+        // union-find over the indices of the statements
+        int[] parent = new int[size];
+        for (int i = 0; i < size; i++) {
+            parent[i] = i;
+            for (int j = 0; j < i; j++) {
+                if (accessed[j].conflictsWith(accessed[i])) {
+                    int a = find(parent, i);
+                    int b = find(parent, j);
+                    parent[Math.max(a, b)] = Math.min(a, b);
+                }
+            }
+        }
+
+        List<int[]> groups = new ArrayList<>();
+        int[] groupOf = new int[size];
+        int[] sizes = new int[size];
+        for (int i = 0; i < size; i++) {
+            int root = find(parent, i);
+            if (root == i) {
+                groupOf[i] = groups.size();
+                groups.add(null);
+            } else {
+                groupOf[i] = groupOf[root];
+            }
+            sizes[groupOf[i]]++;
+        }
+        for (int group = 0; group < groups.size(); group++) {
+            groups.set(group, new int[sizes[group]]);
+            sizes[group] = 0;
+        }
+        for (int i = 0; i < size; i++) {
+            int group = groupOf[i];
+            groups.get(group)[sizes[group]++] = i;
+        }
+        return groups;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+}
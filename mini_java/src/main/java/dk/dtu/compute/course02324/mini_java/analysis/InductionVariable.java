@@ -0,0 +1,136 @@
+package dk.dtu.compute.course02324.mini_java.analysis;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static dk.dtu.compute.course02324.mini_java.model.Operator.MINUS2;
+import static dk.dtu.compute.course02324.mini_java.model.Operator.PLUS2;
+
+/**
+ * Describes the induction variable of a counted while-loop. A while-loop is
+ * counted, if its condition is a variable <code>v</code> which is decremented
+ * by a positive constant <code>c</code> exactly once in every iteration, by an
+ * assignment <code>v = v - c</code> (or <code>v = v + -c</code>) on the top level
+ * of the loop's body, and which is not written anywhere else in the body.<p>
+ *
+ * For such a loop, the number of iterations is determined by the value
+ * <code>v0</code> of the variable when the loop is entered: the loop is executed
+ * <code>v0 / c + 1</code> times if <code>v0 &gt;= 0</code> and not at all
+ * otherwise. Since <code>v</code> is not negative when it is decremented, the
+ * decrement can not overflow.
+ */
+public class InductionVariable {
+
+    /** The loop controlled by this induction variable */
+    final public WhileLoop loop;
+
+    /** The induction variable (the condition of the loop) */
+    final public Var variable;
+
+    /** The constant by which the variable is decremented in each iteration (always positive) */
+    final public int step;
+
+    /** The assignment decrementing the variable */
+    final public Assignment update;
+
+    /** The position of the update in the {@link #statements(Statement) top level statements} of the body */
+    final public int updateIndex;
+
+    private InductionVariable(WhileLoop loop, Var variable, int step, Assignment update, int updateIndex) {
+        this.loop = loop;
+        this.variable = variable;
+        this.step = step;
+        this.update = update;
+        this.updateIndex = updateIndex;
+    }
+
+    /**
+     * Recognizes the induction variable of a while-loop of a type-checked
+     * program.
+     *
+     * @param loop the while-loop
+     * @return the induction variable or <code>null</code> if the loop is not counted
+     */
+    public static InductionVariable of(@NotNull WhileLoop loop) {
+        if (!(loop.expression instanceof Var variable)) {
+            return null;
+        }
+        List<Statement> statements = statements(loop.statement);
+        Assignment update = null;
+        int updateIndex = -1;
+        int step = 0;
+        for (int i = 0; i < statements.size(); i++) {
+            Statement statement = statements.get(i);
+            int decrement = decrement(statement, variable);
+            if (decrement > 0 && update == null) {
+                update = (Assignment) statement;
+                updateIndex = i;
+                step = decrement;
+            } else {
+                WrittenVariables written = new WrittenVariables();
+                statement.accept(written);
+                if (written.written.contains(variable) || written.declared.contains(variable)) {
+                    return null;
+                }
+            }
+        }
+        if (update == null) {
+            return null;
+        }
+        return new InductionVariable(loop, variable, step, update, updateIndex);
+    }
+
+    /**
+     * Returns the number of iterations of the loop, when it is entered with the
+     * given value of the induction variable.
+     */
+    public long tripCount(int entryValue) {
+        return entryValue < 0 ? 0 : entryValue / step + 1L;
+    }
+
+    /**
+     * Returns the statements which are executed in order when the given
+     * statement is executed once, i.e. the statement itself or, if it is a
+     * sequence, the statements of the (nested) sequences.
+     */
+    public static List<Statement> statements(@NotNull Statement statement) {
+        List<Statement> result = new ArrayList<>();
+        addStatements(statement, result);
+        return result;
+    }
+
+    private static void addStatements(Statement statement, List<Statement> result) {
+        if (statement instanceof Sequence sequence) {
+            for (Statement substatement: sequence.statements) {
+                addStatements(substatement, result);
+            }
+        } else {
+            result.add(statement);
+        }
+    }
+
+    /**
+     * Returns the constant by which the given statement decrements the given
+     * variable, or 0 if the statement is not of the form <code>v = v - c</code>
+     * or <code>v = v + -c</code> for a positive int constant <code>c</code>.
+     */
+    private static int decrement(Statement statement, Var variable) {
+        if (statement instanceof Assignment assignment &&
+                assignment.variable.equals(variable) &&
+                assignment.expression instanceof OperatorExpression operatorExpression &&
+                operatorExpression.operands.size() == 2 &&
+                operatorExpression.operands.get(0).equals(variable) &&
+                operatorExpression.operands.get(1) instanceof IntLiteral literal) {
+            if (operatorExpression.operator == MINUS2 && literal.literal > 0) {
+                return literal.literal;
+            } else if (operatorExpression.operator == PLUS2 && literal.literal < 0 && literal.literal != Integer.MIN_VALUE) {
+                return -literal.literal;
+            }
+        }
+        return 0;
+    }
+
+}
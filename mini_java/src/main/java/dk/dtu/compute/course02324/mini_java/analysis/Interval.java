@@ -0,0 +1,195 @@
+package dk.dtu.compute.course02324.mini_java.analysis;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An interval of int values from {@link #lo} to {@link #hi} (both included),
+ * as used by the {@link IntervalAnalysis}. The operations compute an interval
+ * containing all results of applying an operator to values of the operand
+ * intervals, with the wrap-around semantics of Java ints: if an operation
+ * might overflow, the result is {@link #TOP}.
+ */
+public class Interval {
+
+    final public static Interval TOP = new Interval(Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+    final public long lo;
+
+    final public long hi;
+
+    private Interval(long lo, long hi) {
+        this.lo = lo;
+        this.hi = hi;
+    }
+
+    /** Returns the interval from lo to hi, which must be int values with lo &lt;= hi. */
+    public static Interval of(long lo, long hi) {
+        if (lo > hi || lo < Integer.MIN_VALUE || hi > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Not an interval of int values: [" + lo + ", " + hi + "]");
+        }
+        return new Interval(lo, hi);
+    }
+
+    public static Interval constant(int value) {
+        return new Interval(value, value);
+    }
+
+    /** Returns whether the interval contains the given value. */
+    public boolean contains(long value) {
+        return lo <= value && value <= hi;
+    }
+
+    /** Returns whether the mathematical results from lo to hi can be represented as ints. */
+    static boolean fits(long lo, long hi) {
+        return lo >= Integer.MIN_VALUE && hi <= Integer.MAX_VALUE;
+    }
+
+    /** Returns the smallest interval containing both intervals. */
+    public Interval join(@NotNull Interval other) {
+        if (other.lo >= lo && other.hi <= hi) {
+            return this;
+        }
+        return new Interval(Math.min(lo, other.lo), Math.max(hi, other.hi));
+    }
+
+    /**
+     * Returns an interval containing both intervals, where bounds of this
+     * interval, which are exceeded by the other interval, are moved to the
+     * smallest or largest int right away; this guarantees that a sequence of
+     * widenings becomes stable after at most two steps.
+     */
+    public Interval widen(@NotNull Interval other) {
+        long newLo = other.lo < lo ? Integer.MIN_VALUE : lo;
+        long newHi = other.hi > hi ? Integer.MAX_VALUE : hi;
+        return newLo == lo && newHi == hi ? this : new Interval(newLo, newHi);
+    }
+
+    /** Returns the values of this interval, which are at least the given value, or <code>null</code> if there are none. */
+    public Interval atLeast(long value) {
+        if (value > hi) {
+            return null;
+        }
+        return value <= lo ? this : new Interval(value, hi);
+    }
+
+    /** Returns the values of this interval, which are at most the given value, or <code>null</code> if there are none. */
+    public Interval atMost(long value) {
+        if (value < lo) {
+            return null;
+        }
+        return value >= hi ? this : new Interval(lo, value);
+    }
+
+    /** Returns whether adding values of the two intervals can not overflow. */
+    public boolean canAdd(@NotNull Interval other) {
+        return fits(lo + other.lo, hi + other.hi);
+    }
+
+    public Interval add(@NotNull Interval other) {
+        return canAdd(other) ? new Interval(lo + other.lo, hi + other.hi) : TOP;
+    }
+
+    public boolean canSubtract(@NotNull Interval other) {
+        return fits(lo - other.hi, hi - other.lo);
+    }
+
+    public Interval subtract(@NotNull Interval other) {
+        return canSubtract(other) ? new Interval(lo - other.hi, hi - other.lo) : TOP;
+    }
+
+    public boolean canNegate() {
+        return lo > Integer.MIN_VALUE;
+    }
+
+    public Interval negate() {
+        return canNegate() ? new Interval(-hi, -lo) : TOP;
+    }
+
+    public boolean canMultiply(@NotNull Interval other) {
+        long[] products = products(other);
+        return fits(products[0], products[1]);
+    }
+
+    public Interval multiply(@NotNull Interval other) {
+        long[] products = products(other);
+        return fits(products[0], products[1]) ? new Interval(products[0], products[1]) : TOP;
+    }
+
+    /** Returns the minimum and maximum of the products of the bounds (which can not overflow a long). */
+    private long[] products(Interval other) {
+        long a = lo * other.lo;
+        long b = lo * other.hi;
+        long c = hi * other.lo;
+        long d = hi * other.hi;
+        return new long[] {Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d))};
+    }
+
+    /** Returns whether this interval does not contain zero, i.e. whether it is a safe divisor. */
+    public boolean isNonZero() {
+        return lo > 0 || hi < 0;
+    }
+
+    /**
+     * Returns whether dividing values of this interval by values of the other
+     * interval can not overflow; the only overflow is the smallest int divided by -1.
+     */
+    public boolean canDivide(@NotNull Interval other) {
+        return lo > Integer.MIN_VALUE || !other.contains(-1);
+    }
+
+    /** Returns the results of dividing by the non-zero values of the other interval, or TOP if there are none. */
+    public Interval divide(@NotNull Interval other) {
+        if (!canDivide(other)) {
+            return TOP;
+        }
+        Interval result = null;
+        Interval negative = other.atMost(-1);
+        if (negative != null) {
+            result = quotients(negative);
+        }
+        Interval positive = other.atLeast(1);
+        if (positive != null) {
+            Interval quotients = quotients(positive);
+            result = result == null ? quotients : result.join(quotients);
+        }
+        return result != null ? result : TOP;
+    }
+
+    /** Returns the quotients for a divisor interval not containing zero; the extremes are at the bounds. */
+    private Interval quotients(Interval divisor) {
+        long a = lo / divisor.lo;
+        long b = lo / divisor.hi;
+        long c = hi / divisor.lo;
+        long d = hi / divisor.hi;
+        return new Interval(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d)));
+    }
+
+    /** Returns the remainders of dividing by the values of the other interval; the remainder never overflows. */
+    public Interval remainder(@NotNull Interval other) {
+        long bound = Math.max(Math.abs(other.lo), Math.abs(other.hi)) - 1;
+        if (bound < 0) {
+            return TOP;
+        }
+        long newLo = lo >= 0 ? 0 : Math.max(lo, -bound);
+        long newHi = hi <= 0 ? 0 : Math.min(hi, bound);
+        return new Interval(newLo, newHi);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Interval interval)) return false;
+        return lo == interval.lo && hi == interval.hi;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(lo) * 31 + Long.hashCode(hi);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + lo + ", " + hi + "]";
+    }
+
+}
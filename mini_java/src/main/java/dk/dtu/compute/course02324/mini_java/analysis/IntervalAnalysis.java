@@ -0,0 +1,328 @@
+package dk.dtu.compute.course02324.mini_java.analysis;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramVisitor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.INT;
+
+/**
+ * Computes intervals of the values of the int variables and expressions of a
+ * type-checked program by abstract interpretation. The state of a while-loop
+ * is computed as a fixpoint of the states at the beginning of the loop, where
+ * {@link Interval#widen(Interval) widening} guarantees termination. In the
+ * body of a loop, the condition of the loop is known to be not negative, and
+ * after the loop, it is known to be negative, which is used to refine the
+ * interval of a variable if the condition is the variable (possibly assigned
+ * in the condition) or the variable plus or minus a literal.<p>
+ *
+ * The results are annotations of the program, which execution engines can use
+ * to omit checks: the interval of each int expression (over all its
+ * evaluations), the int operations which can never overflow, the divisions
+ * and remainders whose divisor can never be zero, and bounds on the number
+ * of iterations of counted loops (see {@link InductionVariable}) each time
+ * they are entered. Values, which are not known, are assumed to be any int;
+ * reading a variable without value fails at runtime anyway.
+ */
+public class IntervalAnalysis extends ProgramVisitor {
+
+    /** The type visitor which checked the program */
+    final private ProgramTypeVisitor types;
+
+    /** The interval of each int expression over all its evaluations */
+    final public Map<Expression, Interval> intervals = new IdentityHashMap<>();
+
+    /** The int operator expressions, which never overflow */
+    final public Set<OperatorExpression> overflowFree = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /** The int divisions and remainders, whose divisor is never zero */
+    final public Set<OperatorExpression> nonZeroDivisors = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /** The maximal number of iterations of counted loops each time they are entered */
+    final public Map<WhileLoop, Long> tripBounds = new IdentityHashMap<>();
+
+    /** The int operator expressions, which might overflow in some evaluation */
+    final private Set<OperatorExpression> mightOverflow = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /** The int divisions and remainders, which might divide by zero in some evaluation */
+    final private Set<OperatorExpression> mightDivideByZero = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /** The int operator expressions, which did not overflow in their last evaluation */
+    final private Set<OperatorExpression> lastOverflowFree = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /** The state at the beginning of each loop, when it was analysed last; the next analysis starts from there */
+    final private Map<WhileLoop, Map<Var, Interval>> loopStates = new IdentityHashMap<>();
+
+    /** The intervals of the int variables at the current point of the program; missing variables can have any value */
+    private Map<Var, Interval> state = new HashMap<>();
+
+    /** The interval of the last visited expression, or <code>null</code> if it is not an int expression */
+    private Interval interval;
+
+    public IntervalAnalysis(@NotNull ProgramTypeVisitor types) {
+        this.types = types;
+    }
+
+    /** Analyses a statement. */
+    public void visit(Statement statement) {
+        statement.accept(this);
+        overflowFree.removeAll(mightOverflow);
+        nonZeroDivisors.removeAll(mightDivideByZero);
+    }
+
+    /** Returns the interval of an int expression over all its evaluations, or <code>null</code> if it is not known. */
+    public Interval interval(@NotNull Expression expression) {
+        return intervals.get(expression);
+    }
+
+    /** Returns the bound on the number of iterations of a loop, or -1 if the loop is not bounded. */
+    public long tripBound(@NotNull WhileLoop loop) {
+        return tripBounds.getOrDefault(loop, -1L);
+    }
+
+    private boolean isInt(Expression expression) {
+        return INT.equals(types.typeMapping.get(expression));
+    }
+
+    private void record(Expression expression, Interval value) {
+        interval = value;
+        if (value != null) {
+            intervals.merge(expression, value, Interval::join);
+        }
+    }
+
+    @Override
+    public void visit(Sequence sequence) {
+        for (Statement statement: sequence.statements) {
+            statement.accept(this);
+        }
+    }
+
+    @Override
+    public void visit(Declaration declaration) {
+        if (declaration.expression != null) {
+            declaration.expression.accept(this);
+            assign(declaration.variable, interval);
+        }
+    }
+
+    @Override
+    public void visit(PrintStatement printStatement) {
+        printStatement.expression.accept(this);
+    }
+
+    @Override
+    public void visit(WhileLoop whileLoop) {
+        Map<Var, Interval> head = join(state, loopStates.get(whileLoop));
+        Map<Var, Interval> afterCondition;
+        Interval condition;
+        int iteration = 0;
+        while (true) {
+            state = new HashMap<>(head);
+            whileLoop.expression.accept(this);
+            condition = interval;
+            afterCondition = state;
+
+            state = refine(afterCondition, whileLoop.expression, condition, 0, Integer.MAX_VALUE);
+            if (state != null) {
+                whileLoop.statement.accept(this);
+            }
+            Map<Var, Interval> next = join(head, state);
+            if (iteration++ > 0) {
+                next = widen(head, next);
+            }
+            if (next.equals(head)) {
+                break;
+            }
+            head = next;
+        }
+        loopStates.put(whileLoop, head);
+
+        InductionVariable inductionVariable = InductionVariable.of(whileLoop);
+        if (inductionVariable != null) {
+            Interval entry = condition != null ? condition : Interval.TOP;
+            tripBounds.merge(whileLoop, entry.hi < 0 ? 0 : entry.hi / inductionVariable.step + 1, Math::max);
+        }
+
+        Map<Var, Interval> exit = refine(afterCondition, whileLoop.expression, condition, Integer.MIN_VALUE, -1);
+        // if the condition can never be negative, the loop does not terminate; any state is fine then
+        state = exit != null ? exit : afterCondition;
+    }
+
+    /**
+     * Returns the state in which the value of the condition, which has the
+     * given interval in the given state, is between lo and hi, or
+     * <code>null</code> if this is not possible.
+     */
+    private Map<Var, Interval> refine(Map<Var, Interval> state, Expression condition, Interval value, long lo, long hi) {
+        if (value == null) {
+            return state;
+        }
+        Interval refined = value.atLeast(lo);
+        refined = refined != null ? refined.atMost(hi) : null;
+        if (refined == null) {
+            return null;
+        }
+        Var variable = null;
+        long offset = 0;
+        if (condition instanceof Var var) {
+            variable = var;
+        } else if (condition instanceof Assignment assignment) {
+            variable = assignment.variable;
+        } else if (condition instanceof OperatorExpression operatorExpression &&
+                overflowFreeNow(operatorExpression) &&
+                operatorExpression.operands.size() == 2 &&
+                operatorExpression.operands.get(0) instanceof Var var &&
+                operatorExpression.operands.get(1) instanceof IntLiteral literal) {
+            if (operatorExpression.operator == Operator.PLUS2) {
+                variable = var;
+                offset = -literal.literal;
+            } else if (operatorExpression.operator == Operator.MINUS2) {
+                variable = var;
+                offset = literal.literal;
+            }
+        }
+        if (variable == null) {
+            return state;
+        }
+        Interval current = state.getOrDefault(variable, Interval.TOP);
+        Interval result = current.atLeast(refined.lo + offset);
+        result = result != null ? result.atMost(refined.hi + offset) : null;
+        if (result == null) {
+            return null;
+        }
+        Map<Var, Interval> refinedState = new HashMap<>(state);
+        refinedState.put(variable, result);
+        return refinedState;
+    }
+
+    /** Returns whether the last evaluation of an operator expression did not overflow. */
+    private boolean overflowFreeNow(OperatorExpression operatorExpression) {
+        return lastOverflowFree.contains(operatorExpression);
+    }
+
+    /** Joins two states; a state <code>null</code> is unreachable. */
+    private static Map<Var, Interval> join(Map<Var, Interval> a, Map<Var, Interval> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        Map<Var, Interval> result = new HashMap<>();
+        for (Map.Entry<Var, Interval> entry: a.entrySet()) {
+            Interval other = b.get(entry.getKey());
+            if (other != null) {
+                result.put(entry.getKey(), entry.getValue().join(other));
+            }
+        }
+        return result;
+    }
+
+    /** Widens the intervals of the old state by the ones of the new state, which contains the old one. */
+    private static Map<Var, Interval> widen(Map<Var, Interval> old, Map<Var, Interval> next) {
+        Map<Var, Interval> result = new HashMap<>();
+        for (Map.Entry<Var, Interval> entry: next.entrySet()) {
+            Interval before = old.get(entry.getKey());
+            result.put(entry.getKey(), before != null ? before.widen(entry.getValue()) : entry.getValue());
+        }
+        return result;
+    }
+
+    @Override
+    public void visit(Assignment assignment) {
+        assignment.expression.accept(this);
+        assign(assignment.variable, interval);
+        record(assignment, interval);
+    }
+
+    private void assign(Var variable, Interval value) {
+        if (value != null) {
+            state.put(variable, value);
+        } else {
+            state.remove(variable);
+        }
+    }
+
+    @Override
+    public void visit(Literal literal) {
+        record(literal, literal instanceof IntLiteral intLiteral ? Interval.constant(intLiteral.literal) : null);
+    }
+
+    @Override
+    public void visit(Var var) {
+        record(var, isInt(var) ? state.getOrDefault(var, Interval.TOP) : null);
+    }
+
+    @Override
+    public void visit(OperatorExpression operatorExpression) {
+        List<Interval> operands = new ArrayList<>();
+        for (Expression operand: operatorExpression.operands) {
+            operand.accept(this);
+            operands.add(interval);
+        }
+        if (!isInt(operatorExpression)) {
+            record(operatorExpression, null);
+            return;
+        }
+        Interval a = operands.get(0);
+        Interval b = operands.size() > 1 ? operands.get(1) : null;
+        Interval result;
+        boolean safe;
+        switch (operatorExpression.operator) {
+            case PLUS1:
+                result = a;
+                safe = true;
+                break;
+            case MINUS1:
+                result = a.negate();
+                safe = a.canNegate();
+                break;
+            case PLUS2:
+                result = a.add(b);
+                safe = a.canAdd(b);
+                break;
+            case MINUS2:
+                result = a.subtract(b);
+                safe = a.canSubtract(b);
+                break;
+            case MULT:
+                result = a.multiply(b);
+                safe = a.canMultiply(b);
+                break;
+            case DIV:
+                result = a.divide(b);
+                safe = a.canDivide(b);
+                divisor(operatorExpression, b);
+                break;
+            case MOD:
+                result = a.remainder(b);
+                safe = true;
+                divisor(operatorExpression, b);
+                break;
+            default:
+                result = Interval.TOP;
+                safe = false;
+        }
+        if (safe) {
+            overflowFree.add(operatorExpression);
+            lastOverflowFree.add(operatorExpression);
+        } else {
+            mightOverflow.add(operatorExpression);
+            lastOverflowFree.remove(operatorExpression);
+        }
+        record(operatorExpression, result);
+    }
+
+    private void divisor(OperatorExpression operatorExpression, Interval divisor) {
+        if (divisor.isNonZero()) {
+            nonZeroDivisors.add(operatorExpression);
+        } else {
+            mightDivideByZero.add(operatorExpression);
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package dk.dtu.compute.course02324.mini_java.analysis;
+
+import dk.dtu.compute.course02324.mini_java.infrastructure.VisitAcceptor;
+import dk.dtu.compute.course02324.mini_java.model.Var;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+
+/**
+ * Computes which variables are live at each point of a program, i.e. whose
+ * current value might still be read later. A variable is live before it is
+ * read, and not live before it is assigned, unless it is read in the assigned
+ * expression. A declaration without expression does not change the value of
+ * a variable, so it does not end its liveness.
+ */
+public class Liveness extends DataflowAnalysis {
+
+    public Liveness(@NotNull ControlFlowGraph graph) {
+        super(graph, Direction.BACKWARD, graph.variableCount());
+    }
+
+    /** Computes the liveness for all points of a control flow graph. */
+    public static Liveness of(@NotNull ControlFlowGraph graph) {
+        Liveness liveness = new Liveness(graph);
+        liveness.solve();
+        return liveness;
+    }
+
+    @Override
+    protected void transfer(int point, long[] value) {
+        switch (graph.kind(point)) {
+            case ControlFlowGraph.USE:
+                set(value, graph.variable(point));
+                break;
+            case ControlFlowGraph.DEFINE:
+                clear(value, graph.variable(point));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Returns the variables live after a node (at any of its occurrences). */
+    public Set<Var> liveAfter(@NotNull VisitAcceptor node) {
+        return graph.variables(after(node));
+    }
+
+    /** Returns the variables live before a node (at any of its occurrences). */
+    public Set<Var> liveBefore(@NotNull VisitAcceptor node) {
+        return graph.variables(before(node));
+    }
+
+    /**
+     * Returns whether the value assigned at a point might be read later. The
+     * point must be a definition.
+     */
+    public boolean isUsed(int definition) {
+        return get(after(definition), graph.variable(definition));
+    }
+
+}
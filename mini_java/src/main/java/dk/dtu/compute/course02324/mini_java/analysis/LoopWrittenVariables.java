@@ -0,0 +1,59 @@
+package dk.dtu.compute.course02324.mini_java.analysis;
+
+import dk.dtu.compute.course02324.mini_java.model.Var;
+import dk.dtu.compute.course02324.mini_java.model.WhileLoop;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the variables written in each while-loop of a program (including
+ * its condition and nested loops) from its {@link ControlFlowGraph}, for all
+ * loops at once. This gives the same results as {@link WrittenVariables}
+ * applied to every loop, but visits the program only once.
+ */
+public class LoopWrittenVariables {
+
+    final private ControlFlowGraph graph;
+
+    /** The written variables of each loop as bitset */
+    final private Map<WhileLoop, long[]> written = new IdentityHashMap<>();
+
+    public LoopWrittenVariables(@NotNull ControlFlowGraph graph) {
+        this.graph = graph;
+        int words = (graph.variableCount() + 63) >>> 6;
+        for (int header = 0; header < graph.blockCount(); header++) {
+            int exit = graph.loopExit(header);
+            if (exit < 0) {
+                continue;
+            }
+            // the loop node is the first point of its header
+            WhileLoop loop = (WhileLoop) graph.node(graph.blockPoints(header)[0]);
+            long[] bits = written.computeIfAbsent(loop, key -> new long[words]);
+            for (int block = header; block < exit; block++) {
+                for (int point: graph.blockPoints(block)) {
+                    if (graph.kind(point) == ControlFlowGraph.DEFINE) {
+                        DataflowAnalysis.set(bits, graph.variable(point));
+                    }
+                }
+            }
+        }
+    }
+
+    /** Returns the variables written in a loop of the program; empty if the loop is not part of it. */
+    public Set<Var> of(@NotNull WhileLoop loop) {
+        long[] bits = written.get(loop);
+        return bits != null ? graph.variables(bits) : Collections.emptySet();
+    }
+
+    /** Returns whether a variable is written in a loop of the program. */
+    public boolean isWritten(@NotNull WhileLoop loop, @NotNull Var variable) {
+        long[] bits = written.get(loop);
+        int id = graph.id(variable);
+        return bits != null && id >= 0 && DataflowAnalysis.get(bits, id);
+    }
+
+}
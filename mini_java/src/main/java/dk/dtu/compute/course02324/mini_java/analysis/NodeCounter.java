@@ -0,0 +1,90 @@
+package dk.dtu.compute.course02324.mini_java.analysis;
+
+import dk.dtu.compute.course02324.mini_java.infrastructure.VisitAcceptor;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramVisitor;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counts the nodes of a program, in total and for each kind of node (the
+ * simple name of the node's class). Nodes, which are shared in the tree,
+ * are counted every time they occur.
+ */
+public class NodeCounter extends ProgramVisitor {
+
+    /** The number of nodes of each kind */
+    final public Map<String, Integer> counts = new TreeMap<>();
+
+    /** The total number of nodes */
+    public int total = 0;
+
+    /** Returns the total number of nodes of a statement or expression. */
+    public static int count(VisitAcceptor node) {
+        NodeCounter counter = new NodeCounter();
+        node.accept(counter);
+        return counter.total;
+    }
+
+    private void countNode(Object node) {
+        counts.merge(node.getClass().getSimpleName(), 1, Integer::sum);
+        total++;
+    }
+
+    @Override
+    public void visit(Sequence sequence) {
+        countNode(sequence);
+        for (Statement statement: sequence.statements) {
+            statement.accept(this);
+        }
+    }
+
+    @Override
+    public void visit(Declaration declaration) {
+        countNode(declaration);
+        declaration.variable.accept(this);
+        if (declaration.expression != null) {
+            declaration.expression.accept(this);
+        }
+    }
+
+    @Override
+    public void visit(PrintStatement printStatement) {
+        countNode(printStatement);
+        printStatement.expression.accept(this);
+    }
+
+    @Override
+    public void visit(WhileLoop whileLoop) {
+        countNode(whileLoop);
+        whileLoop.expression.accept(this);
+        whileLoop.statement.accept(this);
+    }
+
+    @Override
+    public void visit(Assignment assignment) {
+        countNode(assignment);
+        assignment.variable.accept(this);
+        assignment.expression.accept(this);
+    }
+
+    @Override
+    public void visit(Literal literal) {
+        countNode(literal);
+    }
+
+    @Override
+    public void visit(Var var) {
+        countNode(var);
+    }
+
+    @Override
+    public void visit(OperatorExpression operatorExpression) {
+        countNode(operatorExpression);
+        for (Expression operand: operatorExpression.operands) {
+            operand.accept(this);
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+package dk.dtu.compute.course02324.mini_java.analysis;
+
+import dk.dtu.compute.course02324.mini_java.infrastructure.VisitAcceptor;
+import dk.dtu.compute.course02324.mini_java.model.Var;
+import dk.dtu.compute.course02324.mini_java.utils.IntList;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Computes which definitions (assignments and declarations with expression)
+ * might have assigned the current value of a variable at each point of a
+ * program. The definitions are numbered densely in the order of their points,
+ * and the values are sets of definition numbers.
+ */
+public class ReachingDefinitions extends DataflowAnalysis {
+
+    /** The number of the definition at each point, or -1 */
+    final private int[] definitionNumbers;
+
+    /** The point of each definition */
+    final private IntList definitions = new IntList();
+
+    /** The numbers of the definitions of each variable (by its id) */
+    final private IntList[] definitionsOf;
+
+    public ReachingDefinitions(@NotNull ControlFlowGraph graph) {
+        super(graph, Direction.FORWARD, countDefinitions(graph));
+        definitionNumbers = new int[graph.pointCount()];
+        definitionsOf = new IntList[graph.variableCount()];
+        for (int point = 0; point < graph.pointCount(); point++) {
+            definitionNumbers[point] = -1;
+            if (graph.kind(point) == ControlFlowGraph.DEFINE) {
+                int variable = graph.variable(point);
+                definitionNumbers[point] = definitions.add(point);
+                if (definitionsOf[variable] == null) {
+                    definitionsOf[variable] = new IntList(2);
+                }
+                definitionsOf[variable].add(definitionNumbers[point]);
+            }
+        }
+    }
+
+    private static int countDefinitions(ControlFlowGraph graph) {
+        int count = 0;
+        for (int point = 0; point < graph.pointCount(); point++) {
+            if (graph.kind(point) == ControlFlowGraph.DEFINE) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Computes the reaching definitions for all points of a control flow graph. */
+    public static ReachingDefinitions of(@NotNull ControlFlowGraph graph) {
+        ReachingDefinitions reachingDefinitions = new ReachingDefinitions(graph);
+        reachingDefinitions.solve();
+        return reachingDefinitions;
+    }
+
+    @Override
+    protected void transfer(int point, long[] value) {
+        int definition = definitionNumbers[point];
+        if (definition >= 0) {
+            IntList killed = definitionsOf[graph.variable(point)];
+            for (int i = 0; i < killed.size(); i++) {
+                clear(value, killed.get(i));
+            }
+            set(value, definition);
+        }
+    }
+
+    /** Returns the point of a definition. */
+    public int point(int definition) {
+        return definitions.get(definition);
+    }
+
+    /**
+     * Returns the definitions of a variable (as nodes of the program), which
+     * might have assigned the value of the variable when the given node is
+     * executed. For a definition, its own value is not yet assigned.
+     */
+    public Set<VisitAcceptor> reaching(@NotNull VisitAcceptor node, @NotNull Var variable) {
+        int id = graph.id(variable);
+        if (id < 0 || definitionsOf[id] == null) {
+            return Collections.emptySet();
+        }
+        long[] value = before(node);
+        Set<VisitAcceptor> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        IntList candidates = definitionsOf[id];
+        for (int i = 0; i < candidates.size(); i++) {
+            if (get(value, candidates.get(i))) {
+                result.add(graph.node(point(candidates.get(i))));
+            }
+        }
+        return result;
+    }
+
+    /** Returns the definitions, which might have assigned the value read by a variable node. */
+    public Set<VisitAcceptor> reaching(@NotNull Var use) {
+        return reaching(use, use);
+    }
+
+    /** Returns the points of all definitions in the order of their numbers. */
+    public List<Integer> definitionPoints() {
+        List<Integer> result = new ArrayList<>();
+        for (int i = 0; i < definitions.size(); i++) {
+            result.add(definitions.get(i));
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,117 @@
+package dk.dtu.compute.course02324.mini_java.analysis;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+import static dk.dtu.compute.course02324.mini_java.model.Operator.MULT;
+import static dk.dtu.compute.course02324.mini_java.model.Operator.PLUS2;
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.FLOAT;
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.INT;
+
+/**
+ * Describes a counted while-loop (see {@link InductionVariable}), whose only
+ * loop-carried dependencies are its induction variable and accumulators. Each
+ * top level statement of the body, except for the update of the induction
+ * variable, must be an accumulation <code>a = a + e</code> or
+ * <code>a = a * e</code> (or with the operands swapped), where the term
+ * <code>e</code> does not read any accumulator and does not write any
+ * variable. All accumulations of the same accumulator use the same operator.
+ * The body must not print anything.<p>
+ *
+ * Since int addition and multiplication are associative and commutative
+ * (also when they overflow), the iterations of such a loop can be split into
+ * chunks, whose partial results are computed independently and combined
+ * afterwards. Float accumulators are allowed only if relaxed float semantics
+ * is requested, since the combined result can differ in rounding from the
+ * result of the sequential loop.
+ */
+public class ReductionLoop {
+
+    /** An accumulator of the loop with its operator ({@link Operator#PLUS2} or {@link Operator#MULT}). */
+    public static class Accumulator {
+
+        final public Var variable;
+
+        final public Operator operator;
+
+        final public Type type;
+
+        Accumulator(Var variable, Operator operator, Type type) {
+            this.variable = variable;
+            this.operator = operator;
+            this.type = type;
+        }
+
+    }
+
+    final public InductionVariable inductionVariable;
+
+    /** The accumulators in the order of their first accumulation */
+    final public List<Accumulator> accumulators;
+
+    private ReductionLoop(InductionVariable inductionVariable, List<Accumulator> accumulators) {
+        this.inductionVariable = inductionVariable;
+        this.accumulators = List.copyOf(accumulators);
+    }
+
+    /**
+     * Recognizes a reduction loop of a type-checked program.
+     *
+     * @param loop the while-loop
+     * @param typeMapping the types of the program, as computed by the type checker
+     * @param relaxedFloat whether float accumulators are allowed
+     * @return the description of the reduction, or <code>null</code> if the loop is not a reduction loop
+     */
+    public static ReductionLoop of(@NotNull WhileLoop loop, @NotNull Map<Expression, Type> typeMapping, boolean relaxedFloat) {
+        InductionVariable inductionVariable = InductionVariable.of(loop);
+        if (inductionVariable == null) {
+            return null;
+        }
+        List<Statement> statements = InductionVariable.statements(loop.statement);
+        Map<Var, Accumulator> accumulators = new LinkedHashMap<>();
+        List<Expression> terms = new ArrayList<>();
+        for (int i = 0; i < statements.size(); i++) {
+            if (i == inductionVariable.updateIndex) {
+                continue;
+            }
+            if (!(statements.get(i) instanceof Assignment assignment) ||
+                    !(assignment.expression instanceof OperatorExpression operation) ||
+                    (operation.operator != PLUS2 && operation.operator != MULT)) {
+                return null;
+            }
+            Var variable = assignment.variable;
+            Expression term;
+            if (variable.equals(operation.operands.get(0))) {
+                term = operation.operands.get(1);
+            } else if (variable.equals(operation.operands.get(1))) {
+                term = operation.operands.get(0);
+            } else {
+                return null;
+            }
+            Type type = typeMapping.get(variable);
+            if (variable.equals(inductionVariable.variable) ||
+                    !(INT.equals(type) || (relaxedFloat && FLOAT.equals(type)))) {
+                return null;
+            }
+            Accumulator accumulator = accumulators.computeIfAbsent(variable,
+                    key -> new Accumulator(key, operation.operator, type));
+            if (accumulator.operator != operation.operator) {
+                return null;
+            }
+            terms.add(term);
+        }
+        if (accumulators.isEmpty()) {
+            return null;
+        }
+        for (Expression term: terms) {
+            AccessedVariables accessed = AccessedVariables.in(term);
+            if (!accessed.written.isEmpty() || !Collections.disjoint(accessed.read, accumulators.keySet())) {
+                return null;
+            }
+        }
+        return new ReductionLoop(inductionVariable, new ArrayList<>(accumulators.values()));
+    }
+
+}
@@ -0,0 +1,78 @@
+package dk.dtu.compute.course02324.mini_java.analysis;
+
+import dk.dtu.compute.course02324.mini_java.infrastructure.VisitAcceptor;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramVisitor;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Collects all variables which are written (declared with an expression or
+ * assigned to) in a statement or expression, including the assignments which
+ * are nested in expressions and the statements in nested loops.
+ */
+public class WrittenVariables extends ProgramVisitor {
+
+    /** The variables written in the visited statements and expressions */
+    final public Set<Var> written = new HashSet<>();
+
+    /** The variables declared in the visited statements (with or without expression) */
+    final public Set<Var> declared = new HashSet<>();
+
+    /** Returns the variables written in the given statement or expression. */
+    public static Set<Var> of(VisitAcceptor node) {
+        WrittenVariables visitor = new WrittenVariables();
+        node.accept(visitor);
+        return visitor.written;
+    }
+
+    @Override
+    public void visit(Sequence sequence) {
+        for (Statement statement: sequence.statements) {
+            statement.accept(this);
+        }
+    }
+
+    @Override
+    public void visit(Declaration declaration) {
+        declared.add(declaration.variable);
+        if (declaration.expression != null) {
+            declaration.expression.accept(this);
+            written.add(declaration.variable);
+        }
+    }
+
+    @Override
+    public void visit(PrintStatement printStatement) {
+        printStatement.expression.accept(this);
+    }
+
+    @Override
+    public void visit(WhileLoop whileLoop) {
+        whileLoop.expression.accept(this);
+        whileLoop.statement.accept(this);
+    }
+
+    @Override
+    public void visit(Assignment assignment) {
+        assignment.expression.accept(this);
+        written.add(assignment.variable);
+    }
+
+    @Override
+    public void visit(Literal literal) {
+    }
+
+    @Override
+    public void visit(Var var) {
+    }
+
+    @Override
+    public void visit(OperatorExpression operatorExpression) {
+        for (Expression operand: operatorExpression.operands) {
+            operand.accept(this);
+        }
+    }
+
+}
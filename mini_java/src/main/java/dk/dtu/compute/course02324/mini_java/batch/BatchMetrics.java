@@ -0,0 +1,79 @@
+package dk.dtu.compute.course02324.mini_java.batch;
+
+import java.util.Arrays;
+
+/**
+ * The aggregated metrics of a run of a {@link BatchPipeline}: the number of
+ * programs by status, the throughput, the percentiles of the latency of the
+ * programs, and the total time spent in each stage.
+ */
+public class BatchMetrics {
+
+    final public long programs;
+
+    final public long ok;
+
+    final public long illTyped;
+
+    final public long failed;
+
+    /** The wall clock time of the whole run */
+    final public long elapsedNanos;
+
+    /** The latencies of all programs, sorted */
+    final private long[] latencies;
+
+    /** The total time spent in each stage, summed over all programs */
+    final private long[] stageNanos;
+
+    BatchMetrics(long ok, long illTyped, long failed, long elapsedNanos, long[] latencies, long[] stageNanos) {
+        this.programs = ok + illTyped + failed;
+        this.ok = ok;
+        this.illTyped = illTyped;
+        this.failed = failed;
+        this.elapsedNanos = elapsedNanos;
+        this.latencies = latencies.clone();
+        Arrays.sort(this.latencies);
+        this.stageNanos = stageNanos.clone();
+    }
+
+    /** Returns the number of programs processed per second. */
+    public double throughput() {
+        return elapsedNanos > 0 ? programs * 1e9 / elapsedNanos : 0;
+    }
+
+    /**
+     * Returns the latency, which is not exceeded by the given percentage of the
+     * programs (nearest rank), or 0 if no program was processed.
+     */
+    public long latencyPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("The percentile must be between 0 and 100.");
+        }
+        if (latencies.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * latencies.length);
+        return latencies[Math.max(0, rank - 1)];
+    }
+
+    /** Returns the total time spent in the stage with the given index (see {@link BatchPipeline#STAGES}). */
+    public long stageNanos(int stage) {
+        return stageNanos[stage];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("%d programs (%d ok, %d ill-typed, %d failed) in %.3f ms, %.1f programs/s%n",
+                programs, ok, illTyped, failed, elapsedNanos / 1e6, throughput()));
+        result.append(String.format("latency p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                latencyPercentile(50) / 1e6, latencyPercentile(90) / 1e6,
+                latencyPercentile(99) / 1e6, latencyPercentile(100) / 1e6));
+        for (int stage = 0; stage < BatchPipeline.STAGES.size(); stage++) {
+            result.append(String.format("%s: %.3f ms%n", BatchPipeline.STAGES.get(stage), stageNanos[stage] / 1e6));
+        }
+        return result.toString();
+    }
+
+}
@@ -0,0 +1,397 @@
+package dk.dtu.compute.course02324.mini_java.batch;
+
+import dk.dtu.compute.course02324.mini_java.model.Statement;
+import dk.dtu.compute.course02324.mini_java.model.Var;
+import dk.dtu.compute.course02324.mini_java.optimization.OptimizationLevel;
+import dk.dtu.compute.course02324.mini_java.optimization.PassManager;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor;
+import dk.dtu.compute.course02324.mini_java.typed.Frame;
+import dk.dtu.compute.course02324.mini_java.typed.TypedProgram;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Processes a stream of programs in four stages: loading (for example,
+ * deserializing) a program from its source, type checking, optimizing, and
+ * executing it. Each stage runs in its own threads, whose number can be
+ * configured, and the stages are connected by bounded queues, so that a slow
+ * stage makes the stages before it wait (backpressure) instead of buffering
+ * an unbounded number of programs. The programs are executed on their typed
+ * trees (see {@link ProgramTypeVisitor#lower}), each printing into its own
+ * buffer.<p>
+ *
+ * The results are handed to a consumer on the thread which called
+ * {@link #run}, in the order in which they are completed; the position of a
+ * program in the input is given by {@link BatchResult#index}.
+ *
+ * <blockquote><code>
+ *   BatchPipeline&lt;Statement&gt; pipeline = BatchPipeline.of(statement -&gt; statement)<br>
+ *   &nbsp;&nbsp;&nbsp;&nbsp;.checkParallelism(2).optimize(OptimizationLevel.O1, 4).executeParallelism(4);<br>
+ *   BatchMetrics metrics = pipeline.run(programs.iterator(), result -&gt; ...);
+ * </code></blockquote>
+ *
+ * @param <S> the type of the sources of the programs
+ */
+public class BatchPipeline<S> {
+
+    /** The names of the stages, in the order of the indices used by the metrics */
+    final public static List<String> STAGES = List.of("load", "check", "optimize", "execute");
+
+    final private static int LOAD = 0;
+    final private static int CHECK = 1;
+    final private static int OPTIMIZE = 2;
+    final private static int EXECUTE = 3;
+
+    final private Function<? super S, ? extends Statement> loader;
+
+    final private int[] parallelism = {1, 1, 1, 1};
+
+    /** The optimization level, or <code>null</code> if the programs are not optimized */
+    private OptimizationLevel level = null;
+
+    private int queueCapacity = 64;
+
+    /** The cache of the results of the programs, or <code>null</code> if they are not memoized */
+    private ResultCache cache = null;
+
+    /** A program on its way through the stages */
+    private static class Item {
+
+        final long index;
+
+        final Object source;
+
+        final long start;
+
+        final long[] stageNanos = new long[STAGES.size()];
+
+        Statement statement;
+
+        ProgramTypeVisitor types;
+
+        List<String> problems = List.of();
+
+        /** The status, once the program is completed (by the last stage or by a failure) */
+        BatchResult.Status status;
+
+        String output = "";
+
+        Map<Var, Number> values;
+
+        Throwable error;
+
+        BatchResult result;
+
+        /** The request for the result in the cache, which is completed with the result of this item */
+        ResultCache.Request request;
+
+        Item(long index, Object source, long start) {
+            this.index = index;
+            this.source = source;
+            this.start = start;
+        }
+
+    }
+
+    /** The marker for the end of the programs in a queue */
+    final private static Item END = new Item(-1, null, 0);
+
+    private BatchPipeline(Function<? super S, ? extends Statement> loader) {
+        this.loader = loader;
+    }
+
+    /** Creates a pipeline, which loads the programs from their sources with the given function. */
+    public static <S> BatchPipeline<S> of(@NotNull Function<? super S, ? extends Statement> loader) {
+        return new BatchPipeline<>(loader);
+    }
+
+    public BatchPipeline<S> loadParallelism(int threads) {
+        return parallelism(LOAD, threads);
+    }
+
+    public BatchPipeline<S> checkParallelism(int threads) {
+        return parallelism(CHECK, threads);
+    }
+
+    /** Optimizes the programs with the pipeline of the given level, in the given number of threads. */
+    public BatchPipeline<S> optimize(@NotNull OptimizationLevel level, int threads) {
+        this.level = level;
+        return parallelism(OPTIMIZE, threads);
+    }
+
+    public BatchPipeline<S> executeParallelism(int threads) {
+        return parallelism(EXECUTE, threads);
+    }
+
+    /**
+     * Memoizes the results of the programs in the given cache: a program,
+     * whose result is in the cache, is completed in the check stage without
+     * being optimized or executed. The other programs pass through the
+     * optimize and execute stages as without a cache, and their results are
+     * memoized when they are completed; a program, for which the same program
+     * is on its way through the stages, waits in the check stage for its
+     * result. Programs whose execution fails are processed as without a cache.
+     */
+    public BatchPipeline<S> memoize(@NotNull ResultCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /** Sets the capacity of each queue between two stages. */
+    public BatchPipeline<S> queueCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity of the queues must be positive.");
+        }
+        this.queueCapacity = capacity;
+        return this;
+    }
+
+    private BatchPipeline<S> parallelism(int stage, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of threads of a stage must be positive.");
+        }
+        parallelism[stage] = threads;
+        return this;
+    }
+
+    /** Processes the programs of a stream; see {@link #run(Iterator, Consumer)}. */
+    public BatchMetrics run(@NotNull Stream<? extends S> sources, @NotNull Consumer<BatchResult> results) {
+        return run(sources.iterator(), results);
+    }
+
+    /**
+     * Processes the programs, whose sources are given by an iterator, hands the
+     * result of each program to the consumer, and returns the metrics when
+     * all programs were processed. The iterator is only used by a single thread.
+     */
+    public BatchMetrics run(@NotNull Iterator<? extends S> sources, @NotNull Consumer<BatchResult> results) {
+        long start = System.nanoTime();
+        List<BlockingQueue<Item>> queues = new ArrayList<>();
+        for (int i = 0; i <= STAGES.size(); i++) {
+            queues.add(new ArrayBlockingQueue<>(queueCapacity));
+        }
+        List<Thread> threads = new ArrayList<>();
+        threads.add(thread("minijava-batch-input", () -> feed(sources, queues.get(0))));
+        for (int stage = 0; stage < STAGES.size(); stage++) {
+            int s = stage;
+            AtomicInteger remaining = new AtomicInteger(parallelism[stage]);
+            for (int i = 1; i <= parallelism[stage]; i++) {
+                threads.add(thread("minijava-batch-" + STAGES.get(stage) + "-" + i,
+                        () -> work(s, queues.get(s), queues.get(s + 1), remaining)));
+            }
+        }
+        for (Thread thread: threads) {
+            thread.start();
+        }
+
+        long ok = 0, illTyped = 0, failed = 0;
+        long[] latencies = new long[16];
+        long[] stageNanos = new long[STAGES.size()];
+        BlockingQueue<Item> output = queues.get(STAGES.size());
+        try {
+            for (Item item = output.take(); item != END; item = output.take()) {
+                BatchResult result = item.result;
+                switch (result.status) {
+                    case OK -> ok++;
+                    case ILL_TYPED -> illTyped++;
+                    default -> failed++;
+                }
+                int count = (int) (ok + illTyped + failed);
+                if (count > latencies.length) {
+                    latencies = Arrays.copyOf(latencies, 2 * latencies.length);
+                }
+                latencies[count - 1] = result.latencyNanos;
+                for (int stage = 0; stage < stageNanos.length; stage++) {
+                    stageNanos[stage] += result.stageNanos(stage);
+                }
+                results.accept(result);
+            }
+        } catch (InterruptedException e) {
+            for (Thread thread: threads) {
+                thread.interrupt();
+            }
+            Thread.currentThread().interrupt();
+        }
+        int count = (int) (ok + illTyped + failed);
+        return new BatchMetrics(ok, illTyped, failed, System.nanoTime() - start,
+                Arrays.copyOf(latencies, count), stageNanos);
+    }
+
+    private static Thread thread(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Puts the sources into the first queue, waiting while the queue is full.
+     * If the iterator fails, the input ends there and the failure is reported
+     * as the result of a program without a source.
+     */
+    private void feed(Iterator<? extends S> sources, BlockingQueue<Item> queue) {
+        long index = 0;
+        try {
+            while (sources.hasNext()) {
+                S source = sources.next();
+                queue.put(new Item(index++, source, System.nanoTime()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            Item item = new Item(index, null, System.nanoTime());
+            complete(item, BatchResult.Status.FAILED, "", null, e);
+            item.result = result(item);
+            put(queue, item);
+        } finally {
+            // without the end marker, run would wait for the results forever
+            put(queue, END);
+        }
+    }
+
+    /** Puts an item into a queue; if the thread is interrupted, the item is dropped. */
+    private static void put(BlockingQueue<Item> queue, Item item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Processes the items of a stage until the end marker is taken. The last
+     * thread of the stage to take the marker passes it on to the next stage;
+     * the others put it back for their siblings.
+     */
+    private void work(int stage, BlockingQueue<Item> in, BlockingQueue<Item> out, AtomicInteger remaining) {
+        try {
+            while (true) {
+                Item item = in.take();
+                if (item == END) {
+                    if (remaining.decrementAndGet() == 0) {
+                        out.put(END);
+                    } else {
+                        in.put(END);
+                    }
+                    return;
+                }
+                if (item.status == null) {
+                    long begin = System.nanoTime();
+                    try {
+                        process(stage, item);
+                    } catch (Throwable e) {
+                        // a failing program must not stop the thread, or the pipeline would never end
+                        complete(item, BatchResult.Status.FAILED, "", null, e);
+                    }
+                    item.stageNanos[stage] = System.nanoTime() - begin;
+                    if (item.status != null) {
+                        memoize(item);
+                        item.result = result(item);
+                    }
+                }
+                out.put(item);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void process(int stage, Item item) {
+        switch (stage) {
+            case LOAD -> item.statement = loader.apply((S) item.source);
+            case CHECK -> {
+                if (cache != null && memoized(item)) {
+                    return;
+                }
+                item.types = new ProgramTypeVisitor();
+                item.types.visit(item.statement);
+                item.problems = item.types.problems;
+                if (!item.types.problems.isEmpty()) {
+                    complete(item, BatchResult.Status.ILL_TYPED, "", null, null);
+                }
+            }
+            case OPTIMIZE -> {
+                if (level != null) {
+                    PassManager passManager = new PassManager(level.pipeline());
+                    item.statement = passManager.run(item.statement);
+                    item.types = passManager.types();
+                    item.problems = item.types.problems;
+                }
+            }
+            default -> {
+                TypedProgram program = item.types.lower(item.statement);
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                Frame frame = new Frame(program.newStore(), new PrintStream(buffer, true));
+                try {
+                    program.execute(frame);
+                } catch (RuntimeException e) {
+                    complete(item, BatchResult.Status.FAILED, buffer.toString(), null, e);
+                    return;
+                }
+                complete(item, BatchResult.Status.OK, buffer.toString(), program.values(frame.variables), null);
+            }
+        }
+    }
+
+    /**
+     * Requests the result of an item from the cache and completes the item
+     * with it, if there is one; otherwise, the item keeps the request, which
+     * is completed when the item is.
+     */
+    private boolean memoized(Item item) {
+        ResultCache.Request request = cache.request(item.statement);
+        ResultCache.Result result = request.result;
+        if (result == null) {
+            item.request = request;
+            return false;
+        }
+        item.problems = result.problems;
+        if (result.isWellTyped()) {
+            complete(item, BatchResult.Status.OK, result.output, result.variableValues(), null);
+        } else {
+            complete(item, BatchResult.Status.ILL_TYPED, "", null, null);
+        }
+        return true;
+    }
+
+    /** Completes the cache request of a completed item with its result; a failure is not memoized. */
+    private static void memoize(Item item) {
+        ResultCache.Request request = item.request;
+        if (request == null) {
+            return;
+        }
+        item.request = null;
+        switch (item.status) {
+            case OK -> {
+                Map<String, Number> values = new LinkedHashMap<>();
+                item.values.forEach((var, value) -> values.put(var.name, value));
+                request.complete(new ResultCache.Result(item.problems, item.output, values));
+            }
+            case ILL_TYPED -> request.complete(new ResultCache.Result(item.problems, "", null));
+            default -> request.fail(item.error);
+        }
+    }
+
+    private static BatchResult result(Item item) {
+        return new BatchResult(item.index, item.status, item.statement, item.problems, item.output,
+                item.values, item.error, System.nanoTime() - item.start, item.stageNanos);
+    }
+
+    private static void complete(Item item, BatchResult.Status status, String output, Map<Var, Number> values,
+                                 Throwable error) {
+        item.status = status;
+        item.output = output;
+        item.values = values;
+        item.error = error;
+    }
+
+}
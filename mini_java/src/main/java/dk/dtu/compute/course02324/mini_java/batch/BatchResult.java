@@ -0,0 +1,73 @@
+package dk.dtu.compute.course02324.mini_java.batch;
+
+import dk.dtu.compute.course02324.mini_java.model.Statement;
+import dk.dtu.compute.course02324.mini_java.model.Var;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of processing one program of a batch by a {@link BatchPipeline}.
+ */
+public class BatchResult {
+
+    public enum Status {
+        /** The program was type checked and executed without problems */
+        OK,
+        /** The program has typing problems and was not executed */
+        ILL_TYPED,
+        /** Loading, optimizing or executing the program failed with an exception */
+        FAILED
+    }
+
+    /** The position of the program in the input of the batch, starting at 0 */
+    final public long index;
+
+    final public Status status;
+
+    /** The loaded (and possibly optimized) program, or <code>null</code> if loading failed */
+    final public Statement statement;
+
+    /** The typing problems of the program */
+    final public List<String> problems;
+
+    /** The output printed by the program (also if its execution failed) */
+    final public String output;
+
+    /** The values of the variables after the execution, or <code>null</code> if it was not executed */
+    final public Map<Var, Number> values;
+
+    /** The exception, if the status is {@link Status#FAILED}, otherwise <code>null</code> */
+    final public Throwable error;
+
+    /** The time from taking the program from the input until its result was complete */
+    final public long latencyNanos;
+
+    /** The time spent in each stage of the pipeline (see {@link BatchPipeline#STAGES}) */
+    final private long[] stageNanos;
+
+    BatchResult(long index, Status status, Statement statement, List<String> problems, String output,
+                Map<Var, Number> values, Throwable error, long latencyNanos, long[] stageNanos) {
+        this.index = index;
+        this.status = status;
+        this.statement = statement;
+        this.problems = List.copyOf(problems);
+        this.output = output;
+        this.values = values;
+        this.error = error;
+        this.latencyNanos = latencyNanos;
+        this.stageNanos = stageNanos.clone();
+    }
+
+    /** Returns the time spent in the stage with the given index. */
+    public long stageNanos(int stage) {
+        return stageNanos[stage];
+    }
+
+    @Override
+    public String toString() {
+        return "#" + index + " " + status + (error != null ? " (" + error + ")" : "") +
+                (problems.isEmpty() ? "" : " " + problems);
+    }
+
+}
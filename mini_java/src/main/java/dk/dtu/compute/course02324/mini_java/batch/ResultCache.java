@@ -0,0 +1,395 @@
+package dk.dtu.compute.course02324.mini_java.batch;
+
+import dk.dtu.compute.course02324.mini_java.model.Statement;
+import dk.dtu.compute.course02324.mini_java.model.Var;
+import dk.dtu.compute.course02324.mini_java.analysis.Fingerprints;
+import dk.dtu.compute.course02324.mini_java.typed.Frame;
+import dk.dtu.compute.course02324.mini_java.typed.FusedLowering;
+import dk.dtu.compute.course02324.mini_java.typed.TypedProgram;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memoizes the results of whole programs. MiniJava programs do not have
+ * inputs, so the output and the final values of the variables are
+ * determined by the program alone; a program with the same structure (see
+ * {@link Fingerprints}) as a program executed before does
+ * not need to be executed again.<p>
+ *
+ * The results are kept in memory up to a budget of (estimated) bytes; when
+ * the budget is exceeded, the least recently used results are evicted. If a
+ * spill directory is given, evicted results are written to it, and read
+ * back when they are needed again. Concurrent requests for the same program
+ * are coalesced: only the first one executes the program, the others wait
+ * for its result. If the execution fails, each of the waiting requests
+ * executes the program itself.<p>
+ *
+ * Only the results of programs, which are ill-typed or execute without
+ * failure, are memoized; a failing execution is repeated for every request,
+ * since its exception can not be replayed faithfully.
+ */
+public class ResultCache {
+
+    /** The memoized result of a program. */
+    public static class Result {
+
+        /** The typing problems; if there are any, the program was not executed */
+        final public List<String> problems;
+
+        /** The output printed by the program */
+        final public String output;
+
+        /** The values of the variables in the order of their declaration by name; <code>null</code> if not executed */
+        final public Map<String, Number> values;
+
+        Result(@NotNull List<String> problems, @NotNull String output, Map<String, Number> values) {
+            this.problems = List.copyOf(problems);
+            this.output = output;
+            this.values = values != null ? Collections.unmodifiableMap(new LinkedHashMap<>(values)) : null;
+        }
+
+        public boolean isWellTyped() {
+            return problems.isEmpty();
+        }
+
+        /** Returns the values of the variables by variable; <code>null</code> if the program was not executed. */
+        public Map<Var, Number> variableValues() {
+            if (values == null) {
+                return null;
+            }
+            Map<Var, Number> result = new LinkedHashMap<>();
+            values.forEach((name, value) -> result.put(new Var(name), value));
+            return result;
+        }
+
+        /** Returns an estimate of the bytes of memory used by this result. */
+        long bytes() {
+            long bytes = 64 + 40 + 2L * output.length();
+            for (String problem: problems) {
+                bytes += 40 + 2L * problem.length();
+            }
+            if (values != null) {
+                for (String name: values.keySet()) {
+                    bytes += 80 + 2L * name.length();
+                }
+            }
+            return bytes;
+        }
+
+    }
+
+    final private long budget;
+
+    /** The directory into which evicted results are written, or <code>null</code> */
+    final private Path spillDirectory;
+
+    /** The results in memory by fingerprint, in the order of their last use */
+    final private LinkedHashMap<String, Result> results = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes = 0;
+
+    /** The executions in progress by fingerprint */
+    final private Map<String, CompletableFuture<Result>> executions = new ConcurrentHashMap<>();
+
+    final private AtomicLong hits = new AtomicLong();
+    final private AtomicLong spillHits = new AtomicLong();
+    final private AtomicLong misses = new AtomicLong();
+    final private AtomicLong coalesced = new AtomicLong();
+    final private AtomicLong evictions = new AtomicLong();
+
+    /** Creates a cache, which keeps results in memory only, up to the given budget of bytes. */
+    public ResultCache(long budget) {
+        this(budget, null);
+    }
+
+    /**
+     * Creates a cache, which keeps results in memory up to the given budget
+     * of bytes, and writes evicted results to the given directory, if it is
+     * not <code>null</code>.
+     */
+    public ResultCache(long budget, Path spillDirectory) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("The budget must not be negative.");
+        }
+        this.budget = budget;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * A request for the result of a program, which is not memoized yet: the
+     * requester executes the program and completes the request with the
+     * result or the failure, which also ends the waiting of concurrent
+     * requests for the same program.
+     */
+    final class Request {
+
+        /** The memoized result or the result of a concurrent execution; <code>null</code> if the program must be executed */
+        final Result result;
+
+        final private String fingerprint;
+
+        /** The execution, for which concurrent requests wait, or <code>null</code> if none waits for this one */
+        final private CompletableFuture<Result> execution;
+
+        private Request(String fingerprint, Result result, CompletableFuture<Result> execution) {
+            this.fingerprint = fingerprint;
+            this.result = result;
+            this.execution = execution;
+        }
+
+        /** Memoizes the result of the execution of the program for this request. */
+        void complete(@NotNull Result result) {
+            if (execution != null) {
+                try {
+                    store(fingerprint, result);
+                    execution.complete(result);
+                } finally {
+                    executions.remove(fingerprint, execution);
+                }
+            }
+        }
+
+        /** Ends the request, whose execution failed, without memoizing anything. */
+        void fail(@NotNull Throwable error) {
+            if (execution != null) {
+                execution.completeExceptionally(error);
+                executions.remove(fingerprint, execution);
+            }
+        }
+
+    }
+
+    /**
+     * Returns the result of a program: the memoized one if there is one;
+     * otherwise, the program is type checked and executed (or the result of
+     * a concurrent execution of the same program is waited for).
+     *
+     * @throws RuntimeException the exception of a failing execution of the
+     *         program for this request
+     */
+    public Result execute(@NotNull Statement statement) {
+        Request request = request(statement);
+        if (request.result != null) {
+            return request.result;
+        }
+        Result result;
+        try {
+            result = run(statement);
+        } catch (RuntimeException | Error e) {
+            request.fail(e);
+            throw e;
+        }
+        request.complete(result);
+        return result;
+    }
+
+    /**
+     * Requests the result of a program, waiting for a concurrent execution of
+     * the same program if there is one. If the result of the request is
+     * <code>null</code>, the program must be executed by the requester, which
+     * completes the request afterwards; this counts as a miss.
+     */
+    Request request(@NotNull Statement statement) {
+        String fingerprint = Fingerprints.compute(statement).toString();
+        Result result = lookup(fingerprint);
+        if (result != null) {
+            return new Request(fingerprint, result, null);
+        }
+        CompletableFuture<Result> execution = new CompletableFuture<>();
+        CompletableFuture<Result> running = executions.putIfAbsent(fingerprint, execution);
+        if (running != null) {
+            try {
+                result = running.join();
+                coalesced.incrementAndGet();
+                return new Request(fingerprint, result, null);
+            } catch (CompletionException | CancellationException e) {
+                // the failure of another request is not shared, the program is executed again for this one
+                misses.incrementAndGet();
+                return new Request(fingerprint, null, null);
+            }
+        }
+        // the result may have been stored by an execution which completed in the meantime
+        result = lookup(fingerprint);
+        if (result != null) {
+            execution.complete(result);
+            executions.remove(fingerprint, execution);
+            return new Request(fingerprint, result, null);
+        }
+        misses.incrementAndGet();
+        return new Request(fingerprint, null, execution);
+    }
+
+    private static Result run(Statement statement) {
+        FusedLowering lowering = new FusedLowering();
+        TypedProgram program = lowering.lower(statement);
+        if (program == null) {
+            return new Result(lowering.problems, "", null);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Frame frame = new Frame(program.newStore(), new PrintStream(output, true));
+        program.execute(frame);
+        Map<String, Number> values = new LinkedHashMap<>();
+        program.values(frame.variables).forEach((var, value) -> values.put(var.name, value));
+        return new Result(List.of(), output.toString(), values);
+    }
+
+    /** Returns the result from memory or from the spill directory, or <code>null</code>. */
+    private Result lookup(String fingerprint) {
+        Result result;
+        synchronized (results) {
+            result = results.get(fingerprint);
+        }
+        if (result != null) {
+            hits.incrementAndGet();
+            return result;
+        }
+        if (spillDirectory != null) {
+            try {
+                result = readSpilled(spillDirectory.resolve(fingerprint + ".result"));
+            } catch (IOException e) {
+                // a damaged file is treated like a missing one, and replaced later
+                result = null;
+            }
+            if (result != null) {
+                spillHits.incrementAndGet();
+                store(fingerprint, result);
+            }
+        }
+        return result;
+    }
+
+    /** Stores a result in memory, evicting the least recently used results as needed. */
+    private void store(String fingerprint, Result result) {
+        List<Map.Entry<String, Result>> evicted = new ArrayList<>();
+        synchronized (results) {
+            Result previous = results.put(fingerprint, result);
+            if (previous != null) {
+                bytes -= previous.bytes();
+            }
+            bytes += result.bytes();
+            Iterator<Map.Entry<String, Result>> iterator = results.entrySet().iterator();
+            while (bytes > budget && iterator.hasNext()) {
+                Map.Entry<String, Result> eldest = iterator.next();
+                iterator.remove();
+                bytes -= eldest.getValue().bytes();
+                evicted.add(eldest);
+            }
+        }
+        evictions.addAndGet(evicted.size());
+        if (spillDirectory != null) {
+            for (Map.Entry<String, Result> entry: evicted) {
+                try {
+                    spill(spillDirectory.resolve(entry.getKey() + ".result"), entry.getValue());
+                } catch (IOException e) {
+                    // the result is lost, and will be computed again when needed
+                }
+            }
+        }
+    }
+
+    /** Writes a result to a file, which appears atomically. */
+    private static void spill(Path file, Result result) throws IOException {
+        if (Files.exists(file)) {
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        Path temporary = Files.createTempFile(file.getParent(), "result", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(result.problems.size());
+            for (String problem: result.problems) {
+                out.writeUTF(problem);
+            }
+            byte[] output = result.output.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(output.length);
+            out.write(output);
+            out.writeInt(result.values != null ? result.values.size() : -1);
+            if (result.values != null) {
+                for (Map.Entry<String, Number> entry: result.values.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    Number value = entry.getValue();
+                    if (value instanceof Integer intValue) {
+                        out.writeByte(1);
+                        out.writeInt(intValue);
+                    } else if (value instanceof Float floatValue) {
+                        out.writeByte(2);
+                        out.writeFloat(floatValue);
+                    } else {
+                        out.writeByte(0);
+                    }
+                }
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Result readSpilled(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int problemCount = in.readInt();
+            List<String> problems = new ArrayList<>();
+            for (int i = 0; i < problemCount; i++) {
+                problems.add(in.readUTF());
+            }
+            byte[] output = new byte[in.readInt()];
+            in.readFully(output);
+            int valueCount = in.readInt();
+            Map<String, Number> values = null;
+            if (valueCount >= 0) {
+                values = new LinkedHashMap<>();
+                for (int i = 0; i < valueCount; i++) {
+                    String name = in.readUTF();
+                    switch (in.readByte()) {
+                        case 1 -> values.put(name, in.readInt());
+                        case 2 -> values.put(name, in.readFloat());
+                        default -> values.put(name, null);
+                    }
+                }
+            }
+            return new Result(problems, new String(output, StandardCharsets.UTF_8), values);
+        }
+    }
+
+    /** Returns the number of results found in memory. */
+    public long hits() {
+        return hits.get();
+    }
+
+    /** Returns the number of results read back from the spill directory. */
+    public long spillHits() {
+        return spillHits.get();
+    }
+
+    /** Returns the number of programs, which were executed. */
+    public long misses() {
+        return misses.get();
+    }
+
+    /** Returns the number of requests, which got the result of a concurrent execution of the same program. */
+    public long coalesced() {
+        return coalesced.get();
+    }
+
+    /** Returns the number of results evicted from memory. */
+    public long evictions() {
+        return evictions.get();
+    }
+
+    /** Returns the estimated bytes of the results in memory. */
+    public long bytes() {
+        synchronized (results) {
+            return bytes;
+        }
+    }
+
+}
@@ -0,0 +1,398 @@
+package dk.dtu.compute.course02324.mini_java.ir;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramVisitor;
+import dk.dtu.compute.course02324.mini_java.utils.IntList;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * A MiniJava statement as a flat arena of nodes, for very large programs:
+ * instead of an object per node and lists of children, the nodes are stored
+ * in parallel primitive arrays, indexed by dense node ids, and the names of
+ * variables and the prefixes of print statements are stored once in a string
+ * table. Each node has a kind, a code (the ordinal of the {@link Operator}
+ * of an operator expression or of the {@link TypeKeyword} of a declaration,
+ * otherwise -1), its first child and its next sibling (or -1), and an int
+ * payload, whose meaning depends on the kind:
+ * <table>
+ *   <tr><th>kind</th><th>payload</th><th>children</th></tr>
+ *   <tr><td>{@link #SEQUENCE}</td><td></td><td>the statements</td></tr>
+ *   <tr><td>{@link #DECLARATION}</td><td>index of the name</td><td>the expression, if any</td></tr>
+ *   <tr><td>{@link #PRINT}</td><td>index of the prefix</td><td>the expression</td></tr>
+ *   <tr><td>{@link #WHILE}</td><td></td><td>the condition and the body</td></tr>
+ *   <tr><td>{@link #ASSIGNMENT}</td><td>index of the name</td><td>the expression</td></tr>
+ *   <tr><td>{@link #INT_LITERAL}</td><td>the value</td><td></td></tr>
+ *   <tr><td>{@link #FLOAT_LITERAL}</td><td>the bits of the value</td><td></td></tr>
+ *   <tr><td>{@link #VAR}</td><td>index of the name</td><td></td></tr>
+ *   <tr><td>{@link #OPERATOR}</td><td></td><td>the operands</td></tr>
+ * </table>
+ * The nodes are numbered in prefix order, so the root is node 0, the first
+ * child of a node is the node following it, and a {@link #walk} visits the
+ * nodes in the order of the arrays. Nodes shared in the tree are stored once
+ * for each occurrence.<p>
+ *
+ * Counted and closed-form loops are stored as the while-loops they were
+ * derived from (as by the {@link dk.dtu.compute.course02324.mini_java.semantics.BinaryProgramWriter}),
+ * since they are results of optimizations and not part of the source language.
+ */
+public class FlatProgram {
+
+    final public static int SEQUENCE = 0;
+    final public static int DECLARATION = 1;
+    final public static int PRINT = 2;
+    final public static int WHILE = 3;
+    final public static int ASSIGNMENT = 4;
+    final public static int INT_LITERAL = 5;
+    final public static int FLOAT_LITERAL = 6;
+    final public static int VAR = 7;
+    final public static int OPERATOR = 8;
+
+    /**
+     * Is notified of the nodes of a flat program by a {@link #walk}: a node
+     * is entered before its descendants and left after them.
+     */
+    public interface Walker {
+
+        void enter(int node);
+
+        default void leave(int node) {
+        }
+
+    }
+
+    final private static Operator[] OPERATORS = Operator.values();
+
+    final private static TypeKeyword[] TYPES = TypeKeyword.values();
+
+    final private byte[] kinds;
+    final private byte[] codes;
+    final private int[] firstChildren;
+    final private int[] siblings;
+    final private int[] payloads;
+
+    /** The names of variables and the prefixes of print statements */
+    final private String[] strings;
+
+    private FlatProgram(byte[] kinds, byte[] codes, int[] firstChildren, int[] siblings, int[] payloads,
+                        String[] strings) {
+        this.kinds = kinds;
+        this.codes = codes;
+        this.firstChildren = firstChildren;
+        this.siblings = siblings;
+        this.payloads = payloads;
+        this.strings = strings;
+    }
+
+    /** Converts a statement into a flat program. */
+    public static FlatProgram of(@NotNull Statement statement) {
+        Builder builder = new Builder();
+        statement.accept(builder);
+        return builder.finish();
+    }
+
+    /** Creates the nodes in prefix order while visiting the statement. */
+    private static class Builder extends ProgramVisitor {
+
+        final private IntList kinds = new IntList();
+        final private IntList codes = new IntList();
+        final private IntList firstChildren = new IntList();
+        final private IntList siblings = new IntList();
+        final private IntList payloads = new IntList();
+
+        final private Map<String, Integer> stringIndexes = new HashMap<>();
+        final private List<String> strings = new ArrayList<>();
+
+        /** The last child added to each node, which is still being visited */
+        final private IntList lastChildren = new IntList();
+        final private IntList open = new IntList();
+
+        private int string(String string) {
+            return stringIndexes.computeIfAbsent(string, key -> {
+                strings.add(key);
+                return strings.size() - 1;
+            });
+        }
+
+        /** Adds a node as the next child of the innermost open node. */
+        private int add(int kind, int code, int payload) {
+            int node = kinds.add(kind);
+            codes.add(code);
+            firstChildren.add(-1);
+            siblings.add(-1);
+            payloads.add(payload);
+            int depth = open.size();
+            if (depth > 0) {
+                int last = lastChildren.get(depth - 1);
+                if (last < 0) {
+                    firstChildren.set(open.get(depth - 1), node);
+                } else {
+                    siblings.set(last, node);
+                }
+                lastChildren.set(depth - 1, node);
+            }
+            return node;
+        }
+
+        /** Adds a node and visits its children. */
+        private void add(int kind, int code, int payload, Children children) {
+            int node = add(kind, code, payload);
+            open.add(node);
+            lastChildren.add(-1);
+            children.visit(this);
+            open.removeLast();
+            lastChildren.removeLast();
+        }
+
+        private FlatProgram finish() {
+            int size = kinds.size();
+            byte[] kindArray = new byte[size];
+            byte[] codeArray = new byte[size];
+            for (int node = 0; node < size; node++) {
+                kindArray[node] = (byte) kinds.get(node);
+                codeArray[node] = (byte) codes.get(node);
+            }
+            return new FlatProgram(kindArray, codeArray, firstChildren.toArray(), siblings.toArray(),
+                    payloads.toArray(), strings.toArray(new String[0]));
+        }
+
+        @Override
+        public void visit(Sequence sequence) {
+            add(SEQUENCE, -1, 0, visitor -> {
+                for (Statement statement: sequence.statements) {
+                    statement.accept(visitor);
+                }
+            });
+        }
+
+        @Override
+        public void visit(Declaration declaration) {
+            if (!(declaration.type instanceof PrimitiveType primitiveType)) {
+                throw new IllegalArgumentException("Type can not be stored: " + declaration.type.getName());
+            }
+            add(DECLARATION, primitiveType.primitiveType.ordinal(), string(declaration.variable.name), visitor -> {
+                if (declaration.expression != null) {
+                    declaration.expression.accept(visitor);
+                }
+            });
+        }
+
+        @Override
+        public void visit(PrintStatement printStatement) {
+            add(PRINT, -1, string(printStatement.prefix), visitor -> printStatement.expression.accept(visitor));
+        }
+
+        @Override
+        public void visit(WhileLoop whileLoop) {
+            add(WHILE, -1, 0, visitor -> {
+                whileLoop.expression.accept(visitor);
+                whileLoop.statement.accept(visitor);
+            });
+        }
+
+        @Override
+        public void visit(Assignment assignment) {
+            add(ASSIGNMENT, -1, string(assignment.variable.name), visitor -> assignment.expression.accept(visitor));
+        }
+
+        @Override
+        public void visit(Literal literal) {
+            if (literal instanceof IntLiteral intLiteral) {
+                add(INT_LITERAL, -1, intLiteral.literal);
+            } else if (literal instanceof FloatLiteral floatLiteral) {
+                add(FLOAT_LITERAL, -1, Float.floatToRawIntBits(floatLiteral.literal));
+            } else {
+                throw new IllegalArgumentException("Unknown literal: " + literal);
+            }
+        }
+
+        @Override
+        public void visit(Var var) {
+            add(VAR, -1, string(var.name));
+        }
+
+        @Override
+        public void visit(OperatorExpression operatorExpression) {
+            add(OPERATOR, operatorExpression.operator.ordinal(), 0, visitor -> {
+                for (Expression operand: operatorExpression.operands) {
+                    operand.accept(visitor);
+                }
+            });
+        }
+
+    }
+
+    /** Visits the children of a node being added. */
+    private interface Children {
+
+        void visit(ProgramVisitor visitor);
+
+    }
+
+    /** Returns the number of nodes. */
+    public int size() {
+        return kinds.length;
+    }
+
+    public int kind(int node) {
+        return kinds[node];
+    }
+
+    /** Returns the first child of a node, or -1 if it does not have children. */
+    public int firstChild(int node) {
+        return firstChildren[node];
+    }
+
+    /** Returns the next child of the parent of a node, or -1 if it is the last one. */
+    public int nextSibling(int node) {
+        return siblings[node];
+    }
+
+    /** Returns the operator of an operator expression. */
+    public Operator operator(int node) {
+        check(node, OPERATOR);
+        return OPERATORS[codes[node]];
+    }
+
+    /** Returns the type keyword of a declaration. */
+    public TypeKeyword type(int node) {
+        check(node, DECLARATION);
+        return TYPES[codes[node]];
+    }
+
+    public int intValue(int node) {
+        check(node, INT_LITERAL);
+        return payloads[node];
+    }
+
+    public float floatValue(int node) {
+        check(node, FLOAT_LITERAL);
+        return Float.intBitsToFloat(payloads[node]);
+    }
+
+    /** Returns the name of the variable of a declaration, an assignment or a variable. */
+    public String name(int node) {
+        int kind = kinds[node];
+        if (kind != DECLARATION && kind != ASSIGNMENT && kind != VAR) {
+            throw new IllegalArgumentException("Node " + node + " does not have a variable");
+        }
+        return strings[payloads[node]];
+    }
+
+    /** Returns the prefix of a print statement. */
+    public String prefix(int node) {
+        check(node, PRINT);
+        return strings[payloads[node]];
+    }
+
+    /** Returns the number of distinct names and prefixes. */
+    public int stringCount() {
+        return strings.length;
+    }
+
+    private void check(int node, int kind) {
+        if (kinds[node] != kind) {
+            throw new IllegalArgumentException("Node " + node + " is of kind " + kinds[node] + ", not " + kind);
+        }
+    }
+
+    /**
+     * Visits the nodes of the subtree of a node in prefix order, which is the
+     * order of the arrays, notifying the walker when a node is entered and
+     * left. The walk does not recurse, so that it works for trees of any
+     * depth.
+     */
+    public void walk(int root, @NotNull Walker walker) {
+        IntList ancestors = new IntList();
+        int node = root;
+        while (true) {
+            walker.enter(node);
+            int child = firstChildren[node];
+            if (child >= 0) {
+                ancestors.add(node);
+                node = child;
+                continue;
+            }
+            walker.leave(node);
+            while (node != root && siblings[node] < 0) {
+                node = ancestors.removeLast();
+                walker.leave(node);
+            }
+            if (node == root) {
+                return;
+            }
+            node = siblings[node];
+        }
+    }
+
+    /** Visits all nodes in prefix order (see {@link #walk(int, Walker)}). */
+    public void walk(@NotNull Walker walker) {
+        if (size() > 0) {
+            walk(0, walker);
+        }
+    }
+
+    /** Converts the flat program back into a statement. */
+    public Statement toStatement() {
+        return statement(0);
+    }
+
+    /** Converts the subtree of a statement node into a statement. */
+    public Statement statement(int node) {
+        switch (kinds[node]) {
+            case SEQUENCE -> {
+                List<Statement> statements = new ArrayList<>();
+                for (int child = firstChildren[node]; child >= 0; child = siblings[child]) {
+                    statements.add(statement(child));
+                }
+                return new Sequence(statements.toArray(new Statement[0]));
+            }
+            case DECLARATION -> {
+                Type type = new PrimitiveType(type(node));
+                int child = firstChildren[node];
+                return child >= 0 ?
+                        new Declaration(type, new Var(name(node)), expression(child)) :
+                        new Declaration(type, new Var(name(node)));
+            }
+            case PRINT -> {
+                return new PrintStatement(prefix(node), expression(firstChildren[node]));
+            }
+            case WHILE -> {
+                int condition = firstChildren[node];
+                return new WhileLoop(expression(condition), statement(siblings[condition]));
+            }
+            case ASSIGNMENT -> {
+                return (Statement) expression(node);
+            }
+            default -> throw new IllegalArgumentException("Node " + node + " is not a statement");
+        }
+    }
+
+    /** Converts the subtree of an expression node into an expression. */
+    public Expression expression(int node) {
+        switch (kinds[node]) {
+            case ASSIGNMENT -> {
+                return new Assignment(new Var(name(node)), expression(firstChildren[node]));
+            }
+            case INT_LITERAL -> {
+                return new IntLiteral(payloads[node]);
+            }
+            case FLOAT_LITERAL -> {
+                return new FloatLiteral(Float.intBitsToFloat(payloads[node]));
+            }
+            case VAR -> {
+                return new Var(name(node));
+            }
+            case OPERATOR -> {
+                List<Expression> operands = new ArrayList<>();
+                for (int child = firstChildren[node]; child >= 0; child = siblings[child]) {
+                    operands.add(expression(child));
+                }
+                return new OperatorExpression(operator(node), operands.toArray(new Expression[0]));
+            }
+            default -> throw new IllegalArgumentException("Node " + node + " is not an expression");
+        }
+    }
+
+}
@@ -0,0 +1,220 @@
+package dk.dtu.compute.course02324.mini_java.ir;
+
+import dk.dtu.compute.course02324.mini_java.analysis.WrittenVariables;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramVisitor;
+import dk.dtu.compute.course02324.mini_java.semantics.SymbolTable;
+import dk.dtu.compute.course02324.mini_java.utils.IntList;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Lowers a type-checked MiniJava statement into an {@link SsaProgram}. While
+ * visiting the statement, the builder keeps track of the current value of
+ * each variable. At the header of each while-loop, a phi instruction is
+ * created for each variable written in the loop; its back edge operand is
+ * filled in when the body of the loop was lowered. Variables, which are read
+ * before they have a value, have an undefined value.
+ */
+public class SsaBuilder extends ProgramVisitor {
+
+    final private ProgramTypeVisitor types;
+
+    final private SsaProgram program = new SsaProgram();
+
+    /** The ids of the variables */
+    final private SymbolTable symbols = new SymbolTable();
+
+    /** The current value of each variable (by id), or -1 if it does not have a value */
+    private IntList current = new IntList();
+
+    /** The undefined value of each type (by ordinal of the type keyword), or -1 if not created yet */
+    final private int[] undefined = new int[TypeKeyword.values().length];
+
+    /** The block to which instructions are added */
+    private int block;
+
+    /** The value of the last lowered expression */
+    private int value;
+
+    private SsaBuilder(@NotNull ProgramTypeVisitor types) {
+        this.types = types;
+        java.util.Arrays.fill(undefined, -1);
+        block = program.addBlock();
+    }
+
+    /**
+     * Lowers a statement, which was type checked by the given type visitor
+     * without problems, into SSA form.
+     */
+    public static SsaProgram build(@NotNull Statement statement, @NotNull ProgramTypeVisitor types) {
+        if (!types.problems.isEmpty()) {
+            throw new IllegalArgumentException("Only programs without type problems can be lowered.");
+        }
+        SsaBuilder builder = new SsaBuilder(types);
+        statement.accept(builder);
+        for (int variable = 0; variable < builder.current.size(); variable++) {
+            builder.program.exitValues.add(builder.valueOf(variable));
+        }
+        return builder.program;
+    }
+
+    /** Returns the id of a variable, which is created when the variable occurs first. */
+    private int id(Var var) {
+        int id = symbols.intern(var);
+        if (id == program.variableList.size()) {
+            program.variableList.add(var);
+            program.variableTypes.add(typeOf(types.typeMapping.get(var)));
+            current.add(-1);
+        }
+        return id;
+    }
+
+    /** Returns the current value of a variable; if it does not have a value yet, the undefined value. */
+    private int valueOf(int variable) {
+        int result = current.get(variable);
+        if (result < 0) {
+            int type = program.variableTypes.get(variable);
+            if (undefined[type] < 0) {
+                // the first block is executed before any other block
+                undefined[type] = program.addInstruction(0, SsaProgram.UNDEF, type, 0, 0, 0);
+            }
+            result = undefined[type];
+        }
+        return result;
+    }
+
+    private void define(Var var, int value) {
+        int variable = id(var);
+        current.set(variable, value);
+        if (program.variables.get(value) < 0) {
+            program.variables.set(value, variable);
+        }
+    }
+
+    private static int typeOf(Type type) {
+        return ((PrimitiveType) type).primitiveType.ordinal();
+    }
+
+    @Override
+    public void visit(Sequence sequence) {
+        for (Statement statement: sequence.statements) {
+            statement.accept(this);
+        }
+    }
+
+    @Override
+    public void visit(Declaration declaration) {
+        id(declaration.variable);
+        if (declaration.expression != null) {
+            declaration.expression.accept(this);
+            define(declaration.variable, value);
+        }
+    }
+
+    @Override
+    public void visit(PrintStatement printStatement) {
+        printStatement.expression.accept(this);
+        program.strings.add(printStatement.prefix);
+        program.addInstruction(block, SsaProgram.PRINT, -1, program.strings.size() - 1, value, 0);
+    }
+
+    @Override
+    public void visit(WhileLoop whileLoop) {
+        WrittenVariables written = new WrittenVariables();
+        whileLoop.accept(written);
+        IntList variables = new IntList();
+        for (Var var: written.declared) {
+            id(var);
+        }
+        for (Var var: written.written) {
+            variables.add(id(var));
+        }
+        int[] loopVariables = variables.toArray();
+        java.util.Arrays.sort(loopVariables);
+
+        int header = program.addBlock();
+        jump(block, header);
+        int[] phis = new int[loopVariables.length];
+        for (int i = 0; i < loopVariables.length; i++) {
+            int variable = loopVariables[i];
+            phis[i] = program.addInstruction(header, SsaProgram.PHI, program.variableTypes.get(variable), valueOf(variable), -1, 0);
+            define(program.variableList.get(variable), phis[i]);
+        }
+
+        block = header;
+        whileLoop.expression.accept(this);
+        int condition = value;
+        IntList atHeader = copy(current);
+
+        int body = program.addBlock();
+        block = body;
+        whileLoop.statement.accept(this);
+        int latch = block;
+        jump(latch, header);
+        for (int i = 0; i < loopVariables.length; i++) {
+            program.bs.set(phis[i], valueOf(loopVariables[i]));
+        }
+
+        int exit = program.addBlock();
+        program.terminators.set(header, SsaProgram.BRANCH);
+        program.conditions.set(header, condition);
+        program.targets.set(header, body);
+        program.alternatives.set(header, exit);
+        program.latches.set(header, latch);
+        block = exit;
+        current = atHeader;
+    }
+
+    private void jump(int from, int to) {
+        program.terminators.set(from, SsaProgram.JUMP);
+        program.targets.set(from, to);
+    }
+
+    private static IntList copy(IntList list) {
+        IntList result = new IntList(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            result.add(list.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public void visit(Assignment assignment) {
+        assignment.expression.accept(this);
+        define(assignment.variable, value);
+    }
+
+    @Override
+    public void visit(Literal literal) {
+        if (literal instanceof IntLiteral intLiteral) {
+            value = program.addInstruction(block, SsaProgram.CONST, TypeKeyword.INT.ordinal(), intLiteral.literal, 0, 0);
+        } else {
+            float floatLiteral = ((FloatLiteral) literal).literal;
+            value = program.addInstruction(block, SsaProgram.CONST, TypeKeyword.FLOAT.ordinal(),
+                    Float.floatToRawIntBits(floatLiteral), 0, 0);
+        }
+    }
+
+    @Override
+    public void visit(Var var) {
+        value = valueOf(id(var));
+    }
+
+    @Override
+    public void visit(OperatorExpression operatorExpression) {
+        int a = -1;
+        int b = -1;
+        for (Expression operand: operatorExpression.operands) {
+            operand.accept(this);
+            if (a < 0) {
+                a = value;
+            } else {
+                b = value;
+            }
+        }
+        value = program.addInstruction(block, SsaProgram.OPERATOR, typeOf(types.typeMapping.get(operatorExpression)),
+                a, b, operatorExpression.operator.ordinal());
+    }
+
+}
@@ -0,0 +1,188 @@
+package dk.dtu.compute.course02324.mini_java.ir;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static dk.dtu.compute.course02324.mini_java.ir.SsaProgram.*;
+
+/**
+ * Translates an {@link SsaProgram} back into a MiniJava statement. Each value
+ * becomes a variable <code>t$id</code>, which is declared at the beginning of
+ * the statement; a phi instruction becomes copies into its variable before
+ * the loop and at the end of the loop's body (in two steps via variables
+ * <code>c$id</code>, when the phis of the loop depend on each other). The
+ * instructions of a loop header become assignments nested in the condition of
+ * the while-loop, so that they are executed each time the condition is
+ * evaluated. At the end, the original variables of the program are declared
+ * with their final values, so that executing the resulting statement leaves
+ * them with the same values as executing the original one.
+ */
+public class SsaDeconstructor {
+
+    final private SsaProgram program;
+
+    /** Whether the value of a loop header was already assigned in the condition */
+    private boolean[] emitted;
+
+    private SsaDeconstructor(@NotNull SsaProgram program) {
+        this.program = program;
+    }
+
+    /** Returns a MiniJava statement with the same effect as the given program. */
+    public static Statement deconstruct(@NotNull SsaProgram program) {
+        return new SsaDeconstructor(program).deconstruct();
+    }
+
+    private Statement deconstruct() {
+        emitted = new boolean[program.valueCount()];
+        List<Statement> statements = new ArrayList<>();
+        for (int value = 0; value < program.valueCount(); value++) {
+            if (program.type(value) >= 0) {
+                statements.add(new Declaration(type(program.type(value)), temporary(value)));
+            }
+        }
+        for (int block = 0; block < program.blockCount(); block++) {
+            if (program.latch(block) >= 0 && dependent(block)) {
+                for (int value: program.instructions(block)) {
+                    if (program.opcode(value) == PHI) {
+                        statements.add(new Declaration(type(program.type(value)), copy(value)));
+                    }
+                }
+            }
+        }
+        emit(0, statements);
+        for (int variable = 0; variable < program.variables().size(); variable++) {
+            Var var = program.variables().get(variable);
+            Type type = type(program.variableType(variable));
+            int value = program.exitValue(variable);
+            statements.add(program.opcode(value) == UNDEF ?
+                    new Declaration(type, var) : new Declaration(type, var, temporary(value)));
+        }
+        return new Sequence(statements.toArray(new Statement[0]));
+    }
+
+    /**
+     * Emits the statements of a block and the blocks following it, until the
+     * program exits or the block jumps back to a loop header.
+     */
+    private void emit(int block, List<Statement> statements) {
+        while (true) {
+            for (int value: program.instructions(block)) {
+                Statement statement = statement(value);
+                if (statement != null) {
+                    statements.add(statement);
+                }
+            }
+            if (program.terminator(block) != JUMP) {
+                return;
+            }
+            int header = program.target(block);
+            if (program.latch(header) == block) {
+                copies(header, false, statements);
+                return;
+            }
+            copies(header, true, statements);
+            Expression condition = expression(program.condition(header), header);
+            List<Statement> body = new ArrayList<>();
+            emit(program.target(header), body);
+            statements.add(new WhileLoop(condition, new Sequence(body.toArray(new Statement[0]))));
+            block = program.alternative(header);
+        }
+    }
+
+    /** Returns the statement for an instruction outside of a loop header, or <code>null</code> if there is none. */
+    private Statement statement(int value) {
+        switch (program.opcode(value)) {
+            case CONST:
+                return new Assignment(temporary(value), literal(value));
+            case OPERATOR:
+                return new Assignment(temporary(value), operation(value, -1));
+            case PRINT:
+                return new PrintStatement(program.string(program.a(value)), temporary(program.b(value)));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the expression computing a value in the condition of a loop.
+     * The values of the header are assigned to their variables where they are
+     * computed first; all other values are read from their variables.
+     */
+    private Expression expression(int value, int header) {
+        if (program.block(value) != header || program.opcode(value) == PHI || emitted[value]) {
+            return temporary(value);
+        }
+        emitted[value] = true;
+        Expression expression = program.opcode(value) == CONST ? literal(value) : operation(value, header);
+        return new Assignment(temporary(value), expression);
+    }
+
+    private Expression operation(int value, int header) {
+        Operator operator = Operator.values()[program.c(value)];
+        if (program.b(value) < 0) {
+            return new OperatorExpression(operator, operand(program.a(value), header));
+        }
+        Expression a = operand(program.a(value), header);
+        return new OperatorExpression(operator, a, operand(program.b(value), header));
+    }
+
+    private Expression operand(int value, int header) {
+        return header >= 0 ? expression(value, header) : temporary(value);
+    }
+
+    /**
+     * Returns whether the back edge operand of a phi of the loop header is
+     * another phi of the header, so that the copies must be done in two steps.
+     */
+    private boolean dependent(int header) {
+        for (int value: program.instructions(header)) {
+            int source = program.b(value);
+            if (program.opcode(value) == PHI && source != value &&
+                    program.block(source) == header && program.opcode(source) == PHI) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Adds the copies of the operands of the phis of a loop header to their variables. */
+    private void copies(int header, boolean entry, List<Statement> statements) {
+        // the entry operands are defined before the loop, so they never depend on each other
+        boolean dependent = !entry && dependent(header);
+        for (int phi: program.instructions(header)) {
+            int source = entry ? program.a(phi) : program.b(phi);
+            if (program.opcode(phi) == PHI && source != phi) {
+                statements.add(new Assignment(dependent ? copy(phi) : temporary(phi), temporary(source)));
+            }
+        }
+        if (dependent) {
+            for (int phi: program.instructions(header)) {
+                if (program.opcode(phi) == PHI && program.b(phi) != phi) {
+                    statements.add(new Assignment(temporary(phi), copy(phi)));
+                }
+            }
+        }
+    }
+
+    private Literal literal(int value) {
+        return program.type(value) == TypeKeyword.FLOAT.ordinal() ?
+                new FloatLiteral(program.floatConstant(value)) : new IntLiteral(program.a(value));
+    }
+
+    private static Var temporary(int value) {
+        return new Var("t$" + value);
+    }
+
+    private static Var copy(int value) {
+        return new Var("c$" + value);
+    }
+
+    private static Type type(int type) {
+        return new PrimitiveType(TypeKeyword.values()[type]);
+    }
+
+}
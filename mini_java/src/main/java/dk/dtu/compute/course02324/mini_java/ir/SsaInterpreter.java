@@ -0,0 +1,183 @@
+package dk.dtu.compute.course02324.mini_java.ir;
+
+import dk.dtu.compute.course02324.mini_java.model.Operator;
+import dk.dtu.compute.course02324.mini_java.model.TypeKeyword;
+import dk.dtu.compute.course02324.mini_java.model.Var;
+import dk.dtu.compute.course02324.mini_java.semantics.FloatOperation;
+import dk.dtu.compute.course02324.mini_java.semantics.IntOperation;
+import dk.dtu.compute.course02324.mini_java.semantics.OperatorRegistry;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static dk.dtu.compute.course02324.mini_java.ir.SsaProgram.*;
+
+/**
+ * Executes an {@link SsaProgram} with the same semantics as the
+ * {@link dk.dtu.compute.course02324.mini_java.semantics.ProgramExecutorVisitor
+ * ProgramExecutorVisitor}. The values are kept in an int array indexed by the
+ * value ids (floats by their bits), together with a flag whether the value is
+ * defined, and the operators are applied to these unboxed values: unlike the
+ * executor, the interpreter does not box the value of each operation. Objects
+ * are only created for the printed lines and for the final values of the
+ * variables (see {@link #variableValues()}).
+ */
+public class SsaInterpreter {
+
+    final private SsaProgram program;
+
+    final private PrintStream out;
+
+    /** The instructions of each block, in order */
+    final private int[][] blocks;
+
+    final private int[] registers;
+
+    final private boolean[] defined;
+
+    private final static int INT = TypeKeyword.INT.ordinal();
+
+    private final static Operator[] OPERATORS = Operator.values();
+
+    public SsaInterpreter(@NotNull SsaProgram program, @NotNull PrintStream out) {
+        this.program = program;
+        this.out = out;
+        blocks = new int[program.blockCount()][];
+        for (int block = 0; block < blocks.length; block++) {
+            blocks[block] = program.instructions(block);
+        }
+        registers = new int[program.valueCount()];
+        defined = new boolean[program.valueCount()];
+    }
+
+    public SsaInterpreter(@NotNull SsaProgram program) {
+        this(program, System.out);
+    }
+
+    /** Executes the program from its first block until it exits. */
+    public void run() {
+        int block = 0;
+        int previous = -1;
+        while (true) {
+            int[] instructions = blocks[block];
+            if (program.latch(block) >= 0) {
+                phis(block, previous == program.latch(block));
+            }
+            for (int value: instructions) {
+                execute(value);
+            }
+            previous = block;
+            switch (program.terminator(block)) {
+                case JUMP:
+                    block = program.target(block);
+                    break;
+                case BRANCH:
+                    block = isNotNegative(program.condition(block)) ?
+                            program.target(block) : program.alternative(block);
+                    break;
+                default:
+                    return;
+            }
+        }
+    }
+
+    /** Sets all phis of a loop header at the same time. */
+    private void phis(int header, boolean backEdge) {
+        int[] instructions = blocks[header];
+        int count = 0;
+        while (count < instructions.length && program.opcode(instructions[count]) == PHI) {
+            count++;
+        }
+        int[] sources = new int[count];
+        boolean[] sourcesDefined = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            int source = backEdge ? program.b(instructions[i]) : program.a(instructions[i]);
+            sources[i] = registers[source];
+            sourcesDefined[i] = defined[source];
+        }
+        for (int i = 0; i < count; i++) {
+            registers[instructions[i]] = sources[i];
+            defined[instructions[i]] = sourcesDefined[i];
+        }
+    }
+
+    private boolean isNotNegative(int value) {
+        if (!defined[value]) {
+            return false;
+        }
+        return program.type(value) == INT ?
+                registers[value] >= 0 : Float.intBitsToFloat(registers[value]) >= 0;
+    }
+
+    private void execute(int value) {
+        switch (program.opcode(value)) {
+            case CONST:
+                registers[value] = program.a(value);
+                defined[value] = true;
+                break;
+            case OPERATOR:
+                registers[value] = operation(value);
+                defined[value] = true;
+                break;
+            case PRINT:
+                out.println(program.string(program.a(value)) + toString(program.b(value)));
+                break;
+            default:
+                // phis are set on entry of the block, undefined values are never defined
+                break;
+        }
+    }
+
+    private int operation(int value) {
+        Operator operator = OPERATORS[program.c(value)];
+        int a = operand(program.a(value));
+        int b = program.b(value) >= 0 ? operand(program.b(value)) : 0;
+        if (program.type(value) == INT) {
+            IntOperation operation = OperatorRegistry.intOperation(operator);
+            if (operation != null) {
+                return operation.apply(a, b);
+            }
+        } else {
+            FloatOperation operation = OperatorRegistry.floatOperation(operator);
+            if (operation != null) {
+                return Float.floatToRawIntBits(operation.apply(Float.intBitsToFloat(a), Float.intBitsToFloat(b)));
+            }
+        }
+        throw new RuntimeException("No function of this type available");
+    }
+
+    private int operand(int value) {
+        if (!defined[value]) {
+            throw new RuntimeException("Value of subexpression does not exist");
+        }
+        return registers[value];
+    }
+
+    private String toString(int value) {
+        if (!defined[value]) {
+            return "null";
+        }
+        return program.type(value) == INT ?
+                Integer.toString(registers[value]) : Float.toString(Float.intBitsToFloat(registers[value]));
+    }
+
+    /** Returns the value of a value id as a number, or <code>null</code> if it is not defined. */
+    public Number value(int value) {
+        if (!defined[value]) {
+            return null;
+        }
+        return program.type(value) == INT ? (Number) registers[value] : (Number) Float.intBitsToFloat(registers[value]);
+    }
+
+    /** Returns the values of the program's variables after the execution, in the order of their ids. */
+    public Map<Var, Number> variableValues() {
+        Map<Var, Number> result = new LinkedHashMap<>();
+        for (int variable = 0; variable < program.variableList.size(); variable++) {
+            result.put(program.variableList.get(variable), value(program.exitValue(variable)));
+        }
+        return result;
+    }
+
+}
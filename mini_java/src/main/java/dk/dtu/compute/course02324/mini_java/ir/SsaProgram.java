@@ -0,0 +1,285 @@
+package dk.dtu.compute.course02324.mini_java.ir;
+
+import dk.dtu.compute.course02324.mini_java.model.Operator;
+import dk.dtu.compute.course02324.mini_java.model.TypeKeyword;
+import dk.dtu.compute.course02324.mini_java.model.Var;
+import dk.dtu.compute.course02324.mini_java.utils.IntList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A MiniJava program in static single assignment (SSA) form: a control flow
+ * graph of basic blocks, whose instructions each define one value, which is
+ * never changed. Where the values of a variable from different paths meet,
+ * which in MiniJava is only at the header of a while-loop, a phi instruction
+ * selects the value depending on the path taken.<p>
+ *
+ * The representation is compact: values are identified by dense int ids (the
+ * index of the instruction defining them), the instructions are stored in
+ * parallel int arrays, and each block stores the ids of its instructions in
+ * an int array. Each instruction has an opcode, a type (the ordinal of a
+ * {@link TypeKeyword}, or -1 for instructions without value) and up to three
+ * int operands, whose meaning depends on the opcode:
+ * <table>
+ *   <tr><th>opcode</th><th>a</th><th>b</th><th>c</th></tr>
+ *   <tr><td>{@link #CONST}</td><td>the int value or the bits of the float value</td><td></td><td></td></tr>
+ *   <tr><td>{@link #UNDEF}</td><td></td><td></td><td></td></tr>
+ *   <tr><td>{@link #OPERATOR}</td><td>first operand</td><td>second operand or -1</td><td>ordinal of the operator</td></tr>
+ *   <tr><td>{@link #PHI}</td><td>value on entry of the loop</td><td>value from the back edge</td><td></td></tr>
+ *   <tr><td>{@link #PRINT}</td><td>index of the prefix string</td><td>printed value</td><td></td></tr>
+ * </table>
+ * A block ends with a jump to another block, a branch on whether a value is
+ * not negative (and defined), or the exit of the program. Since MiniJava
+ * programs are structured, every loop header has exactly two predecessors: the
+ * block before the loop and the last block of the loop's body (the latch).<p>
+ *
+ * Programs are created from type-checked statements by the {@link SsaBuilder}.
+ */
+public class SsaProgram {
+
+    final public static int CONST = 0;
+    final public static int UNDEF = 1;
+    final public static int OPERATOR = 2;
+    final public static int PHI = 3;
+    final public static int PRINT = 4;
+
+    final public static int JUMP = 0;
+    final public static int BRANCH = 1;
+    final public static int EXIT = 2;
+
+    final static String[] OPCODE_NAMES = {"const", "undef", "operator", "phi", "print"};
+
+    // instructions
+    final IntList opcodes = new IntList();
+    final IntList types = new IntList();
+    final IntList as = new IntList();
+    final IntList bs = new IntList();
+    final IntList cs = new IntList();
+    final IntList owners = new IntList();
+    /** The id of the variable, which the value was assigned to first, or -1 */
+    final IntList variables = new IntList();
+
+    // blocks
+    final List<IntList> instructions = new ArrayList<>();
+    final IntList terminators = new IntList();
+    final IntList conditions = new IntList();
+    final IntList targets = new IntList();
+    final IntList alternatives = new IntList();
+    /** For a loop header, the last block of the body; otherwise -1 */
+    final IntList latches = new IntList();
+
+    /** The prefixes of print statements */
+    final List<String> strings = new ArrayList<>();
+
+    /** The variables of the program, by their id */
+    final List<Var> variableList = new ArrayList<>();
+
+    /** The type of each variable, by its id */
+    final IntList variableTypes = new IntList();
+
+    /** The value of each variable at the end of the program, by its id */
+    final IntList exitValues = new IntList();
+
+    SsaProgram() {
+    }
+
+    int addBlock() {
+        instructions.add(new IntList(4));
+        terminators.add(EXIT);
+        conditions.add(-1);
+        targets.add(-1);
+        alternatives.add(-1);
+        latches.add(-1);
+        return instructions.size() - 1;
+    }
+
+    int addInstruction(int block, int opcode, int type, int a, int b, int c) {
+        int value = opcodes.add(opcode);
+        types.add(type);
+        as.add(a);
+        bs.add(b);
+        cs.add(c);
+        owners.add(block);
+        variables.add(-1);
+        instructions.get(block).add(value);
+        return value;
+    }
+
+    /** Returns the number of values (instructions). */
+    public int valueCount() {
+        return opcodes.size();
+    }
+
+    public int opcode(int value) {
+        return opcodes.get(value);
+    }
+
+    /** Returns the ordinal of the type keyword of a value, or -1 if the instruction does not have a value. */
+    public int type(int value) {
+        return types.get(value);
+    }
+
+    public int a(int value) {
+        return as.get(value);
+    }
+
+    public int b(int value) {
+        return bs.get(value);
+    }
+
+    public int c(int value) {
+        return cs.get(value);
+    }
+
+    /** Returns the block containing the instruction of a value. */
+    public int block(int value) {
+        return owners.get(value);
+    }
+
+    /** Returns the variable, which the value was assigned to first, or <code>null</code>. */
+    public Var variable(int value) {
+        int variable = variables.get(value);
+        return variable >= 0 ? variableList.get(variable) : null;
+    }
+
+    public int blockCount() {
+        return instructions.size();
+    }
+
+    /** Returns the ids of the instructions of a block in order; phi instructions come first. */
+    public int[] instructions(int block) {
+        return instructions.get(block).toArray();
+    }
+
+    public int terminator(int block) {
+        return terminators.get(block);
+    }
+
+    /** Returns the value on which the block branches. */
+    public int condition(int block) {
+        return conditions.get(block);
+    }
+
+    /** Returns the target of a jump, or the target of a branch if the condition is not negative. */
+    public int target(int block) {
+        return targets.get(block);
+    }
+
+    /** Returns the target of a branch if the condition is negative (or undefined). */
+    public int alternative(int block) {
+        return alternatives.get(block);
+    }
+
+    /** Returns the last block of a loop's body, if the block is a loop header; otherwise -1. */
+    public int latch(int block) {
+        return latches.get(block);
+    }
+
+    public String string(int index) {
+        return strings.get(index);
+    }
+
+    /** Returns the variables of the program in the order of their ids. */
+    public List<Var> variables() {
+        return List.copyOf(variableList);
+    }
+
+    /** Returns the ordinal of the type keyword of the variable with the given id. */
+    public int variableType(int variable) {
+        return variableTypes.get(variable);
+    }
+
+    /** Returns the value of the variable with the given id at the end of the program. */
+    public int exitValue(int variable) {
+        return exitValues.get(variable);
+    }
+
+    /** Returns the float value of a float constant. */
+    public float floatConstant(int value) {
+        return Float.intBitsToFloat(as.get(value));
+    }
+
+    /**
+     * Returns the program in a textual form, with one line for each block and
+     * instruction, for example:
+     * <pre>
+     * block0:
+     *   %0: int = const 5          ; i
+     *   jump block1
+     * block1: loop, latch block2
+     *   %1: int = phi %0, %4       ; i
+     *   branch %1 ? block2 : block3
+     * </pre>
+     */
+    public String dump() {
+        StringBuilder result = new StringBuilder();
+        String newline = System.lineSeparator();
+        for (int block = 0; block < blockCount(); block++) {
+            result.append("block").append(block).append(':');
+            if (latch(block) >= 0) {
+                result.append(" loop, latch block").append(latch(block));
+            }
+            result.append(newline);
+            for (int value: instructions(block)) {
+                StringBuilder line = new StringBuilder("  ");
+                if (type(value) >= 0) {
+                    line.append('%').append(value).append(": ").append(TypeKeyword.values()[type(value)]).append(" = ");
+                }
+                line.append(OPCODE_NAMES[opcode(value)]);
+                switch (opcode(value)) {
+                    case CONST:
+                        line.append(' ').append(type(value) == TypeKeyword.FLOAT.ordinal() ?
+                                floatConstant(value) + "f" : Integer.toString(a(value)));
+                        break;
+                    case OPERATOR:
+                        line.append(' ').append(Operator.values()[c(value)].name()).append(" %").append(a(value));
+                        if (b(value) >= 0) {
+                            line.append(", %").append(b(value));
+                        }
+                        break;
+                    case PHI:
+                        line.append(" %").append(a(value)).append(", %").append(b(value));
+                        break;
+                    case PRINT:
+                        line.append(" \"").append(string(a(value))).append("\", %").append(b(value));
+                        break;
+                    default:
+                        break;
+                }
+                Var variable = variable(value);
+                if (variable != null) {
+                    while (line.length() < 30) {
+                        line.append(' ');
+                    }
+                    line.append(" ; ").append(variable.name);
+                }
+                result.append(line).append(newline);
+            }
+            switch (terminator(block)) {
+                case JUMP:
+                    result.append("  jump block").append(target(block));
+                    break;
+                case BRANCH:
+                    result.append("  branch %").append(condition(block))
+                            .append(" ? block").append(target(block))
+                            .append(" : block").append(alternative(block));
+                    break;
+                default:
+                    result.append("  exit");
+                    for (int variable = 0; variable < variableList.size(); variable++) {
+                        result.append(variable == 0 ? " " : ", ")
+                                .append(variableList.get(variable).name).append(" = %").append(exitValue(variable));
+                    }
+            }
+            result.append(newline);
+        }
+        return result.toString();
+    }
+
+    @Override
+    public String toString() {
+        return dump();
+    }
+
+}
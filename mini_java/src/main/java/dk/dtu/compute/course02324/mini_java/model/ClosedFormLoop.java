@@ -0,0 +1,105 @@
+package dk.dtu.compute.course02324.mini_java.model;
+
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramVisitor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * A counted loop whose body does nothing but accumulate affine terms into int
+ * variables (besides decrementing the induction variable). The effect of such
+ * a loop can be computed in constant time, without executing the iterations:
+ * for <code>n</code> iterations and the value <code>v0</code> of the induction
+ * variable when the loop is entered, each {@link Accumulation} adds
+ * <ul>
+ *   <li><code>n * k</code> for a constant or loop invariant term <code>k</code>,</li>
+ *   <li><code>n * v0 - step * n * (n - 1) / 2</code> for the induction variable
+ *       read before it is decremented, and</li>
+ *   <li><code>n * v0 - step * n * (n + 1) / 2</code> for the induction variable
+ *       read after it is decremented</li>
+ * </ul>
+ * to its variable (or subtracts it). Since int arithmetic wraps around, which
+ * is arithmetic modulo 2<sup>32</sup>, these sums have exactly the result of
+ * executing the loop, even if they overflow.<p>
+ *
+ * The original body of the loop is retained, so that all visitors, which do not
+ * know about closed-form loops, can treat it like an ordinary while-loop.
+ */
+public class ClosedFormLoop extends CountedLoop {
+
+    public enum Term {
+        /** An int literal */
+        CONSTANT,
+        /** An int variable, which is not written in the loop */
+        INVARIANT,
+        /** The induction variable before it is decremented */
+        INDUCTION_BEFORE_UPDATE,
+        /** The induction variable after it is decremented */
+        INDUCTION_AFTER_UPDATE
+    }
+
+    /**
+     * An update <code>target = target + term</code> (or <code>-</code>, if
+     * {@link #negated}) in each iteration of the loop.
+     */
+    public static class Accumulation {
+
+        final public Var target;
+
+        final public boolean negated;
+
+        final public Term term;
+
+        /** The value of a {@link Term#CONSTANT} term */
+        final public int constant;
+
+        /** The variable of an {@link Term#INVARIANT} term */
+        final public Var invariant;
+
+        public Accumulation(@NotNull Var target, boolean negated, @NotNull Term term, int constant, Var invariant) {
+            this.target = target;
+            this.negated = negated;
+            this.term = term;
+            this.constant = constant;
+            this.invariant = invariant;
+        }
+
+    }
+
+    /** The accumulations in the order in which they occur in the body */
+    final public List<Accumulation> accumulations;
+
+    public ClosedFormLoop(@NotNull Var variable, int step, @NotNull Statement statement, @NotNull List<Accumulation> accumulations) {
+        super(variable, step, statement);
+        this.accumulations = List.copyOf(accumulations);
+    }
+
+    /**
+     * Returns the sum of the given term over all iterations of the loop with
+     * <code>trips</code> iterations and the entry value <code>entryValue</code>
+     * of the induction variable, in int arithmetic.
+     *
+     * @param term the kind of the term
+     * @param value the value of a constant or invariant term
+     * @param trips the number of iterations
+     * @param entryValue the value of the induction variable when the loop is entered
+     * @return the sum of the term
+     */
+    public int sum(@NotNull Term term, int value, long trips, int entryValue) {
+        int n = (int) trips;
+        switch (term) {
+            case INDUCTION_BEFORE_UPDATE:
+                return n * entryValue - step * (int) (trips * (trips - 1) / 2);
+            case INDUCTION_AFTER_UPDATE:
+                return n * entryValue - step * (int) (trips * (trips + 1) / 2);
+            default:
+                return n * value;
+        }
+    }
+
+    @Override
+    public void accept(ProgramVisitor visitor) {
+        visitor.visit(this);
+    }
+
+}
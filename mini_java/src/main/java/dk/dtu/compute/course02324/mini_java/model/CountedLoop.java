@@ -0,0 +1,49 @@
+package dk.dtu.compute.course02324.mini_java.model;
+
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramVisitor;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A while-loop whose condition is an int induction variable, which is
+ * decremented by a constant {@link #step} exactly once in each iteration of the
+ * body and not written otherwise (see
+ * {@link dk.dtu.compute.course02324.mini_java.analysis.InductionVariable
+ * InductionVariable}). The number of iterations of such a loop can be computed
+ * when the loop is entered, so that the condition does not need to be
+ * re-evaluated after each iteration.<p>
+ *
+ * Counted loops are not part of the MiniJava syntax; they are introduced
+ * by optimizations. Since a counted loop is a while-loop, all visitors, which
+ * do not know about counted loops, treat them like ordinary while-loops.
+ */
+public class CountedLoop extends WhileLoop {
+
+    /** The induction variable, which is also the condition of the loop */
+    final public Var variable;
+
+    /** The constant by which the induction variable is decremented in each iteration (positive) */
+    final public int step;
+
+    public CountedLoop(@NotNull Var variable, int step, @NotNull Statement statement) {
+        super(variable, statement);
+        if (step <= 0) {
+            throw new IllegalArgumentException("The step of a counted loop must be positive.");
+        }
+        this.variable = variable;
+        this.step = step;
+    }
+
+    /**
+     * Returns the number of iterations of this loop when it is entered with the
+     * given value of the induction variable.
+     */
+    public long tripCount(int entryValue) {
+        return entryValue < 0 ? 0 : entryValue / step + 1L;
+    }
+
+    @Override
+    public void accept(ProgramVisitor visitor) {
+        visitor.visit(this);
+    }
+
+}
@@ -9,8 +9,12 @@ public class Var implements Expression {
 
     public final String name;
 
+    /** The hash of the name, which is the one of <code>Objects.hash(name)</code> */
+    private final int hash;
+
     public Var(@NotNull String name) {
         this.name = name;
+        this.hash = 31 + name.hashCode();
     }
 
 
@@ -34,7 +38,7 @@ public class Var implements Expression {
 
     @Override
     public int hashCode() {
-        return Objects.hash(name);
+        return hash;
     }
 
 }
@@ -0,0 +1,138 @@
+package dk.dtu.compute.course02324.mini_java.optimization;
+
+import dk.dtu.compute.course02324.mini_java.analysis.InductionVariable;
+import dk.dtu.compute.course02324.mini_java.analysis.WrittenVariables;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.OperatorRegistry;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.FLOAT;
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.INT;
+
+/**
+ * Propagates constants through a program and folds operator expressions,
+ * whose operands are all literals, into literals. A variable is known to have
+ * a constant value from the point where a literal is assigned to it until it
+ * is assigned something else; the variables written in a while-loop are not
+ * constant in the loop (including its condition) and after the loop.<p>
+ *
+ * Expressions, which would throw an exception when evaluated (division by
+ * zero), are not folded, so that the exception still occurs at runtime.
+ */
+public class ConstantFolder extends ProgramRewriter {
+
+    /** The variables known to have a constant value at the current point of the program */
+    protected Map<Var, Literal> constants = new HashMap<>();
+
+    @Override
+    public void visit(Declaration declaration) {
+        super.visit(declaration);
+        Declaration result = (Declaration) result();
+        if (result.expression != null) {
+            assign(result.variable, result.expression);
+        }
+    }
+
+    @Override
+    public void visit(Assignment assignment) {
+        super.visit(assignment);
+        Assignment result = (Assignment) result();
+        assign(result.variable, result.expression);
+        // an assignment of a literal is still an assignment (it has a side effect)
+    }
+
+    private void assign(Var variable, Expression value) {
+        if (value instanceof Literal literal) {
+            constants.put(variable, literal);
+        } else if (value instanceof Assignment assignment && constants.get(assignment.variable) != null) {
+            constants.put(variable, constants.get(assignment.variable));
+        } else {
+            constants.remove(variable);
+        }
+    }
+
+    @Override
+    public void visit(WhileLoop whileLoop) {
+        Set<Var> written = WrittenVariables.of(whileLoop);
+        constants.keySet().removeAll(written);
+        super.visit(whileLoop);
+        constants.keySet().removeAll(written);
+    }
+
+    /**
+     * Rewrites a counted loop. If the body changes, the loop remains counted
+     * when the induction variable is still recognized.
+     */
+    @Override
+    public void visit(CountedLoop countedLoop) {
+        Set<Var> written = WrittenVariables.of(countedLoop);
+        constants.keySet().removeAll(written);
+        Statement statement = rewrite(countedLoop.statement);
+        constants.keySet().removeAll(written);
+        if (statement == countedLoop.statement) {
+            result(countedLoop);
+            return;
+        }
+        WhileLoop loop = new WhileLoop(countedLoop.expression, statement);
+        InductionVariable inductionVariable = InductionVariable.of(loop);
+        result(inductionVariable != null ?
+                new CountedLoop(inductionVariable.variable, inductionVariable.step, statement) : loop);
+    }
+
+    @Override
+    public void visit(Var var) {
+        Literal literal = constants.get(var);
+        result(literal != null ? literal : var);
+    }
+
+    @Override
+    public void visit(OperatorExpression operatorExpression) {
+        super.visit(operatorExpression);
+        OperatorExpression result = (OperatorExpression) result();
+        Literal folded = fold(result.operator, result.operands);
+        if (folded != null) {
+            result(folded);
+        }
+    }
+
+    /**
+     * Computes the value of an operator applied to literal operands of the same
+     * type, with the same semantics as the
+     * {@link dk.dtu.compute.course02324.mini_java.semantics.ProgramExecutorVisitor
+     * ProgramExecutorVisitor}. Returns <code>null</code> if the operands are not
+     * all literals of the same type, or if the evaluation would fail.
+     */
+    public static Literal fold(@NotNull Operator operator, @NotNull List<Expression> operands) {
+        Type type;
+        if (operands.stream().allMatch(operand -> operand instanceof IntLiteral)) {
+            type = INT;
+        } else if (operands.stream().allMatch(operand -> operand instanceof FloatLiteral)) {
+            type = FLOAT;
+        } else {
+            return null;
+        }
+        if (!OperatorRegistry.supports(operator, type)) {
+            return null;
+        }
+        Number a = value((Literal) operands.get(0));
+        Number b = operands.size() > 1 ? value((Literal) operands.get(1)) : null;
+        Number result;
+        try {
+            result = OperatorRegistry.apply(operator, type, a, b);
+        } catch (ArithmeticException e) {
+            // division by zero must fail at runtime
+            return null;
+        }
+        return result instanceof Integer ? new IntLiteral(result.intValue()) : new FloatLiteral(result.floatValue());
+    }
+
+    private static Number value(Literal literal) {
+        return literal instanceof IntLiteral intLiteral ? (Number) intLiteral.literal : (Number) ((FloatLiteral) literal).literal;
+    }
+
+}
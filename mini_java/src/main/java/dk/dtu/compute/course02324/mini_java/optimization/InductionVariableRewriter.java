@@ -0,0 +1,123 @@
+package dk.dtu.compute.course02324.mini_java.optimization;
+
+import dk.dtu.compute.course02324.mini_java.analysis.InductionVariable;
+import dk.dtu.compute.course02324.mini_java.analysis.WrittenVariables;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static dk.dtu.compute.course02324.mini_java.model.Operator.MINUS2;
+import static dk.dtu.compute.course02324.mini_java.model.Operator.PLUS2;
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.INT;
+
+/**
+ * Rewrites the while-loops of a type-checked program, which have an int
+ * induction variable (see {@link InductionVariable}), into {@link CountedLoop}s.
+ * If closed forms are enabled, and the body of a counted loop consists of
+ * nothing but assignments of the form <code>x = x + t</code>,
+ * <code>x = t + x</code> or <code>x = x - t</code> to int variables
+ * <code>x</code>, where the term <code>t</code> is an int literal, the induction
+ * variable or an int variable which is not written in the loop, the loop is
+ * replaced by a {@link ClosedFormLoop}, which computes the effect of all
+ * iterations in constant time.<p>
+ *
+ * The rewritten program must be type checked again before it is executed,
+ * since it contains new nodes.
+ */
+public class InductionVariableRewriter extends ProgramRewriter {
+
+    /** The type visitor which checked the program */
+    final private ProgramTypeVisitor types;
+
+    /** Whether loops should be replaced by closed forms, where possible */
+    final private boolean closedForms;
+
+    public InductionVariableRewriter(@NotNull ProgramTypeVisitor types, boolean closedForms) {
+        this.types = types;
+        this.closedForms = closedForms;
+    }
+
+    @Override
+    public void visit(WhileLoop whileLoop) {
+        // inner loops are rewritten first
+        Expression expression = rewrite(whileLoop.expression);
+        Statement statement = rewrite(whileLoop.statement);
+        WhileLoop loop = expression != whileLoop.expression || statement != whileLoop.statement ?
+                new WhileLoop(expression, statement) : whileLoop;
+        if (loop instanceof ClosedFormLoop || (loop instanceof CountedLoop && !closedForms)) {
+            result(loop);
+            return;
+        }
+        InductionVariable inductionVariable = InductionVariable.of(loop);
+        if (inductionVariable == null) {
+            result(loop);
+            return;
+        }
+        List<ClosedFormLoop.Accumulation> accumulations = closedForms ? accumulations(inductionVariable) : null;
+        if (accumulations != null) {
+            result(new ClosedFormLoop(inductionVariable.variable, inductionVariable.step, loop.statement, accumulations));
+        } else if (loop instanceof CountedLoop) {
+            result(loop);
+        } else {
+            result(new CountedLoop(inductionVariable.variable, inductionVariable.step, loop.statement));
+        }
+    }
+
+    @Override
+    public void visit(CountedLoop countedLoop) {
+        visit((WhileLoop) countedLoop);
+    }
+
+    /**
+     * Computes the accumulations of a counted loop, or returns <code>null</code>
+     * if the body of the loop does something else than accumulating terms.
+     */
+    private List<ClosedFormLoop.Accumulation> accumulations(InductionVariable inductionVariable) {
+        Set<Var> written = WrittenVariables.of(inductionVariable.loop);
+        List<Statement> statements = InductionVariable.statements(inductionVariable.loop.statement);
+        List<ClosedFormLoop.Accumulation> result = new ArrayList<>();
+        for (int i = 0; i < statements.size(); i++) {
+            if (i == inductionVariable.updateIndex) {
+                continue;
+            }
+            if (!(statements.get(i) instanceof Assignment assignment) ||
+                    !(assignment.expression instanceof OperatorExpression operatorExpression) ||
+                    operatorExpression.operands.size() != 2 ||
+                    !INT.equals(types.typeMapping.get(assignment.variable))) {
+                return null;
+            }
+            Var target = assignment.variable;
+            Expression left = operatorExpression.operands.get(0);
+            Expression right = operatorExpression.operands.get(1);
+            Expression term;
+            if (operatorExpression.operator == PLUS2 && target.equals(left)) {
+                term = right;
+            } else if (operatorExpression.operator == PLUS2 && target.equals(right)) {
+                term = left;
+            } else if (operatorExpression.operator == MINUS2 && target.equals(left)) {
+                term = right;
+            } else {
+                return null;
+            }
+            boolean negated = operatorExpression.operator == MINUS2;
+            if (term instanceof IntLiteral literal) {
+                result.add(new ClosedFormLoop.Accumulation(target, negated, ClosedFormLoop.Term.CONSTANT, literal.literal, null));
+            } else if (term.equals(inductionVariable.variable)) {
+                ClosedFormLoop.Term kind = i < inductionVariable.updateIndex ?
+                        ClosedFormLoop.Term.INDUCTION_BEFORE_UPDATE : ClosedFormLoop.Term.INDUCTION_AFTER_UPDATE;
+                result.add(new ClosedFormLoop.Accumulation(target, negated, kind, 0, null));
+            } else if (term instanceof Var invariant && !written.contains(invariant) &&
+                    INT.equals(types.typeMapping.get(invariant))) {
+                result.add(new ClosedFormLoop.Accumulation(target, negated, ClosedFormLoop.Term.INVARIANT, 0, invariant));
+            } else {
+                return null;
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,189 @@
+package dk.dtu.compute.course02324.mini_java.optimization;
+
+import dk.dtu.compute.course02324.mini_java.analysis.InductionVariable;
+import dk.dtu.compute.course02324.mini_java.analysis.NodeCounter;
+import dk.dtu.compute.course02324.mini_java.analysis.WrittenVariables;
+import dk.dtu.compute.course02324.mini_java.model.*;
+
+import java.util.*;
+
+import static dk.dtu.compute.course02324.mini_java.model.Operator.*;
+
+/**
+ * Unrolls and peels small counted while-loops (see {@link InductionVariable})
+ * and folds constants in the result (see {@link ConstantFolder}).<p>
+ *
+ * A loop <code>while (v &gt;= 0) { body }</code>, which decrements its induction
+ * variable <code>v</code> by <code>step</code>, is unrolled by a factor
+ * <code>k</code> into a main loop with <code>k</code> copies of the body, which
+ * is executed as long as at least <code>k</code> iterations remain, i.e. as long
+ * as <code>v &gt;= (k - 1) * step</code>. Since MiniJava has no conditional
+ * statement, the condition can not be re-tested between the copies; so the
+ * main loop is followed by the original loop, which executes the remaining
+ * (less than <code>k</code>) iterations. When the number of iterations is known,
+ * the remaining iterations are executed as straight-line copies of the body
+ * before the main loop instead.<p>
+ *
+ * If the value of the induction variable is a known non-negative constant,
+ * the first iteration is peeled off the loop when this allows folding
+ * constants in the body.<p>
+ *
+ * Only innermost loops, whose body is not larger than a given number of nodes
+ * and does not contain declarations (which can not be duplicated), are
+ * unrolled. The order of print statements is not changed, and the result
+ * consists of ordinary MiniJava statements only. Since the remainder loop
+ * is a counted loop again, this pass should not be iterated to a fixpoint.
+ */
+public class LoopUnroller extends ConstantFolder {
+
+    /** The number of copies of the body in the main loop */
+    final private int factor;
+
+    /** The maximal number of nodes of the body of a loop, which is unrolled */
+    final private int maxBodySize;
+
+    /** Whether the first iteration of loops should be peeled */
+    final private boolean peel;
+
+    /** The loops created by this pass, which must not be unrolled again */
+    final private Set<WhileLoop> generated = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    public LoopUnroller(int factor, int maxBodySize, boolean peel) {
+        if (factor < 1) {
+            throw new IllegalArgumentException("The unroll factor must be positive.");
+        }
+        this.factor = factor;
+        this.maxBodySize = maxBodySize;
+        this.peel = peel;
+    }
+
+    /** Rewrites a sequence; sequences which replace a loop are spliced into it. */
+    @Override
+    public void visit(Sequence sequence) {
+        List<Statement> statements = new ArrayList<>();
+        boolean changed = false;
+        for (Statement statement: sequence.statements) {
+            Statement rewritten = rewrite(statement);
+            if (rewritten instanceof Sequence spliced && !(statement instanceof Sequence)) {
+                statements.addAll(spliced.statements);
+            } else {
+                statements.add(rewritten);
+            }
+            changed |= rewritten != statement;
+        }
+        result(changed ? new Sequence(statements.toArray(new Statement[0])) : sequence);
+    }
+
+    @Override
+    public void visit(WhileLoop whileLoop) {
+        if (!unroll(whileLoop)) {
+            super.visit(whileLoop);
+        }
+    }
+
+    @Override
+    public void visit(CountedLoop countedLoop) {
+        if (!unroll(countedLoop)) {
+            super.visit(countedLoop);
+        }
+    }
+
+    /**
+     * Unrolls (and peels) a loop, if possible, and sets the result.
+     *
+     * @return whether the loop was unrolled
+     */
+    private boolean unroll(WhileLoop loop) {
+        if (factor < 2 || generated.contains(loop) || loop instanceof ClosedFormLoop) {
+            return false;
+        }
+        InductionVariable inductionVariable = InductionVariable.of(loop);
+        if (inductionVariable == null) {
+            return false;
+        }
+        WrittenVariables written = new WrittenVariables();
+        loop.statement.accept(written);
+        List<Statement> body = InductionVariable.statements(loop.statement);
+        long threshold = (long) (factor - 1) * inductionVariable.step;
+        if (!written.declared.isEmpty() ||
+                body.stream().anyMatch(statement -> statement instanceof WhileLoop) ||
+                NodeCounter.count(loop.statement) > maxBodySize ||
+                threshold > Integer.MAX_VALUE) {
+            return false;
+        }
+
+        List<Statement> result = new ArrayList<>();
+        Var variable = inductionVariable.variable;
+        if (peel && constants.get(variable) instanceof IntLiteral entry && entry.literal >= 0) {
+            Map<Var, Literal> before = new HashMap<>(constants);
+            List<Statement> peeled = rewriteAll(body);
+            if (folds(body, peeled, inductionVariable.updateIndex)) {
+                result.addAll(peeled);
+            } else {
+                constants = before;
+            }
+        }
+
+        List<Statement> copies = new ArrayList<>();
+        for (int i = 0; i < factor; i++) {
+            copies.addAll(body);
+        }
+        WhileLoop main = new WhileLoop(atLeast(variable, (int) threshold), new Sequence(copies.toArray(new Statement[0])));
+        generated.add(main);
+
+        if (constants.get(variable) instanceof IntLiteral entry) {
+            long trips = inductionVariable.tripCount(entry.literal);
+            for (long i = 0; i < trips % factor; i++) {
+                result.addAll(rewriteAll(body));
+            }
+            if (trips >= factor) {
+                result.add(rewrite(main));
+            }
+        } else {
+            CountedLoop remainder = new CountedLoop(variable, inductionVariable.step, loop.statement);
+            generated.add(remainder);
+            result.add(rewrite(main));
+            result.add(rewrite(remainder));
+        }
+        result(result.size() == 1 ? result.get(0) : new Sequence(result.toArray(new Statement[0])));
+        return true;
+    }
+
+    /** Rewrites a list of statements in order. */
+    private List<Statement> rewriteAll(List<Statement> statements) {
+        List<Statement> result = new ArrayList<>();
+        for (Statement statement: statements) {
+            result.add(rewrite(statement));
+        }
+        return result;
+    }
+
+    /** Returns whether rewriting the body changed something else than the update of the induction variable. */
+    private static boolean folds(List<Statement> body, List<Statement> rewritten, int updateIndex) {
+        for (int i = 0; i < body.size(); i++) {
+            if (i != updateIndex && body.get(i) != rewritten.get(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns an expression, which is not negative if and only if the variable
+     * is at least the given positive threshold, and which does not overflow.
+     */
+    private static Expression atLeast(Var variable, int threshold) {
+        if (threshold == 1) {
+            // v / 2 + v % 2 is at least 1 if and only if v is at least 1
+            return new OperatorExpression(MINUS2,
+                    new OperatorExpression(PLUS2,
+                            new OperatorExpression(DIV, variable, new IntLiteral(2)),
+                            new OperatorExpression(MOD, variable, new IntLiteral(2))),
+                    new IntLiteral(1));
+        }
+        return new OperatorExpression(MINUS2,
+                new OperatorExpression(DIV, variable, new IntLiteral(threshold)),
+                new IntLiteral(1));
+    }
+
+}
@@ -0,0 +1,39 @@
+package dk.dtu.compute.course02324.mini_java.optimization;
+
+/**
+ * The predefined pipelines, which trade the time for optimizing a program
+ * against the time for executing it.
+ */
+public enum OptimizationLevel {
+
+    /** No optimization */
+    O0,
+
+    /** Constant folding and counted loops, which are cheap and never make the program larger */
+    O1,
+
+    /** Additionally closed forms of loops and loop unrolling, which might make the program larger */
+    O2;
+
+    /** Returns a new pipeline for this level. */
+    public Pipeline pipeline() {
+        Pipeline pipeline = new Pipeline("-" + name());
+        switch (this) {
+            case O1:
+                pipeline.fixpoint(4, Pass.constantFolding())
+                        .add(Pass.inductionVariables(false));
+                break;
+            case O2:
+                // the unroller creates counted loops again, so it is not part of a fixpoint group
+                pipeline.fixpoint(4, Pass.constantFolding())
+                        .add(Pass.inductionVariables(true))
+                        .add(Pass.loopUnrolling(4, 32, true))
+                        .add(Pass.inductionVariables(false));
+                break;
+            default:
+                break;
+        }
+        return pipeline;
+    }
+
+}
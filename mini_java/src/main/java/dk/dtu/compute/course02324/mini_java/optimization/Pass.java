@@ -0,0 +1,63 @@
+package dk.dtu.compute.course02324.mini_java.optimization;
+
+import dk.dtu.compute.course02324.mini_java.model.Statement;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.BiFunction;
+
+/**
+ * A transformation of a type-checked program, which is run by a
+ * {@link PassManager}. A pass returns the original statement if it did not
+ * change anything, and a new statement otherwise; it must not change the
+ * behaviour of the program or introduce typing problems.
+ */
+public interface Pass {
+
+    /** Returns the name of the pass, which is used in the statistics. */
+    String name();
+
+    /**
+     * Transforms a statement, which was type checked by the given type
+     * visitor without problems.
+     */
+    Statement run(@NotNull Statement statement, @NotNull ProgramTypeVisitor types);
+
+    /** Returns a pass with the given name, which runs the given function. */
+    static Pass of(@NotNull String name, @NotNull BiFunction<Statement, ProgramTypeVisitor, Statement> function) {
+        return new Pass() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public Statement run(@NotNull Statement statement, @NotNull ProgramTypeVisitor types) {
+                return function.apply(statement, types);
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        };
+    }
+
+    /** Folds constants (see {@link ConstantFolder}). */
+    static Pass constantFolding() {
+        return of("constant-folding", (statement, types) -> new ConstantFolder().rewrite(statement));
+    }
+
+    /** Rewrites loops into counted loops and, optionally, closed forms (see {@link InductionVariableRewriter}). */
+    static Pass inductionVariables(boolean closedForms) {
+        return of(closedForms ? "closed-forms" : "counted-loops",
+                (statement, types) -> new InductionVariableRewriter(types, closedForms).rewrite(statement));
+    }
+
+    /** Unrolls and peels loops (see {@link LoopUnroller}). */
+    static Pass loopUnrolling(int factor, int maxBodySize, boolean peel) {
+        return of("loop-unrolling",
+                (statement, types) -> new LoopUnroller(factor, maxBodySize, peel).rewrite(statement));
+    }
+
+}
@@ -0,0 +1,114 @@
+package dk.dtu.compute.course02324.mini_java.optimization;
+
+import dk.dtu.compute.course02324.mini_java.analysis.NodeCounter;
+import dk.dtu.compute.course02324.mini_java.model.Statement;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs the passes of a {@link Pipeline} on a program. After each pass, the
+ * result is type checked again, and the pass manager fails with an
+ * {@link IllegalStateException}, if the pass introduced new typing problems;
+ * the type visitor of the result is then handed to the next pass. For each
+ * run of a pass, the time and the number of nodes before and after the pass
+ * are recorded (see {@link #statistics()}).<p>
+ *
+ * Programs which have typing problems are not optimized at all.
+ */
+public class PassManager {
+
+    final private Pipeline pipeline;
+
+    final private List<PassStatistics> statistics = new ArrayList<>();
+
+    /** The type visitor of the last result */
+    private ProgramTypeVisitor types;
+
+    public PassManager(@NotNull Pipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /** Runs the pipeline on a statement and returns the optimized statement. */
+    public Statement run(@NotNull Statement statement) {
+        types = typeCheck(statement);
+        if (!types.problems.isEmpty()) {
+            return statement;
+        }
+        int nodes = NodeCounter.count(statement);
+        for (Pipeline.Stage stage: pipeline.stages()) {
+            boolean changed = true;
+            for (int iteration = 1; changed && iteration <= stage.maxIterations; iteration++) {
+                changed = false;
+                for (Pass pass: stage.passes) {
+                    long start = System.nanoTime();
+                    Statement result = pass.run(statement, types);
+                    long nanos = System.nanoTime() - start;
+                    boolean passChanged = result != statement;
+                    int nodesAfter = nodes;
+                    if (passChanged) {
+                        verify(pass, result);
+                        nodesAfter = NodeCounter.count(result);
+                    }
+                    statistics.add(new PassStatistics(pass.name(), iteration, nanos, nodes, nodesAfter, passChanged));
+                    changed |= passChanged;
+                    statement = result;
+                    nodes = nodesAfter;
+                }
+            }
+        }
+        return statement;
+    }
+
+    /** Type checks the result of a pass and fails if the pass introduced problems. */
+    private void verify(Pass pass, Statement result) {
+        Set<String> before = new HashSet<>(types.problems);
+        ProgramTypeVisitor after = typeCheck(result);
+        List<String> introduced = new ArrayList<>();
+        for (String problem: after.problems) {
+            if (!before.contains(problem)) {
+                introduced.add(problem);
+            }
+        }
+        if (!introduced.isEmpty()) {
+            throw new IllegalStateException("Pass " + pass.name() + " introduced typing problems: " + introduced);
+        }
+        types = after;
+    }
+
+    private static ProgramTypeVisitor typeCheck(Statement statement) {
+        ProgramTypeVisitor types = new ProgramTypeVisitor();
+        types.visit(statement);
+        return types;
+    }
+
+    /** Returns the type visitor, which checked the result of the last run. */
+    public ProgramTypeVisitor types() {
+        return types;
+    }
+
+    /** Returns the statistics of all passes run so far, in the order they were run. */
+    public List<PassStatistics> statistics() {
+        return Collections.unmodifiableList(statistics);
+    }
+
+    /** Returns the statistics as text, with one line for each run of a pass and the total time. */
+    public String report() {
+        StringBuilder result = new StringBuilder();
+        String newline = System.lineSeparator();
+        long total = 0;
+        for (PassStatistics passStatistics: statistics) {
+            result.append(passStatistics).append(newline);
+            total += passStatistics.nanos;
+        }
+        result.append(String.format("%s: %d passes in %.3f ms", pipeline.name, statistics.size(), total / 1e6))
+                .append(newline);
+        return result.toString();
+    }
+
+}
@@ -0,0 +1,41 @@
+package dk.dtu.compute.course02324.mini_java.optimization;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The statistics of one run of a pass: how long it took, and how many nodes
+ * the program had before and after the pass.
+ */
+public class PassStatistics {
+
+    final public String pass;
+
+    /** The iteration of the fixpoint group in which the pass was run (starting with 1) */
+    final public int iteration;
+
+    final public long nanos;
+
+    final public int nodesBefore;
+
+    final public int nodesAfter;
+
+    /** Whether the pass changed the program */
+    final public boolean changed;
+
+    PassStatistics(@NotNull String pass, int iteration, long nanos, int nodesBefore, int nodesAfter, boolean changed) {
+        this.pass = pass;
+        this.iteration = iteration;
+        this.nanos = nanos;
+        this.nodesBefore = nodesBefore;
+        this.nodesAfter = nodesAfter;
+        this.changed = changed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-20s #%d %10.3f ms %8d -> %8d nodes (%+d)%s",
+                pass, iteration, nanos / 1e6, nodesBefore, nodesAfter, nodesAfter - nodesBefore,
+                changed ? "" : " unchanged");
+    }
+
+}
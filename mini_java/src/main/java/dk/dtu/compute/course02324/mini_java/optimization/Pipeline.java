@@ -0,0 +1,66 @@
+package dk.dtu.compute.course02324.mini_java.optimization;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A named sequence of stages, which a {@link PassManager} runs in order.
+ * A stage is either a single pass, or a group of passes, which is run
+ * repeatedly until none of its passes changes the program any more (a
+ * fixpoint) or a maximal number of iterations is reached.
+ */
+public class Pipeline {
+
+    /** A group of passes, which is run at most the given number of times */
+    public static class Stage {
+
+        final public List<Pass> passes;
+
+        final public int maxIterations;
+
+        Stage(@NotNull List<Pass> passes, int maxIterations) {
+            this.passes = List.copyOf(passes);
+            this.maxIterations = maxIterations;
+        }
+
+    }
+
+    final public String name;
+
+    final private List<Stage> stages = new ArrayList<>();
+
+    public Pipeline(@NotNull String name) {
+        this.name = name;
+    }
+
+    /** Adds a stage, which runs the given pass once. */
+    public Pipeline add(@NotNull Pass pass) {
+        stages.add(new Stage(List.of(pass), 1));
+        return this;
+    }
+
+    /**
+     * Adds a stage, which runs the given passes in order until none of them
+     * changes the program, but at most <code>maxIterations</code> times.
+     */
+    public Pipeline fixpoint(int maxIterations, @NotNull Pass... passes) {
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("The maximal number of iterations must be positive.");
+        }
+        stages.add(new Stage(List.of(passes), maxIterations));
+        return this;
+    }
+
+    public List<Stage> stages() {
+        return Collections.unmodifiableList(stages);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
@@ -0,0 +1,126 @@
+package dk.dtu.compute.course02324.mini_java.optimization;
+
+import dk.dtu.compute.course02324.mini_java.infrastructure.VisitAcceptor;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramVisitor;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A visitor which rewrites a program into a new program. By itself, this
+ * visitor does not change anything: it returns the nodes of the original
+ * program. Subclasses override the visit methods of the nodes they want to
+ * replace, and set the replacement with {@link #result(VisitAcceptor)}.<p>
+ *
+ * A node is rebuilt only if one of its children was replaced; unchanged
+ * subtrees are shared between the original and the rewritten program, so
+ * that the information computed for them (for example their types in the
+ * {@link dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor
+ * ProgramTypeVisitor}) remains valid.
+ */
+public class ProgramRewriter extends ProgramVisitor {
+
+    /** The result of rewriting the last visited node */
+    private VisitAcceptor result;
+
+    /** Rewrites a statement. */
+    public Statement rewrite(@NotNull Statement statement) {
+        statement.accept(this);
+        return (Statement) result;
+    }
+
+    /** Rewrites an expression. */
+    public Expression rewrite(@NotNull Expression expression) {
+        expression.accept(this);
+        return (Expression) result;
+    }
+
+    /** Sets the result of rewriting the currently visited node. */
+    protected void result(@NotNull VisitAcceptor node) {
+        result = node;
+    }
+
+    /** Returns the result of rewriting the last visited node. */
+    protected VisitAcceptor result() {
+        return result;
+    }
+
+    @Override
+    public void visit(Sequence sequence) {
+        Statement[] statements = new Statement[sequence.statements.size()];
+        boolean changed = false;
+        for (int i = 0; i < statements.length; i++) {
+            Statement statement = sequence.statements.get(i);
+            statements[i] = rewrite(statement);
+            changed |= statements[i] != statement;
+        }
+        result(changed ? new Sequence(statements) : sequence);
+    }
+
+    @Override
+    public void visit(Declaration declaration) {
+        if (declaration.expression != null) {
+            Expression expression = rewrite(declaration.expression);
+            if (expression != declaration.expression) {
+                result(new Declaration(declaration.type, declaration.variable, expression));
+                return;
+            }
+        }
+        result(declaration);
+    }
+
+    @Override
+    public void visit(PrintStatement printStatement) {
+        Expression expression = rewrite(printStatement.expression);
+        result(expression != printStatement.expression ?
+                new PrintStatement(printStatement.prefix, expression) : printStatement);
+    }
+
+    @Override
+    public void visit(WhileLoop whileLoop) {
+        Expression expression = rewrite(whileLoop.expression);
+        Statement statement = rewrite(whileLoop.statement);
+        result(expression != whileLoop.expression || statement != whileLoop.statement ?
+                new WhileLoop(expression, statement) : whileLoop);
+    }
+
+    /**
+     * Rewrites a counted loop. If its body changes, the loop becomes an ordinary
+     * while-loop again, since the changed body might not be counted anymore.
+     */
+    @Override
+    public void visit(CountedLoop countedLoop) {
+        Statement statement = rewrite(countedLoop.statement);
+        result(statement != countedLoop.statement ?
+                new WhileLoop(countedLoop.expression, statement) : countedLoop);
+    }
+
+    @Override
+    public void visit(Assignment assignment) {
+        Expression expression = rewrite(assignment.expression);
+        result(expression != assignment.expression ?
+                new Assignment(assignment.variable, expression) : assignment);
+    }
+
+    @Override
+    public void visit(Literal literal) {
+        result(literal);
+    }
+
+    @Override
+    public void visit(Var var) {
+        result(var);
+    }
+
+    @Override
+    public void visit(OperatorExpression operatorExpression) {
+        Expression[] operands = new Expression[operatorExpression.operands.size()];
+        boolean changed = false;
+        for (int i = 0; i < operands.length; i++) {
+            Expression operand = operatorExpression.operands.get(i);
+            operands[i] = rewrite(operand);
+            changed |= operands[i] != operand;
+        }
+        result(changed ? new OperatorExpression(operatorExpression.operator, operands) : operatorExpression);
+    }
+
+}
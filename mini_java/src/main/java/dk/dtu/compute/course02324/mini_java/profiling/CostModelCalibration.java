@@ -0,0 +1,103 @@
+package dk.dtu.compute.course02324.mini_java.profiling;
+
+import dk.dtu.compute.course02324.mini_java.analysis.CostModel;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramExecutorVisitor;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static dk.dtu.compute.course02324.mini_java.model.Operator.*;
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.*;
+
+/**
+ * Calibrates the weights of a {@link CostModel} for the
+ * {@link ProgramExecutorVisitor} on the running machine. Each kernel is a
+ * counted loop, whose body consists of the decrement of the induction
+ * variable and one statement with a few kinds of nodes; the cost of an
+ * iteration of the loop without that statement is subtracted, and the
+ * weights of the kinds of nodes are solved from the differences of the
+ * kernels. The weights are in nanoseconds, at least 1.
+ */
+public class CostModelCalibration {
+
+    final private static PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    private CostModelCalibration() {
+    }
+
+    /**
+     * Measures the weights with loops of the given number of iterations,
+     * which are run the given number of times after the same number of
+     * warm-up runs; the best time of the runs is used.
+     */
+    public static CostModel calibrate(int iterations, int runs) {
+        if (iterations <= 0 || runs <= 0) {
+            throw new IllegalArgumentException("The number of iterations and runs must be positive.");
+        }
+        PrintStream out = System.out;
+        System.setOut(DISCARD);
+        try {
+            double empty = perIteration(null, iterations, runs);
+            // x = 1: assignment + literal; x = y = 1: two assignments + literal
+            double assignLiteral = perIteration(Assignment(Var("x"), Literal(1)), iterations, runs) - empty;
+            double assignTwice = perIteration(Assignment(Var("x"), Assignment(Var("y"), Literal(1))), iterations, runs) - empty;
+            double assignment = assignTwice - assignLiteral;
+            double literal = assignLiteral - assignment;
+            double variable = perIteration(Assignment(Var("x"), Var("y")), iterations, runs) - empty - assignment;
+            double declaration = perIteration(Declaration(INT, Var("z"), Literal(1)), iterations, runs) - empty - literal;
+            double print = perIteration(PrintStatement("", Var("y")), iterations, runs) - empty - variable;
+
+            Map<Operator, Integer> operators = new EnumMap<>(Operator.class);
+            for (Operator operator: Operator.values()) {
+                Expression expression = operator.arity == 1 ?
+                        OperatorExpression(operator, Var("y")) :
+                        OperatorExpression(operator, Var("y"), Literal(3));
+                double kernel = perIteration(Assignment(Var("x"), expression), iterations, runs) - empty;
+                double weight = kernel - assignment - variable - (operator.arity == 1 ? 0 : literal);
+                operators.put(operator, weight(weight));
+            }
+            // an empty iteration checks the condition (a variable) and decrements the induction variable
+            double loopIteration = empty - 2 * variable - assignment - literal - operators.get(MINUS2);
+            return new CostModel(weight(literal), weight(variable), weight(assignment), weight(declaration),
+                    weight(print), weight(loopIteration), operators.get(PLUS2), operators);
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private static int weight(double nanos) {
+        return (int) Math.max(1, Math.round(nanos));
+    }
+
+    /** Returns the best time of an iteration of the loop with the given statement in its body. */
+    private static double perIteration(Statement statement, int iterations, int runs) {
+        Statement decrement = Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1)));
+        Statement program = Sequence(
+                Declaration(INT, Var("x"), Literal(0)),
+                Declaration(INT, Var("y"), Literal(7)),
+                Declaration(INT, Var("i"), Literal(iterations - 1)),
+                WhileLoop(Var("i"), statement != null ? Sequence(decrement, statement) : Sequence(decrement))
+        );
+        ProgramTypeVisitor ptv = new ProgramTypeVisitor();
+        ptv.visit(program);
+        if (!ptv.problems.isEmpty()) {
+            throw new IllegalStateException("Kernel is not well-typed: " + ptv.problems);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 2 * runs; i++) {
+            ProgramExecutorVisitor pev = new ProgramExecutorVisitor(ptv);
+            long start = System.nanoTime();
+            pev.visit(program);
+            long nanos = System.nanoTime() - start;
+            if (i >= runs) {
+                best = Math.min(best, nanos);
+            }
+        }
+        return (double) best / iterations;
+    }
+
+}
@@ -0,0 +1,149 @@
+package dk.dtu.compute.course02324.mini_java.profiling;
+
+import dk.dtu.compute.course02324.mini_java.ir.FlatProgram;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramVisitor;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.ref.Reference;
+
+/**
+ * Compares the footprint of a large program and the time of a traversal of
+ * all its nodes for the tree of {@link dk.dtu.compute.course02324.mini_java.model}
+ * objects and for a {@link FlatProgram}. The footprints are the differences
+ * of the used heap after a full collection with and without the program, as
+ * reported by the JVM, so they are estimates.
+ */
+public class FlatProgramBenchmark {
+
+    /** The result of a measurement; the times are the best over the runs. */
+    public static class Result {
+
+        final public long treeBytes;
+
+        final public long flatBytes;
+
+        final public long treeNanos;
+
+        final public long flatNanos;
+
+        Result(long treeBytes, long flatBytes, long treeNanos, long flatNanos) {
+            this.treeBytes = treeBytes;
+            this.flatBytes = flatBytes;
+            this.treeNanos = treeNanos;
+            this.flatNanos = flatNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("tree: %,d bytes, %,d ns per traversal; flat: %,d bytes, %,d ns per traversal",
+                    treeBytes, treeNanos, flatBytes, flatNanos);
+        }
+
+    }
+
+    /** Counts the nodes of a tree. */
+    private static class NodeCounter extends ProgramVisitor {
+
+        private int count = 0;
+
+        @Override
+        public void visit(Sequence sequence) {
+            count++;
+            for (Statement statement: sequence.statements) {
+                statement.accept(this);
+            }
+        }
+
+        @Override
+        public void visit(Declaration declaration) {
+            count++;
+            if (declaration.expression != null) {
+                declaration.expression.accept(this);
+            }
+        }
+
+        @Override
+        public void visit(PrintStatement printStatement) {
+            count++;
+            printStatement.expression.accept(this);
+        }
+
+        @Override
+        public void visit(WhileLoop whileLoop) {
+            count++;
+            whileLoop.expression.accept(this);
+            whileLoop.statement.accept(this);
+        }
+
+        @Override
+        public void visit(Assignment assignment) {
+            count++;
+            assignment.expression.accept(this);
+        }
+
+        @Override
+        public void visit(Literal literal) {
+            count++;
+        }
+
+        @Override
+        public void visit(Var var) {
+            count++;
+        }
+
+        @Override
+        public void visit(OperatorExpression operatorExpression) {
+            count++;
+            for (Expression operand: operatorExpression.operands) {
+                operand.accept(this);
+            }
+        }
+
+    }
+
+    private FlatProgramBenchmark() {
+    }
+
+    /**
+     * Measures the footprint of both representations of a statement (without
+     * counted and closed-form loops), and the time of counting their nodes
+     * the given number of times, after the same number of warm-up runs.
+     */
+    public static Result measure(@NotNull Statement statement, int runs) {
+        if (runs <= 0) {
+            throw new IllegalArgumentException("The number of runs must be positive.");
+        }
+        FlatProgram flat = FlatProgram.of(statement);
+
+        long before = VariableStoreBenchmark.usedHeap();
+        Statement tree = flat.toStatement();
+        long treeBytes = Math.max(0, VariableStoreBenchmark.usedHeap() - before);
+        before = VariableStoreBenchmark.usedHeap();
+        FlatProgram copy = FlatProgram.of(tree);
+        long flatBytes = Math.max(0, VariableStoreBenchmark.usedHeap() - before);
+
+        long treeNanos = Long.MAX_VALUE;
+        long flatNanos = Long.MAX_VALUE;
+        for (int i = 0; i < 2 * runs; i++) {
+            long start = System.nanoTime();
+            NodeCounter counter = new NodeCounter();
+            tree.accept(counter);
+            long middle = System.nanoTime();
+            int[] count = {0};
+            copy.walk(node -> count[0]++);
+            long end = System.nanoTime();
+            if (counter.count != count[0]) {
+                throw new IllegalStateException("The representations have different numbers of nodes");
+            }
+            if (i >= runs) {
+                treeNanos = Math.min(treeNanos, middle - start);
+                flatNanos = Math.min(flatNanos, end - middle);
+            }
+        }
+        Reference.reachabilityFence(tree);
+        Reference.reachabilityFence(copy);
+        return new Result(treeBytes, flatBytes, treeNanos, flatNanos);
+    }
+
+}
@@ -0,0 +1,434 @@
+package dk.dtu.compute.course02324.mini_java.profiling;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import dk.dtu.compute.course02324.mini_java.infrastructure.VisitAcceptor;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramExecutorVisitor;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramVisitor;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estimates how much heap programs and the state of their executions use,
+ * for capacity planning. The sizes are computed from the layout of objects
+ * reported by the JVM (the size of object headers and references, and the
+ * alignment, see {@link Layout#current()}) and the instance fields of the
+ * classes, without inspecting the heap; the JVM may pack fields slightly
+ * better, so the sizes are estimates.<p>
+ *
+ * The footprint is reported by kind: for a statement, the kinds are the
+ * classes of the nodes; the shallow bytes are those of the nodes themselves,
+ * and the retained bytes also include what the nodes own (the lists of
+ * children, the names of variables, the prefixes of print statements, the
+ * types and the accumulations of closed-form loops). Objects shared in the
+ * tree are counted once. For the side tables of a {@link ProgramTypeVisitor}
+ * and the values of a {@link ProgramExecutorVisitor}, the kinds are the
+ * tables; their keys are nodes of the program and are not included.
+ */
+public class MemoryAccounting {
+
+    /** The layout of objects in the JVM. */
+    public static class Layout {
+
+        final public int headerBytes;
+
+        final public int arrayHeaderBytes;
+
+        final public int referenceBytes;
+
+        final public int alignment;
+
+        final private Map<Class<?>, Long> shallowSizes = new ConcurrentHashMap<>();
+
+        public Layout(int headerBytes, int referenceBytes, int alignment) {
+            if (alignment <= 0 || (alignment & alignment - 1) != 0) {
+                throw new IllegalArgumentException("The alignment must be a power of 2: " + alignment);
+            }
+            this.headerBytes = headerBytes;
+            this.arrayHeaderBytes = headerBytes + 4;
+            this.referenceBytes = referenceBytes;
+            this.alignment = alignment;
+        }
+
+        /**
+         * Returns the layout of the running JVM, as reported by its diagnostic
+         * options; if they are not available, the layout of a 64-bit HotSpot
+         * JVM with compressed references is assumed.
+         */
+        public static Layout current() {
+            HotSpotDiagnosticMXBean bean = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            if (bean == null) {
+                return new Layout(12, 4, 8);
+            }
+            boolean compactHeaders = "true".equals(option(bean, "UseCompactObjectHeaders", "false"));
+            boolean compressedClasses = "true".equals(option(bean, "UseCompressedClassPointers", "true"));
+            boolean compressedOops = "true".equals(option(bean, "UseCompressedOops", "true"));
+            int alignment = Integer.parseInt(option(bean, "ObjectAlignmentInBytes", "8"));
+            return new Layout(compactHeaders ? 8 : compressedClasses ? 12 : 16, compressedOops ? 4 : 8, alignment);
+        }
+
+        private static String option(HotSpotDiagnosticMXBean bean, String name, String otherwise) {
+            try {
+                return bean.getVMOption(name).getValue();
+            } catch (IllegalArgumentException e) {
+                return otherwise;
+            }
+        }
+
+        private long align(long bytes) {
+            return (bytes + alignment - 1) & -alignment;
+        }
+
+        private int fieldSize(Class<?> type) {
+            if (type == long.class || type == double.class) {
+                return 8;
+            } else if (type == int.class || type == float.class) {
+                return 4;
+            } else if (type == short.class || type == char.class) {
+                return 2;
+            } else if (type == byte.class || type == boolean.class) {
+                return 1;
+            }
+            return referenceBytes;
+        }
+
+        /** Returns the size of an object of a class (not an array), including the fields of its superclasses. */
+        public long shallowSize(@NotNull Class<?> type) {
+            return shallowSizes.computeIfAbsent(type, key -> {
+                long bytes = headerBytes;
+                for (Class<?> c = key; c != null; c = c.getSuperclass()) {
+                    for (Field field: c.getDeclaredFields()) {
+                        if (!Modifier.isStatic(field.getModifiers())) {
+                            bytes += fieldSize(field.getType());
+                        }
+                    }
+                }
+                return align(bytes);
+            });
+        }
+
+        /** Returns the size of an array with elements of the given type. */
+        public long arraySize(@NotNull Class<?> componentType, int length) {
+            return align(arrayHeaderBytes + (long) length * fieldSize(componentType));
+        }
+
+        /** Returns the size of a string, including its array of (compact) characters. */
+        public long stringSize(@NotNull String string) {
+            boolean latin1 = string.chars().allMatch(c -> c < 256);
+            return shallowSize(String.class) + arraySize(byte.class, latin1 ? string.length() : 2 * string.length());
+        }
+
+        /**
+         * Returns the size of a list created by {@link List#of} or of an
+         * {@link ArrayList}, excluding its elements: immutable lists with up
+         * to two elements store them in fields, other lists in an array.
+         */
+        public long listSize(@NotNull List<?> list) {
+            long bytes = shallowSize(list.getClass());
+            if (list instanceof ArrayList<?>) {
+                // the capacity is not known; assume the elements fill it
+                bytes += arraySize(Object.class, list.size());
+            } else if (list.size() > 2) {
+                bytes += arraySize(Object.class, list.size());
+            }
+            return bytes;
+        }
+
+        /**
+         * Returns the size of a hash map (or linked hash map) with the given
+         * number of entries and the default load factor, excluding its keys
+         * and values.
+         */
+        public long hashMapSize(int size, boolean linked) {
+            long bytes = shallowSize(linked ? LinkedHashMap.class : HashMap.class);
+            if (size > 0) {
+                int capacity = 16;
+                while (size > capacity * 3L / 4) {
+                    capacity *= 2;
+                }
+                bytes += arraySize(Object.class, capacity);
+                bytes += size * shallowSize(entryClass(linked));
+            }
+            return bytes;
+        }
+
+        private static Class<?> entryClass(boolean linked) {
+            try {
+                return Class.forName(linked ? "java.util.LinkedHashMap$Entry" : "java.util.HashMap$Node");
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+    }
+
+    /** The footprint of a program or of tables, by kind. */
+    public static class Report {
+
+        final private Map<String, long[]> kinds = new TreeMap<>();
+
+        private void add(String kind, long count, long shallowBytes, long retainedBytes) {
+            long[] totals = kinds.computeIfAbsent(kind, key -> new long[3]);
+            totals[0] += count;
+            totals[1] += shallowBytes;
+            totals[2] += retainedBytes;
+        }
+
+        /** Returns the kinds in alphabetical order. */
+        public Set<String> kinds() {
+            return Collections.unmodifiableSet(kinds.keySet());
+        }
+
+        /** Returns the number of objects (nodes or entries) of a kind, or 0. */
+        public long count(@NotNull String kind) {
+            return get(kind, 0);
+        }
+
+        public long shallowBytes(@NotNull String kind) {
+            return get(kind, 1);
+        }
+
+        public long retainedBytes(@NotNull String kind) {
+            return get(kind, 2);
+        }
+
+        private long get(String kind, int index) {
+            long[] totals = kinds.get(kind);
+            return totals != null ? totals[index] : 0;
+        }
+
+        public long count() {
+            return total(0);
+        }
+
+        public long shallowBytes() {
+            return total(1);
+        }
+
+        public long retainedBytes() {
+            return total(2);
+        }
+
+        private long total(int index) {
+            long total = 0;
+            for (long[] totals: kinds.values()) {
+                total += totals[index];
+            }
+            return total;
+        }
+
+        /**
+         * Returns the footprint as lines of metrics in the text format of
+         * Prometheus, one line per kind and measure, with the kind as label:
+         * <code>&lt;prefix&gt;_count{kind="Var"} 12</code>, and the same
+         * for <code>_shallow_bytes</code> and <code>_retained_bytes</code>.
+         */
+        public String toMetrics(@NotNull String prefix) {
+            StringBuilder result = new StringBuilder();
+            String[] measures = {"count", "shallow_bytes", "retained_bytes"};
+            for (int index = 0; index < measures.length; index++) {
+                for (Map.Entry<String, long[]> entry: kinds.entrySet()) {
+                    result.append(String.format("%s_%s{kind=\"%s\"} %d%n",
+                            prefix, measures[index], entry.getKey(), entry.getValue()[index]));
+                }
+            }
+            return result.toString();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder();
+            for (Map.Entry<String, long[]> entry: kinds.entrySet()) {
+                long[] totals = entry.getValue();
+                result.append(String.format("%s: %,d, shallow %,d bytes, retained %,d bytes%n",
+                        entry.getKey(), totals[0], totals[1], totals[2]));
+            }
+            result.append(String.format("total: %,d, shallow %,d bytes, retained %,d bytes%n",
+                    count(), shallowBytes(), retainedBytes()));
+            return result.toString();
+        }
+
+    }
+
+    final public Layout layout;
+
+    public MemoryAccounting(@NotNull Layout layout) {
+        this.layout = layout;
+    }
+
+    public MemoryAccounting() {
+        this(Layout.current());
+    }
+
+    /** Returns the footprint of a statement by the kinds of its nodes. */
+    public Report account(@NotNull Statement statement) {
+        Report report = new Report();
+        statement.accept(new NodeAccountant(report));
+        return report;
+    }
+
+    /**
+     * Returns the footprint of the side tables of a type checker after it
+     * visited a program: the types of the expressions, the variables and the
+     * problems.
+     */
+    public Report account(@NotNull ProgramTypeVisitor ptv) {
+        Report report = new Report();
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        long typeMapping = layout.hashMapSize(ptv.typeMapping.size(), false);
+        for (Type type: ptv.typeMapping.values()) {
+            typeMapping += seen.add(type) ? layout.shallowSize(type.getClass()) : 0;
+        }
+        report.add("typeMapping", ptv.typeMapping.size(), layout.shallowSize(ptv.typeMapping.getClass()), typeMapping);
+        report.add("variables", ptv.variables.size(), layout.shallowSize(ptv.variables.getClass()),
+                layout.shallowSize(ptv.variables.getClass()) + layout.hashMapSize(ptv.variables.size(), false));
+        long problems = layout.listSize(ptv.problems);
+        for (String problem: ptv.problems) {
+            problems += layout.stringSize(problem);
+        }
+        report.add("problems", ptv.problems.size(), layout.shallowSize(ptv.problems.getClass()), problems);
+        return report;
+    }
+
+    /**
+     * Returns the footprint of the values of an executor after it executed a
+     * program, including the boxed values. Integers from the cache of
+     * {@link Integer#valueOf(int)} (by default -128 to 127) are shared by the
+     * whole JVM, and are not counted.
+     */
+    public Report account(@NotNull ProgramExecutorVisitor pev) {
+        Report report = new Report();
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        long values = layout.hashMapSize(pev.values.size(), pev.values instanceof LinkedHashMap<?, ?>);
+        for (Number value: pev.values.values()) {
+            boolean cached = value instanceof Integer intValue && Integer.valueOf(intValue) == value;
+            values += value != null && !cached && seen.add(value) ? layout.shallowSize(value.getClass()) : 0;
+        }
+        report.add("values", pev.values.size(), layout.shallowSize(pev.values.getClass()), values);
+        return report;
+    }
+
+    /**
+     * Adds the nodes of a statement to a report, each object (node, list,
+     * string or type) only the first time it is reached.
+     */
+    private class NodeAccountant extends ProgramVisitor {
+
+        final private Report report;
+
+        final private Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        NodeAccountant(Report report) {
+            this.report = report;
+        }
+
+        /** Adds a node with the bytes it owns; returns whether it was not seen before. */
+        private boolean node(VisitAcceptor node, long ownedBytes) {
+            if (!seen.add(node)) {
+                return false;
+            }
+            long shallow = layout.shallowSize(node.getClass());
+            report.add(node.getClass().getSimpleName(), 1, shallow, shallow + ownedBytes);
+            return true;
+        }
+
+        private long string(String string) {
+            return string != null && seen.add(string) ? layout.stringSize(string) : 0;
+        }
+
+        private long object(Object object) {
+            return object != null && seen.add(object) ? layout.shallowSize(object.getClass()) : 0;
+        }
+
+        private long list(List<?> list) {
+            return seen.add(list) ? layout.listSize(list) : 0;
+        }
+
+        @Override
+        public void visit(Sequence sequence) {
+            if (node(sequence, list(sequence.statements))) {
+                for (Statement statement: sequence.statements) {
+                    statement.accept(this);
+                }
+            }
+        }
+
+        @Override
+        public void visit(Declaration declaration) {
+            if (node(declaration, object(declaration.type))) {
+                declaration.variable.accept(this);
+                if (declaration.expression != null) {
+                    declaration.expression.accept(this);
+                }
+            }
+        }
+
+        @Override
+        public void visit(PrintStatement printStatement) {
+            if (node(printStatement, string(printStatement.prefix))) {
+                printStatement.expression.accept(this);
+            }
+        }
+
+        @Override
+        public void visit(WhileLoop whileLoop) {
+            if (node(whileLoop, 0)) {
+                whileLoop.expression.accept(this);
+                whileLoop.statement.accept(this);
+            }
+        }
+
+        @Override
+        public void visit(ClosedFormLoop closedFormLoop) {
+            long owned = list(closedFormLoop.accumulations);
+            for (ClosedFormLoop.Accumulation accumulation: closedFormLoop.accumulations) {
+                owned += object(accumulation);
+            }
+            if (node(closedFormLoop, owned)) {
+                closedFormLoop.expression.accept(this);
+                closedFormLoop.statement.accept(this);
+                for (ClosedFormLoop.Accumulation accumulation: closedFormLoop.accumulations) {
+                    accumulation.target.accept(this);
+                    if (accumulation.invariant != null) {
+                        accumulation.invariant.accept(this);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void visit(Assignment assignment) {
+            if (node(assignment, 0)) {
+                assignment.variable.accept(this);
+                assignment.expression.accept(this);
+            }
+        }
+
+        @Override
+        public void visit(Literal literal) {
+            node(literal, 0);
+        }
+
+        @Override
+        public void visit(Var var) {
+            node(var, string(var.name));
+        }
+
+        @Override
+        public void visit(OperatorExpression operatorExpression) {
+            if (node(operatorExpression, list(operatorExpression.operands))) {
+                for (Expression operand: operatorExpression.operands) {
+                    operand.accept(this);
+                }
+            }
+        }
+
+    }
+
+}
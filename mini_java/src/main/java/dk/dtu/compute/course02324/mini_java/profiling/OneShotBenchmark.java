@@ -0,0 +1,119 @@
+package dk.dtu.compute.course02324.mini_java.profiling;
+
+import dk.dtu.compute.course02324.mini_java.model.Statement;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramExecutorVisitor;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor;
+import dk.dtu.compute.course02324.mini_java.typed.FusedLowering;
+import dk.dtu.compute.course02324.mini_java.typed.TypedProgram;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the latency and the allocation per run of a one-shot script for
+ * the two-pass path (a {@link ProgramTypeVisitor} followed by a
+ * {@link ProgramExecutorVisitor}) and for the fused path (a
+ * {@link FusedLowering} followed by executing the typed tree). The output of
+ * the script is discarded. The allocated bytes are those of the current
+ * thread, as reported by the JVM; if the JVM does not support this, they are
+ * reported as -1.
+ */
+public class OneShotBenchmark {
+
+    /** The result of a measurement, per run of the script. */
+    public static class Result {
+
+        final public long twoPassNanos;
+
+        final public long twoPassBytes;
+
+        final public long fusedNanos;
+
+        final public long fusedBytes;
+
+        Result(long twoPassNanos, long twoPassBytes, long fusedNanos, long fusedBytes) {
+            this.twoPassNanos = twoPassNanos;
+            this.twoPassBytes = twoPassBytes;
+            this.fusedNanos = fusedNanos;
+            this.fusedBytes = fusedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("two-pass: %,d ns, %,d bytes; fused: %,d ns, %,d bytes",
+                    twoPassNanos, twoPassBytes, fusedNanos, fusedBytes);
+        }
+
+    }
+
+    final private static PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    private OneShotBenchmark() {
+    }
+
+    /**
+     * Runs the script with both paths the given number of times, after the
+     * same number of warm-up runs, and returns the averages per run.
+     */
+    public static Result measure(@NotNull Statement script, int runs) {
+        if (runs <= 0) {
+            throw new IllegalArgumentException("The number of runs must be positive.");
+        }
+        PrintStream out = System.out;
+        System.setOut(DISCARD);
+        try {
+            for (int i = 0; i < runs; i++) {
+                runTwoPass(script);
+                runFused(script);
+            }
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                runTwoPass(script);
+            }
+            long twoPassNanos = (System.nanoTime() - start) / runs;
+            long twoPassBytes = perRun(bytes, runs);
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                runFused(script);
+            }
+            long fusedNanos = (System.nanoTime() - start) / runs;
+            long fusedBytes = perRun(bytes, runs);
+            return new Result(twoPassNanos, twoPassBytes, fusedNanos, fusedBytes);
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private static void runTwoPass(Statement script) {
+        ProgramTypeVisitor ptv = new ProgramTypeVisitor();
+        ptv.visit(script);
+        if (ptv.problems.isEmpty()) {
+            new ProgramExecutorVisitor(ptv).visit(script);
+        }
+    }
+
+    private static void runFused(Statement script) {
+        TypedProgram program = new FusedLowering().lower(script);
+        if (program != null) {
+            program.run(DISCARD);
+        }
+    }
+
+    private static long perRun(long before, int runs) {
+        return before < 0 ? -1 : (allocatedBytes() - before) / runs;
+    }
+
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemoryEnabled()) {
+            return bean.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+}
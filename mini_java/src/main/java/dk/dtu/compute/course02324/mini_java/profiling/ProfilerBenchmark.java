@@ -0,0 +1,100 @@
+package dk.dtu.compute.course02324.mini_java.profiling;
+
+import dk.dtu.compute.course02324.mini_java.model.Statement;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramExecutorVisitor;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+
+/**
+ * Measures the overhead of the {@link SamplingProfiler}: a program is
+ * executed by a {@link ProgramExecutorVisitor} without a profiler and with a
+ * profiler sampling at the given interval. The output of the program is
+ * discarded; the result is the best time per run over the runs.
+ */
+public class ProfilerBenchmark {
+
+    /** The result of a measurement, in nanoseconds per run of the program. */
+    public static class Result {
+
+        final public long plainNanos;
+
+        final public long profiledNanos;
+
+        Result(long plainNanos, long profiledNanos) {
+            this.plainNanos = plainNanos;
+            this.profiledNanos = profiledNanos;
+        }
+
+        /** Returns the additional time of a profiled run, relative to a plain run. */
+        public double overhead() {
+            return plainNanos > 0 ? (double) profiledNanos / plainNanos - 1 : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("plain: %,d ns, profiled: %,d ns per run (%+.1f%%)",
+                    plainNanos, profiledNanos, 100 * overhead());
+        }
+
+    }
+
+    final private static PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    private ProfilerBenchmark() {
+    }
+
+    /**
+     * Runs a well-typed program without and with profiler the given number
+     * of times, after the same number of warm-up runs.
+     */
+    public static Result measure(@NotNull Statement program, @NotNull Duration interval, int runs) {
+        if (runs <= 0) {
+            throw new IllegalArgumentException("The number of runs must be positive.");
+        }
+        ProgramTypeVisitor ptv = new ProgramTypeVisitor();
+        ptv.visit(program);
+        if (!ptv.problems.isEmpty()) {
+            throw new IllegalArgumentException("The program is not well-typed: " + ptv.problems);
+        }
+        PrintStream out = System.out;
+        System.setOut(DISCARD);
+        try {
+            for (int i = 0; i < runs; i++) {
+                run(program, ptv, null);
+                run(program, ptv, interval);
+            }
+            long plain = Long.MAX_VALUE;
+            long profiled = Long.MAX_VALUE;
+            for (int i = 0; i < runs; i++) {
+                plain = Math.min(plain, run(program, ptv, null));
+                profiled = Math.min(profiled, run(program, ptv, interval));
+            }
+            return new Result(plain, profiled);
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    /** Runs the program, with a profiler if an interval is given, and returns the time of the execution. */
+    private static long run(Statement program, ProgramTypeVisitor ptv, Duration interval) {
+        ProgramExecutorVisitor pev = new ProgramExecutorVisitor(ptv);
+        SamplingProfiler profiler = interval != null ? new SamplingProfiler(program, pev, interval) : null;
+        if (profiler != null) {
+            profiler.start();
+        }
+        long start = System.nanoTime();
+        try {
+            pev.visit(program);
+            return System.nanoTime() - start;
+        } finally {
+            if (profiler != null) {
+                profiler.stop();
+            }
+        }
+    }
+
+}
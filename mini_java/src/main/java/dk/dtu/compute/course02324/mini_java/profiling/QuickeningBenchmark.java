@@ -0,0 +1,126 @@
+package dk.dtu.compute.course02324.mini_java.profiling;
+
+import dk.dtu.compute.course02324.mini_java.model.Statement;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor;
+import dk.dtu.compute.course02324.mini_java.typed.Quickening;
+import dk.dtu.compute.course02324.mini_java.typed.QuickeningPattern;
+import dk.dtu.compute.course02324.mini_java.typed.TypedProgram;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.List;
+
+import static dk.dtu.compute.course02324.mini_java.model.Operator.MINUS2;
+import static dk.dtu.compute.course02324.mini_java.model.Operator.PLUS2;
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.*;
+
+/**
+ * Measures how much each pattern of the default {@link Quickening} catalogue
+ * reduces the cost of an iteration of a loop, whose body consists mostly of
+ * the idiom of the pattern. For each pattern, the loop is executed as a typed
+ * tree without quickening and with only this pattern applied; the result is
+ * the best time per iteration over the runs.
+ */
+public class QuickeningBenchmark {
+
+    /** The result of a measurement for one pattern, in nanoseconds per loop iteration. */
+    public static class Result {
+
+        final public double plainNanos;
+
+        final public double quickenedNanos;
+
+        Result(double plainNanos, double quickenedNanos) {
+            this.plainNanos = plainNanos;
+            this.quickenedNanos = quickenedNanos;
+        }
+
+        /** Returns the time per iteration saved by the pattern, relative to the plain tree. */
+        public double reduction() {
+            return plainNanos > 0 ? 1 - quickenedNanos / plainNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("plain: %.2f ns, quickened: %.2f ns per iteration (%+.0f%%)",
+                    plainNanos, quickenedNanos, -100 * reduction());
+        }
+
+    }
+
+    final private static PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    private QuickeningBenchmark() {
+    }
+
+    /** Returns the loop exercising the idiom of a pattern of the default catalogue. */
+    static Statement kernel(@NotNull QuickeningPattern pattern, int iterations) {
+        if (pattern == Quickening.ADD_CONSTANT) {
+            return Sequence(
+                    Declaration(INT, Var("i"), Literal(iterations)),
+                    Declaration(INT, Var("k"), Literal(0)),
+                    WhileLoop(
+                            Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1))),
+                            Assignment(Var("k"), OperatorExpression(PLUS2, Var("k"), Literal(3)))
+                    )
+            );
+        } else if (pattern == Quickening.PRINT_VARIABLE) {
+            return Sequence(
+                    Declaration(INT, Var("i"), Literal(iterations)),
+                    WhileLoop(
+                            Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1))),
+                            PrintStatement("i = ", Var("i"))
+                    )
+            );
+        } else if (pattern == Quickening.VARIABLE_LOOP) {
+            return Sequence(
+                    Declaration(INT, Var("i"), Literal(iterations - 1)),
+                    WhileLoop(
+                            Var("i"),
+                            Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1)))
+                    )
+            );
+        }
+        throw new IllegalArgumentException("No kernel for pattern " + pattern.name());
+    }
+
+    /**
+     * Measures each pattern of the default catalogue with loops of the given
+     * number of iterations, which are run the given number of times after
+     * the same number of warm-up runs.
+     */
+    public static Map<String, Result> measure(int iterations, int runs) {
+        if (iterations <= 0 || runs <= 0) {
+            throw new IllegalArgumentException("The number of iterations and runs must be positive.");
+        }
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (QuickeningPattern pattern: Quickening.DEFAULT_PATTERNS) {
+            Statement kernel = kernel(pattern, iterations);
+            ProgramTypeVisitor ptv = new ProgramTypeVisitor();
+            ptv.visit(kernel);
+            TypedProgram plain = ptv.lower(kernel);
+            TypedProgram quickened = new Quickening(List.of(pattern)).quicken(plain);
+            for (int i = 0; i < runs; i++) {
+                plain.run(DISCARD);
+                quickened.run(DISCARD);
+            }
+            results.put(pattern.name(), new Result(
+                    best(plain, runs) / iterations, best(quickened, runs) / iterations));
+        }
+        return results;
+    }
+
+    private static double best(TypedProgram program, int runs) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            program.run(DISCARD);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+}
@@ -0,0 +1,204 @@
+package dk.dtu.compute.course02324.mini_java.profiling;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramExecutorVisitor;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramSerializerVisitor;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A low overhead sampling profiler for MiniJava programs executed by a
+ * {@link ProgramExecutorVisitor}. The executor publishes the statement it is
+ * currently executing (see {@link ProgramExecutorVisitor#currentStatement()});
+ * a background thread reads this statement at a fixed rate and counts how often
+ * each statement was seen.<p>
+ *
+ * The MiniJava "stack" of a statement consists of the enclosing while-loops and
+ * the statement itself. These stacks are computed once, before the profiling
+ * starts, so that the sampler only needs to look up the current statement and
+ * increment a counter. The executor itself does not do any additional work
+ * except for two opaque field writes per statement (when the statement is
+ * entered and left); the overhead of profiling can be measured with the
+ * {@link ProfilerBenchmark}.<p>
+ *
+ * The result can be exported in the collapsed stack format (one line per stack,
+ * frames separated by <code>;</code>, followed by the number of samples), which
+ * can be fed directly into flame graph tools.
+ *
+ * <blockquote><code>
+ *   SamplingProfiler profiler = new SamplingProfiler(program, pev, Duration.ofMillis(1));<br>
+ *   profiler.start();<br>
+ *   pev.visit(program);<br>
+ *   profiler.stop();<br>
+ *   System.out.println(profiler.collapsedStacks());
+ * </code></blockquote>
+ */
+public class SamplingProfiler {
+
+    /** Name of the outermost frame of every stack */
+    final public static String ROOT_FRAME = "main";
+
+    /** The executor which is sampled */
+    final private ProgramExecutorVisitor executor;
+
+    /** The time between two samples in nanoseconds */
+    final private long intervalNanos;
+
+    /** The precomputed MiniJava stack of every statement of the program */
+    final private Map<Statement, String> stacks = new IdentityHashMap<>();
+
+    /** The number of samples for each statement; only accessed by the sampler thread while running */
+    final private Map<Statement, long[]> counts = new IdentityHashMap<>();
+
+    /** The number of samples in which no statement of the program was executed */
+    private long idleSamples = 0;
+
+    private volatile boolean running = false;
+
+    private Thread sampler;
+
+    /**
+     * Creates a profiler for the given program, which will be executed by the
+     * given executor.
+     *
+     * @param program the program which is profiled
+     * @param executor the executor which executes the program
+     * @param interval the time between two samples
+     */
+    public SamplingProfiler(@NotNull Statement program, @NotNull ProgramExecutorVisitor executor, @NotNull Duration interval) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("The sampling interval must be positive.");
+        }
+        this.executor = executor;
+        this.intervalNanos = interval.toNanos();
+        computeStacks(program, ROOT_FRAME, new int[] {0});
+    }
+
+    /**
+     * Starts sampling in a background (daemon) thread.
+     */
+    public synchronized void start() {
+        if (sampler != null) {
+            throw new IllegalStateException("Profiler was started already.");
+        }
+        running = true;
+        sampler = new Thread(this::sample, "mini-java-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * Stops sampling and waits until the sampler thread has terminated. After
+     * that, the results can be obtained.
+     */
+    public synchronized void stop() {
+        if (sampler == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(sampler);
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** The sampling loop of the sampler thread */
+    private void sample() {
+        while (running) {
+            Statement current = executor.currentStatement();
+            if (current != null && stacks.containsKey(current)) {
+                counts.computeIfAbsent(current, s -> new long[1])[0]++;
+            } else {
+                idleSamples++;
+            }
+            LockSupport.parkNanos(intervalNanos);
+        }
+    }
+
+    /**
+     * Returns the histogram of the samples: for each MiniJava stack (frames
+     * separated by <code>;</code>) the number of samples taken in that stack.
+     * This must be called only after the profiler was stopped.
+     */
+    public Map<String, Long> histogram() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<Statement, long[]> entry: counts.entrySet()) {
+            result.merge(stacks.get(entry.getKey()), entry.getValue()[0], Long::sum);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of samples taken while no statement of the profiled
+     * program was executed.
+     */
+    public long idleSamples() {
+        return idleSamples;
+    }
+
+    /**
+     * Returns the histogram in the collapsed stack format, which is understood
+     * by flame graph tools: one line per stack with the frames separated by
+     * <code>;</code> and the sample count in the end.
+     */
+    public String collapsedStacks() {
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<String, Long> entry: histogram().entrySet()) {
+            result.append(entry.getKey()).append(' ').append(entry.getValue()).append(System.lineSeparator());
+        }
+        return result.toString();
+    }
+
+    /**
+     * Computes the stacks of the statement and all its substatements. The
+     * counter is used for numbering the statements in the order of their
+     * occurrence, so that different statements with the same text can be
+     * distinguished in the profile.
+     */
+    private void computeStacks(Statement statement, String stack, int[] counter) {
+        if (statement instanceof Sequence sequence) {
+            // a sequence does not have a frame of its own
+            stacks.put(statement, stack);
+            for (Statement substatement: sequence.statements) {
+                computeStacks(substatement, stack, counter);
+            }
+        } else {
+            String frame = stack + ";" + frameName(statement, counter[0]++);
+            stacks.put(statement, frame);
+            if (statement instanceof WhileLoop whileLoop) {
+                computeStacks(whileLoop.statement, frame, counter);
+            }
+        }
+    }
+
+    /** Computes the name of the frame of a statement */
+    private static String frameName(Statement statement, int number) {
+        String name;
+        if (statement instanceof WhileLoop whileLoop) {
+            name = "WhileLoop(" + text(whileLoop.expression) + ")";
+        } else if (statement instanceof Declaration declaration) {
+            name = "Declaration(" + declaration.variable.name + ")";
+        } else if (statement instanceof Assignment assignment) {
+            name = "Assignment(" + assignment.variable.name + ")";
+        } else if (statement instanceof PrintStatement printStatement) {
+            name = "PrintStatement(\"" + printStatement.prefix + "\")";
+        } else {
+            name = statement.getClass().getSimpleName();
+        }
+        // semicolons separate the frames and line breaks the stacks in the collapsed format
+        return name.replace(';', ',').replaceAll("\\R", " ") + "#" + number;
+    }
+
+    /** Serializes an expression for the frame names */
+    private static String text(Expression expression) {
+        ProgramSerializerVisitor serializer = new ProgramSerializerVisitor();
+        expression.accept(serializer);
+        return serializer.result();
+    }
+
+}
@@ -0,0 +1,149 @@
+package dk.dtu.compute.course02324.mini_java.profiling;
+
+import dk.dtu.compute.course02324.mini_java.model.Statement;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramExecutorVisitor;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor;
+import dk.dtu.compute.course02324.mini_java.typed.Frame;
+import dk.dtu.compute.course02324.mini_java.typed.OffHeapVariableStore;
+import dk.dtu.compute.course02324.mini_java.typed.TypedProgram;
+import dk.dtu.compute.course02324.mini_java.typed.VariableStore;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.*;
+
+/**
+ * Compares the footprint of the values of the variables after the run of a
+ * program with very many variables, and the pause of a full garbage
+ * collection while they are alive, for the boxed values of a
+ * {@link ProgramExecutorVisitor} ("boxed"), a store on the heap ("heap") and
+ * an {@link OffHeapVariableStore} ("off-heap"). The heap bytes are the
+ * difference of the used heap after a full collection with and without the
+ * values, as reported by the JVM, so they are estimates; the off-heap bytes
+ * are exact.<p>
+ *
+ * Closing an {@link OffHeapVariableStore} does not free its memory: the
+ * buffer is only freed by its cleaner, after a garbage collection found it
+ * unreachable. So the benchmark does not measure a deterministic release;
+ * instead, it reports the direct memory, which is still reserved right after
+ * the store was closed.
+ */
+public class VariableStoreBenchmark {
+
+    /** The result of a measurement for one kind of store. */
+    public static class Result {
+
+        final public long heapBytes;
+
+        final public long offHeapBytes;
+
+        final public long gcNanos;
+
+        /** The direct memory still reserved right after closing the store; 0 for the stores on the heap */
+        final public long unreleasedBytes;
+
+        Result(long heapBytes, long offHeapBytes, long gcNanos, long unreleasedBytes) {
+            this.heapBytes = heapBytes;
+            this.offHeapBytes = offHeapBytes;
+            this.gcNanos = gcNanos;
+            this.unreleasedBytes = unreleasedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("heap: %,d bytes, off-heap: %,d bytes, full gc: %,d ns, unreleased after close: %,d bytes",
+                    heapBytes, offHeapBytes, gcNanos, unreleasedBytes);
+        }
+
+    }
+
+    final private static PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    private VariableStoreBenchmark() {
+    }
+
+    /** Returns a program declaring the given number of int and float variables. */
+    static Statement program(int variables) {
+        Statement[] declarations = new Statement[variables];
+        for (int i = 0; i < variables; i++) {
+            declarations[i] = i % 2 == 0 ?
+                    Declaration(INT, Var("v" + i), Literal(i)) :
+                    Declaration(FLOAT, Var("v" + i), Literal(i + 0.5f));
+        }
+        return Sequence(declarations);
+    }
+
+    /**
+     * Runs a program with the given number of variables with each kind of
+     * store, and measures the footprint of the values and the best pause of
+     * a full collection over the given number of runs.
+     */
+    public static Map<String, Result> measure(int variables, int runs) {
+        if (variables <= 0 || runs <= 0) {
+            throw new IllegalArgumentException("The number of variables and runs must be positive.");
+        }
+        Statement program = program(variables);
+        ProgramTypeVisitor ptv = new ProgramTypeVisitor();
+        ptv.visit(program);
+        TypedProgram typed = ptv.lower(program);
+
+        Map<String, Result> results = new LinkedHashMap<>();
+        results.put("boxed", measure(() -> {
+            ProgramExecutorVisitor pev = new ProgramExecutorVisitor(ptv);
+            pev.visit(program);
+            return pev.values;
+        }, 0, runs));
+        results.put("heap", measure(() -> execute(typed, typed.newStore()), 0, runs));
+        long direct = directBytes();
+        Result offHeap;
+        try (OffHeapVariableStore store = typed.newOffHeapStore()) {
+            offHeap = measure(() -> execute(typed, store), store.byteSize(), runs);
+        }
+        long unreleased = Math.max(0, directBytes() - direct);
+        results.put("off-heap", new Result(offHeap.heapBytes, offHeap.offHeapBytes, offHeap.gcNanos, unreleased));
+        return results;
+    }
+
+    private static VariableStore execute(TypedProgram program, VariableStore store) {
+        program.execute(new Frame(store, DISCARD));
+        return store;
+    }
+
+    private static Result measure(Supplier<Object> run, long offHeapBytes, int runs) {
+        long before = usedHeap();
+        Object values = run.get();
+        long heapBytes = Math.max(0, usedHeap() - before);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            System.gc();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        Reference.reachabilityFence(values);
+        return new Result(heapBytes, offHeapBytes, best, 0);
+    }
+
+    /** Returns the used heap after a full collection. */
+    static long usedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /** Returns the memory used by the direct buffers of the JVM. */
+    static long directBytes() {
+        for (BufferPoolMXBean pool: ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,170 @@
+package dk.dtu.compute.course02324.mini_java.semantics;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static dk.dtu.compute.course02324.mini_java.semantics.BinaryProgramWriter.*;
+
+/**
+ * Reads MiniJava statements written by a {@link BinaryProgramWriter}. The
+ * top-level statements are read one at a time, so that a program can be
+ * processed while it is being read, without ever holding all of it in
+ * memory.
+ */
+public class BinaryProgramReader {
+
+    final private DataInputStream in;
+
+    final private Type[] types;
+
+    /** Creates a reader on the given stream and checks the magic number. */
+    public BinaryProgramReader(@NotNull InputStream in) throws IOException {
+        this.in = in instanceof DataInputStream dataIn ? dataIn : new DataInputStream(in);
+        if (this.in.readInt() != MAGIC) {
+            throw new IOException("Not a binary MiniJava program.");
+        }
+        TypeKeyword[] keywords = TypeKeyword.values();
+        types = new Type[keywords.length];
+        for (int i = 0; i < keywords.length; i++) {
+            types[i] = new PrimitiveType(keywords[i]);
+        }
+    }
+
+    /** Reads the next top-level statement, or returns <code>null</code> at the end of the stream. */
+    public Statement read() throws IOException {
+        int tag = in.read();
+        if (tag < 0) {
+            return null;
+        }
+        return statement(tag);
+    }
+
+    /**
+     * Returns the top-level statements of a stream as an iterator, which reads
+     * a statement only when it is asked for. Errors while reading are thrown
+     * as {@link UncheckedIOException}s.
+     */
+    public static Iterator<Statement> statements(@NotNull InputStream in) throws IOException {
+        BinaryProgramReader reader = new BinaryProgramReader(in);
+        return new Iterator<>() {
+
+            private Statement next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = reader.read();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Statement next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Statement result = next;
+                next = null;
+                return result;
+            }
+        };
+    }
+
+    private Statement statement(int tag) throws IOException {
+        switch (tag) {
+            case SEQUENCE -> {
+                int size = in.readInt();
+                if (size < 0) {
+                    throw new IOException("Malformed sequence of size " + size + ".");
+                }
+                // the size is not trusted: the list only grows with the statements actually read
+                List<Statement> statements = new ArrayList<>(Math.min(size, 16));
+                for (int i = 0; i < size; i++) {
+                    statements.add(statement(in.readUnsignedByte()));
+                }
+                return new Sequence(statements.toArray(new Statement[0]));
+            }
+            case DECLARATION -> {
+                Type type = type(in.readUnsignedByte());
+                Var variable = new Var(in.readUTF());
+                Expression expression = optional();
+                return expression != null ?
+                        new Declaration(type, variable, expression) : new Declaration(type, variable);
+            }
+            case PRINT -> {
+                String prefix = in.readUTF();
+                Expression expression = optional();
+                if (expression == null) {
+                    throw new IOException("Malformed print statement without an expression.");
+                }
+                return new PrintStatement(prefix, expression);
+            }
+            case WHILE -> {
+                Expression expression = expression(in.readUnsignedByte());
+                return new WhileLoop(expression, statement(in.readUnsignedByte()));
+            }
+            case ASSIGNMENT -> {
+                return assignment();
+            }
+            default -> throw new IOException("Unexpected tag " + tag + " for a statement.");
+        }
+    }
+
+    private Expression expression(int tag) throws IOException {
+        switch (tag) {
+            case ASSIGNMENT -> {
+                return assignment();
+            }
+            case INT_LITERAL -> {
+                return new IntLiteral(in.readInt());
+            }
+            case FLOAT_LITERAL -> {
+                return new FloatLiteral(in.readFloat());
+            }
+            case VAR -> {
+                return new Var(in.readUTF());
+            }
+            case OPERATOR -> {
+                Operator[] operators = Operator.values();
+                int ordinal = in.readUnsignedByte();
+                if (ordinal >= operators.length) {
+                    throw new IOException("Unknown operator " + ordinal + ".");
+                }
+                Operator operator = operators[ordinal];
+                Expression[] operands = new Expression[operator.arity];
+                for (int i = 0; i < operands.length; i++) {
+                    operands[i] = expression(in.readUnsignedByte());
+                }
+                return new OperatorExpression(operator, operands);
+            }
+            default -> throw new IOException("Unexpected tag " + tag + " for an expression.");
+        }
+    }
+
+    private Assignment assignment() throws IOException {
+        Var variable = new Var(in.readUTF());
+        return new Assignment(variable, expression(in.readUnsignedByte()));
+    }
+
+    private Expression optional() throws IOException {
+        return in.readBoolean() ? expression(in.readUnsignedByte()) : null;
+    }
+
+    private Type type(int ordinal) throws IOException {
+        if (ordinal >= types.length) {
+            throw new IOException("Unknown type " + ordinal + ".");
+        }
+        return types[ordinal];
+    }
+
+}
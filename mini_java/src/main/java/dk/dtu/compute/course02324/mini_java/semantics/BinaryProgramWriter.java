@@ -0,0 +1,177 @@
+package dk.dtu.compute.course02324.mini_java.semantics;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+
+/**
+ * Writes MiniJava statements in a compact binary format, which can be read
+ * back with a {@link BinaryProgramReader}. A stream starts with a
+ * {@link #MAGIC} number, followed by any number of top-level statements, so
+ * that a program can be written and read one statement at a time. Each node
+ * is written in prefix order as a tag byte followed by its attributes and its
+ * children.<p>
+ *
+ * Counted and closed-form loops are written as the while-loops they were
+ * derived from (the closed-form loops retain their original body), since they
+ * are results of optimizations and not part of the source language.
+ */
+public class BinaryProgramWriter extends ProgramVisitor {
+
+    /** The first four bytes of a stream: "MJB" and the version of the format */
+    final public static int MAGIC = 0x4D4A4201;
+
+    final static byte SEQUENCE = 1;
+    final static byte DECLARATION = 2;
+    final static byte PRINT = 3;
+    final static byte WHILE = 4;
+    final static byte ASSIGNMENT = 5;
+    final static byte INT_LITERAL = 6;
+    final static byte FLOAT_LITERAL = 7;
+    final static byte VAR = 8;
+    final static byte OPERATOR = 9;
+
+    final private DataOutputStream out;
+
+    /** Creates a writer on the given stream and writes the magic number. */
+    public BinaryProgramWriter(@NotNull OutputStream out) throws IOException {
+        this.out = out instanceof DataOutputStream dataOut ? dataOut : new DataOutputStream(out);
+        this.out.writeInt(MAGIC);
+    }
+
+    /** Writes a top-level statement. */
+    public void write(@NotNull Statement statement) throws IOException {
+        try {
+            statement.accept(this);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /** Returns the binary representation of a program as a single top-level statement. */
+    public static byte[] toBytes(@NotNull Statement statement) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            BinaryProgramWriter writer = new BinaryProgramWriter(bytes);
+            writer.write(statement);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public void visit(Sequence sequence) {
+        tag(SEQUENCE);
+        writeInt(sequence.statements.size());
+        for (Statement statement: sequence.statements) {
+            statement.accept(this);
+        }
+    }
+
+    @Override
+    public void visit(Declaration declaration) {
+        tag(DECLARATION);
+        if (!(declaration.type instanceof PrimitiveType primitiveType)) {
+            throw new IllegalArgumentException("Type can not be written: " + declaration.type.getName());
+        }
+        tag((byte) primitiveType.primitiveType.ordinal());
+        writeName(declaration.variable);
+        optional(declaration.expression);
+    }
+
+    @Override
+    public void visit(PrintStatement printStatement) {
+        tag(PRINT);
+        try {
+            out.writeUTF(printStatement.prefix);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        optional(printStatement.expression);
+    }
+
+    @Override
+    public void visit(WhileLoop whileLoop) {
+        tag(WHILE);
+        whileLoop.expression.accept(this);
+        whileLoop.statement.accept(this);
+    }
+
+    @Override
+    public void visit(Assignment assignment) {
+        tag(ASSIGNMENT);
+        writeName(assignment.variable);
+        assignment.expression.accept(this);
+    }
+
+    @Override
+    public void visit(Literal literal) {
+        try {
+            if (literal instanceof IntLiteral intLiteral) {
+                out.writeByte(INT_LITERAL);
+                out.writeInt(intLiteral.literal);
+            } else if (literal instanceof FloatLiteral floatLiteral) {
+                out.writeByte(FLOAT_LITERAL);
+                out.writeFloat(floatLiteral.literal);
+            } else {
+                throw new IllegalArgumentException("Literal can not be written: " + literal);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void visit(Var var) {
+        tag(VAR);
+        writeName(var);
+    }
+
+    @Override
+    public void visit(OperatorExpression operatorExpression) {
+        tag(OPERATOR);
+        tag((byte) operatorExpression.operator.ordinal());
+        for (Expression operand: operatorExpression.operands) {
+            operand.accept(this);
+        }
+    }
+
+    private void optional(Expression expression) {
+        tag((byte) (expression != null ? 1 : 0));
+        if (expression != null) {
+            expression.accept(this);
+        }
+    }
+
+    private void tag(byte tag) {
+        try {
+            out.writeByte(tag);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeInt(int value) {
+        try {
+            out.writeInt(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeName(Var var) {
+        try {
+            out.writeUTF(var.name);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
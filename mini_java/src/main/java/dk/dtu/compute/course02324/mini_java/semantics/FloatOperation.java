@@ -0,0 +1,12 @@
+package dk.dtu.compute.course02324.mini_java.semantics;
+
+/**
+ * The implementation of an operator on floats. Unary operators ignore their
+ * second operand.
+ */
+@FunctionalInterface
+public interface FloatOperation {
+
+    float apply(float a, float b);
+
+}
@@ -0,0 +1,115 @@
+package dk.dtu.compute.course02324.mini_java.semantics;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import org.jetbrains.annotations.NotNull;
+
+import static dk.dtu.compute.course02324.mini_java.model.Operator.*;
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.FLOAT;
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.INT;
+
+/**
+ * The signatures of all operators of MiniJava: for each operator and operand
+ * type, the type of the result and the implementation of the operator. All
+ * operands of an operator have the same type. The type checker, the executors
+ * and the optimizations all use this registry, so that they can not disagree
+ * on which operators are supported for which types.<p>
+ *
+ * The signatures are kept in flat arrays indexed by the ordinals of the
+ * {@link Operator} and of the {@link TypeKeyword} of the operand type, so that
+ * looking up a signature is a constant time array access. Adding a signature
+ * is a single line in the static initializer below.
+ */
+public final class OperatorRegistry {
+
+    final private static int OPERATORS = Operator.values().length;
+
+    final private static int TYPES = TypeKeyword.values().length;
+
+    /** The result type by the ordinals of the operator and the operand type, or <code>null</code> */
+    final private static Type[] RESULT_TYPES = new Type[OPERATORS * TYPES];
+
+    /** The implementations on ints by the ordinal of the operator, or <code>null</code> */
+    final private static IntOperation[] INT_OPERATIONS = new IntOperation[OPERATORS];
+
+    /** The implementations on floats by the ordinal of the operator, or <code>null</code> */
+    final private static FloatOperation[] FLOAT_OPERATIONS = new FloatOperation[OPERATORS];
+
+    static {
+        intSignature(PLUS1, (a, b) -> +a);
+        intSignature(MINUS1, (a, b) -> -a);
+        intSignature(PLUS2, (a, b) -> a + b);
+        intSignature(MINUS2, (a, b) -> a - b);
+        intSignature(MULT, (a, b) -> a * b);
+        intSignature(DIV, (a, b) -> a / b);
+        intSignature(MOD, (a, b) -> a % b);
+
+        floatSignature(PLUS1, (a, b) -> +a);
+        floatSignature(MINUS1, (a, b) -> -a);
+        floatSignature(PLUS2, (a, b) -> a + b);
+        floatSignature(MINUS2, (a, b) -> a - b);
+        floatSignature(MULT, (a, b) -> a * b);
+        floatSignature(DIV, (a, b) -> a / b);
+    }
+
+    private OperatorRegistry() {
+    }
+
+    private static void intSignature(Operator operator, IntOperation operation) {
+        RESULT_TYPES[index(operator, TypeKeyword.INT)] = INT;
+        INT_OPERATIONS[operator.ordinal()] = operation;
+    }
+
+    private static void floatSignature(Operator operator, FloatOperation operation) {
+        RESULT_TYPES[index(operator, TypeKeyword.FLOAT)] = FLOAT;
+        FLOAT_OPERATIONS[operator.ordinal()] = operation;
+    }
+
+    private static int index(Operator operator, TypeKeyword type) {
+        return operator.ordinal() * TYPES + type.ordinal();
+    }
+
+    /**
+     * Returns the type of the result of an operator applied to operands of
+     * the given type, or <code>null</code> if the operator does not support
+     * this type.
+     */
+    public static Type resultType(@NotNull Operator operator, Type operandType) {
+        if (operandType instanceof PrimitiveType primitiveType) {
+            return RESULT_TYPES[index(operator, primitiveType.primitiveType)];
+        }
+        return null;
+    }
+
+    /** Returns whether an operator supports operands of the given type. */
+    public static boolean supports(@NotNull Operator operator, Type operandType) {
+        return resultType(operator, operandType) != null;
+    }
+
+    /** Returns the implementation of an operator on ints, or <code>null</code> if there is none. */
+    public static IntOperation intOperation(@NotNull Operator operator) {
+        return INT_OPERATIONS[operator.ordinal()];
+    }
+
+    /** Returns the implementation of an operator on floats, or <code>null</code> if there is none. */
+    public static FloatOperation floatOperation(@NotNull Operator operator) {
+        return FLOAT_OPERATIONS[operator.ordinal()];
+    }
+
+    /**
+     * Applies an operator to boxed operands of the given type; for a unary
+     * operator, the second operand is <code>null</code>. Integer division by
+     * zero throws an {@link ArithmeticException}, as in Java.
+     *
+     * @throws RuntimeException if the operator does not support the type
+     */
+    public static Number apply(@NotNull Operator operator, Type operandType, @NotNull Number a, Number b) {
+        Type type = resultType(operator, operandType);
+        if (INT.equals(type)) {
+            return INT_OPERATIONS[operator.ordinal()].apply(a.intValue(), b != null ? b.intValue() : 0);
+        } else if (FLOAT.equals(type)) {
+            return FLOAT_OPERATIONS[operator.ordinal()].apply(a.floatValue(), b != null ? b.floatValue() : 0);
+        }
+        throw new RuntimeException("No function of this type available");
+    }
+
+}
@@ -3,16 +3,11 @@ package dk.dtu.compute.course02324.mini_java.semantics;
 
 import dk.dtu.compute.course02324.mini_java.model.*;
 
-import java.util.ArrayList;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
 
-import static dk.dtu.compute.course02324.mini_java.model.Operator.*;
-import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.FLOAT;
-import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.INT;
-import static java.util.Map.entry;
 /**
  * This class is responsible for executing a MiniJava program by visiting various nodes
  * (for example, statements, expressions, and declarations) in the program's abstract syntax tree and executing their meaning or behavior.
@@ -21,125 +16,65 @@ import static java.util.Map.entry;
 
 public class ProgramExecutorVisitor extends ProgramVisitor {
 
-    /** Type visitor to look up types for expressions */
-    final private ProgramTypeVisitor pv;
-
     /** Stores computed values for expressions and variables */
     final public Map<Expression, Number> values = new HashMap<>();
 
-    /** Adds two integers */
-    private final Function<List<Number>,Number> plus2int =
-            args -> { int arg1 = args.get(0).intValue();
-                int arg2 = args.get(1).intValue();
-                return arg1 + arg2; };
-
-    /** Adds two floats */
-    private final Function<List<Number>,Number> plus2float =
-            args -> { float arg1 = args.get(0).floatValue();
-                float arg2 = args.get(1).floatValue();
-                return arg1 + arg2; };
-
-    /** Unary plus for int */
-    private final Function<List<Number>, Number> plus1int =
-            args -> +args.get(0).intValue();
-
-    /** Unary plus for float */
-    private final Function<List<Number>, Number> plus1float =
-            args -> +args.get(0).floatValue();
-
-    /** Subtracts two floats */
-    private final Function<List<Number>,Number> minus2float =
-            args -> { float arg1 = args.get(0).floatValue();
-                float arg2 = args.get(1).floatValue();
-                return arg1 - arg2; };
-
-    /** Subtracts two ints */
-    private final Function<List<Number>,Number> minus2int =
-            args -> {
-                int arg1 = args.get(0).intValue();
-                int arg2 = args.get(1).intValue();
-                return arg1 - arg2;
-            };
-
-    /** Multiplies two floats */
-    private final Function<List<Number>,Number> multfloat =
-            args -> { float arg1 = args.get(0).floatValue();
-                float arg2 = args.get(1).floatValue();
-                return arg1 * arg2; };
-
-    /** Unary minus for float */
-    private final Function<List<Number>,Number> minus1float =
-            args -> -args.get(0).floatValue();
-
-    /** Unary minus for int */
-    private final Function<List<Number>,Number> minus1int =
-            args -> -args.get(0).intValue();
-
-    /** Integer division */
-    private final Function<List<Number>,Number> DivInt =
-            args -> { int arg1 = args.get(0).intValue();
-                int arg2 = args.get(1).intValue();
-                return arg1 / arg2; };
-
-    /** Float division */
-    private final Function<List<Number>,Number> DivFloat =
-            args -> { float arg1 = args.get(0).floatValue();
-                float arg2 = args.get(1).floatValue();
-                return arg1 / arg2; };
-
-    /** Integer modulo */
-    private final Function<List<Number>,Number> ModInt =
-            args -> { int arg1 = args.get(0).intValue();
-                int arg2 = args.get(1).intValue();
-                return arg1 % arg2; };
-
-    /** Multiplies two ints */
-    private final Function<List<Number>, Number> multint =
-            args -> {
-                int arg1 = args.get(0).intValue();
-                int arg2 = args.get(1).intValue();
-                return arg1 * arg2;
-            };
-
-    /** Maps operators and types to the matching arithmetic function */
-    final private Map<Operator, Map<Type, Function<List<Number>,Number>>> operatorFunctions = Map.ofEntries(
-            entry(PLUS2, Map.ofEntries(
-                    entry(INT, plus2int ),
-                    entry(FLOAT, plus2float ) )
-            ),
-            entry(PLUS1, Map.ofEntries(
-                    entry(INT, plus1int ),
-                    entry(FLOAT, plus1float ) )
-            ),
-            entry(MINUS2, Map.ofEntries(
-                    entry(FLOAT, minus2float),
-                    entry(INT, minus2int) )
-            ),
-            entry(MULT, Map.ofEntries(
-                    entry(FLOAT, multfloat ),
-                    entry(INT, multint)
-            )),
-            entry (MINUS1, Map.ofEntries(
-                    entry(FLOAT, minus1float),
-                    entry(INT, minus1int))
-            ),
-            entry(DIV, Map.ofEntries(
-                    entry(FLOAT, DivFloat),
-                    entry(INT, DivInt))
-            ),
-            entry(MOD, Map.ofEntries(
-                    entry(INT, ModInt)
-            ))
-    );
-
-    /** Constructor initializes type visitor */
+    /**
+     * The statement which is currently executed. It is written with opaque
+     * access only (which costs about as much as a plain field write), so that
+     * a sampling profiler running in another thread can observe it without
+     * slowing down the execution.
+     */
+    private Statement currentStatement;
+
+    /** Handle for the opaque access to {@link #currentStatement} */
+    private static final VarHandle CURRENT_STATEMENT;
+
+    static {
+        try {
+            CURRENT_STATEMENT = MethodHandles.lookup().findVarHandle(
+                    ProgramExecutorVisitor.class, "currentStatement", Statement.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Creates an executor for a program checked by the given type visitor.
+     * The types are not looked up anymore, since the int or float
+     * implementation of an operator is chosen by the values of its operands;
+     * the parameter is kept for the existing callers.
+     */
     public ProgramExecutorVisitor(ProgramTypeVisitor pv) {
-        this.pv = pv;
     }
 
-    /** Evaluates a statement node */
+    /**
+     * Returns the statement which is currently executed, or <code>null</code>
+     * if no statement is executed. This may be called from any thread; the
+     * result might be slightly out of date, which is fine for sampling.
+     */
+    public Statement currentStatement() {
+        return (Statement) CURRENT_STATEMENT.getOpaque(this);
+    }
+
+    /** Publishes the statement which is about to be executed */
+    protected void publish(Statement statement) {
+        CURRENT_STATEMENT.setOpaque(this, statement);
+    }
+
+    /**
+     * Evaluates a statement node. While it is executed, it is the current
+     * statement; afterwards, the enclosing statement is again (and when the
+     * program is finished, there is no current statement anymore).
+     */
     public void visit(Statement statement) {
-        statement.accept(this);
+        Statement enclosing = currentStatement;
+        publish(statement);
+        try {
+            statement.accept(this);
+        } finally {
+            publish(enclosing);
+        }
     }
 
     /** Evaluates a sequence of statements */
@@ -174,12 +109,53 @@ public class ProgramExecutorVisitor extends ProgramVisitor {
         whileLoop.expression.accept(this);
         Number value = values.get(whileLoop.expression);
         while (value != null && value.doubleValue() >= 0) {
-            whileLoop.statement.accept(this);
+            visit(whileLoop.statement);
+            publish(whileLoop);
             whileLoop.expression.accept(this);
             value = values.get(whileLoop.expression);
         }
     }
 
+    /** Executes a counted loop without re-evaluating its condition after each iteration */
+    @Override
+    public void visit(CountedLoop countedLoop) {
+        countedLoop.expression.accept(this);
+        Number value = values.get(countedLoop.expression);
+        if (value == null) {
+            return;
+        }
+        long trips = countedLoop.tripCount(value.intValue());
+        for (long trip = 0; trip < trips; trip++) {
+            visit(countedLoop.statement);
+        }
+    }
+
+    /** Executes a closed-form loop by computing the effect of all iterations at once */
+    @Override
+    public void visit(ClosedFormLoop closedFormLoop) {
+        closedFormLoop.expression.accept(this);
+        Number value = values.get(closedFormLoop.expression);
+        if (value == null) {
+            return;
+        }
+        int entryValue = value.intValue();
+        long trips = closedFormLoop.tripCount(entryValue);
+        if (trips == 0) {
+            return;
+        }
+        for (ClosedFormLoop.Accumulation accumulation: closedFormLoop.accumulations) {
+            Number target = values.get(accumulation.target);
+            Number invariant = accumulation.invariant != null ? values.get(accumulation.invariant) : null;
+            if (target == null || (accumulation.term == ClosedFormLoop.Term.INVARIANT && invariant == null)) {
+                throw new RuntimeException("Value of subexpression does not exist");
+            }
+            int term = accumulation.term == ClosedFormLoop.Term.INVARIANT ? invariant.intValue() : accumulation.constant;
+            int sum = closedFormLoop.sum(accumulation.term, term, trips, entryValue);
+            values.put(accumulation.target, accumulation.negated ? target.intValue() - sum : target.intValue() + sum);
+        }
+        values.put(closedFormLoop.variable, entryValue - (int) trips * closedFormLoop.step);
+    }
+
     /** Evaluates an assignment expression */
     @Override
     public void visit(Assignment assignment) {
@@ -205,32 +181,41 @@ public class ProgramExecutorVisitor extends ProgramVisitor {
         // No action needed; variable's value is already stored
     }
 
-    /** Evaluates an operator expression */
+    /**
+     * Evaluates an operator expression. Since all operands of an operator have
+     * the same type, the implementation is picked by the runtime class of the
+     * first operand and applied to the unboxed values, without looking up the
+     * type of the expression.
+     */
     @Override
     public void visit(OperatorExpression operatorExpression) {
-        Type type = pv.typeMapping.get(operatorExpression);
-        Map<Type,Function<List<Number>,Number>> typeMap = operatorFunctions.get(operatorExpression.operator);
-
-        Function<List<Number>,Number> function = null;
-        if (typeMap != null && type!= null ) {
-            function = typeMap.get(type);
-        }
-
-        if (function == null) {
-            throw new RuntimeException("No function of this type available");
-        }
-
-        List<Number> args = new ArrayList<>();
-        for (Expression subexpression: operatorExpression.operands ) {
+        Number[] args = new Number[2];
+        for (int i = 0; i < operatorExpression.operands.size(); i++) {
+            Expression subexpression = operatorExpression.operands.get(i);
             subexpression.accept(this);
             Number arg = values.get(subexpression);
             if (arg == null) {
                 throw new RuntimeException("Value of subexpression does not exist");
             }
-            args.add(arg);
+            args[i] = arg;
         }
 
-        Number result = function.apply(args);
+        Number result;
+        if (args[0] instanceof Integer a) {
+            IntOperation operation = OperatorRegistry.intOperation(operatorExpression.operator);
+            if (operation == null || (args[1] != null && !(args[1] instanceof Integer))) {
+                throw new RuntimeException("No function of this type available");
+            }
+            result = operation.apply(a, args[1] != null ? args[1].intValue() : 0);
+        } else if (args[0] instanceof Float a) {
+            FloatOperation operation = OperatorRegistry.floatOperation(operatorExpression.operator);
+            if (operation == null || (args[1] != null && !(args[1] instanceof Float))) {
+                throw new RuntimeException("No function of this type available");
+            }
+            result = operation.apply(a, args[1] != null ? args[1].floatValue() : 0);
+        } else {
+            throw new RuntimeException("No function of this type available");
+        }
         values.put(operatorExpression, result);
     }
 
@@ -132,19 +132,7 @@ public class ProgramSerializerVisitor extends ProgramVisitor  {
 
     /** Serializes a single operand considering operator precedence */
     private void operandToString(Operator operator, Expression expression, int number) {
-        if (expression instanceof OperatorExpression) {
-            OperatorExpression operatorExpression = (OperatorExpression) expression;
-            if (operatorExpression.operator.precedence > operator.precedence ||
-                    (operatorExpression.operator.precedence == operator.precedence &&
-                            ((operator.associativity == Associativity.LtR && number == 0) ||
-                                    (operator.associativity == Associativity.RtL && number == 1)))) {
-                expression.accept(this);
-            } else {
-                result.append("( ");
-                expression.accept(this);
-                result.append(" )");
-            }
-        } else if (expression instanceof Assignment) {
+        if (needsParentheses(operator, expression, number)) {
             result.append("( ");
             expression.accept(this);
             result.append(" )");
@@ -153,6 +141,22 @@ public class ProgramSerializerVisitor extends ProgramVisitor  {
         }
     }
 
+    /**
+     * Returns whether the operand with the given number (0 for the left, 1 for
+     * the right one) of an operator must be put in parentheses, because of
+     * the precedence and associativity of the operators, or because it is an
+     * assignment.
+     */
+    public static boolean needsParentheses(Operator operator, Expression expression, int number) {
+        if (expression instanceof OperatorExpression operatorExpression) {
+            return !(operatorExpression.operator.precedence > operator.precedence ||
+                    (operatorExpression.operator.precedence == operator.precedence &&
+                            ((operator.associativity == Associativity.LtR && number == 0) ||
+                                    (operator.associativity == Associativity.RtL && number == 1))));
+        }
+        return expression instanceof Assignment;
+    }
+
     /** Returns the complete serialized program as a string */
     public String result() {
         return result.toString();
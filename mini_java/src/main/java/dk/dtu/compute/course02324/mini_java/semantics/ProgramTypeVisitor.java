@@ -1,12 +1,11 @@
 package dk.dtu.compute.course02324.mini_java.semantics;
 
 import dk.dtu.compute.course02324.mini_java.model.*;
-import static dk.dtu.compute.course02324.mini_java.model.Operator.*;
+import dk.dtu.compute.course02324.mini_java.typed.TypedLowering;
+import dk.dtu.compute.course02324.mini_java.typed.TypedProgram;
 import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.*;
 
 import java.util.*;
-
-import static java.util.Map.entry;
 /**
  * The ProgramTypeVisitor class is responsible for checking if a MiniJava program is correct
  * when it comes to "types". It looks at the different elements
@@ -22,26 +21,10 @@ import static java.util.Map.entry;
 public class ProgramTypeVisitor extends ProgramVisitor {
 
     /**
-     * This is a very simple map of operators to their possible types.
-     * Note the typing of an operator is very simplistic for now; the
-     * types of all operands and the result of the operation are the same.<p>
-     *
-     * TODO Assignment 6a: This map does contain only some few examples of types
-     *      on which the operators should work. In Assignment 6a, this list must
-     *      be complete for all (primmitive) types of Mini Java on which these
-     *      operators make sense.
+     * Stores the resolved type for each expression. This map is filled while
+     * checking; backends should use the typed tree produced by {@link #lower(Statement)},
+     * whose nodes carry their types, so that they need not look them up here.
      */
-    /** Supported types for each operator. */
-    final private Map<Operator,List<Type>> operatorTypes = Map.ofEntries(
-            entry(PLUS2, List.of(INT, FLOAT)),
-            entry(MINUS2, List.of(INT, FLOAT)),
-            entry(MULT, List.of(INT, FLOAT)),
-            entry(MOD, List.of(INT)),
-            entry(PLUS1, List.of(INT, FLOAT)),
-            entry(MINUS1, List.of(INT, FLOAT)),
-            entry(DIV, List.of(INT, FLOAT)));
-
-    /** Stores the resolved type for each expression. */
     final public Map<Expression, Type> typeMapping = new HashMap<>();
 
     /** Stores all declared variables. */
@@ -55,6 +38,18 @@ public class ProgramTypeVisitor extends ProgramVisitor {
         statement.accept(this);
     }
 
+    /**
+     * Lowers a statement, which was checked by this visitor without problems,
+     * into an immutable typed tree, whose nodes carry their resolved types,
+     * operator implementations and variable slots.
+     */
+    public TypedProgram lower(Statement statement) {
+        if (!problems.isEmpty()) {
+            throw new IllegalArgumentException("Only programs without type problems can be lowered.");
+        }
+        return TypedLowering.lower(statement, typeMapping);
+    }
+
     /** Visits a sequence of statements. */
     @Override
     public void visit(Sequence sequence) {
@@ -156,9 +151,9 @@ public class ProgramTypeVisitor extends ProgramVisitor {
             }
         }
         if (operandType != null) {
-            List<Type> opTypes = operatorTypes.get(operatorExpression.operator);
-            if (opTypes != null && opTypes.contains(operandType)) {
-                typeMapping.put(operatorExpression, operandType);
+            Type resultType = OperatorRegistry.resultType(operatorExpression.operator, operandType);
+            if (resultType != null) {
+                typeMapping.put(operatorExpression, resultType);
             } else {
                 problems.add("Operator does not support the type of its operands. Operator is " + operatorExpression.operator + " and operand type is " + operandType);
             }
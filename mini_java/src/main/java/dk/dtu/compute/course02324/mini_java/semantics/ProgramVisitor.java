@@ -15,6 +15,16 @@ public abstract class ProgramVisitor {
     /** Visits a while-loop statement. */
     abstract public void visit(WhileLoop whileLoop);
 
+    /** Visits a counted loop; unless overridden, like any other while-loop. */
+    public void visit(CountedLoop countedLoop) {
+        visit((WhileLoop) countedLoop);
+    }
+
+    /** Visits a closed-form loop; unless overridden, like any other counted loop. */
+    public void visit(ClosedFormLoop closedFormLoop) {
+        visit((CountedLoop) closedFormLoop);
+    }
+
     /** Visits an assignment statement. */
     abstract public void visit(Assignment assignment);
 
@@ -0,0 +1,190 @@
+package dk.dtu.compute.course02324.mini_java.semantics;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Interns the variable names of a program into dense int ids, numbered from 0
+ * in the order in which the names are interned, so that analyses and backends
+ * can keep information on variables in arrays indexed by id instead of maps.<p>
+ *
+ * Each id is represented by a {@link Symbol}. The {@link Var} nodes interned
+ * with {@link #intern(Var)} are kept in an identity side table, so that later
+ * lookups of the same node do not hash its name; the nodes themselves are not changed, so the same
+ * program can be resolved by several tables. Lookups never change the table,
+ * so a table, which is not interned into any more, can be shared by
+ * concurrent readers.
+ */
+public class SymbolTable {
+
+    /** The id of a variable name in a symbol table. */
+    public static final class Symbol {
+
+        final public SymbolTable table;
+
+        final public int id;
+
+        final public String name;
+
+        private Symbol(SymbolTable table, int id, String name) {
+            this.table = table;
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name + "#" + id;
+        }
+
+    }
+
+    final private Map<String, Symbol> symbols = new HashMap<>();
+
+    /** The symbol of each interned variable node, by identity */
+    final private Map<Var, Symbol> resolved = new IdentityHashMap<>();
+
+    /** The symbol of each id */
+    final private List<Symbol> byId = new ArrayList<>();
+
+    /** The first variable node interned for each id */
+    final private List<Var> variables = new ArrayList<>();
+
+    /** Returns a table with the variables of a statement interned in the order they occur. */
+    public static SymbolTable of(@NotNull Statement statement) {
+        SymbolTable table = new SymbolTable();
+        table.resolve(statement);
+        return table;
+    }
+
+    /** Interns all variables of a statement, in the order they occur. */
+    public void resolve(@NotNull Statement statement) {
+        statement.accept(new Resolver());
+    }
+
+    /**
+     * Returns the id of a variable, which is created if its name was not
+     * interned yet, and records the node in the identity side table.
+     */
+    public int intern(@NotNull Var var) {
+        Symbol symbol = resolved.get(var);
+        if (symbol == null) {
+            symbol = byId.get(internName(var));
+            resolved.put(var, symbol);
+        }
+        return symbol.id;
+    }
+
+    /**
+     * Returns the id of a variable, which is created if its name was not
+     * interned yet, without recording the node in the identity side table.
+     * This is for callers, which see each node only once and must not keep
+     * it, like the lowering of a stream of statements; only the first node
+     * of each name is kept.
+     */
+    public int internName(@NotNull Var var) {
+        Symbol symbol = symbols.get(var.name);
+        if (symbol == null) {
+            symbol = new Symbol(this, byId.size(), var.name);
+            symbols.put(var.name, symbol);
+            byId.add(symbol);
+            variables.add(var);
+        }
+        return symbol.id;
+    }
+
+    /** Returns the id of a variable, or -1 if its name was not interned. */
+    public int id(@NotNull Var var) {
+        Symbol symbol = resolved.get(var);
+        if (symbol == null) {
+            symbol = symbols.get(var.name);
+        }
+        return symbol != null ? symbol.id : -1;
+    }
+
+    /** Returns the number of interned names, which is the next id. */
+    public int size() {
+        return byId.size();
+    }
+
+    public Symbol symbol(int id) {
+        return byId.get(id);
+    }
+
+    /** Returns the first variable node interned with the given id. */
+    public Var variable(int id) {
+        return variables.get(id);
+    }
+
+    /** Returns the first variable node of each id, in the order of the ids. */
+    public List<Var> variables() {
+        return Collections.unmodifiableList(variables);
+    }
+
+    /** Interns the variables in the order in which they occur in the statement. */
+    private class Resolver extends ProgramVisitor {
+
+        @Override
+        public void visit(Sequence sequence) {
+            for (Statement statement: sequence.statements) {
+                statement.accept(this);
+            }
+        }
+
+        @Override
+        public void visit(Declaration declaration) {
+            if (declaration.expression != null) {
+                declaration.expression.accept(this);
+            }
+            intern(declaration.variable);
+        }
+
+        @Override
+        public void visit(PrintStatement printStatement) {
+            printStatement.expression.accept(this);
+        }
+
+        @Override
+        public void visit(WhileLoop whileLoop) {
+            whileLoop.expression.accept(this);
+            whileLoop.statement.accept(this);
+        }
+
+        @Override
+        public void visit(ClosedFormLoop closedFormLoop) {
+            visit((WhileLoop) closedFormLoop);
+            for (ClosedFormLoop.Accumulation accumulation: closedFormLoop.accumulations) {
+                intern(accumulation.target);
+                if (accumulation.invariant != null) {
+                    intern(accumulation.invariant);
+                }
+            }
+        }
+
+        @Override
+        public void visit(Assignment assignment) {
+            assignment.expression.accept(this);
+            intern(assignment.variable);
+        }
+
+        @Override
+        public void visit(Literal literal) {
+        }
+
+        @Override
+        public void visit(Var var) {
+            intern(var);
+        }
+
+        @Override
+        public void visit(OperatorExpression operatorExpression) {
+            for (Expression operand: operatorExpression.operands) {
+                operand.accept(this);
+            }
+        }
+
+    }
+
+}
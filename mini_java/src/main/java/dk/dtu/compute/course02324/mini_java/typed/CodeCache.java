@@ -0,0 +1,456 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.analysis.Fingerprints;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor;
+import dk.dtu.compute.course02324.mini_java.semantics.SymbolTable;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * A cache of programs compiled by the {@link JavaBackend} on disk, which
+ * survives restarts of the JVM and can be shared by several processes. A
+ * program is found by the fingerprint of its structure (see
+ * {@link Fingerprints}) together with the
+ * version of the backend and of the Java runtime. A cached program is
+ * returned with the class files and the slots and types of its variables, so
+ * that neither the {@link ProgramTypeVisitor} nor the compiler is needed.<p>
+ *
+ * The programs are stored in an append-only data file, which is memory
+ * mapped for reading. The mapping grows in chunks: it is only renewed when
+ * the file has grown to twice the mapped size, and records beyond the
+ * mapping are read through the channel. Each record starts with its length
+ * and a CRC-32 of its content, and is forced to disk after writing; a record
+ * which is not complete or damaged (after a crash while writing) ends the
+ * valid part of the file, and is overwritten by the next write. The index
+ * from the keys to the records is kept in memory and extended by scanning the
+ * records, which were appended since the last access.<p>
+ *
+ * When the valid part of the file grows beyond its maximum size, it is
+ * compacted: the most recent records, which fill half of the maximum size
+ * (at least the newest one), are copied to the data file of the next
+ * generation, whose number is then stored in the lock file. A data file is
+ * never truncated or replaced while it may be mapped, which would fail on
+ * Windows; the files of older generations are deleted by the compactions,
+ * once they are no longer mapped. A program, whose record is larger than half
+ * of the maximum size, is not cached.<p>
+ *
+ * Processes are synchronized by file locks on a separate lock file: reading
+ * takes a shared lock, writing and compacting an exclusive lock. File locks
+ * are held on behalf of the whole JVM, so a directory must be used by at
+ * most one cache per JVM; a cache can be used by several threads.
+ */
+public class CodeCache implements Closeable {
+
+    /** The version of the compiled code: the version of the backend and of the Java runtime */
+    final public static String VERSION = "backend " + JavaBackend.VERSION + ", java " + Runtime.version().feature();
+
+    final private static int FILE_MAGIC = 0x4D4A4343;
+
+    final private static int RECORD_MAGIC = 0x4D4A4352;
+
+    final private static int FORMAT = 1;
+
+    /** The size of the header of the file (magic number and format) */
+    final private static int FILE_HEADER = 8;
+
+    /** The size of the header of a record (magic number, length and checksum) */
+    final private static int RECORD_HEADER = 12;
+
+    final private Path directory;
+
+    final private long maxBytes;
+
+    /** The lock file, which also holds the generation of the current data file */
+    final private FileChannel lock;
+
+    /** The generation of the opened data file, which is incremented by each compaction */
+    private long generation = -1;
+
+    private Path dataFile;
+
+    /** The data file, as it was opened last */
+    private FileChannel data;
+
+    private MappedByteBuffer mapped;
+
+    /** The end of the records, which were scanned into the index */
+    private long scanned;
+
+    /** The offset and the length of the content of the record by its key */
+    final private Map<String, long[]> index = new HashMap<>();
+
+    private long hits;
+    private long misses;
+    private long writes;
+    private long rejected;
+    private long compactions;
+
+    private CodeCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.lock = FileChannel.open(directory.resolve("programs.lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Opens the cache in a directory, which is created if it does not exist
+     * yet, with the given maximum size of the data file in bytes.
+     */
+    public static CodeCache open(@NotNull Path directory, long maxBytes) throws IOException {
+        if (maxBytes <= FILE_HEADER || maxBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The maximum size must be between " + FILE_HEADER +
+                    " and " + Integer.MAX_VALUE + " bytes: " + maxBytes);
+        }
+        Files.createDirectories(directory);
+        CodeCache cache = new CodeCache(directory, maxBytes);
+        try (FileLock ignored = cache.lock.lock()) {
+            Path dataFile = cache.file(cache.currentGeneration());
+            if (!Files.exists(dataFile) || Files.size(dataFile) < FILE_HEADER) {
+                try (FileChannel channel = FileChannel.open(dataFile,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    channel.write(ByteBuffer.allocate(FILE_HEADER).putInt(FILE_MAGIC).putInt(FORMAT).flip());
+                    channel.force(true);
+                }
+            }
+            cache.refresh();
+        } catch (IOException | RuntimeException e) {
+            cache.close();
+            throw e;
+        }
+        return cache;
+    }
+
+    /** Returns the key of a program in the cache: the fingerprint of its structure and the version. */
+    public static String key(@NotNull Statement statement) {
+        return Fingerprints.compute(statement).toString() + " " + VERSION;
+    }
+
+    /** Returns the cached compiled program of a statement, or <code>null</code> if it is not cached. */
+    public synchronized CompiledProgram get(@NotNull Statement statement) throws IOException {
+        String key = key(statement);
+        try (FileLock ignored = lock.lock(0, Long.MAX_VALUE, true)) {
+            refresh();
+            long[] record = index.get(key);
+            if (record == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            return decode(read(record));
+        }
+    }
+
+    /**
+     * Returns the compiled program of a statement from the cache; if it is
+     * not cached, the statement is type checked, compiled and added to the
+     * cache.
+     *
+     * @throws IllegalArgumentException if the statement has type problems
+     */
+    public CompiledProgram compile(@NotNull Statement statement) throws IOException {
+        CompiledProgram compiled = get(statement);
+        if (compiled == null) {
+            ProgramTypeVisitor pv = new ProgramTypeVisitor();
+            pv.visit(statement);
+            compiled = JavaBackend.compile(statement, pv);
+            put(statement, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Adds the compiled program of a statement to the cache, unless it is
+     * cached already or its record is larger than half of the maximum size.
+     */
+    public synchronized void put(@NotNull Statement statement, @NotNull CompiledProgram compiled) throws IOException {
+        String key = key(statement);
+        byte[] content = encode(key, compiled);
+        if (FILE_HEADER + RECORD_HEADER + content.length > maxBytes / 2) {
+            // the record would not survive the next compaction, which would then happen on every write
+            rejected++;
+            return;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + content.length);
+        record.putInt(RECORD_MAGIC).putInt(content.length).putInt((int) crc.getValue()).put(content).flip();
+        try (FileLock ignored = lock.lock()) {
+            refresh();
+            if (index.containsKey(key)) {
+                return;
+            }
+            // overwrites a damaged record at the end of the file, which is not truncated, since it may be mapped
+            long position = scanned;
+            while (record.hasRemaining()) {
+                position += data.write(record, position);
+            }
+            if (data.size() > position) {
+                // the rest of the damaged record remains, a zero ends the valid part of the file before it
+                ByteBuffer end = ByteBuffer.allocate(4);
+                while (end.hasRemaining()) {
+                    data.write(end, position + end.position());
+                }
+            }
+            data.force(false);
+            writes++;
+            refresh();
+            if (scanned > maxBytes) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * Copies the most recent records, which fill at most half of the maximum
+     * size, but at least the newest record, to the data file of the next
+     * generation. Must be called with the exclusive lock held.
+     */
+    private void compact() throws IOException {
+        List<Map.Entry<String, long[]>> records = new ArrayList<>(index.entrySet());
+        records.sort(Comparator.comparingLong(entry -> -entry.getValue()[0]));
+        long size = FILE_HEADER;
+        List<long[]> kept = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry: records) {
+            long recordSize = RECORD_HEADER + entry.getValue()[1];
+            if (!kept.isEmpty() && size + recordSize > maxBytes / 2) {
+                break;
+            }
+            size += recordSize;
+            kept.add(entry.getValue());
+        }
+        Collections.reverse(kept);
+        long next = generation + 1;
+        Path compacted = file(next);
+        try (FileChannel channel = FileChannel.open(compacted,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.allocate(FILE_HEADER).putInt(FILE_MAGIC).putInt(FORMAT).flip());
+            for (long[] record: kept) {
+                long start = record[0] - RECORD_HEADER;
+                data.transferTo(start, RECORD_HEADER + record[1], channel);
+            }
+            channel.force(true);
+        }
+        // the new file becomes the current one for all processes, when its generation is in the lock file
+        ByteBuffer nextGeneration = ByteBuffer.allocate(8).putLong(next).flip();
+        while (nextGeneration.hasRemaining()) {
+            lock.write(nextGeneration, nextGeneration.position());
+        }
+        lock.force(false);
+        compactions++;
+        refresh();
+        deleteOldGenerations();
+    }
+
+    /**
+     * Deletes the data files of older generations. A file, which is still
+     * mapped by this or another process, can not be deleted on Windows; it is
+     * deleted by a later compaction.
+     */
+    private void deleteOldGenerations() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "programs.*.cache")) {
+            for (Path file: files) {
+                if (!file.equals(dataFile)) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        // still in use
+                    }
+                }
+            }
+        }
+    }
+
+    private Path file(long generation) {
+        return directory.resolve("programs." + generation + ".cache");
+    }
+
+    /** Returns the generation of the current data file from the lock file, or 0 if there is none yet. */
+    private long currentGeneration() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        while (buffer.hasRemaining()) {
+            if (lock.read(buffer, buffer.position()) < 0) {
+                return 0;
+            }
+        }
+        return buffer.getLong(0);
+    }
+
+    /**
+     * Brings the index up to date with the data file: opens the file of the
+     * current generation if it was compacted, and scans the records appended
+     * since the last access. Must be called with a lock held.
+     */
+    private void refresh() throws IOException {
+        long current = currentGeneration();
+        if (data == null || current != generation) {
+            if (data != null) {
+                data.close();
+            }
+            dataFile = file(current);
+            data = FileChannel.open(dataFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            generation = current;
+            mapped = null;
+            index.clear();
+            scanned = FILE_HEADER;
+        }
+        long size = data.size();
+        if (mapped == null || size > 2L * mapped.capacity()) {
+            if (size < FILE_HEADER) {
+                throw new IOException("Not a cache of compiled MiniJava programs: " + dataFile);
+            }
+            mapped = data.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE));
+            if (mapped.getInt(0) != FILE_MAGIC || mapped.getInt(4) != FORMAT) {
+                throw new IOException("Not a cache of compiled MiniJava programs: " + dataFile);
+            }
+        }
+        while (scanned + RECORD_HEADER <= size) {
+            ByteBuffer header = bytes(scanned, RECORD_HEADER);
+            int length = header.getInt(4);
+            if (header.getInt(0) != RECORD_MAGIC || length < 0 || scanned + RECORD_HEADER + length > size) {
+                break;
+            }
+            long[] record = {scanned + RECORD_HEADER, length};
+            byte[] content = read(record);
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            if ((int) crc.getValue() != header.getInt(8)) {
+                break;
+            }
+            index.put(new DataInputStream(new ByteArrayInputStream(content)).readUTF(), record);
+            scanned += RECORD_HEADER + length;
+        }
+    }
+
+    private byte[] read(long[] record) throws IOException {
+        byte[] content = new byte[(int) record[1]];
+        bytes(record[0], content.length).get(0, content);
+        return content;
+    }
+
+    /** Returns bytes of the data file, from the mapping if it covers them, otherwise read through the channel. */
+    private ByteBuffer bytes(long position, int length) throws IOException {
+        if (position + length <= mapped.capacity()) {
+            return mapped.slice((int) position, length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (data.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of " + dataFile);
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static byte[] encode(String key, CompiledProgram compiled) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(key);
+        out.writeUTF(compiled.className);
+        TypedProgram program = compiled.program();
+        out.writeInt(program.slotCount());
+        for (int slot = 0; slot < program.slotCount(); slot++) {
+            out.writeUTF(program.variable(slot).name);
+            out.writeByte(((PrimitiveType) program.type(slot)).primitiveType.ordinal());
+        }
+        out.writeInt(compiled.classFiles().size());
+        for (Map.Entry<String, byte[]> entry: compiled.classFiles().entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().length);
+            out.write(entry.getValue());
+        }
+        byte[] source = compiled.source != null ? compiled.source.getBytes(StandardCharsets.UTF_8) : null;
+        out.writeInt(source != null ? source.length : -1);
+        if (source != null) {
+            out.write(source);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static CompiledProgram decode(byte[] content) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+        in.readUTF();
+        String className = in.readUTF();
+        int slots = in.readInt();
+        SymbolTable symbols = new SymbolTable();
+        List<Type> types = new ArrayList<>();
+        TypeKeyword[] keywords = TypeKeyword.values();
+        for (int slot = 0; slot < slots; slot++) {
+            symbols.intern(new Var(in.readUTF()));
+            types.add(new PrimitiveType(keywords[in.readUnsignedByte()]));
+        }
+        Map<String, byte[]> classFiles = new TreeMap<>();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            classFiles.put(name, bytes);
+        }
+        int sourceLength = in.readInt();
+        String source = null;
+        if (sourceLength >= 0) {
+            byte[] bytes = new byte[sourceLength];
+            in.readFully(bytes);
+            source = new String(bytes, StandardCharsets.UTF_8);
+        }
+        // the compiled program replaces the typed tree, which is not needed
+        TypedProgram program = new TypedProgram(frame -> { }, symbols, types, null);
+        return new CompiledProgram(className, source, classFiles, program, JavaBackend.load(className, classFiles));
+    }
+
+    /** Returns the number of programs found in the cache. */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /** Returns the number of programs not found in the cache. */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /** Returns the number of programs written to the cache by this process. */
+    public synchronized long writes() {
+        return writes;
+    }
+
+    /** Returns the number of programs not written to the cache by this process, since they were too large. */
+    public synchronized long rejected() {
+        return rejected;
+    }
+
+    /** Returns the number of compactions of the data file done by this process. */
+    public synchronized long compactions() {
+        return compactions;
+    }
+
+    /** Returns the current data file, when the cache was accessed last. */
+    public synchronized Path dataFile() {
+        return dataFile;
+    }
+
+    /** Returns the number of programs in the cache, when it was accessed last. */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mapped = null;
+        if (data != null) {
+            data.close();
+        }
+        lock.close();
+    }
+
+}
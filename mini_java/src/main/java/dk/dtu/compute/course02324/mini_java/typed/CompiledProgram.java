@@ -0,0 +1,111 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A program compiled into a Java class by the {@link JavaBackend}, which is
+ * loaded in its own class loader. It is executed like a typed tree on a
+ * {@link Frame} with the slots of its {@link TypedProgram}; the generated
+ * source and the class files are kept, so that they can be inspected,
+ * debugged and written to a directory for reuse.
+ */
+public class CompiledProgram implements Executable {
+
+    /** The fully qualified name of the generated class */
+    final public String className;
+
+    /** The generated source, or <code>null</code> if the class was loaded from class files */
+    final public String source;
+
+    /** The class files by the binary names of the classes */
+    final private Map<String, byte[]> classFiles;
+
+    /** The typed tree of the program, which provides the slots and types of the variables */
+    final private TypedProgram program;
+
+    /** The handle of the static method <code>run(int[], boolean[], PrintStream)</code> */
+    final private MethodHandle run;
+
+    /** Whether the variable of each slot is an int (otherwise it is a float) */
+    final private boolean[] isInt;
+
+    CompiledProgram(@NotNull String className, String source, @NotNull Map<String, byte[]> classFiles,
+                    @NotNull TypedProgram program, @NotNull MethodHandle run) {
+        this.className = className;
+        this.source = source;
+        this.classFiles = Collections.unmodifiableMap(classFiles);
+        this.program = program;
+        this.run = run;
+        this.isInt = new boolean[program.slotCount()];
+        for (int slot = 0; slot < isInt.length; slot++) {
+            isInt[slot] = TypedProgram.isInt(program.type(slot));
+        }
+    }
+
+    /** Returns the program with the same variables as the typed tree, which executes the compiled class. */
+    public TypedProgram program() {
+        return program.withStatement(this);
+    }
+
+    /** Returns the class files by the binary names of the classes. */
+    public Map<String, byte[]> classFiles() {
+        return classFiles;
+    }
+
+    @Override
+    public void execute(@NotNull Frame frame) {
+        VariableStore store = frame.variables;
+        int slots = isInt.length;
+        int[] values = new int[slots];
+        boolean[] defined = new boolean[slots];
+        for (int slot = 0; slot < slots; slot++) {
+            if (store.isDefined(slot)) {
+                defined[slot] = true;
+                values[slot] = isInt[slot] ? store.getInt(slot) : Float.floatToRawIntBits(store.getFloat(slot));
+            }
+        }
+        try {
+            run.invokeExact(values, defined, frame.out);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        } finally {
+            for (int slot = 0; slot < slots; slot++) {
+                if (!defined[slot]) {
+                    store.clear(slot);
+                } else if (isInt[slot]) {
+                    store.setInt(slot, values[slot]);
+                } else {
+                    store.setFloat(slot, Float.intBitsToFloat(values[slot]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the class files, and the source if it is known, into a directory
+     * in the layout of a class path, from which the program can be loaded
+     * again with {@link JavaBackend#load}.
+     */
+    public void writeTo(@NotNull Path directory) throws IOException {
+        for (Map.Entry<String, byte[]> entry: classFiles.entrySet()) {
+            Path file = directory.resolve(entry.getKey().replace('.', '/') + ".class");
+            Files.createDirectories(file.getParent());
+            Files.write(file, entry.getValue());
+        }
+        if (source != null) {
+            Path file = directory.resolve(className.replace('.', '/') + ".java");
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, source);
+        }
+    }
+
+}
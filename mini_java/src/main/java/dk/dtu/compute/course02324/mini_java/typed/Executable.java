@@ -0,0 +1,13 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Something which can be executed in a {@link Frame}: a statement of the
+ * typed tree, or a whole {@link TypedProgram}.
+ */
+public interface Executable {
+
+    void execute(@NotNull Frame frame);
+
+}
@@ -0,0 +1,23 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.PrintStream;
+
+/**
+ * The context of an execution of a typed tree: the store with the values of
+ * the variables, indexed by their slots, and the stream on which print
+ * statements print.
+ */
+public class Frame {
+
+    final public VariableStore variables;
+
+    final public PrintStream out;
+
+    public Frame(@NotNull VariableStore variables, @NotNull PrintStream out) {
+        this.variables = variables;
+        this.out = out;
+    }
+
+}
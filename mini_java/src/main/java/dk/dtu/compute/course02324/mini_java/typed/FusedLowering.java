@@ -0,0 +1,292 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.OperatorRegistry;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramVisitor;
+import dk.dtu.compute.course02324.mini_java.semantics.SymbolTable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.FLOAT;
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.INT;
+
+/**
+ * Type checks a statement and lowers it into a {@link TypedProgram} in a
+ * single traversal, for programs which are executed only once. The checks
+ * and the reported problems are exactly the ones of the
+ * {@link dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor
+ * ProgramTypeVisitor}; but the type of an expression is passed up the
+ * traversal instead of being stored in a type mapping, and only the types of
+ * the declared variables are kept.<p>
+ *
+ * The typed tree is built only as long as no problem was found; after the
+ * first problem, the rest of the statement is only checked, so that all
+ * problems are reported. A program with problems is never lowered.
+ */
+public class FusedLowering extends ProgramVisitor {
+
+    /** The declared variables with their types */
+    final private Map<Var, Type> variableTypes = new HashMap<>();
+
+    /** All detected type-related problems, in the order of the ProgramTypeVisitor */
+    final public List<String> problems = new ArrayList<>();
+
+    /** The slots of the variables */
+    final private SymbolTable symbols = new SymbolTable();
+
+    final private List<Type> types = new ArrayList<>();
+
+    /**
+     * The number of enclosing statements, for which no typed tree is built
+     * (the retained bodies of closed-form loops).
+     */
+    private int skipped = 0;
+
+    /** The result of lowering the last visited statement */
+    private Executable statement;
+
+    /** The result of lowering the last visited expression */
+    private TypedExpression expression;
+
+    /** The type of the last visited expression, or <code>null</code> if it does not have a type */
+    private Type type;
+
+    /**
+     * Type checks and lowers a statement. The result is <code>null</code> if
+     * the statement has problems, which are then in {@link #problems}.
+     */
+    public TypedProgram lower(@NotNull Statement statement) {
+        statement.accept(this);
+        if (!problems.isEmpty()) {
+            return null;
+        }
+        return new TypedProgram(this.statement, symbols, types, null);
+    }
+
+    /**
+     * Type checks and lowers one more top-level statement of a program, which
+     * is checked against the declarations of all statements lowered before
+     * (see {@link StreamingExecutor}). The result is <code>null</code> if the
+     * statement has problems, or if a previous statement had problems. The
+     * lowering does not keep a reference to the statement or its typed tree.
+     */
+    Executable lowerNext(@NotNull Statement statement) {
+        if (!problems.isEmpty()) {
+            return null;
+        }
+        statement.accept(this);
+        Executable result = problems.isEmpty() ? this.statement : null;
+        this.statement = null;
+        this.expression = null;
+        return result;
+    }
+
+    /** Returns the number of slots created so far. */
+    int slotCount() {
+        return types.size();
+    }
+
+    /** Returns the type of the variable of a slot. */
+    Type slotType(int slot) {
+        return types.get(slot);
+    }
+
+    /** Returns the declared variables in the order of their slots (after lowering without problems). */
+    public List<Var> variables() {
+        return symbols.variables();
+    }
+
+    /** Returns whether the typed tree is built at the current point of the traversal. */
+    private boolean building() {
+        return skipped == 0 && problems.isEmpty();
+    }
+
+    /**
+     * Returns the slot of a variable, which is created when the variable
+     * occurs first. The variable is interned by name only, so that lowering
+     * a stream of statements does not keep their nodes.
+     */
+    private int slot(Var variable) {
+        int slot = symbols.internName(variable);
+        if (slot == types.size()) {
+            types.add(variableTypes.get(variable));
+        }
+        return slot;
+    }
+
+    private TypedExpression lower(Expression expression) {
+        expression.accept(this);
+        return this.expression;
+    }
+
+    private Executable lowerStatement(Statement statement) {
+        statement.accept(this);
+        return this.statement;
+    }
+
+    @Override
+    public void visit(Sequence sequence) {
+        List<Executable> statements = new ArrayList<>();
+        for (Statement substatement: sequence.statements) {
+            statements.add(lowerStatement(substatement));
+        }
+        statement = building() ? new TypedSequence(sequence, statements) : null;
+    }
+
+    @Override
+    public void visit(Declaration declaration) {
+        TypedExpression typedExpression = null;
+        Type expressionType = null;
+        if (declaration.expression != null) {
+            typedExpression = lower(declaration.expression);
+            expressionType = type;
+        }
+        Var variable = declaration.variable;
+        if (variableTypes.containsKey(variable)) {
+            problems.add("Variable " + variable.name + " declared more than once.");
+        } else {
+            variableTypes.put(variable, declaration.type);
+            if (declaration.expression != null) {
+                if (!declaration.type.equals(expressionType)) {
+                    problems.add("Type mismatch for declaration of " +
+                            declaration.type.getName() + " " + declaration.variable.name +
+                            ": expression is type " + expressionType.getName() + ".");
+                }
+            }
+        }
+        statement = building() ? new TypedDeclaration(declaration, slot(variable), typedExpression) : null;
+    }
+
+    @Override
+    public void visit(PrintStatement printStatement) {
+        TypedExpression typedExpression = lower(printStatement.expression);
+        statement = building() ? new TypedPrintStatement(printStatement, typedExpression) : null;
+    }
+
+    /** Checks the condition and the body of a loop, and returns the lowered condition. */
+    private TypedExpression checkLoop(WhileLoop whileLoop) {
+        TypedExpression condition = lower(whileLoop.expression);
+        if (!INT.equals(type)) {
+            problems.add("Not an int: " + (type != null ? type.getName() : "undefined"));
+        }
+        return condition;
+    }
+
+    @Override
+    public void visit(WhileLoop whileLoop) {
+        TypedExpression condition = checkLoop(whileLoop);
+        Executable body = lowerStatement(whileLoop.statement);
+        statement = building() ? new TypedWhileLoop(whileLoop, condition, body) : null;
+    }
+
+    @Override
+    public void visit(CountedLoop countedLoop) {
+        checkLoop(countedLoop);
+        Executable body = lowerStatement(countedLoop.statement);
+        statement = building() ? new TypedCountedLoop(countedLoop, slot(countedLoop.variable), body) : null;
+    }
+
+    @Override
+    public void visit(ClosedFormLoop closedFormLoop) {
+        checkLoop(closedFormLoop);
+        // the retained body is checked, but not executed
+        skipped++;
+        closedFormLoop.statement.accept(this);
+        skipped--;
+        statement = null;
+        if (building()) {
+            int slot = slot(closedFormLoop.variable);
+            int size = closedFormLoop.accumulations.size();
+            int[] targets = new int[size];
+            int[] invariants = new int[size];
+            for (int i = 0; i < size; i++) {
+                ClosedFormLoop.Accumulation accumulation = closedFormLoop.accumulations.get(i);
+                targets[i] = slot(accumulation.target);
+                invariants[i] = accumulation.invariant != null ? slot(accumulation.invariant) : -1;
+            }
+            statement = new TypedClosedFormLoop(closedFormLoop, slot, targets, invariants);
+        }
+    }
+
+    @Override
+    public void visit(Assignment assignment) {
+        TypedExpression typedExpression = lower(assignment.expression);
+        Type expressionType = type;
+        type = null;
+        if (variableTypes.containsKey(assignment.variable)) {
+            Type variableType = variableTypes.get(assignment.variable);
+            if (!variableType.equals(expressionType)) {
+                problems.add("Type mismatch for assignment to variable " +
+                        assignment.variable.name + " of type " + variableType.getName() + ".");
+            } else {
+                type = variableType;
+            }
+        } else {
+            problems.add("Variable " + assignment.variable.name + " not defined.");
+        }
+        TypedAssignment typedAssignment = building() ?
+                new TypedAssignment(assignment, type, slot(assignment.variable), typedExpression) : null;
+        statement = typedAssignment;
+        expression = typedAssignment;
+    }
+
+    @Override
+    public void visit(Literal literal) {
+        if (literal instanceof IntLiteral) {
+            type = INT;
+        } else if (literal instanceof FloatLiteral) {
+            type = FLOAT;
+        } else {
+            type = null;
+        }
+        expression = building() && type != null ? new TypedLiteral(literal, type) : null;
+    }
+
+    @Override
+    public void visit(Var var) {
+        type = variableTypes.get(var);
+        if (type == null) {
+            problems.add("Variable not defined " + var);
+        }
+        expression = building() ? new TypedVar(var, type, slot(var)) : null;
+    }
+
+    @Override
+    public void visit(OperatorExpression operatorExpression) {
+        List<Expression> operands = operatorExpression.operands;
+        TypedExpression[] typedOperands = new TypedExpression[2];
+        Type operandType = null;
+        for (int i = 0; i < operands.size(); i++) {
+            TypedExpression typedOperand = lower(operands.get(i));
+            if (i < typedOperands.length) {
+                typedOperands[i] = typedOperand;
+            }
+            Type subexpressionType = type;
+            if (subexpressionType == null) {
+                problems.add("A subexpression of " + operatorExpression.operator.getName() + " does not have a type.");
+            }
+            if (operandType == null) {
+                operandType = subexpressionType;
+            } else if (!operandType.equals(subexpressionType)) {
+                problems.add("Subexpressions of operator do not match for " + operatorExpression.operator.getName() + ".");
+            }
+        }
+        type = null;
+        if (operandType != null) {
+            type = OperatorRegistry.resultType(operatorExpression.operator, operandType);
+            if (type == null) {
+                problems.add("Operator does not support the type of its operands. Operator is " + operatorExpression.operator + " and operand type is " + operandType);
+            }
+        } else {
+            problems.add("Subexpression(s) of operand do not have a type: Operator " + operatorExpression.operator);
+        }
+        expression = null;
+        if (building()) {
+            Operator operator = operatorExpression.operator;
+            expression = new TypedOperation(operatorExpression, type, typedOperands[0], typedOperands[1],
+                    OperatorRegistry.intOperation(operator), OperatorRegistry.floatOperation(operator));
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+/**
+ * A {@link VariableStore} in arrays on the heap: the values are stored as int
+ * bits (floats by {@link Float#floatToRawIntBits(float)}), together with a
+ * flag whether they are defined.
+ */
+public class HeapVariableStore implements VariableStore {
+
+    final private int[] values;
+
+    final private boolean[] defined;
+
+    public HeapVariableStore(int size) {
+        values = new int[size];
+        defined = new boolean[size];
+    }
+
+    HeapVariableStore(int[] values, boolean[] defined) {
+        this.values = values;
+        this.defined = defined;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public boolean isDefined(int slot) {
+        return defined[slot];
+    }
+
+    @Override
+    public int getInt(int slot) {
+        return values[slot];
+    }
+
+    @Override
+    public float getFloat(int slot) {
+        return Float.intBitsToFloat(values[slot]);
+    }
+
+    @Override
+    public void setInt(int slot, int value) {
+        values[slot] = value;
+        defined[slot] = true;
+    }
+
+    @Override
+    public void setFloat(int slot, float value) {
+        values[slot] = Float.floatToRawIntBits(value);
+        defined[slot] = true;
+    }
+
+    @Override
+    public void clear(int slot) {
+        defined[slot] = false;
+    }
+
+    @Override
+    public void copy(int from, int to) {
+        values[to] = values[from];
+        defined[to] = defined[from];
+    }
+
+    @Override
+    public VariableStore snapshot() {
+        return new HeapVariableStore(values.clone(), defined.clone());
+    }
+
+}
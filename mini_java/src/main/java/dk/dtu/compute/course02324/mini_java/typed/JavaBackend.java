@@ -0,0 +1,152 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.Statement;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor;
+import org.jetbrains.annotations.NotNull;
+
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Compiles type-checked programs ahead of time into Java classes: the
+ * statement is translated into Java source by the {@link JavaSourceGenerator},
+ * which is compiled in memory with the system Java compiler (with debug
+ * information) and loaded in a class loader of its own, which sees only the
+ * classes of the platform. Compiling takes much longer than lowering, but
+ * the compiled program runs at the speed of Java code, which pays off for
+ * long-running programs. The backend needs a JDK; it does not work on a
+ * runtime without the <code>java.compiler</code> module.
+ */
+public class JavaBackend {
+
+    /**
+     * The version of the generated code, which must be changed whenever the
+     * {@link JavaSourceGenerator} is changed, so that cached classes of older
+     * versions are not used (see {@link CodeCache})
+     */
+    final public static int VERSION = 2;
+
+    /** The name of the generated class, if none is given */
+    final public static String DEFAULT_CLASS_NAME = "minijava.generated.Program";
+
+    final private static MethodType RUN = MethodType.methodType(void.class, int[].class, boolean[].class, PrintStream.class);
+
+    private JavaBackend() {
+    }
+
+    /** Compiles a statement, which was type checked without problems, into a class with the default name. */
+    public static CompiledProgram compile(@NotNull Statement statement, @NotNull ProgramTypeVisitor pv) {
+        return compile(statement, pv.lower(statement), DEFAULT_CLASS_NAME);
+    }
+
+    /**
+     * Compiles a statement into a class with the given fully qualified name;
+     * the program must be the statement lowered into a typed tree.
+     *
+     * @throws IllegalStateException if there is no Java compiler, or if the generated source does not compile
+     */
+    public static CompiledProgram compile(@NotNull Statement statement, @NotNull TypedProgram program, @NotNull String className) {
+        String source = JavaSourceGenerator.generate(statement, program, className);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No Java compiler available; the backend needs a JDK.");
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<String, ByteArrayOutputStream> outputs = new TreeMap<>();
+        StandardJavaFileManager standardFileManager =
+                compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
+        JavaFileManager fileManager = new ForwardingJavaFileManager<>(standardFileManager) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String name, JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(uri("mem", name, kind), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        ByteArrayOutputStream output = new ByteArrayOutputStream();
+                        outputs.put(name, output);
+                        return output;
+                    }
+                };
+            }
+        };
+        JavaFileObject sourceFile = new SimpleJavaFileObject(uri("string", className, JavaFileObject.Kind.SOURCE),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        boolean success = compiler.getTask(null, fileManager, diagnostics, List.of("-g", "-proc:none"),
+                null, List.of(sourceFile)).call();
+        if (!success) {
+            StringBuilder message = new StringBuilder("The generated class " + className + " does not compile:");
+            for (Diagnostic<? extends JavaFileObject> diagnostic: diagnostics.getDiagnostics()) {
+                message.append(System.lineSeparator()).append(diagnostic);
+            }
+            throw new IllegalStateException(message.toString());
+        }
+        Map<String, byte[]> classFiles = new TreeMap<>();
+        outputs.forEach((name, output) -> classFiles.put(name, output.toByteArray()));
+        return new CompiledProgram(className, source, classFiles, program, load(className, classFiles));
+    }
+
+    /**
+     * Loads a program, whose class files (and source) were written to a
+     * directory by {@link CompiledProgram#writeTo}; the program must be the
+     * typed tree of the statement the class was compiled from.
+     */
+    public static CompiledProgram load(@NotNull Path directory, @NotNull String className, @NotNull TypedProgram program)
+            throws IOException {
+        Path file = directory.resolve(className.replace('.', '/') + ".class");
+        Path packageDirectory = file.getParent();
+        String simpleName = className.substring(className.lastIndexOf('.') + 1);
+        String packagePrefix = className.substring(0, className.length() - simpleName.length());
+        Map<String, byte[]> classFiles = new TreeMap<>();
+        classFiles.put(className, Files.readAllBytes(file));
+        try (DirectoryStream<Path> nested = Files.newDirectoryStream(packageDirectory, simpleName + "$*.class")) {
+            for (Path nestedFile: nested) {
+                String name = nestedFile.getFileName().toString();
+                classFiles.put(packagePrefix + name.substring(0, name.length() - ".class".length()), Files.readAllBytes(nestedFile));
+            }
+        }
+        Path sourceFile = packageDirectory.resolve(simpleName + ".java");
+        String source = Files.exists(sourceFile) ? Files.readString(sourceFile) : null;
+        return new CompiledProgram(className, source, classFiles, program, load(className, classFiles));
+    }
+
+    /** Defines the classes in a new class loader and returns the handle of the run method. */
+    static MethodHandle load(String className, Map<String, byte[]> classFiles) {
+        ClassLoader loader = new ClassLoader("minijava-" + className, ClassLoader.getPlatformClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                byte[] bytes = classFiles.get(name);
+                if (bytes == null) {
+                    throw new ClassNotFoundException(name);
+                }
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+        };
+        try {
+            Class<?> generated = loader.loadClass(className);
+            return MethodHandles.publicLookup().findStatic(generated, "run", RUN);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("The generated class " + className + " can not be loaded.", e);
+        }
+    }
+
+    private static URI uri(String scheme, String className, JavaFileObject.Kind kind) {
+        return URI.create(scheme + ":///" + className.replace('.', '/') + kind.extension);
+    }
+
+}
@@ -0,0 +1,424 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramSerializerVisitor;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramVisitor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Translates a type-checked statement into the source of a Java class, which
+ * can be compiled by the {@link JavaBackend}. The class has a public method
+ * <pre>
+ *   public static void run(int[] values, boolean[] defined, java.io.PrintStream out)
+ * </pre>
+ * which executes the statement on the values of the variables given by their
+ * slots in the {@link TypedProgram} (floats as raw int bits), and writes the
+ * values back when it terminates, also if it fails. The class depends on
+ * <code>java.base</code> only.<p>
+ *
+ * Each variable is a pair of locals: its value and whether it is defined.
+ * A Java method can have at most 64 KB of byte code and 65535 locals, so
+ * large programs are generated differently: if the program has more than
+ * {@value #MAX_LOCAL_SLOTS} variables, or its statements would take more than
+ * {@value #MAX_METHOD_CHARS} characters, the variables are fields of an
+ * instance of the class, they are loaded and stored in chunks of
+ * {@value #MAX_LOCAL_SLOTS}, and the statements of sequences, which are too
+ * long, are split into methods of their own. What remains is the limit of
+ * 65535 entries in the constant pool of a class (roughly ten thousand
+ * variables) and single statements, whose expressions are too large for a
+ * method; such programs do not compile (see {@link JavaBackend#compile}), and
+ * must be interpreted.<p>
+ *
+ * An expression is translated into a Java expression for its value and a
+ * side-effect free Java expression telling whether it is defined after the
+ * value was evaluated; only variables and assignments can be undefined. This
+ * way, undefined values are handled exactly as by the
+ * {@link dk.dtu.compute.course02324.mini_java.semantics.ProgramExecutorVisitor
+ * ProgramExecutorVisitor}. Operator expressions are parenthesized according
+ * to {@link ProgramSerializerVisitor#needsParentheses}. Counted and
+ * closed-form loops are translated as the while-loops they were derived from.
+ */
+public class JavaSourceGenerator extends ProgramVisitor {
+
+    final private static String INDENT = "    ";
+
+    /**
+     * The maximum number of variables, which are locals of the run method, and
+     * the number of variables loaded and stored by each method otherwise
+     */
+    final public static int MAX_LOCAL_SLOTS = 1000;
+
+    /**
+     * The maximum number of characters of the statements of a method; since a
+     * character of the generated code takes at most about two bytes of byte
+     * code, a method stays well below the limit of 64 KB
+     */
+    final public static int MAX_METHOD_CHARS = 16_000;
+
+    final private TypedProgram program;
+
+    /** Whether the variables are fields and sequences, which are too long, are split into methods */
+    final private boolean split;
+
+    /** The methods into which parts of sequences were split */
+    final private List<String> methods = new ArrayList<>();
+
+    /** The code generated for the statements, which are currently translated */
+    private StringBuilder result = new StringBuilder();
+
+    private int indentLevel = 2;
+
+    /** The Java expression for the value of the last visited expression */
+    private String value;
+
+    /** The Java expression telling whether the last visited expression is defined */
+    private String defined;
+
+    private JavaSourceGenerator(@NotNull TypedProgram program, boolean split) {
+        this.program = program;
+        this.split = split;
+    }
+
+    /**
+     * Returns the source of a class with the given fully qualified name, which
+     * executes a statement; the program must be the statement lowered into a
+     * typed tree, which provides the slots and types of the variables.
+     */
+    public static String generate(@NotNull Statement statement, @NotNull TypedProgram program, @NotNull String className) {
+        JavaSourceGenerator generator = new JavaSourceGenerator(program, false);
+        generator.indentLevel = 3;
+        generator.translate(statement);
+        if (program.slotCount() > MAX_LOCAL_SLOTS || generator.result.length() > MAX_METHOD_CHARS) {
+            generator = new JavaSourceGenerator(program, true);
+            generator.indentLevel = 2;
+            generator.translate(statement);
+        }
+        int dot = className.lastIndexOf('.');
+        StringBuilder source = new StringBuilder();
+        source.append("// Generated from a MiniJava program. Do not edit.").append(System.lineSeparator());
+        if (dot >= 0) {
+            source.append("package ").append(className, 0, dot).append(";").append(System.lineSeparator());
+            source.append(System.lineSeparator());
+        }
+        String simpleName = className.substring(dot + 1);
+        line(source, 0, "public final class " + simpleName + " {");
+        source.append(System.lineSeparator());
+        if (generator.split) {
+            generator.splitClass(source, simpleName);
+        } else {
+            line(source, 1, "private " + simpleName + "() {");
+            line(source, 1, "}");
+            source.append(System.lineSeparator());
+            line(source, 1, "public static void run(int[] values, boolean[] defined, java.io.PrintStream out) {");
+            for (int slot = 0; slot < program.slotCount(); slot++) {
+                line(source, 2, generator.javaType(slot) + " v" + slot + " = " + generator.load(slot) + "; // " +
+                        generator.declaration(slot));
+                line(source, 2, "boolean d" + slot + " = defined[" + slot + "];");
+            }
+            line(source, 2, "try {");
+            source.append(generator.result);
+            line(source, 2, "} finally {");
+            for (int slot = 0; slot < program.slotCount(); slot++) {
+                generator.store(source, 3, slot);
+            }
+            line(source, 2, "}");
+            line(source, 1, "}");
+        }
+        for (String type: new String[] {"int", "float"}) {
+            String box = type.equals("int") ? "Integer" : "Float";
+            source.append(System.lineSeparator());
+            line(source, 1, "private static " + type + " first(" + type + " value, boolean ignored) {");
+            line(source, 2, "return value;");
+            line(source, 1, "}");
+            source.append(System.lineSeparator());
+            line(source, 1, "private static " + type + " defined(" + type + " value, boolean defined) {");
+            line(source, 2, "if (!defined) {");
+            line(source, 3, "throw new RuntimeException(\"Value of subexpression does not exist\");");
+            line(source, 2, "}");
+            line(source, 2, "return value;");
+            line(source, 1, "}");
+            source.append(System.lineSeparator());
+            line(source, 1, "private static String string(" + type + " value, boolean defined) {");
+            line(source, 2, "return defined ? " + box + ".toString(value) : \"null\";");
+            line(source, 1, "}");
+            source.append(System.lineSeparator());
+            line(source, 1, "private static boolean condition(" + type + " value, boolean defined) {");
+            line(source, 2, "return defined && value >= 0;");
+            line(source, 1, "}");
+        }
+        source.append(System.lineSeparator());
+        line(source, 0, "}");
+        return source.toString();
+    }
+
+    /** Generates the members of a class, whose variables are fields, and whose long sequences are split. */
+    private void splitClass(StringBuilder source, String simpleName) {
+        int slotCount = program.slotCount();
+        int chunks = (slotCount + MAX_LOCAL_SLOTS - 1) / MAX_LOCAL_SLOTS;
+        line(source, 1, "private final java.io.PrintStream out;");
+        source.append(System.lineSeparator());
+        for (int slot = 0; slot < slotCount; slot++) {
+            line(source, 1, "private " + javaType(slot) + " v" + slot + "; // " + declaration(slot));
+            line(source, 1, "private boolean d" + slot + ";");
+        }
+        source.append(System.lineSeparator());
+        line(source, 1, "private " + simpleName + "(java.io.PrintStream out) {");
+        line(source, 2, "this.out = out;");
+        line(source, 1, "}");
+        source.append(System.lineSeparator());
+        line(source, 1, "public static void run(int[] values, boolean[] defined, java.io.PrintStream out) {");
+        line(source, 2, simpleName + " program = new " + simpleName + "(out);");
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            line(source, 2, "program.load" + chunk + "(values, defined);");
+        }
+        line(source, 2, "try {");
+        line(source, 3, "program.execute();");
+        line(source, 2, "} finally {");
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            line(source, 3, "program.store" + chunk + "(values, defined);");
+        }
+        line(source, 2, "}");
+        line(source, 1, "}");
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int end = Math.min(slotCount, (chunk + 1) * MAX_LOCAL_SLOTS);
+            source.append(System.lineSeparator());
+            line(source, 1, "private void load" + chunk + "(int[] values, boolean[] defined) {");
+            for (int slot = chunk * MAX_LOCAL_SLOTS; slot < end; slot++) {
+                line(source, 2, "v" + slot + " = " + load(slot) + ";");
+                line(source, 2, "d" + slot + " = defined[" + slot + "];");
+            }
+            line(source, 1, "}");
+            source.append(System.lineSeparator());
+            line(source, 1, "private void store" + chunk + "(int[] values, boolean[] defined) {");
+            for (int slot = chunk * MAX_LOCAL_SLOTS; slot < end; slot++) {
+                store(source, 2, slot);
+            }
+            line(source, 1, "}");
+        }
+        source.append(System.lineSeparator());
+        line(source, 1, "private void execute() {");
+        source.append(result);
+        line(source, 1, "}");
+        for (String method: methods) {
+            source.append(System.lineSeparator()).append(method);
+        }
+    }
+
+    /** Returns the Java expression, which reads the value of a slot from the values. */
+    private String load(int slot) {
+        String load = "values[" + slot + "]";
+        return isInt(slot) ? load : "Float.intBitsToFloat(" + load + ")";
+    }
+
+    private void store(StringBuilder source, int indentLevel, int slot) {
+        String v = "v" + slot;
+        line(source, indentLevel, "values[" + slot + "] = " + (isInt(slot) ? v : "Float.floatToRawIntBits(" + v + ")") + ";");
+        line(source, indentLevel, "defined[" + slot + "] = d" + slot + ";");
+    }
+
+    private String declaration(int slot) {
+        return program.type(slot).getName() + " " + program.variable(slot).name;
+    }
+
+    private String javaType(int slot) {
+        return isInt(slot) ? "int" : "float";
+    }
+
+    private boolean isInt(int slot) {
+        return isInt(program.type(slot));
+    }
+
+    private static boolean isInt(Type type) {
+        return type instanceof PrimitiveType primitiveType && primitiveType.primitiveType == TypeKeyword.INT;
+    }
+
+    private static void line(StringBuilder builder, int indentLevel, String line) {
+        builder.append(INDENT.repeat(indentLevel)).append(line).append(System.lineSeparator());
+    }
+
+    private void line(String line) {
+        line(result, indentLevel, line);
+    }
+
+    private int slot(Var variable) {
+        int slot = program.slot(variable);
+        if (slot < 0) {
+            throw new IllegalArgumentException("The program does not belong to the statement: " + variable.name);
+        }
+        return slot;
+    }
+
+    /** Returns the Java expression for the value of an expression, which must be defined. */
+    private String definedValue(Expression expression) {
+        expression.accept(this);
+        return defined.equals("true") ? value : "defined(" + value + ", " + defined + ")";
+    }
+
+    private void assign(Var variable, Expression expression) {
+        expression.accept(this);
+        int slot = slot(variable);
+        line("v" + slot + " = " + value + ";");
+        line("d" + slot + " = " + defined + ";");
+    }
+
+    /** Translates a statement; an assignment used as a statement does not need its value. */
+    private void translate(Statement statement) {
+        if (statement instanceof Assignment assignment) {
+            assign(assignment.variable, assignment.expression);
+        } else {
+            statement.accept(this);
+        }
+    }
+
+    /**
+     * Translates the statements of a sequence; if they are too long for a
+     * method, and the class is split, consecutive statements are moved into
+     * methods of their own.
+     */
+    @Override
+    public void visit(Sequence sequence) {
+        if (!split) {
+            for (Statement statement: sequence.statements) {
+                translate(statement);
+            }
+            return;
+        }
+        StringBuilder enclosing = result;
+        List<String> parts = new ArrayList<>();
+        int length = 0;
+        for (Statement statement: sequence.statements) {
+            result = new StringBuilder();
+            translate(statement);
+            parts.add(result.toString());
+            length += result.length();
+        }
+        result = enclosing;
+        if (length <= MAX_METHOD_CHARS) {
+            parts.forEach(result::append);
+            return;
+        }
+        StringBuilder code = new StringBuilder();
+        for (String part: parts) {
+            if (code.length() > 0 && code.length() + part.length() > MAX_METHOD_CHARS) {
+                call(code.toString());
+                code.setLength(0);
+            }
+            code.append(part);
+        }
+        call(code.toString());
+    }
+
+    /** Moves code, which was generated with the current indentation, into a new method, and calls it. */
+    private void call(String code) {
+        String name = "part" + methods.size();
+        StringBuilder method = new StringBuilder();
+        line(method, 1, "private void " + name + "() {");
+        int indentation = INDENT.length() * indentLevel;
+        for (String codeLine: code.split(System.lineSeparator())) {
+            line(method, 2, codeLine.substring(indentation));
+        }
+        line(method, 1, "}");
+        methods.add(method.toString());
+        line(name + "();");
+    }
+
+    @Override
+    public void visit(Declaration declaration) {
+        if (declaration.expression != null) {
+            assign(declaration.variable, declaration.expression);
+        }
+    }
+
+    @Override
+    public void visit(PrintStatement printStatement) {
+        printStatement.expression.accept(this);
+        line("out.println(" + quote(printStatement.prefix) + " + string(" + value + ", " + defined + "));");
+    }
+
+    @Override
+    public void visit(WhileLoop whileLoop) {
+        whileLoop.expression.accept(this);
+        line("while (condition(" + value + ", " + defined + ")) {");
+        indentLevel++;
+        translate(whileLoop.statement);
+        indentLevel--;
+        line("}");
+    }
+
+    @Override
+    public void visit(Assignment assignment) {
+        assignment.expression.accept(this);
+        int slot = slot(assignment.variable);
+        value = "first(v" + slot + " = " + value + ", d" + slot + " = " + defined + ")";
+        defined = "d" + slot;
+    }
+
+    @Override
+    public void visit(Literal literal) {
+        if (literal instanceof IntLiteral intLiteral) {
+            value = intLiteral.literal < 0 ? "(" + intLiteral.literal + ")" : Integer.toString(intLiteral.literal);
+        } else if (literal instanceof FloatLiteral floatLiteral) {
+            float f = floatLiteral.literal;
+            if (Float.isFinite(f)) {
+                value = f < 0 || (f == 0 && 1 / f < 0) ? "(" + f + "f)" : f + "f";
+            } else {
+                value = "Float.intBitsToFloat(" + Float.floatToRawIntBits(f) + ")";
+            }
+        } else {
+            throw new IllegalArgumentException("Literal can not be translated: " + literal);
+        }
+        defined = "true";
+    }
+
+    @Override
+    public void visit(Var var) {
+        int slot = slot(var);
+        value = "v" + slot;
+        defined = "d" + slot;
+    }
+
+    @Override
+    public void visit(OperatorExpression operatorExpression) {
+        Operator operator = operatorExpression.operator;
+        String[] operands = new String[operatorExpression.operands.size()];
+        for (int i = 0; i < operands.length; i++) {
+            Expression operand = operatorExpression.operands.get(i);
+            String operandValue = definedValue(operand);
+            int number = operator.arity == 1 ? 1 : i;
+            if (operand instanceof OperatorExpression && ProgramSerializerVisitor.needsParentheses(operator, operand, number)) {
+                operandValue = "(" + operandValue + ")";
+            }
+            operands[i] = operandValue;
+        }
+        value = operands.length == 1 ?
+                operator.getName() + " " + operands[0] :
+                operands[0] + " " + operator.getName() + " " + operands[1];
+        defined = "true";
+    }
+
+    /** Returns a Java string literal for a string. */
+    private static String quote(String string) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c: string.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < ' ' || c > '~') {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+}
@@ -0,0 +1,109 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.analysis.ReductionLoop;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.INT;
+
+/**
+ * Replaces the reduction loops (see {@link ReductionLoop}) of a typed program
+ * by {@link ParallelReductionLoop}s. Loops nested in a reduction loop are not
+ * considered, since a reduction loop does not contain loops; other loops are
+ * searched for nested reduction loops. The top-level sequence should be made
+ * parallel (see {@link TypedProgram#parallel}) only after the loops.
+ */
+public class LoopParallelizer {
+
+    /** The default minimum number of iterations for executing a loop in parallel */
+    final public static long DEFAULT_THRESHOLD = 1024;
+
+    final private TypedProgram program;
+
+    final private ForkJoinPool pool;
+
+    final private boolean relaxedFloat;
+
+    final private long threshold;
+
+    /** The number of loops which were replaced */
+    private int count = 0;
+
+    private LoopParallelizer(TypedProgram program, ForkJoinPool pool, boolean relaxedFloat, long threshold) {
+        this.program = program;
+        this.pool = pool;
+        this.relaxedFloat = relaxedFloat;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Returns the program with its reduction loops executed in parallel on the
+     * given pool, or the program itself if it does not have reduction loops.
+     *
+     * @param relaxedFloat whether loops with float accumulators are executed in
+     *                     parallel, which can change the rounding of the results
+     */
+    public static TypedProgram parallelize(@NotNull TypedProgram program, @NotNull ForkJoinPool pool, boolean relaxedFloat) {
+        return parallelize(program, pool, relaxedFloat, DEFAULT_THRESHOLD);
+    }
+
+    public static TypedProgram parallelize(@NotNull TypedProgram program, @NotNull ForkJoinPool pool,
+                                           boolean relaxedFloat, long threshold) {
+        LoopParallelizer parallelizer = new LoopParallelizer(program, pool, relaxedFloat, threshold);
+        Executable statement = parallelizer.rewrite(program.statement);
+        return parallelizer.count > 0 ? program.withStatement(statement) : program;
+    }
+
+    private Executable rewrite(Executable executable) {
+        if (executable instanceof TypedSequence sequence) {
+            List<Executable> statements = new ArrayList<>();
+            boolean changed = false;
+            for (Executable statement: sequence.statements()) {
+                Executable rewritten = rewrite(statement);
+                changed |= rewritten != statement;
+                statements.add(rewritten);
+            }
+            return changed ? new TypedSequence((Sequence) sequence.source, statements) : sequence;
+        } else if (executable instanceof TypedCountedLoop loop) {
+            Executable parallel = reduction((WhileLoop) loop.source, loop.body);
+            if (parallel != null) {
+                return parallel;
+            }
+            Executable body = rewrite(loop.body);
+            return body != loop.body ? new TypedCountedLoop((CountedLoop) loop.source, loop.slot, body) : loop;
+        } else if (executable instanceof TypedWhileLoop loop) {
+            Executable parallel = reduction((WhileLoop) loop.source, loop.body);
+            if (parallel != null) {
+                return parallel;
+            }
+            Executable body = rewrite(loop.body);
+            return body != loop.body ? new TypedWhileLoop((WhileLoop) loop.source, loop.condition, body) : loop;
+        }
+        return executable;
+    }
+
+    private Executable reduction(WhileLoop loop, Executable body) {
+        ReductionLoop reduction = ReductionLoop.of(loop, program.typeMapping(), relaxedFloat);
+        if (reduction == null) {
+            return null;
+        }
+        int size = reduction.accumulators.size();
+        int[] slots = new int[size];
+        boolean[] multiplies = new boolean[size];
+        boolean[] ints = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            ReductionLoop.Accumulator accumulator = reduction.accumulators.get(i);
+            slots[i] = program.slot(accumulator.variable);
+            multiplies[i] = accumulator.operator == Operator.MULT;
+            ints[i] = INT.equals(accumulator.type);
+        }
+        count++;
+        return new ParallelReductionLoop(loop, program.slot(reduction.inductionVariable.variable),
+                reduction.inductionVariable, body, slots, multiplies, ints, pool, threshold);
+    }
+
+}
@@ -0,0 +1,126 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+/**
+ * A {@link VariableStore} outside of the heap, in a single direct buffer, for
+ * programs with very many variables: the store does not add objects the
+ * garbage collector needs to scan, and its footprint is exactly 4 bytes and
+ * 1 bit per slot. The value of a slot is at the fixed offset
+ * <code>4 * slot</code> (floats by {@link Float#floatToRawIntBits(float)});
+ * the flags whether the slots are defined follow as a bitset.<p>
+ *
+ * Closing the store drops its buffer in constant time, independently of the
+ * number of slots, but the memory is not freed deterministically: it is only
+ * returned by the cleaner of the buffer, after the garbage collector found the
+ * buffer unreachable, so stores should be long-lived rather than created for
+ * each short execution. The store must not be used anymore after closing; an
+ * access to a closed store, like an access to a slot out of range, throws an
+ * {@link IndexOutOfBoundsException}. Snapshots are on the heap (see
+ * {@link #snapshot()}).
+ */
+public class OffHeapVariableStore implements VariableStore, AutoCloseable {
+
+    final private static ByteBuffer CLOSED = ByteBuffer.allocateDirect(0);
+
+    final private int size;
+
+    private ByteBuffer buffer;
+
+    public OffHeapVariableStore(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("The size of a store must not be negative: " + size);
+        }
+        this.size = size;
+        buffer = ByteBuffer.allocateDirect(Math.addExact(Math.multiplyExact(4, size), (size + 7) / 8))
+                .order(ByteOrder.nativeOrder());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** Returns the number of bytes outside of the heap used by this store. */
+    public long byteSize() {
+        return buffer.capacity();
+    }
+
+    private int offset(int slot) {
+        return 4 * Objects.checkIndex(slot, size);
+    }
+
+    private int flags(int slot) {
+        return 4 * size + (Objects.checkIndex(slot, size) >>> 3);
+    }
+
+    private void define(int slot, boolean defined) {
+        int index = flags(slot);
+        int mask = 1 << (slot & 7);
+        byte flags = buffer.get(index);
+        buffer.put(index, (byte) (defined ? flags | mask : flags & ~mask));
+    }
+
+    @Override
+    public boolean isDefined(int slot) {
+        return (buffer.get(flags(slot)) & 1 << (slot & 7)) != 0;
+    }
+
+    @Override
+    public int getInt(int slot) {
+        return buffer.getInt(offset(slot));
+    }
+
+    @Override
+    public float getFloat(int slot) {
+        return buffer.getFloat(offset(slot));
+    }
+
+    @Override
+    public void setInt(int slot, int value) {
+        buffer.putInt(offset(slot), value);
+        define(slot, true);
+    }
+
+    @Override
+    public void setFloat(int slot, float value) {
+        buffer.putInt(offset(slot), Float.floatToRawIntBits(value));
+        define(slot, true);
+    }
+
+    @Override
+    public void clear(int slot) {
+        define(slot, false);
+    }
+
+    @Override
+    public void copy(int from, int to) {
+        buffer.putInt(offset(to), buffer.getInt(offset(from)));
+        define(to, isDefined(from));
+    }
+
+    /**
+     * Returns a snapshot on the heap: the parallel statements take a snapshot
+     * for each task, and direct buffers, which are only freed by the garbage
+     * collector, would pile up outside of the heap.
+     */
+    @Override
+    public HeapVariableStore snapshot() {
+        int[] values = new int[size];
+        boolean[] defined = new boolean[size];
+        buffer.asIntBuffer().get(0, values);
+        for (int slot = 0; slot < size; slot++) {
+            defined[slot] = isDefined(slot);
+        }
+        return new HeapVariableStore(values, defined);
+    }
+
+    /** Drops the buffer of this store, whose memory is freed when the buffer is collected. */
+    @Override
+    public void close() {
+        buffer = CLOSED;
+    }
+
+}
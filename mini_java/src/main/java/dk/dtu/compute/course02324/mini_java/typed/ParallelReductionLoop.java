@@ -0,0 +1,155 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.analysis.InductionVariable;
+import dk.dtu.compute.course02324.mini_java.model.WhileLoop;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A reduction loop of the typed tree (see
+ * {@link dk.dtu.compute.course02324.mini_java.analysis.ReductionLoop
+ * ReductionLoop}), whose iterations are split into chunks, which are executed
+ * concurrently on a {@link ForkJoinPool}. Each chunk runs the body on its own
+ * snapshot of the variables, with the induction variable set to its value at
+ * the beginning of the chunk and the accumulators set to the neutral element
+ * of their operator; afterwards, the partial results of the chunks are
+ * combined into the accumulators in the order of the chunks.<p>
+ *
+ * Loops with fewer iterations than a threshold are executed sequentially. If
+ * an accumulator does not have a value when the loop is entered, or if an
+ * iteration fails, the loop is executed sequentially on the unchanged
+ * variables, so that the values and the exception are those of a sequential
+ * execution.
+ */
+public class ParallelReductionLoop extends TypedStatement {
+
+    /** The slot of the induction variable */
+    final public int slot;
+
+    /** The induction variable, which determines the number of iterations */
+    final private InductionVariable inductionVariable;
+
+    final private int step;
+
+    final public Executable body;
+
+    /** The slots of the accumulators */
+    final private int[] accumulators;
+
+    /** Whether each accumulator multiplies (otherwise it adds) */
+    final private boolean[] multiplies;
+
+    /** Whether each accumulator is an int (otherwise a float) */
+    final private boolean[] ints;
+
+    final private ForkJoinPool pool;
+
+    /** The minimum number of iterations for which the loop is executed in parallel */
+    final private long threshold;
+
+    public ParallelReductionLoop(@NotNull WhileLoop source, int slot, @NotNull InductionVariable inductionVariable,
+                                 @NotNull Executable body, int[] accumulators, boolean[] multiplies, boolean[] ints,
+                                 @NotNull ForkJoinPool pool, long threshold) {
+        super(source);
+        this.slot = slot;
+        this.inductionVariable = inductionVariable;
+        this.step = inductionVariable.step;
+        this.body = body;
+        this.accumulators = accumulators.clone();
+        this.multiplies = multiplies.clone();
+        this.ints = ints.clone();
+        this.pool = pool;
+        this.threshold = Math.max(2, threshold);
+    }
+
+    @Override
+    public void execute(@NotNull Frame frame) {
+        VariableStore variables = frame.variables;
+        if (!variables.isDefined(slot)) {
+            return;
+        }
+        int entryValue = variables.getInt(slot);
+        long trips = inductionVariable.tripCount(entryValue);
+        if (trips < threshold || !accumulatorsDefined(variables) || !executeChunks(frame, entryValue, trips)) {
+            executeSequentially(frame, trips);
+        }
+    }
+
+    private boolean accumulatorsDefined(VariableStore variables) {
+        for (int accumulator: accumulators) {
+            if (!variables.isDefined(accumulator)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void executeSequentially(Frame frame, long trips) {
+        for (long trip = 0; trip < trips; trip++) {
+            body.execute(frame);
+        }
+    }
+
+    /**
+     * Executes the iterations in chunks and combines their results into the
+     * variables; returns false, without changing the variables, if an
+     * iteration failed.
+     */
+    private boolean executeChunks(Frame frame, int entryValue, long trips) {
+        VariableStore variables = frame.variables;
+        int chunks = (int) Math.min(trips, 4L * pool.getParallelism());
+        VariableStore[] stores = new VariableStore[chunks];
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[chunks];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            long start = trips * chunk / chunks;
+            long end = trips * (chunk + 1) / chunks;
+            VariableStore store = variables.snapshot();
+            store.setInt(slot, (int) (entryValue - start * step));
+            for (int i = 0; i < accumulators.length; i++) {
+                if (ints[i]) {
+                    store.setInt(accumulators[i], multiplies[i] ? 1 : 0);
+                } else {
+                    store.setFloat(accumulators[i], multiplies[i] ? 1.0f : 0.0f);
+                }
+            }
+            stores[chunk] = store;
+            // the body does not print, so that the chunks can share the stream
+            Frame chunkFrame = new Frame(store, frame.out);
+            tasks[chunk] = pool.submit(() -> {
+                for (long trip = start; trip < end; trip++) {
+                    body.execute(chunkFrame);
+                }
+            });
+        }
+        boolean failed = false;
+        for (ForkJoinTask<?> task: tasks) {
+            try {
+                task.join();
+            } catch (RuntimeException e) {
+                failed = true;
+            }
+        }
+        if (failed) {
+            return false;
+        }
+        for (int i = 0; i < accumulators.length; i++) {
+            int accumulator = accumulators[i];
+            for (VariableStore store: stores) {
+                if (ints[i]) {
+                    int a = variables.getInt(accumulator);
+                    int b = store.getInt(accumulator);
+                    variables.setInt(accumulator, multiplies[i] ? a * b : a + b);
+                } else {
+                    float a = variables.getFloat(accumulator);
+                    float b = store.getFloat(accumulator);
+                    variables.setFloat(accumulator, multiplies[i] ? a * b : a + b);
+                }
+            }
+        }
+        variables.setInt(slot, entryValue - (int) trips * step);
+        return true;
+    }
+
+}
@@ -0,0 +1,121 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.Sequence;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A sequence of the typed tree, whose statements are partitioned into
+ * independent groups (see
+ * {@link dk.dtu.compute.course02324.mini_java.analysis.IndependentStatements
+ * IndependentStatements}), which are executed concurrently on a
+ * {@link ForkJoinPool}. Each group runs on its own snapshot of the variables,
+ * and each statement prints into its own buffer; when all groups are done,
+ * the buffers are printed in the original order of the statements, and the
+ * variables written by each group are copied back from its snapshot.<p>
+ *
+ * If a statement fails, the results of the groups are discarded, and the
+ * sequence is executed again sequentially on the unchanged variables, so that
+ * the output, the values, and the exception are exactly those of a sequential
+ * execution.
+ */
+public class ParallelSequence extends TypedStatement {
+
+    final private Executable[] statements;
+
+    /** The indices of the statements of each group */
+    final private int[][] groups;
+
+    /** The slots written by each group */
+    final private int[][] written;
+
+    /** Whether the variable of each slot is an int (otherwise a float) */
+    final private boolean[] intSlots;
+
+    final private ForkJoinPool pool;
+
+    public ParallelSequence(@NotNull Sequence source, @NotNull List<Executable> statements, int[][] groups,
+                            int[][] written, boolean[] intSlots, @NotNull ForkJoinPool pool) {
+        super(source);
+        this.statements = statements.toArray(new Executable[0]);
+        this.groups = groups;
+        this.written = written;
+        this.intSlots = intSlots;
+        this.pool = pool;
+    }
+
+    public List<Executable> statements() {
+        return List.of(statements);
+    }
+
+    /** Returns the number of groups, which are executed concurrently. */
+    public int groupCount() {
+        return groups.length;
+    }
+
+    @Override
+    public void execute(@NotNull Frame frame) {
+        ByteArrayOutputStream[] buffers = new ByteArrayOutputStream[statements.length];
+        VariableStore[] stores = new VariableStore[groups.length];
+        boolean[] failed = new boolean[groups.length];
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[groups.length];
+        for (int group = 0; group < groups.length; group++) {
+            int g = group;
+            stores[g] = frame.variables.snapshot();
+            tasks[g] = pool.submit(() -> failed[g] = !executeGroup(g, stores[g], buffers));
+        }
+        boolean anyFailed = false;
+        for (int group = 0; group < groups.length; group++) {
+            tasks[group].join();
+            anyFailed |= failed[group];
+        }
+
+        if (anyFailed) {
+            for (Executable statement: statements) {
+                statement.execute(frame);
+            }
+            return;
+        }
+        for (ByteArrayOutputStream buffer: buffers) {
+            frame.out.write(buffer.toByteArray(), 0, buffer.size());
+        }
+        frame.out.flush();
+        for (int group = 0; group < groups.length; group++) {
+            for (int slot: written[group]) {
+                merge(stores[group], frame.variables, slot);
+            }
+        }
+    }
+
+    /** Executes the statements of a group; returns false if one of them failed. */
+    private boolean executeGroup(int group, VariableStore store, ByteArrayOutputStream[] buffers) {
+        try {
+            for (int index: groups[group]) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                buffers[index] = buffer;
+                PrintStream out = new PrintStream(buffer);
+                statements[index].execute(new Frame(store, out));
+                out.flush();
+            }
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private void merge(VariableStore from, VariableStore to, int slot) {
+        if (!from.isDefined(slot)) {
+            to.clear(slot);
+        } else if (intSlots[slot]) {
+            to.setInt(slot, from.getInt(slot));
+        } else {
+            to.setFloat(slot, from.getFloat(slot));
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.Assignment;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A fused assignment <code>v = v + c</code> or <code>v = v - c</code> of an
+ * int variable and an int constant: it reads and writes the slot of the
+ * variable directly, without evaluating operands or calling the operator.
+ */
+public class QuickAddConstant extends TypedAssignment {
+
+    /** The constant added to the variable (negated for a subtraction) */
+    final public int delta;
+
+    public QuickAddConstant(@NotNull TypedAssignment assignment, int delta) {
+        super((Assignment) assignment.source, assignment.type, assignment.slot, assignment.expression);
+        if (!isInt) {
+            throw new IllegalArgumentException("Only int variables can be fused: " + variable);
+        }
+        this.delta = delta;
+    }
+
+    private int add(VariableStore variables) {
+        TypedVar.checkDefined(variables, slot);
+        int value = variables.getInt(slot) + delta;
+        variables.setInt(slot, value);
+        return value;
+    }
+
+    @Override
+    public void execute(@NotNull Frame frame) {
+        add(frame.variables);
+    }
+
+    @Override
+    public int evaluateInt(@NotNull VariableStore variables) {
+        return add(variables);
+    }
+
+    @Override
+    public float evaluateFloat(@NotNull VariableStore variables) {
+        return add(variables);
+    }
+
+    @Override
+    public void evaluateInto(@NotNull VariableStore variables, int slot) {
+        variables.setInt(slot, add(variables));
+    }
+
+    @Override
+    public boolean isNotNegative(@NotNull VariableStore variables) {
+        return add(variables) >= 0;
+    }
+
+    @Override
+    public String evaluateToString(@NotNull VariableStore variables) {
+        return Integer.toString(add(variables));
+    }
+
+}
@@ -0,0 +1,36 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.PrintStatement;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A fused print statement of a variable, which formats the value of the slot
+ * of the variable directly.
+ */
+public class QuickPrintVar extends TypedPrintStatement {
+
+    final public int slot;
+
+    final private boolean isInt;
+
+    public QuickPrintVar(@NotNull TypedPrintStatement printStatement, @NotNull TypedVar variable) {
+        super((PrintStatement) printStatement.source, variable);
+        this.slot = variable.slot;
+        this.isInt = variable.isInt;
+    }
+
+    @Override
+    public void execute(@NotNull Frame frame) {
+        VariableStore variables = frame.variables;
+        String value;
+        if (!variables.isDefined(slot)) {
+            value = "null";
+        } else if (isInt) {
+            value = Integer.toString(variables.getInt(slot));
+        } else {
+            value = Float.toString(variables.getFloat(slot));
+        }
+        frame.out.println(prefix + value);
+    }
+
+}
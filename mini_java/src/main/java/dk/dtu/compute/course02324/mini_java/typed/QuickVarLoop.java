@@ -0,0 +1,30 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.WhileLoop;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A fused while-loop, whose condition is an int variable: the condition is
+ * checked on the slot of the variable directly.
+ */
+public class QuickVarLoop extends TypedWhileLoop {
+
+    final public int slot;
+
+    public QuickVarLoop(@NotNull TypedWhileLoop whileLoop, @NotNull TypedVar condition) {
+        super((WhileLoop) whileLoop.source, condition, whileLoop.body);
+        if (!condition.isInt) {
+            throw new IllegalArgumentException("Only int conditions can be fused: " + condition.variable);
+        }
+        this.slot = condition.slot;
+    }
+
+    @Override
+    public void execute(@NotNull Frame frame) {
+        VariableStore variables = frame.variables;
+        while (variables.isDefined(slot) && variables.getInt(slot) >= 0) {
+            body.execute(frame);
+        }
+    }
+
+}
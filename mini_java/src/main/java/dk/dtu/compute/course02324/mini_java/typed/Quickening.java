@@ -0,0 +1,180 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+import static dk.dtu.compute.course02324.mini_java.model.Operator.MINUS2;
+import static dk.dtu.compute.course02324.mini_java.model.Operator.PLUS2;
+
+/**
+ * Rewrites a typed tree bottom-up, replacing common idioms by fused nodes
+ * (superinstructions) which do the whole operation in one step. The idioms
+ * are given by a catalogue of {@link QuickeningPattern}s; for each node, the
+ * first matching pattern is applied. The default catalogue contains:
+ * <ul>
+ *   <li>{@link #ADD_CONSTANT}: <code>v = v + c</code>, <code>v = c + v</code> and
+ *       <code>v = v - c</code> for an int variable and constant
+ *       ({@link QuickAddConstant})</li>
+ *   <li>{@link #PRINT_VARIABLE}: printing a variable ({@link QuickPrintVar})</li>
+ *   <li>{@link #VARIABLE_LOOP}: a while-loop with a variable as condition
+ *       ({@link QuickVarLoop})</li>
+ * </ul>
+ * Counted, closed-form and parallel loops as well as parallel sequences are
+ * left as they are. The number of rewrites by each pattern are counted in
+ * {@link #rewrites}.
+ */
+public class Quickening {
+
+    final public static QuickeningPattern ADD_CONSTANT = new QuickeningPattern() {
+
+        @Override
+        public String name() {
+            return "add-constant";
+        }
+
+        @Override
+        public Executable quickenStatement(@NotNull Executable statement) {
+            return statement instanceof TypedAssignment assignment ? quickenExpression(assignment) : null;
+        }
+
+        @Override
+        public TypedAssignment quickenExpression(@NotNull TypedExpression expression) {
+            if (!(expression instanceof TypedAssignment assignment) || !assignment.isInt
+                    || assignment instanceof QuickAddConstant
+                    || !(assignment.expression instanceof TypedOperation operation)) {
+                return null;
+            }
+            if (operation.left instanceof TypedVar var && var.slot == assignment.slot
+                    && operation.right instanceof TypedLiteral literal) {
+                if (operation.operator == PLUS2) {
+                    return new QuickAddConstant(assignment, literal.intValue);
+                } else if (operation.operator == MINUS2) {
+                    return new QuickAddConstant(assignment, -literal.intValue);
+                }
+            } else if (operation.operator == PLUS2 && operation.left instanceof TypedLiteral literal
+                    && operation.right instanceof TypedVar var && var.slot == assignment.slot) {
+                return new QuickAddConstant(assignment, literal.intValue);
+            }
+            return null;
+        }
+
+    };
+
+    final public static QuickeningPattern PRINT_VARIABLE = new QuickeningPattern() {
+
+        @Override
+        public String name() {
+            return "print-variable";
+        }
+
+        @Override
+        public Executable quickenStatement(@NotNull Executable statement) {
+            if (statement instanceof TypedPrintStatement printStatement && !(statement instanceof QuickPrintVar)
+                    && printStatement.expression instanceof TypedVar var) {
+                return new QuickPrintVar(printStatement, var);
+            }
+            return null;
+        }
+
+    };
+
+    final public static QuickeningPattern VARIABLE_LOOP = new QuickeningPattern() {
+
+        @Override
+        public String name() {
+            return "variable-loop";
+        }
+
+        @Override
+        public Executable quickenStatement(@NotNull Executable statement) {
+            if (statement instanceof TypedWhileLoop whileLoop && !(statement instanceof QuickVarLoop)
+                    && whileLoop.condition instanceof TypedVar var && var.isInt) {
+                return new QuickVarLoop(whileLoop, var);
+            }
+            return null;
+        }
+
+    };
+
+    final public static List<QuickeningPattern> DEFAULT_PATTERNS = List.of(ADD_CONSTANT, PRINT_VARIABLE, VARIABLE_LOOP);
+
+    final private List<QuickeningPattern> patterns;
+
+    /** The number of rewrites by the name of each pattern */
+    final public Map<String, Integer> rewrites = new LinkedHashMap<>();
+
+    public Quickening() {
+        this(DEFAULT_PATTERNS);
+    }
+
+    public Quickening(@NotNull List<QuickeningPattern> patterns) {
+        this.patterns = List.copyOf(patterns);
+        for (QuickeningPattern pattern: patterns) {
+            rewrites.put(pattern.name(), 0);
+        }
+    }
+
+    /** Returns a program with the same variables, whose typed tree is quickened. */
+    public TypedProgram quicken(@NotNull TypedProgram program) {
+        return program.withStatement(quicken(program.statement));
+    }
+
+    /** Returns the quickened version of a statement of a typed tree. */
+    public Executable quicken(@NotNull Executable statement) {
+        Executable rebuilt = statement;
+        if (statement instanceof TypedAssignment assignment) {
+            rebuilt = rebuild(assignment);
+        } else if (statement instanceof TypedSequence sequence) {
+            List<Executable> statements = new ArrayList<>();
+            for (Executable substatement: sequence.statements()) {
+                statements.add(quicken(substatement));
+            }
+            rebuilt = new TypedSequence((Sequence) sequence.source, statements);
+        } else if (statement instanceof TypedDeclaration declaration) {
+            rebuilt = new TypedDeclaration((Declaration) declaration.source, declaration.slot,
+                    declaration.expression != null ? quicken(declaration.expression) : null);
+        } else if (statement instanceof TypedPrintStatement printStatement) {
+            rebuilt = new TypedPrintStatement((PrintStatement) printStatement.source, quicken(printStatement.expression));
+        } else if (statement instanceof TypedWhileLoop whileLoop) {
+            rebuilt = new TypedWhileLoop((WhileLoop) whileLoop.source, quicken(whileLoop.condition), quicken(whileLoop.body));
+        } else if (statement instanceof TypedCountedLoop countedLoop) {
+            rebuilt = new TypedCountedLoop((CountedLoop) countedLoop.source, countedLoop.slot, quicken(countedLoop.body));
+        }
+        for (QuickeningPattern pattern: patterns) {
+            Executable replacement = pattern.quickenStatement(rebuilt);
+            if (replacement != null) {
+                rewrites.merge(pattern.name(), 1, Integer::sum);
+                return replacement;
+            }
+        }
+        return rebuilt;
+    }
+
+    /** Returns the quickened version of an expression of a typed tree. */
+    public TypedExpression quicken(@NotNull TypedExpression expression) {
+        TypedExpression rebuilt = expression;
+        if (expression instanceof TypedAssignment assignment) {
+            rebuilt = rebuild(assignment);
+        } else if (expression instanceof TypedOperation operation) {
+            rebuilt = new TypedOperation((OperatorExpression) operation.source, operation.type,
+                    quicken(operation.left), operation.right != null ? quicken(operation.right) : null,
+                    operation.intOperation, operation.floatOperation);
+        }
+        for (QuickeningPattern pattern: patterns) {
+            TypedExpression replacement = pattern.quickenExpression(rebuilt);
+            if (replacement != null) {
+                rewrites.merge(pattern.name(), 1, Integer::sum);
+                return replacement;
+            }
+        }
+        return rebuilt;
+    }
+
+    private TypedAssignment rebuild(TypedAssignment assignment) {
+        return new TypedAssignment((Assignment) assignment.source, assignment.type, assignment.slot,
+                quicken(assignment.expression));
+    }
+
+}
@@ -0,0 +1,28 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A pattern of the {@link Quickening} catalogue: a common idiom of the typed
+ * tree, which is replaced by a fused node doing the whole operation in one
+ * step. A pattern may match statements, expressions or both; it gets the
+ * node after its children have been quickened, and returns the replacement,
+ * which must behave exactly like the node, or <code>null</code> if the node
+ * does not match.
+ */
+public interface QuickeningPattern {
+
+    /** The name of the pattern, under which its rewrites are counted */
+    String name();
+
+    /** Returns the replacement of a statement, or <code>null</code> if it does not match. */
+    default Executable quickenStatement(@NotNull Executable statement) {
+        return null;
+    }
+
+    /** Returns the replacement of an expression, or <code>null</code> if it does not match. */
+    default TypedExpression quickenExpression(@NotNull TypedExpression expression) {
+        return null;
+    }
+
+}
@@ -0,0 +1,137 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.BinaryProgramReader;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.*;
+
+/**
+ * Executes a program, which is given as a stream of top-level statements of
+ * unbounded length, one statement at a time: each statement is type checked
+ * against the declarations of the statements before it, lowered, executed
+ * and then dropped. The memory needed is bounded by the number of variables
+ * of the program and the size of the largest top-level statement, not by the
+ * length of the program.<p>
+ *
+ * The output and the final values are the ones of executing the sequence of
+ * all statements, as long as it is type correct. Since the rest of the
+ * program is not known yet, a statement with problems can not be rejected
+ * together with the whole program, as the
+ * {@link dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor
+ * ProgramTypeVisitor} would; instead, execution stops before the first
+ * statement with problems, which are then in {@link #problems()}.
+ */
+public class StreamingExecutor {
+
+    final private FusedLowering lowering = new FusedLowering();
+
+    final private PrintStream out;
+
+    /** The values of the variables; grown when new variables are declared */
+    private VariableStore store = new HeapVariableStore(0);
+
+    /** The number of statements executed so far */
+    private long executed = 0;
+
+    public StreamingExecutor(@NotNull PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Type checks and executes the next statement of the program. Returns
+     * <code>false</code> and does not execute the statement if it has
+     * problems, or if an earlier statement had problems.
+     */
+    public boolean execute(@NotNull Statement statement) {
+        Executable executable = lowering.lowerNext(statement);
+        if (executable == null) {
+            return false;
+        }
+        int slots = lowering.slotCount();
+        if (slots > store.size()) {
+            grow(slots);
+        }
+        executable.execute(new Frame(store, out));
+        executed++;
+        return true;
+    }
+
+    /**
+     * Executes the statements of an iterator, which are requested only when
+     * they are executed, until the iterator is exhausted or a statement has
+     * problems. Returns whether all statements were executed.
+     */
+    public boolean run(@NotNull Iterator<? extends Statement> statements) {
+        while (statements.hasNext()) {
+            if (!execute(statements.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Executes the statements of a stream written by a {@link dk.dtu.compute.course02324.mini_java.semantics.BinaryProgramWriter}. */
+    public boolean run(@NotNull InputStream in) throws IOException {
+        BinaryProgramReader reader = new BinaryProgramReader(in);
+        for (Statement statement = reader.read(); statement != null; statement = reader.read()) {
+            if (!execute(statement)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Doubles the store at least up to the given number of slots, keeping the values. */
+    private void grow(int slots) {
+        VariableStore grown = new HeapVariableStore(Math.max(slots, 2 * store.size()));
+        for (int slot = 0; slot < store.size() && slot < lowering.slotCount(); slot++) {
+            if (!store.isDefined(slot)) {
+                continue;
+            }
+            if (isInt(lowering.slotType(slot))) {
+                grown.setInt(slot, store.getInt(slot));
+            } else {
+                grown.setFloat(slot, store.getFloat(slot));
+            }
+        }
+        store = grown;
+    }
+
+    /** Returns the problems of the statement, at which the execution stopped; empty if it did not stop. */
+    public List<String> problems() {
+        return Collections.unmodifiableList(lowering.problems);
+    }
+
+    /** Returns the number of statements executed so far. */
+    public long executed() {
+        return executed;
+    }
+
+    /** Returns the number of variables declared so far. */
+    public int variableCount() {
+        return lowering.slotCount();
+    }
+
+    /** Returns the current values of the variables in the order of their declaration; undefined values are <code>null</code>. */
+    public Map<Var, Number> values() {
+        Map<Var, Number> result = new LinkedHashMap<>();
+        List<Var> variables = lowering.variables();
+        for (int slot = 0; slot < lowering.slotCount(); slot++) {
+            Number value = null;
+            if (slot < store.size() && store.isDefined(slot)) {
+                value = isInt(lowering.slotType(slot)) ? (Number) store.getInt(slot) : (Number) store.getFloat(slot);
+            }
+            result.put(variables.get(slot), value);
+        }
+        return result;
+    }
+
+    private static boolean isInt(Type type) {
+        return type instanceof PrimitiveType primitiveType && primitiveType.primitiveType == TypeKeyword.INT;
+    }
+
+}
@@ -0,0 +1,207 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramExecutorVisitor;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes a type-checked program in two tiers: all statements start out in
+ * the tree-walking interpreter of the {@link ProgramExecutorVisitor}, which
+ * counts the back-edges (completed iterations) of each while-loop. When the
+ * back-edges of a loop cross a threshold, the loop is lowered into a typed
+ * tree (see {@link TypedLowering}) on a background compiler thread, while the
+ * interpreter goes on executing it. At the first loop header after the
+ * compilation has completed, the execution is transferred into the typed
+ * tree with the current values of the variables (on-stack replacement); when
+ * the loop terminates, the values are transferred back. Later executions of
+ * the loop start in the typed tree right away.<p>
+ *
+ * Loops are compiled as a whole, including their nested loops, so a hot
+ * inner loop is compiled first, and the outer loop later if it gets hot as
+ * well. The transitions between the tiers are counted, and the counters can
+ * be read at any time, also from other threads.
+ */
+public class TieredExecutor extends ProgramExecutorVisitor {
+
+    /** The default number of back-edges of a loop, after which it is compiled */
+    final public static int DEFAULT_THRESHOLD = 1000;
+
+    /** The thread on which loops are compiled by default */
+    final private static Executor COMPILER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mini-java-compiler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    final private ProgramTypeVisitor pv;
+
+    final public int threshold;
+
+    final private Executor compiler;
+
+    /** The state of each loop, which was executed at least once */
+    final private Map<WhileLoop, LoopState> loops = new IdentityHashMap<>();
+
+    final private AtomicLong backEdges = new AtomicLong();
+    final private AtomicLong compilationsRequested = new AtomicLong();
+    final private AtomicLong compilationsCompleted = new AtomicLong();
+    final private AtomicLong compilationsFailed = new AtomicLong();
+    final private AtomicLong osrTransitions = new AtomicLong();
+    final private AtomicLong compiledEntries = new AtomicLong();
+
+    /** The back-edges and the compiled form of a loop */
+    private static class LoopState {
+
+        long backEdges;
+
+        CompletableFuture<TypedProgram> compiled;
+
+        /** Returns the compiled loop, if the compilation has completed successfully. */
+        TypedProgram ready() {
+            return compiled != null && compiled.isDone() && !compiled.isCompletedExceptionally() ?
+                    compiled.join() : null;
+        }
+
+    }
+
+    public TieredExecutor(@NotNull ProgramTypeVisitor pv) {
+        this(pv, DEFAULT_THRESHOLD, COMPILER);
+    }
+
+    /**
+     * Creates an executor, which compiles loops after the given number of
+     * back-edges on the given executor (with <code>Runnable::run</code>, the
+     * loops are compiled synchronously in the interpreter thread).
+     */
+    public TieredExecutor(@NotNull ProgramTypeVisitor pv, int threshold, @NotNull Executor compiler) {
+        super(pv);
+        if (threshold < 0) {
+            throw new IllegalArgumentException("The threshold must not be negative.");
+        }
+        this.pv = pv;
+        this.threshold = threshold;
+        this.compiler = compiler;
+    }
+
+    @Override
+    public void visit(WhileLoop whileLoop) {
+        LoopState state = loops.computeIfAbsent(whileLoop, key -> new LoopState());
+        TypedProgram compiled = state.ready();
+        if (compiled != null) {
+            compiledEntries.incrementAndGet();
+            executeCompiled(compiled);
+            return;
+        }
+        whileLoop.expression.accept(this);
+        Number value = values.get(whileLoop.expression);
+        while (value != null && value.doubleValue() >= 0) {
+            visit(whileLoop.statement);
+            publish(whileLoop);
+            backEdges.incrementAndGet();
+            if (++state.backEdges >= threshold && state.compiled == null) {
+                compilationsRequested.incrementAndGet();
+                state.compiled = CompletableFuture.supplyAsync(() -> compile(whileLoop), compiler);
+            }
+            compiled = state.ready();
+            if (compiled != null) {
+                osrTransitions.incrementAndGet();
+                executeCompiled(compiled);
+                return;
+            }
+            whileLoop.expression.accept(this);
+            value = values.get(whileLoop.expression);
+        }
+    }
+
+    /** Lowers a loop into a typed tree; runs on the compiler thread. */
+    private TypedProgram compile(WhileLoop whileLoop) {
+        try {
+            TypedProgram compiled = TypedLowering.lower(whileLoop, pv.typeMapping);
+            compilationsCompleted.incrementAndGet();
+            return compiled;
+        } catch (RuntimeException e) {
+            compilationsFailed.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Executes a compiled loop from its header with the current values of
+     * the variables, and transfers the values back afterwards, also if the
+     * execution fails.
+     */
+    private void executeCompiled(TypedProgram compiled) {
+        VariableStore store = compiled.newStore();
+        for (int slot = 0; slot < compiled.slotCount(); slot++) {
+            Number value = values.get(compiled.variable(slot));
+            if (value instanceof Integer intValue) {
+                store.setInt(slot, intValue);
+            } else if (value instanceof Float floatValue) {
+                store.setFloat(slot, floatValue);
+            }
+        }
+        try {
+            compiled.execute(new Frame(store, System.out));
+        } finally {
+            compiled.values(store).forEach((var, value) -> {
+                if (value != null) {
+                    values.put(var, value);
+                }
+            });
+        }
+    }
+
+    /** Returns whether a loop has been compiled, i.e. whether it is executed in the typed tree from now on. */
+    public boolean isCompiled(@NotNull WhileLoop whileLoop) {
+        LoopState state = loops.get(whileLoop);
+        return state != null && state.ready() != null;
+    }
+
+    /** Returns the number of back-edges taken in the interpreter. */
+    public long backEdges() {
+        return backEdges.get();
+    }
+
+    /** Returns the number of loops, whose compilation was requested. */
+    public long compilationsRequested() {
+        return compilationsRequested.get();
+    }
+
+    /** Returns the number of loops, which were compiled successfully. */
+    public long compilationsCompleted() {
+        return compilationsCompleted.get();
+    }
+
+    /** Returns the number of loops, whose compilation failed; they stay in the interpreter. */
+    public long compilationsFailed() {
+        return compilationsFailed.get();
+    }
+
+    /** Returns the number of transitions into a compiled loop at a loop header in the middle of its execution. */
+    public long osrTransitions() {
+        return osrTransitions.get();
+    }
+
+    /** Returns the number of executions of loops, which started in the compiled loop. */
+    public long compiledEntries() {
+        return compiledEntries.get();
+    }
+
+    @Override
+    public String toString() {
+        return "back-edges " + backEdges() +
+                ", compilations " + compilationsCompleted() + "/" + compilationsRequested() +
+                " (failed " + compilationsFailed() + ")" +
+                ", OSR transitions " + osrTransitions() +
+                ", compiled entries " + compiledEntries();
+    }
+
+}
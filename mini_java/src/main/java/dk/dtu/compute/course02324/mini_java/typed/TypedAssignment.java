@@ -0,0 +1,71 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.Assignment;
+import dk.dtu.compute.course02324.mini_java.model.Type;
+import dk.dtu.compute.course02324.mini_java.model.Var;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An assignment of the typed tree, which can be used as an expression (its
+ * value is the assigned value) and as a statement.
+ */
+public class TypedAssignment extends TypedExpression implements Executable {
+
+    final public Var variable;
+
+    /** The slot of the variable */
+    final public int slot;
+
+    final public TypedExpression expression;
+
+    public TypedAssignment(@NotNull Assignment source, @NotNull Type type, int slot, @NotNull TypedExpression expression) {
+        super(source, type);
+        this.variable = source.variable;
+        this.slot = slot;
+        this.expression = expression;
+    }
+
+    @Override
+    public void execute(@NotNull Frame frame) {
+        expression.evaluateInto(frame.variables, slot);
+    }
+
+    @Override
+    public int evaluateInt(@NotNull VariableStore variables) {
+        expression.evaluateInto(variables, slot);
+        TypedVar.checkDefined(variables, slot);
+        return variables.getInt(slot);
+    }
+
+    @Override
+    public float evaluateFloat(@NotNull VariableStore variables) {
+        expression.evaluateInto(variables, slot);
+        TypedVar.checkDefined(variables, slot);
+        return variables.getFloat(slot);
+    }
+
+    @Override
+    public void evaluateInto(@NotNull VariableStore variables, int slot) {
+        expression.evaluateInto(variables, this.slot);
+        variables.copy(this.slot, slot);
+    }
+
+    @Override
+    public boolean isNotNegative(@NotNull VariableStore variables) {
+        expression.evaluateInto(variables, slot);
+        if (!variables.isDefined(slot)) {
+            return false;
+        }
+        return isInt ? variables.getInt(slot) >= 0 : variables.getFloat(slot) >= 0;
+    }
+
+    @Override
+    public String evaluateToString(@NotNull VariableStore variables) {
+        expression.evaluateInto(variables, slot);
+        if (!variables.isDefined(slot)) {
+            return "null";
+        }
+        return isInt ? Integer.toString(variables.getInt(slot)) : Float.toString(variables.getFloat(slot));
+    }
+
+}
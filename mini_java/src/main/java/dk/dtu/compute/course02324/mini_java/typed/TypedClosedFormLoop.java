@@ -0,0 +1,59 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.ClosedFormLoop;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * A closed-form loop of the typed tree, which computes the effect of all its
+ * iterations at once, in the same way as the
+ * {@link dk.dtu.compute.course02324.mini_java.semantics.ProgramExecutorVisitor
+ * ProgramExecutorVisitor}.
+ */
+public class TypedClosedFormLoop extends TypedStatement {
+
+    /** The slot of the induction variable */
+    final public int slot;
+
+    /** The slots of the targets of the accumulations */
+    final private int[] targets;
+
+    /** The slots of the invariants of the accumulations, or -1 */
+    final private int[] invariants;
+
+    public TypedClosedFormLoop(@NotNull ClosedFormLoop source, int slot, int[] targets, int[] invariants) {
+        super(source);
+        this.slot = slot;
+        this.targets = targets.clone();
+        this.invariants = invariants.clone();
+    }
+
+    @Override
+    public void execute(@NotNull Frame frame) {
+        VariableStore variables = frame.variables;
+        if (!variables.isDefined(slot)) {
+            return;
+        }
+        ClosedFormLoop loop = (ClosedFormLoop) source;
+        int entryValue = variables.getInt(slot);
+        long trips = loop.tripCount(entryValue);
+        if (trips == 0) {
+            return;
+        }
+        List<ClosedFormLoop.Accumulation> accumulations = loop.accumulations;
+        for (int i = 0; i < targets.length; i++) {
+            ClosedFormLoop.Accumulation accumulation = accumulations.get(i);
+            boolean invariant = accumulation.term == ClosedFormLoop.Term.INVARIANT;
+            if (!variables.isDefined(targets[i]) || (invariant && !variables.isDefined(invariants[i]))) {
+                throw new RuntimeException("Value of subexpression does not exist");
+            }
+            int term = invariant ? variables.getInt(invariants[i]) : accumulation.constant;
+            int sum = loop.sum(accumulation.term, term, trips, entryValue);
+            int target = variables.getInt(targets[i]);
+            variables.setInt(targets[i], accumulation.negated ? target - sum : target + sum);
+        }
+        variables.setInt(slot, entryValue - (int) trips * loop.step);
+    }
+
+}
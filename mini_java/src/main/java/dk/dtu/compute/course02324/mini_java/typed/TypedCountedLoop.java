@@ -0,0 +1,34 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.CountedLoop;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A counted loop of the typed tree, whose number of iterations is computed
+ * from the value of its induction variable when the loop is entered.
+ */
+public class TypedCountedLoop extends TypedStatement {
+
+    /** The slot of the induction variable */
+    final public int slot;
+
+    final public Executable body;
+
+    public TypedCountedLoop(@NotNull CountedLoop source, int slot, @NotNull Executable body) {
+        super(source);
+        this.slot = slot;
+        this.body = body;
+    }
+
+    @Override
+    public void execute(@NotNull Frame frame) {
+        if (!frame.variables.isDefined(slot)) {
+            return;
+        }
+        long trips = ((CountedLoop) source).tripCount(frame.variables.getInt(slot));
+        for (long trip = 0; trip < trips; trip++) {
+            body.execute(frame);
+        }
+    }
+
+}
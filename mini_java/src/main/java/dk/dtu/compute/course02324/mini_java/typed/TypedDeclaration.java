@@ -0,0 +1,31 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.Declaration;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A declaration of the typed tree. A declaration without expression does not
+ * change the value of the variable.
+ */
+public class TypedDeclaration extends TypedStatement {
+
+    /** The slot of the declared variable */
+    final public int slot;
+
+    /** The expression, or <code>null</code> */
+    final public TypedExpression expression;
+
+    public TypedDeclaration(@NotNull Declaration source, int slot, TypedExpression expression) {
+        super(source);
+        this.slot = slot;
+        this.expression = expression;
+    }
+
+    @Override
+    public void execute(@NotNull Frame frame) {
+        if (expression != null) {
+            expression.evaluateInto(frame.variables, slot);
+        }
+    }
+
+}
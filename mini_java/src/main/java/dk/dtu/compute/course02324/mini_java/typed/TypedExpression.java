@@ -0,0 +1,59 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.Expression;
+import dk.dtu.compute.course02324.mini_java.model.PrimitiveType;
+import dk.dtu.compute.course02324.mini_java.model.Type;
+import dk.dtu.compute.course02324.mini_java.model.TypeKeyword;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An expression of the typed tree, which carries its resolved type. An int
+ * expression is evaluated with {@link #evaluateInt(VariableStore)}, a float
+ * expression with {@link #evaluateFloat(VariableStore)}. Evaluating an
+ * expression, whose value is not defined (a variable without value, or an
+ * assignment of such a variable), fails with the same exception as in the
+ * {@link dk.dtu.compute.course02324.mini_java.semantics.ProgramExecutorVisitor
+ * ProgramExecutorVisitor}, except in the places where the executor allows
+ * undefined values: when the value is assigned, printed or used as the
+ * condition of a loop.
+ */
+public abstract class TypedExpression {
+
+    /** The expression from which this node was lowered */
+    final public Expression source;
+
+    final public Type type;
+
+    /** Whether the type is int (otherwise it is float) */
+    final public boolean isInt;
+
+    protected TypedExpression(@NotNull Expression source, @NotNull Type type) {
+        this.source = source;
+        this.type = type;
+        this.isInt = type instanceof PrimitiveType primitiveType && primitiveType.primitiveType == TypeKeyword.INT;
+    }
+
+    public abstract int evaluateInt(@NotNull VariableStore variables);
+
+    public abstract float evaluateFloat(@NotNull VariableStore variables);
+
+    /** Evaluates the expression and stores its value, which may be undefined, in a slot. */
+    public void evaluateInto(@NotNull VariableStore variables, int slot) {
+        if (isInt) {
+            variables.setInt(slot, evaluateInt(variables));
+        } else {
+            variables.setFloat(slot, evaluateFloat(variables));
+        }
+    }
+
+    /** Evaluates the expression as the condition of a loop: whether it is defined and not negative. */
+    public boolean isNotNegative(@NotNull VariableStore variables) {
+        return isInt ? evaluateInt(variables) >= 0 : evaluateFloat(variables) >= 0;
+    }
+
+    /** Evaluates the expression for printing; an undefined value is printed as <code>null</code>. */
+    public String evaluateToString(@NotNull VariableStore variables) {
+        return isInt ? Integer.toString(evaluateInt(variables)) : Float.toString(evaluateFloat(variables));
+    }
+
+}
@@ -0,0 +1,36 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A literal of the typed tree.
+ */
+public class TypedLiteral extends TypedExpression {
+
+    final public int intValue;
+
+    final public float floatValue;
+
+    public TypedLiteral(@NotNull Literal source, @NotNull Type type) {
+        super(source, type);
+        if (source instanceof IntLiteral intLiteral) {
+            intValue = intLiteral.literal;
+            floatValue = intLiteral.literal;
+        } else {
+            floatValue = ((FloatLiteral) source).literal;
+            intValue = (int) floatValue;
+        }
+    }
+
+    @Override
+    public int evaluateInt(@NotNull VariableStore variables) {
+        return intValue;
+    }
+
+    @Override
+    public float evaluateFloat(@NotNull VariableStore variables) {
+        return floatValue;
+    }
+
+}
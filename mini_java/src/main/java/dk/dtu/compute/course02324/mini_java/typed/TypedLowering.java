@@ -0,0 +1,148 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.OperatorRegistry;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramVisitor;
+import dk.dtu.compute.course02324.mini_java.semantics.SymbolTable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Lowers a type-checked statement into a {@link TypedProgram}, using the
+ * types computed by the type checker. Each variable gets a slot when it
+ * occurs first, and each operator expression gets the implementation of its
+ * operator for its type from the {@link OperatorRegistry}.
+ */
+public class TypedLowering extends ProgramVisitor {
+
+    /** The types computed by the type checker */
+    final private Map<Expression, Type> typeMapping;
+
+    /** The slots of the variables */
+    final private SymbolTable symbols = new SymbolTable();
+
+    final private List<Type> types = new ArrayList<>();
+
+    /** The result of lowering the last visited statement */
+    private Executable statement;
+
+    /** The result of lowering the last visited expression */
+    private TypedExpression expression;
+
+    private TypedLowering(@NotNull Map<Expression, Type> typeMapping) {
+        this.typeMapping = typeMapping;
+    }
+
+    /**
+     * Lowers a statement, which was type checked without problems, with the
+     * types of its expressions computed by the type checker.
+     */
+    public static TypedProgram lower(@NotNull Statement statement, @NotNull Map<Expression, Type> typeMapping) {
+        TypedLowering lowering = new TypedLowering(typeMapping);
+        statement.accept(lowering);
+        return new TypedProgram(lowering.statement, lowering.symbols, lowering.types, null);
+    }
+
+    /** Returns the slot of a variable, which is created when the variable occurs first. */
+    private int slot(Var variable) {
+        int slot = symbols.intern(variable);
+        if (slot == types.size()) {
+            types.add(type(variable));
+        }
+        return slot;
+    }
+
+    private Type type(Expression expression) {
+        Type type = typeMapping.get(expression);
+        if (type == null) {
+            throw new IllegalArgumentException("The statement was not type checked without problems.");
+        }
+        return type;
+    }
+
+    private TypedExpression lower(Expression expression) {
+        expression.accept(this);
+        return this.expression;
+    }
+
+    private Executable lower(Statement statement) {
+        statement.accept(this);
+        return this.statement;
+    }
+
+    @Override
+    public void visit(Sequence sequence) {
+        List<Executable> statements = new ArrayList<>();
+        for (Statement substatement: sequence.statements) {
+            statements.add(lower(substatement));
+        }
+        statement = new TypedSequence(sequence, statements);
+    }
+
+    @Override
+    public void visit(Declaration declaration) {
+        TypedExpression typedExpression = declaration.expression != null ? lower(declaration.expression) : null;
+        statement = new TypedDeclaration(declaration, slot(declaration.variable), typedExpression);
+    }
+
+    @Override
+    public void visit(PrintStatement printStatement) {
+        statement = new TypedPrintStatement(printStatement, lower(printStatement.expression));
+    }
+
+    @Override
+    public void visit(WhileLoop whileLoop) {
+        TypedExpression condition = lower(whileLoop.expression);
+        statement = new TypedWhileLoop(whileLoop, condition, lower(whileLoop.statement));
+    }
+
+    @Override
+    public void visit(CountedLoop countedLoop) {
+        int slot = slot(countedLoop.variable);
+        statement = new TypedCountedLoop(countedLoop, slot, lower(countedLoop.statement));
+    }
+
+    @Override
+    public void visit(ClosedFormLoop closedFormLoop) {
+        int slot = slot(closedFormLoop.variable);
+        int size = closedFormLoop.accumulations.size();
+        int[] targets = new int[size];
+        int[] invariants = new int[size];
+        for (int i = 0; i < size; i++) {
+            ClosedFormLoop.Accumulation accumulation = closedFormLoop.accumulations.get(i);
+            targets[i] = slot(accumulation.target);
+            invariants[i] = accumulation.invariant != null ? slot(accumulation.invariant) : -1;
+        }
+        statement = new TypedClosedFormLoop(closedFormLoop, slot, targets, invariants);
+    }
+
+    @Override
+    public void visit(Assignment assignment) {
+        TypedExpression typedExpression = lower(assignment.expression);
+        TypedAssignment typedAssignment =
+                new TypedAssignment(assignment, type(assignment), slot(assignment.variable), typedExpression);
+        statement = typedAssignment;
+        expression = typedAssignment;
+    }
+
+    @Override
+    public void visit(Literal literal) {
+        expression = new TypedLiteral(literal, type(literal));
+    }
+
+    @Override
+    public void visit(Var var) {
+        expression = new TypedVar(var, type(var), slot(var));
+    }
+
+    @Override
+    public void visit(OperatorExpression operatorExpression) {
+        TypedExpression left = lower(operatorExpression.operands.get(0));
+        TypedExpression right = operatorExpression.operands.size() > 1 ? lower(operatorExpression.operands.get(1)) : null;
+        Operator operator = operatorExpression.operator;
+        expression = new TypedOperation(operatorExpression, type(operatorExpression), left, right,
+                OperatorRegistry.intOperation(operator), OperatorRegistry.floatOperation(operator));
+    }
+
+}
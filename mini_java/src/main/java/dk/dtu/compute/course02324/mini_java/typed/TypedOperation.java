@@ -0,0 +1,55 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.Operator;
+import dk.dtu.compute.course02324.mini_java.model.OperatorExpression;
+import dk.dtu.compute.course02324.mini_java.model.Type;
+import dk.dtu.compute.course02324.mini_java.semantics.FloatOperation;
+import dk.dtu.compute.course02324.mini_java.semantics.IntOperation;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An operator expression of the typed tree, which carries the implementation
+ * of the operator for the type of its operands. For a unary operator, the
+ * second operand is <code>null</code>.
+ */
+public class TypedOperation extends TypedExpression {
+
+    final public Operator operator;
+
+    final public TypedExpression left;
+
+    final public TypedExpression right;
+
+    /** The implementation of the operator, if the type is int; otherwise <code>null</code> */
+    final public IntOperation intOperation;
+
+    /** The implementation of the operator, if the type is float; otherwise <code>null</code> */
+    final public FloatOperation floatOperation;
+
+    public TypedOperation(@NotNull OperatorExpression source, @NotNull Type type,
+                          @NotNull TypedExpression left, TypedExpression right,
+                          IntOperation intOperation, FloatOperation floatOperation) {
+        super(source, type);
+        if (isInt ? intOperation == null : floatOperation == null) {
+            throw new IllegalArgumentException("No implementation of " + source.operator + " for type " + type.getName());
+        }
+        this.operator = source.operator;
+        this.left = left;
+        this.right = right;
+        this.intOperation = isInt ? intOperation : null;
+        this.floatOperation = isInt ? null : floatOperation;
+    }
+
+    @Override
+    public int evaluateInt(@NotNull VariableStore variables) {
+        int a = left.evaluateInt(variables);
+        return intOperation.apply(a, right != null ? right.evaluateInt(variables) : 0);
+    }
+
+    @Override
+    public float evaluateFloat(@NotNull VariableStore variables) {
+        float a = left.evaluateFloat(variables);
+        return floatOperation.apply(a, right != null ? right.evaluateFloat(variables) : 0);
+    }
+
+}
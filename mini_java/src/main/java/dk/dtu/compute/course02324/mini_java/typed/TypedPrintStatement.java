@@ -0,0 +1,26 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.PrintStatement;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A print statement of the typed tree.
+ */
+public class TypedPrintStatement extends TypedStatement {
+
+    final public String prefix;
+
+    final public TypedExpression expression;
+
+    public TypedPrintStatement(@NotNull PrintStatement source, @NotNull TypedExpression expression) {
+        super(source);
+        this.prefix = source.prefix;
+        this.expression = expression;
+    }
+
+    @Override
+    public void execute(@NotNull Frame frame) {
+        frame.out.println(prefix + expression.evaluateToString(frame.variables));
+    }
+
+}
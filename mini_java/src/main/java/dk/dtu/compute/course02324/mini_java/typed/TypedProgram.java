@@ -0,0 +1,220 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.analysis.IndependentStatements;
+import dk.dtu.compute.course02324.mini_java.analysis.WrittenVariables;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.SymbolTable;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A type-checked program lowered into a typed tree (see
+ * {@link dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor#lower(Statement)
+ * ProgramTypeVisitor.lower}), together with the slots of its variables. The
+ * nodes of the tree carry their types, operator implementations and variable
+ * slots, so that executing the program does not need any lookups.
+ */
+public class TypedProgram implements Executable {
+
+    /** The root of the typed tree */
+    final public Executable statement;
+
+    /** The variable of each slot */
+    final private List<Var> variables;
+
+    /** The type of each slot */
+    final private List<Type> types;
+
+    /** The slots of the variables */
+    final private SymbolTable symbols;
+
+    /** The types of the expressions of the original program, derived from the typed tree when first asked for */
+    private Map<Expression, Type> typeMapping;
+
+    TypedProgram(@NotNull Executable statement, @NotNull SymbolTable symbols, @NotNull List<Type> types,
+                 Map<Expression, Type> typeMapping) {
+        this.statement = statement;
+        this.variables = List.copyOf(symbols.variables());
+        this.types = List.copyOf(types);
+        this.symbols = symbols;
+        this.typeMapping = typeMapping != null ? Collections.unmodifiableMap(typeMapping) : null;
+    }
+
+    /** Returns the number of slots, i.e. of the variables of the program. */
+    public int slotCount() {
+        return variables.size();
+    }
+
+    /** Returns the slot of a variable, or -1 if it does not occur in the program. */
+    public int slot(@NotNull Var variable) {
+        return symbols.id(variable);
+    }
+
+    /** Returns the variable of a slot. */
+    public Var variable(int slot) {
+        return variables.get(slot);
+    }
+
+    /** Returns the type of the variable of a slot. */
+    public Type type(int slot) {
+        return types.get(slot);
+    }
+
+    /** Returns the variables of the program in the order of their slots. */
+    public List<Var> variables() {
+        return variables;
+    }
+
+    /**
+     * Returns the types of the expressions of the original program; this
+     * view is provided for compatibility with code using
+     * {@link dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor#typeMapping}.
+     * It is derived from the typed tree, so it does not contain the
+     * expressions of the retained bodies of closed-form loops, which are not
+     * lowered.
+     */
+    public Map<Expression, Type> typeMapping() {
+        if (typeMapping == null) {
+            Map<Expression, Type> derived = new HashMap<>();
+            collectTypes(statement, derived);
+            typeMapping = Collections.unmodifiableMap(derived);
+        }
+        return typeMapping;
+    }
+
+    private void collectTypes(Executable executable, Map<Expression, Type> types) {
+        if (executable instanceof TypedExpression expression) {
+            collectTypes(expression, types);
+        } else if (executable instanceof TypedSequence sequence) {
+            for (Executable statement: sequence.statements()) {
+                collectTypes(statement, types);
+            }
+        } else if (executable instanceof ParallelSequence sequence) {
+            for (Executable statement: sequence.statements()) {
+                collectTypes(statement, types);
+            }
+        } else if (executable instanceof TypedDeclaration declaration) {
+            types.put(variables.get(declaration.slot), this.types.get(declaration.slot));
+            if (declaration.expression != null) {
+                collectTypes(declaration.expression, types);
+            }
+        } else if (executable instanceof TypedPrintStatement printStatement) {
+            collectTypes(printStatement.expression, types);
+        } else if (executable instanceof TypedWhileLoop whileLoop) {
+            collectTypes(whileLoop.condition, types);
+            collectTypes(whileLoop.body, types);
+        } else if (executable instanceof TypedCountedLoop countedLoop) {
+            types.put(variables.get(countedLoop.slot), this.types.get(countedLoop.slot));
+            collectTypes(countedLoop.body, types);
+        } else if (executable instanceof ParallelReductionLoop loop) {
+            types.put(variables.get(loop.slot), this.types.get(loop.slot));
+            collectTypes(loop.body, types);
+        }
+    }
+
+    private void collectTypes(TypedExpression expression, Map<Expression, Type> types) {
+        types.put(expression.source, expression.type);
+        if (expression instanceof TypedAssignment assignment) {
+            collectTypes(assignment.expression, types);
+        } else if (expression instanceof TypedOperation operation) {
+            collectTypes(operation.left, types);
+            if (operation.right != null) {
+                collectTypes(operation.right, types);
+            }
+        }
+    }
+
+    /**
+     * Returns a program, whose top-level sequence executes its independent
+     * groups of statements concurrently on the given pool (see
+     * {@link ParallelSequence}), or this program if the statement is not a
+     * sequence, or if its statements are not independent of each other.
+     */
+    public TypedProgram parallel(@NotNull ForkJoinPool pool) {
+        if (!(statement instanceof TypedSequence sequence)) {
+            return this;
+        }
+        Sequence source = (Sequence) sequence.source;
+        List<int[]> groups = IndependentStatements.partition(source);
+        if (groups.size() < 2) {
+            return this;
+        }
+        int[][] written = new int[groups.size()][];
+        for (int group = 0; group < written.length; group++) {
+            Set<Integer> slots = new TreeSet<>();
+            for (int index: groups.get(group)) {
+                for (Var var: WrittenVariables.of(source.statements.get(index))) {
+                    slots.add(slot(var));
+                }
+            }
+            written[group] = slots.stream().mapToInt(Integer::intValue).toArray();
+        }
+        boolean[] intSlots = new boolean[slotCount()];
+        for (int slot = 0; slot < intSlots.length; slot++) {
+            intSlots[slot] = isInt(types.get(slot));
+        }
+        ParallelSequence parallel = new ParallelSequence(source, sequence.statements(),
+                groups.toArray(new int[0][]), written, intSlots, pool);
+        return withStatement(parallel);
+    }
+
+    /**
+     * Returns a program, whose typed tree has the common idioms replaced by
+     * fused nodes (see {@link Quickening}).
+     */
+    public TypedProgram quickened() {
+        return new Quickening().quicken(this);
+    }
+
+    /** Returns a program with the same variables as this one, but with another typed tree. */
+    TypedProgram withStatement(@NotNull Executable statement) {
+        return new TypedProgram(statement, symbols, types, typeMapping);
+    }
+
+    /** Returns a new store for the variables of this program, in which all variables are undefined. */
+    public VariableStore newStore() {
+        return new HeapVariableStore(slotCount());
+    }
+
+    /**
+     * Returns a new store outside of the heap for the variables of this
+     * program, in which all variables are undefined. The store should be
+     * closed when the values are not needed anymore.
+     */
+    public OffHeapVariableStore newOffHeapStore() {
+        return new OffHeapVariableStore(slotCount());
+    }
+
+    @Override
+    public void execute(@NotNull Frame frame) {
+        statement.execute(frame);
+    }
+
+    /** Executes the program with a new store, printing on the given stream, and returns the frame. */
+    public Frame run(@NotNull PrintStream out) {
+        Frame frame = new Frame(newStore(), out);
+        execute(frame);
+        return frame;
+    }
+
+    /** Returns the values of the variables in a store; undefined values are <code>null</code>. */
+    public Map<Var, Number> values(@NotNull VariableStore store) {
+        Map<Var, Number> result = new LinkedHashMap<>();
+        for (int slot = 0; slot < slotCount(); slot++) {
+            Number value = null;
+            if (store.isDefined(slot)) {
+                value = isInt(types.get(slot)) ? (Number) store.getInt(slot) : (Number) store.getFloat(slot);
+            }
+            result.put(variables.get(slot), value);
+        }
+        return result;
+    }
+
+    static boolean isInt(Type type) {
+        return type instanceof PrimitiveType primitiveType && primitiveType.primitiveType == TypeKeyword.INT;
+    }
+
+}
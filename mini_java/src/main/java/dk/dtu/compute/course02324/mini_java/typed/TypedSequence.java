@@ -0,0 +1,31 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.Sequence;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * A sequence of statements of the typed tree.
+ */
+public class TypedSequence extends TypedStatement {
+
+    final private Executable[] statements;
+
+    public TypedSequence(@NotNull Sequence source, @NotNull List<Executable> statements) {
+        super(source);
+        this.statements = statements.toArray(new Executable[0]);
+    }
+
+    public List<Executable> statements() {
+        return List.of(statements);
+    }
+
+    @Override
+    public void execute(@NotNull Frame frame) {
+        for (Executable statement: statements) {
+            statement.execute(frame);
+        }
+    }
+
+}
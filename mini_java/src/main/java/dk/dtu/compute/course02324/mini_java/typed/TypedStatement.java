@@ -0,0 +1,18 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.Statement;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A statement of the typed tree.
+ */
+public abstract class TypedStatement implements Executable {
+
+    /** The statement from which this node was lowered */
+    final public Statement source;
+
+    protected TypedStatement(@NotNull Statement source) {
+        this.source = source;
+    }
+
+}
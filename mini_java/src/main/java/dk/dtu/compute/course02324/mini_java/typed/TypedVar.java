@@ -0,0 +1,55 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.Type;
+import dk.dtu.compute.course02324.mini_java.model.Var;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A variable of the typed tree, which is bound to the slot of the variable.
+ */
+public class TypedVar extends TypedExpression {
+
+    final public Var variable;
+
+    final public int slot;
+
+    public TypedVar(@NotNull Var source, @NotNull Type type, int slot) {
+        super(source, type);
+        this.variable = source;
+        this.slot = slot;
+    }
+
+    static void checkDefined(VariableStore variables, int slot) {
+        if (!variables.isDefined(slot)) {
+            throw new RuntimeException("Value of subexpression does not exist");
+        }
+    }
+
+    @Override
+    public int evaluateInt(@NotNull VariableStore variables) {
+        checkDefined(variables, slot);
+        return variables.getInt(slot);
+    }
+
+    @Override
+    public float evaluateFloat(@NotNull VariableStore variables) {
+        checkDefined(variables, slot);
+        return variables.getFloat(slot);
+    }
+
+    @Override
+    public void evaluateInto(@NotNull VariableStore variables, int slot) {
+        variables.copy(this.slot, slot);
+    }
+
+    @Override
+    public boolean isNotNegative(@NotNull VariableStore variables) {
+        return variables.isDefined(slot) && super.isNotNegative(variables);
+    }
+
+    @Override
+    public String evaluateToString(@NotNull VariableStore variables) {
+        return variables.isDefined(slot) ? super.evaluateToString(variables) : "null";
+    }
+
+}
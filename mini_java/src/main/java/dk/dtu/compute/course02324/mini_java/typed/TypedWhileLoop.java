@@ -0,0 +1,29 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+import dk.dtu.compute.course02324.mini_java.model.WhileLoop;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A while-loop of the typed tree, which is executed as long as its condition
+ * is defined and not negative.
+ */
+public class TypedWhileLoop extends TypedStatement {
+
+    final public TypedExpression condition;
+
+    final public Executable body;
+
+    public TypedWhileLoop(@NotNull WhileLoop source, @NotNull TypedExpression condition, @NotNull Executable body) {
+        super(source);
+        this.condition = condition;
+        this.body = body;
+    }
+
+    @Override
+    public void execute(@NotNull Frame frame) {
+        while (condition.isNotNegative(frame.variables)) {
+            body.execute(frame);
+        }
+    }
+
+}
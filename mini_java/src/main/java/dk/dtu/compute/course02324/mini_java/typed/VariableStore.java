@@ -0,0 +1,36 @@
+package dk.dtu.compute.course02324.mini_java.typed;
+
+/**
+ * Stores the values of the variables of a program during its execution,
+ * indexed by the slots of the variables (see {@link TypedProgram#slot}).
+ * Each slot holds an int or a float value, or is undefined; the store does
+ * not know the types of the slots, so a value must be read with the type it
+ * was written with. The values of undefined slots are unspecified.
+ */
+public interface VariableStore {
+
+    /** Returns the number of slots. */
+    int size();
+
+    boolean isDefined(int slot);
+
+    int getInt(int slot);
+
+    float getFloat(int slot);
+
+    /** Sets a slot to an int value, which makes it defined. */
+    void setInt(int slot, int value);
+
+    /** Sets a slot to a float value, which makes it defined. */
+    void setFloat(int slot, float value);
+
+    /** Makes a slot undefined. */
+    void clear(int slot);
+
+    /** Copies the value of a slot, or its being undefined, to another slot. */
+    void copy(int from, int to);
+
+    /** Returns a new store with the same values, which is independent of this store. */
+    VariableStore snapshot();
+
+}
@@ -0,0 +1,76 @@
+package dk.dtu.compute.course02324.mini_java.utils;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints, which avoids the boxing and the object
+ * overhead of a <code>List&lt;Integer&gt;</code>.
+ */
+public class IntList {
+
+    private int[] elements;
+
+    private int size = 0;
+
+    public IntList() {
+        this(16);
+    }
+
+    public IntList(int capacity) {
+        elements = new int[Math.max(capacity, 1)];
+    }
+
+    /** Appends an element and returns its index. */
+    public int add(int element) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+        }
+        elements[size] = element;
+        return size++;
+    }
+
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return elements[index];
+    }
+
+    public void set(int index, int element) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        elements[index] = element;
+    }
+
+    /** Removes the last element and returns it. */
+    public int removeLast() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException(0);
+        }
+        return elements[--size];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /** Returns a copy of the elements as an array. */
+    public int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+}
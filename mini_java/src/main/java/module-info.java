@@ -7,11 +7,19 @@ module dk.dtu.compute.course02324.mini_java {
 
     requires org.jetbrains.annotations;
     requires javafx.controls;
+    requires jdk.management;
+    requires java.compiler;
 
     exports dk.dtu.compute.course02324.mini_java;
     exports dk.dtu.compute.course02324.mini_java.model;
     exports dk.dtu.compute.course02324.mini_java.infrastructure;
     exports dk.dtu.compute.course02324.mini_java.semantics;
     exports dk.dtu.compute.course02324.mini_java.utils;
+    exports dk.dtu.compute.course02324.mini_java.profiling;
+    exports dk.dtu.compute.course02324.mini_java.analysis;
+    exports dk.dtu.compute.course02324.mini_java.optimization;
+    exports dk.dtu.compute.course02324.mini_java.ir;
+    exports dk.dtu.compute.course02324.mini_java.typed;
+    exports dk.dtu.compute.course02324.mini_java.batch;
 
 }
\ No newline at end of file
@@ -0,0 +1,269 @@
+package dk.dtu.compute.course02324.mini_java;
+
+import dk.dtu.compute.course02324.mini_java.batch.*;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.optimization.OptimizationLevel;
+
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.*;
+import static dk.dtu.compute.course02324.mini_java.model.Operator.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the staged pipeline for processing batches of programs.
+ */
+public class TestBatchPipeline {
+
+    /**
+     * Creates the program with the given number: it sums up the numbers from
+     * the number down to 0 and divides by the number; every tenth program
+     * is ill-typed.
+     */
+    private static Statement program(int number) {
+        Expression divisor = number % 10 == 9 ? Literal(1.0f) : Literal(number);
+        return Sequence(
+                Declaration(INT, Var("i"), Literal(number)),
+                Declaration(INT, Var("sum"), Literal(0)),
+                WhileLoop(
+                        Var("i"),
+                        Sequence(
+                                Assignment(Var("sum"), OperatorExpression(PLUS2, Var("sum"), Var("i"))),
+                                Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1)))
+                        )
+                ),
+                PrintStatement("sum = ", Var("sum")),
+                PrintStatement("sum / number = ", OperatorExpression(DIV, Var("sum"), divisor))
+        );
+    }
+
+    /**
+     * Tests that all programs are processed with the correct results, with
+     * several threads per stage and small queues, and that the metrics are
+     * consistent with the results.
+     */
+    @Test
+    public void testBatch() {
+        int count = 200;
+        Map<Long, BatchResult> results = new HashMap<>();
+        BatchMetrics metrics = BatchPipeline.of(TestBatchPipeline::program)
+                .loadParallelism(2)
+                .checkParallelism(2)
+                .optimize(OptimizationLevel.O1, 3)
+                .executeParallelism(3)
+                .queueCapacity(2)
+                .run(IntStream.range(0, count).boxed(), result -> assertNull(results.put(result.index, result)));
+
+        assertEquals(count, results.size());
+        assertEquals(count, metrics.programs);
+        assertEquals(count / 10, metrics.illTyped);
+        assertEquals(1, metrics.failed);
+        assertEquals(count - count / 10 - 1, metrics.ok);
+
+        BatchResult failed = results.get(0L);
+        assertEquals(BatchResult.Status.FAILED, failed.status);
+        assertInstanceOf(ArithmeticException.class, failed.error);
+        assertEquals("sum = 0" + System.lineSeparator(), failed.output);
+
+        BatchResult illTyped = results.get(9L);
+        assertEquals(BatchResult.Status.ILL_TYPED, illTyped.status);
+        assertFalse(illTyped.problems.isEmpty());
+
+        BatchResult ok = results.get(100L);
+        assertEquals(BatchResult.Status.OK, ok.status);
+        String newline = System.lineSeparator();
+        assertEquals("sum = 5050" + newline + "sum / number = 50" + newline, ok.output);
+        assertEquals(5050, ok.values.get(Var("sum")));
+
+        assertTrue(metrics.latencyPercentile(50) <= metrics.latencyPercentile(99));
+        assertTrue(metrics.latencyPercentile(99) <= metrics.latencyPercentile(100));
+        assertTrue(metrics.throughput() > 0);
+        assertTrue(metrics.stageNanos(BatchPipeline.STAGES.indexOf("execute")) > 0);
+    }
+
+    /**
+     * Tests that the pipeline ends, when the loader throws an error (not only
+     * an exception) and when the iterator of the sources fails; the failures
+     * are reported as failed programs.
+     */
+    @Test
+    public void testFailingSources() {
+        int count = 20;
+        Iterator<Integer> sources = new Iterator<>() {
+            int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                if (next == count) {
+                    throw new IllegalStateException("The sources are not available.");
+                }
+                return next++;
+            }
+        };
+        Map<Long, BatchResult> results = new HashMap<>();
+        BatchMetrics metrics = assertTimeoutPreemptively(Duration.ofSeconds(30), () ->
+                BatchPipeline.of((Integer number) -> {
+                            if (number == 5) {
+                                throw new AssertionError("The program can not be loaded.");
+                            }
+                            return program(number);
+                        })
+                        .loadParallelism(2)
+                        .queueCapacity(2)
+                        .run(sources, result -> results.put(result.index, result)));
+
+        assertEquals(count + 1, metrics.programs);
+        // program 0 divides by zero
+        assertEquals(3, metrics.failed);
+        assertInstanceOf(AssertionError.class, results.get(5L).error);
+        BatchResult input = results.get((long) count);
+        assertEquals(BatchResult.Status.FAILED, input.status);
+        assertInstanceOf(IllegalStateException.class, input.error);
+        assertNull(input.statement);
+    }
+
+    /**
+     * Tests that a batch with repeated programs has the same results with a
+     * result cache as without one, and that each distinct program which does
+     * not fail is executed only once, in the execute stage.
+     */
+    @Test
+    public void testMemoizedBatch() {
+        int count = 200;
+        Map<Long, BatchResult> expected = new HashMap<>();
+        BatchPipeline.of((Integer number) -> program(number % 20))
+                .run(IntStream.range(0, count).boxed(), result -> expected.put(result.index, result));
+
+        ResultCache cache = new ResultCache(1 << 20);
+        Map<Long, BatchResult> results = new HashMap<>();
+        BatchMetrics metrics = BatchPipeline.of((Integer number) -> program(number % 20))
+                .checkParallelism(3)
+                .optimize(OptimizationLevel.O1, 2)
+                .executeParallelism(3)
+                .memoize(cache)
+                .run(IntStream.range(0, count).boxed(), result -> results.put(result.index, result));
+
+        assertEquals(count, metrics.programs);
+        for (long index = 0; index < count; index++) {
+            BatchResult result = results.get(index);
+            assertEquals(expected.get(index).status, result.status);
+            assertEquals(expected.get(index).output, result.output);
+            assertEquals(expected.get(index).values, result.values);
+            assertEquals(expected.get(index).problems, result.problems);
+        }
+        // program 0 fails, and is executed for every request
+        assertEquals(19 + count / 20, cache.misses());
+        assertEquals(count - cache.misses() - cache.coalesced(), cache.hits());
+        // the misses are executed in the execute stage, not in the check stage
+        assertTrue(metrics.stageNanos(BatchPipeline.STAGES.indexOf("execute")) > 0);
+    }
+
+    /**
+     * Tests the eviction of results from memory to the spill directory, and
+     * that concurrent requests for the same program are coalesced, unless its
+     * execution fails.
+     */
+    @Test
+    public void testResultCache(@TempDir Path directory) throws InterruptedException {
+        ResultCache cache = new ResultCache(1000, directory);
+        ResultCache.Result first = cache.execute(program(100));
+        assertEquals(List.of(), first.problems);
+        assertEquals(5050, first.values.get("sum"));
+        assertFalse(cache.execute(program(109)).isWellTyped());
+        for (int number = 1; number < 10; number++) {
+            cache.execute(program(number));
+        }
+        assertTrue(cache.evictions() > 0);
+        assertTrue(cache.bytes() <= 1000);
+        ResultCache.Result spilled = cache.execute(program(100));
+        assertEquals(1, cache.spillHits());
+        assertEquals(first.output, spilled.output);
+        assertEquals(first.values, spilled.values);
+        assertEquals(11, cache.misses());
+
+        ResultCache shared = new ResultCache(1 << 20);
+        Statement statement = program(300_000);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        List<ResultCache.Result> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ResultCache.Result result = shared.execute(statement);
+                synchronized (results) {
+                    results.add(result);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker: workers) {
+            worker.join();
+        }
+        assertEquals(threads, results.size());
+        assertEquals(1, shared.misses());
+        assertEquals(threads - 1, shared.coalesced() + shared.hits());
+        for (ResultCache.Result result: results) {
+            assertSame(results.get(0), result);
+        }
+
+        // a failing execution is not shared with the concurrent requests
+        Statement failing = Sequence(
+                Declaration(INT, Var("i"), Literal(300_000)),
+                WhileLoop(Var("i"), Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1)))),
+                PrintStatement("1 / 0 = ", OperatorExpression(DIV, Literal(1), Literal(0)))
+        );
+        CountDownLatch failingStart = new CountDownLatch(1);
+        List<RuntimeException> failures = new ArrayList<>();
+        workers.clear();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    failingStart.await();
+                    shared.execute(failing);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        failingStart.countDown();
+        for (Thread worker: workers) {
+            worker.join();
+        }
+        assertEquals(threads, failures.size());
+        assertTrue(failures.stream().allMatch(e -> e instanceof ArithmeticException));
+        // each request got the exception of its own execution
+        assertEquals(threads, failures.stream().distinct().count());
+        assertEquals(1 + threads, shared.misses());
+    }
+
+}
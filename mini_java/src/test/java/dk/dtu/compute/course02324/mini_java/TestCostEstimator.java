@@ -0,0 +1,119 @@
+package dk.dtu.compute.course02324.mini_java;
+
+import dk.dtu.compute.course02324.mini_java.analysis.*;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.profiling.CostModelCalibration;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor;
+
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.*;
+import static dk.dtu.compute.course02324.mini_java.model.Operator.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the static cost estimation and of the admission policy based on it.
+ */
+public class TestCostEstimator {
+
+    /** A model, in which every node costs 1 */
+    final private static CostModel UNIT = new CostModel(1, 1, 1, 1, 1, 1, 1, Map.of());
+
+    private static Statement countdown(Declaration declaration) {
+        return Sequence(
+                declaration,
+                WhileLoop(Var("i"), Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1))))
+        );
+    }
+
+    private static CostBound estimate(Statement statement) {
+        CostEstimatorVisitor estimator = new CostEstimatorVisitor(UNIT);
+        estimator.visit(statement);
+        return estimator.cost(statement);
+    }
+
+    /**
+     * Tests the costs of straight-line code, of a counted loop with a known
+     * and with an unknown number of iterations, and of a loop which is not
+     * counted.
+     */
+    @Test
+    public void testEstimates() {
+        Statement straight = Sequence(
+                Declaration(INT, Var("x"), Literal(1)),
+                PrintStatement("x = ", OperatorExpression(DIV, Var("x"), Literal(2)))
+        );
+        assertEquals(2 + 4, estimate(straight).value);
+        CostModel divisions = new CostModel(1, 1, 1, 1, 1, 1, 1, Map.of(DIV, 10));
+        CostEstimatorVisitor weighted = new CostEstimatorVisitor(divisions);
+        weighted.visit(straight);
+        assertEquals(2 + 13, weighted.cost(straight).value);
+
+        // 10 iterations with a body of cost 4, 11 checks of the condition of cost 2
+        Statement counted = countdown(Declaration(INT, Var("i"), Literal(9)));
+        assertEquals(CostBound.Kind.NUMERIC, estimate(counted).kind);
+        assertEquals(2 + 11 * 2 + 10 * 4, estimate(counted).value);
+        assertEquals(0 + 2 + 1 * 2, estimate(countdown(Declaration(INT, Var("i"), Literal(-1)))).value);
+
+        CostBound symbolic = estimate(countdown(Declaration(INT, Var("i"))));
+        assertEquals(CostBound.Kind.SYMBOLIC, symbolic.kind);
+        assertTrue(symbolic.isBounded());
+        assertTrue(symbolic.formula.contains("i"), symbolic.formula);
+
+        Statement uncounted = Sequence(
+                Declaration(INT, Var("i"), Literal(9)),
+                Declaration(INT, Var("j"), Literal(1)),
+                WhileLoop(Var("i"), Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Var("j"))))
+        );
+        assertFalse(estimate(uncounted).isBounded());
+    }
+
+    /**
+     * Tests that programs are routed by their cost bounds, and that the
+     * bounds of an interval analysis are used when the types are given.
+     */
+    @Test
+    public void testAdmissionPolicy() {
+        AdmissionPolicy policy = new AdmissionPolicy(100, 1000, UNIT);
+        assertEquals(AdmissionPolicy.Decision.LOW_LATENCY,
+                policy.decide(countdown(Declaration(INT, Var("i"), Literal(9)))));
+        assertEquals(AdmissionPolicy.Decision.STANDARD,
+                policy.decide(countdown(Declaration(INT, Var("i"), Literal(99)))));
+        assertEquals(AdmissionPolicy.Decision.REJECT,
+                policy.decide(countdown(Declaration(INT, Var("i"), Literal(999)))));
+        assertEquals(AdmissionPolicy.Decision.REJECT, policy.decide(CostBound.UNBOUNDED));
+        assertEquals(AdmissionPolicy.Decision.STANDARD, policy.decide(CostBound.numeric(1000)));
+        assertEquals(AdmissionPolicy.Decision.LOW_LATENCY, policy.decide(CostBound.numeric(100)));
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionPolicy(1001, 1000, UNIT));
+
+        // the value of i is unknown without intervals; with intervals, it is bounded by the remainder
+        Statement remainder = Sequence(
+                Declaration(INT, Var("n"), Literal(1_000_000)),
+                Declaration(INT, Var("i"), OperatorExpression(MOD, Var("n"), Literal(10))),
+                WhileLoop(Var("i"), Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1))))
+        );
+        ProgramTypeVisitor types = new ProgramTypeVisitor();
+        types.visit(remainder);
+        assertTrue(types.problems.isEmpty());
+        assertEquals(AdmissionPolicy.Decision.REJECT, policy.decide(remainder));
+        assertEquals(AdmissionPolicy.Decision.LOW_LATENCY, policy.decide(remainder, types));
+    }
+
+    /**
+     * Tests that the calibration measures positive weights for all kinds of
+     * nodes and operators.
+     */
+    @Test
+    public void testCalibration() {
+        CostModel model = CostModelCalibration.calibrate(2000, 3);
+        assertTrue(model.literal > 0 && model.variable > 0 && model.assignment > 0 && model.declaration > 0
+                && model.print > 0 && model.loopIteration > 0 && model.operator > 0);
+        for (Operator operator: Operator.values()) {
+            assertTrue(model.operator(operator) > 0);
+        }
+    }
+
+}
@@ -0,0 +1,209 @@
+package dk.dtu.compute.course02324.mini_java;
+
+import dk.dtu.compute.course02324.mini_java.analysis.*;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor;
+
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.*;
+import static dk.dtu.compute.course02324.mini_java.model.Operator.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the dataflow analyses.
+ */
+public class TestDataflow {
+
+    /**
+     * Tests liveness and reaching definitions in a program with a loop, whose
+     * condition contains an assignment.
+     */
+    @Test
+    public void testLoop() {
+        Assignment init = Assignment(Var("sum"), Literal(0));
+        Declaration declaration = Declaration(INT, Var("i"), Literal(10));
+        Assignment update = Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1)));
+        Var sumUse = Var("sum");
+        Assignment accumulate = Assignment(Var("sum"), OperatorExpression(PLUS2, sumUse, Var("i")));
+        Assignment dead = Assignment(Var("dead"), Literal(1));
+        PrintStatement print = PrintStatement("sum = ", Var("sum"));
+        WhileLoop loop = WhileLoop(update, Sequence(accumulate, dead));
+        Statement statement = Sequence(
+                Declaration(INT, Var("sum")),
+                Declaration(INT, Var("dead")),
+                init,
+                declaration,
+                loop,
+                print
+        );
+
+        ControlFlowGraph graph = ControlFlowGraph.of(statement);
+        Liveness liveness = Liveness.of(graph);
+        assertEquals(Set.of(Var("sum"), Var("i")), liveness.liveAfter(declaration));
+        assertEquals(Set.of(Var("sum"), Var("i")), liveness.liveAfter(dead));
+        assertEquals(Set.of(Var("sum")), liveness.liveBefore(print));
+        assertFalse(liveness.isUsed(graph.points(dead)[0]));
+        assertTrue(liveness.isUsed(graph.points(accumulate)[0]));
+
+        ReachingDefinitions reachingDefinitions = ReachingDefinitions.of(graph);
+        assertEquals(Set.of(init, accumulate), reachingDefinitions.reaching(sumUse));
+        assertEquals(Set.of(init, accumulate), reachingDefinitions.reaching(print, Var("sum")));
+        assertEquals(Set.of(declaration, update), reachingDefinitions.reaching(update, Var("i")));
+
+        LoopWrittenVariables written = new LoopWrittenVariables(graph);
+        assertEquals(Set.of(Var("i"), Var("sum"), Var("dead")), written.of(loop));
+        assertEquals(WrittenVariables.of(loop), written.of(loop));
+    }
+
+    /**
+     * Tests that the analyses converge on a program with many variables and
+     * deeply nested loops, and that each block is processed at most about as
+     * often as the loops are nested.
+     */
+    @Test
+    public void testLargeProgram() {
+        int variables = 20000;
+        int depth = 20;
+        List<Statement> declarations = new ArrayList<>();
+        for (int i = 0; i < variables; i++) {
+            declarations.add(Declaration(INT, Var("v" + i), Literal(i)));
+        }
+        Statement body = Assignment(Var("v0"), OperatorExpression(PLUS2, Var("v" + (variables - 1)), Literal(1)));
+        for (int d = 1; d <= depth; d++) {
+            body = WhileLoop(Var("v" + d),
+                    Sequence(body, Assignment(Var("v" + (variables - d)), Var("v" + (d - 1)))));
+        }
+        declarations.add(body);
+        declarations.add(PrintStatement("v0 = ", Var("v0")));
+        Statement statement = new Sequence(declarations.toArray(new Statement[0]));
+
+        ControlFlowGraph graph = ControlFlowGraph.of(statement);
+        Liveness liveness = Liveness.of(graph);
+        ReachingDefinitions reachingDefinitions = ReachingDefinitions.of(graph);
+        int limit = (depth + 3) * graph.blockCount();
+        assertTrue(liveness.iterations() <= limit, "Too many iterations: " + liveness.iterations());
+        assertTrue(reachingDefinitions.iterations() <= limit, "Too many iterations: " + reachingDefinitions.iterations());
+        assertTrue(liveness.liveAfter(declarations.get(variables - 1)).contains(Var("v" + (variables - 1))));
+        assertFalse(liveness.liveAfter(declarations.get(variables - 2)).contains(Var("v" + (depth + 5))));
+    }
+
+    /** An analysis of the variables written before (forward) or after (backward) a point, which counts its transfers. */
+    private static class Writes extends DataflowAnalysis {
+
+        private int transfers = 0;
+
+        Writes(ControlFlowGraph graph, Direction direction) {
+            super(graph, direction, graph.variableCount());
+        }
+
+        @Override
+        protected void transfer(int point, long[] value) {
+            transfers++;
+            if (graph.kind(point) == ControlFlowGraph.DECLARE || graph.kind(point) == ControlFlowGraph.DEFINE) {
+                set(value, graph.variable(point));
+            }
+        }
+
+    }
+
+    private static int count(long[] bits) {
+        int count = 0;
+        for (long word: bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Tests that the values before and after all points of a large block,
+     * queried in any order, are computed in time linear in the size of the
+     * block, in both directions.
+     */
+    @Test
+    public void testPointQueries() {
+        int variables = 20000;
+        List<Statement> declarations = new ArrayList<>();
+        for (int i = 0; i < variables; i++) {
+            declarations.add(Declaration(INT, Var("v" + i), Literal(i)));
+        }
+        ControlFlowGraph graph = ControlFlowGraph.of(new Sequence(declarations.toArray(new Statement[0])));
+        assertEquals(1, graph.blockCount());
+
+        for (DataflowAnalysis.Direction direction: DataflowAnalysis.Direction.values()) {
+            Writes analysis = new Writes(graph, direction);
+            analysis.solve();
+            analysis.transfers = 0;
+            for (int i = variables - 1; i >= 0; i--) {
+                int before = count(analysis.before(declarations.get(i)));
+                int after = count(analysis.after(declarations.get(i)));
+                if (direction == DataflowAnalysis.Direction.FORWARD) {
+                    assertEquals(i, before);
+                    assertEquals(i + 1, after);
+                } else {
+                    assertEquals(variables - i, before);
+                    assertEquals(variables - i - 1, after);
+                }
+            }
+            assertTrue(analysis.transfers <= graph.pointCount(), "Too many transfers: " + analysis.transfers);
+        }
+    }
+
+    /**
+     * Tests that the interval analysis proves the decrement of a loop and a
+     * division free of problems, bounds the number of iterations, and does not
+     * claim anything for operations which might fail.
+     */
+    @Test
+    public void testIntervals() {
+        OperatorExpression decrement = OperatorExpression(MINUS2, Var("i"), Literal(1));
+        OperatorExpression accumulate = OperatorExpression(PLUS2, Var("sum"), Var("i"));
+        OperatorExpression division = OperatorExpression(DIV, Var("n"), Var("k"));
+        OperatorExpression remainder = OperatorExpression(MOD, Var("n"), OperatorExpression(MINUS2, Var("k"), Literal(7)));
+        OperatorExpression product = OperatorExpression(MULT, Var("i"), Literal(2));
+        WhileLoop loop = WhileLoop(Var("i"), Sequence(
+                Assignment(Var("sum"), accumulate),
+                Assignment(Var("i"), decrement)));
+        WhileLoop countdown = WhileLoop(Var("j"), Assignment(Var("j"), OperatorExpression(MINUS2, Var("j"), Literal(3))));
+        Statement statement = Sequence(
+                Declaration(INT, Var("n"), Literal(100)),
+                Declaration(INT, Var("k"), Literal(7)),
+                Declaration(INT, Var("sum"), Literal(0)),
+                Declaration(INT, Var("i"), Var("n")),
+                loop,
+                Declaration(INT, Var("q"), division),
+                Declaration(INT, Var("r"), remainder),
+                Declaration(INT, Var("m"), product),
+                Declaration(INT, Var("j"), OperatorExpression(MULT, Var("n"), Literal(2))),
+                countdown
+        );
+        ProgramTypeVisitor types = new ProgramTypeVisitor();
+        types.visit(statement);
+        assertTrue(types.problems.isEmpty());
+
+        IntervalAnalysis analysis = new IntervalAnalysis(types);
+        analysis.visit(statement);
+        assertTrue(analysis.overflowFree.contains(decrement));
+        assertFalse(analysis.overflowFree.contains(accumulate));
+        assertFalse(analysis.overflowFree.contains(product));
+        assertTrue(analysis.nonZeroDivisors.contains(division));
+        assertFalse(analysis.nonZeroDivisors.contains(remainder));
+        assertEquals(Interval.of(-1, 99), analysis.interval(decrement));
+        assertEquals(101, analysis.tripBound(loop));
+        assertEquals(67, analysis.tripBound(countdown));
+
+        CostEstimatorVisitor withoutIntervals = new CostEstimatorVisitor();
+        withoutIntervals.visit(statement);
+        CostEstimatorVisitor withIntervals = new CostEstimatorVisitor(CostModel.DEFAULT, analysis);
+        withIntervals.visit(statement);
+        assertEquals(CostBound.Kind.SYMBOLIC, withoutIntervals.tripCounts.get(countdown).kind);
+        assertEquals(67, withIntervals.tripCounts.get(countdown).value);
+        assertTrue(withIntervals.cost(statement).value < withoutIntervals.cost(statement).value);
+    }
+
+}
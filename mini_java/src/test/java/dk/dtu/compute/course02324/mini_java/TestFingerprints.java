@@ -0,0 +1,80 @@
+package dk.dtu.compute.course02324.mini_java;
+
+import dk.dtu.compute.course02324.mini_java.analysis.Fingerprint;
+import dk.dtu.compute.course02324.mini_java.analysis.Fingerprints;
+import dk.dtu.compute.course02324.mini_java.model.*;
+
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.*;
+import static dk.dtu.compute.course02324.mini_java.model.Operator.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the structural fingerprints of programs.
+ */
+public class TestFingerprints {
+
+    /**
+     * Tests that structurally equal programs and subtrees have the same
+     * fingerprint and that every attribute of a node changes it.
+     */
+    @Test
+    public void testFingerprints() {
+        Expression shared = OperatorExpression(MULT, Var("i"), Literal(2));
+        Statement statement = Sequence(
+                Declaration(INT, Var("i"), Literal(3)),
+                Declaration(FLOAT, Var("f"), Literal(1.5f)),
+                PrintStatement("i = ", Assignment(Var("i"), shared)),
+                PrintStatement("j = ", OperatorExpression(PLUS2, shared, Var("i")))
+        );
+        Statement copy = Sequence(
+                Declaration(INT, Var("i"), Literal(3)),
+                Declaration(FLOAT, Var("f"), Literal(1.5f)),
+                PrintStatement("i = ", Assignment(Var("i"), OperatorExpression(MULT, Var("i"), Literal(2)))),
+                PrintStatement("j = ", OperatorExpression(PLUS2, OperatorExpression(MULT, Var("i"), Literal(2)), Var("i")))
+        );
+
+        Fingerprints fingerprints = new Fingerprints();
+        Fingerprint fingerprint = fingerprints.of(statement);
+        Fingerprints copyFingerprints = new Fingerprints();
+        assertEquals(fingerprint, copyFingerprints.of(copy));
+        // the shared subtree is fingerprinted only once
+        assertEquals(copyFingerprints.size() - 3, fingerprints.size());
+        assertEquals(fingerprint, Fingerprints.compute(copy));
+        assertEquals(fingerprint, Fingerprint.parse(fingerprint.toString()));
+        assertEquals(fingerprints.of(shared), fingerprints.of(OperatorExpression(MULT, Var("i"), Literal(2))));
+        // fingerprints must not change between runs, since they are stored in caches on disk
+        assertEquals("9ef17653b29eeab7ff6bf8c4a564a9b0", fingerprint.toString());
+
+        List<Statement> variants = List.of(
+                Sequence(Declaration(INT, Var("i"), Literal(3))),
+                Sequence(Declaration(INT, Var("i"), Literal(4))),
+                Sequence(Declaration(INT, Var("j"), Literal(3))),
+                Sequence(Declaration(FLOAT, Var("i"), Literal(3))),
+                Sequence(Declaration(INT, Var("i"), Literal(3.0f))),
+                Sequence(Declaration(INT, Var("i"), Literal(-0.0f))),
+                Sequence(Declaration(INT, Var("i"), Literal(0.0f))),
+                Sequence(Declaration(INT, Var("i"))),
+                Sequence(Assignment(Var("i"), Literal(3))),
+                Sequence(PrintStatement("i", Literal(3))),
+                Sequence(PrintStatement("", Literal(3))),
+                Sequence(PrintStatement("", OperatorExpression(MINUS1, Literal(3)))),
+                Sequence(PrintStatement("", OperatorExpression(PLUS1, Literal(3)))),
+                Sequence(PrintStatement("", Var("i"))),
+                Sequence(Declaration(INT, Var("i"), Literal(3)), Declaration(INT, Var("i"), Literal(3))),
+                Sequence()
+        );
+        Set<Fingerprint> distinct = new HashSet<>();
+        for (Statement variant: variants) {
+            distinct.add(Fingerprints.compute(variant));
+        }
+        assertEquals(variants.size(), distinct.size());
+    }
+
+}
@@ -0,0 +1,180 @@
+package dk.dtu.compute.course02324.mini_java;
+
+import dk.dtu.compute.course02324.mini_java.analysis.Fingerprints;
+import dk.dtu.compute.course02324.mini_java.ir.FlatProgram;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.*;
+
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.*;
+import static dk.dtu.compute.course02324.mini_java.model.Operator.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the flat struct-of-arrays representation of programs.
+ */
+public class TestFlatProgram {
+
+    /**
+     * Type checks and executes a program, and returns its output followed by
+     * the values of its variables in the end.
+     */
+    private static String run(Statement statement) {
+        ProgramTypeVisitor ptv = new ProgramTypeVisitor();
+        ptv.visit(statement);
+        assertTrue(ptv.problems.isEmpty(), "Unexpected typing problems: " + ptv.problems);
+        ProgramExecutorVisitor pev = new ProgramExecutorVisitor(ptv);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(output, true));
+        try {
+            pev.visit(statement);
+        } finally {
+            System.setOut(out);
+        }
+        Map<String, Number> values = new TreeMap<>();
+        for (Var var: ptv.variables) {
+            values.put(var.name, pev.values.get(var));
+        }
+        return output + values.toString();
+    }
+
+    private static Statement program() {
+        return Sequence(
+                Declaration(INT, Var("i"), Literal(4)),
+                Declaration(FLOAT, Var("x")),
+                Assignment(Var("x"), Literal(-0.0f)),
+                WhileLoop(
+                        Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1))),
+                        Sequence(
+                                Assignment(Var("x"), OperatorExpression(PLUS2, Var("x"), Literal(0.5f))),
+                                PrintStatement("x = ", OperatorExpression(MINUS1, Var("x"))),
+                                PrintStatement("i = ", Var("i"))
+                        )
+                ),
+                Sequence()
+        );
+    }
+
+    /** Returns the kind, the links and the attributes of a node. */
+    private static String node(FlatProgram flat, int node) {
+        String attribute = switch (flat.kind(node)) {
+            case FlatProgram.DECLARATION -> flat.type(node) + " " + flat.name(node);
+            case FlatProgram.ASSIGNMENT, FlatProgram.VAR -> flat.name(node);
+            case FlatProgram.PRINT -> flat.prefix(node);
+            case FlatProgram.INT_LITERAL -> Integer.toString(flat.intValue(node));
+            case FlatProgram.FLOAT_LITERAL -> Integer.toHexString(Float.floatToRawIntBits(flat.floatValue(node)));
+            case FlatProgram.OPERATOR -> flat.operator(node).toString();
+            default -> "";
+        };
+        return flat.kind(node) + " " + flat.firstChild(node) + " " + flat.nextSibling(node) + " " + attribute;
+    }
+
+    private static List<String> nodes(FlatProgram flat) {
+        List<String> nodes = new ArrayList<>();
+        for (int node = 0; node < flat.size(); node++) {
+            nodes.add(node(flat, node));
+        }
+        return nodes;
+    }
+
+    /**
+     * Tests that a program converted into a flat program and back has the same
+     * structure and the same output, and that converting the copy again gives
+     * the same flat program, node by node.
+     */
+    @Test
+    public void testConversion() {
+        Statement statement = program();
+        FlatProgram flat = FlatProgram.of(statement);
+        assertEquals(22, flat.size());
+        assertEquals(4, flat.stringCount());
+
+        Statement copy = flat.toStatement();
+        assertEquals(Fingerprints.compute(statement), Fingerprints.compute(copy));
+        assertEquals(run(statement), run(copy));
+
+        FlatProgram again = FlatProgram.of(copy);
+        assertEquals(nodes(flat), nodes(again));
+        assertEquals(flat.stringCount(), again.stringCount());
+
+        int loop = flat.nextSibling(flat.nextSibling(flat.nextSibling(flat.firstChild(0))));
+        assertEquals(FlatProgram.WHILE, flat.kind(loop));
+        int condition = flat.firstChild(loop);
+        assertEquals("i", flat.name(condition));
+        assertEquals(MINUS2, flat.operator(flat.firstChild(condition)));
+        assertEquals(1, flat.intValue(flat.nextSibling(flat.firstChild(flat.firstChild(condition)))));
+        assertEquals(TypeKeyword.FLOAT, flat.type(flat.nextSibling(flat.firstChild(0))));
+        assertEquals(-1, flat.firstChild(flat.nextSibling(flat.firstChild(0))));
+        assertThrows(IllegalArgumentException.class, () -> flat.prefix(loop));
+        int assignment = flat.nextSibling(flat.nextSibling(flat.firstChild(0)));
+        assertEquals(Float.floatToRawIntBits(-0.0f), Float.floatToRawIntBits(flat.floatValue(flat.firstChild(assignment))));
+
+        // a while-loop converted back is a subtree of the flat program
+        Statement loopCopy = flat.statement(loop);
+        assertEquals(Fingerprints.compute(((Sequence) statement).statements.get(3)), Fingerprints.compute(loopCopy));
+    }
+
+    /**
+     * Tests that the nodes of a flat program, and of the subtree of a node,
+     * are walked in prefix order, which is the order of the arrays.
+     */
+    @Test
+    public void testWalk() {
+        FlatProgram flat = FlatProgram.of(program());
+
+        StringBuilder walk = new StringBuilder();
+        int[] next = {0};
+        flat.walk(new FlatProgram.Walker() {
+            @Override
+            public void enter(int node) {
+                assertEquals(next[0]++, node);
+                walk.append('(');
+            }
+
+            @Override
+            public void leave(int node) {
+                walk.append(')');
+            }
+        });
+        assertEquals(flat.size(), next[0]);
+        assertEquals("((())()(())(((()()))(((()()))((()))(())))())", walk.toString());
+
+        int loop = flat.nextSibling(flat.nextSibling(flat.nextSibling(flat.firstChild(0))));
+        List<Integer> subtree = new ArrayList<>();
+        flat.walk(loop, subtree::add);
+        assertEquals(loop, subtree.get(0));
+        for (int i = 1; i < subtree.size(); i++) {
+            assertEquals(loop + i, subtree.get(i));
+        }
+        // the subtree ends before the last statement of the sequence, an empty sequence
+        assertEquals(flat.size() - 1, loop + subtree.size());
+    }
+
+    /**
+     * Tests that counted loops are stored as their while-loops, which have the
+     * same behaviour.
+     */
+    @Test
+    public void testCountedLoops() {
+        Statement counted = Sequence(
+                Declaration(INT, Var("i"), Literal(5)),
+                new CountedLoop(Var("i"), 1, Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1))))
+        );
+        Statement countedCopy = FlatProgram.of(counted).toStatement();
+        assertInstanceOf(WhileLoop.class, ((Sequence) countedCopy).statements.get(1));
+        assertFalse(((Sequence) countedCopy).statements.get(1) instanceof CountedLoop);
+        assertEquals(run(counted), run(countedCopy));
+    }
+
+}
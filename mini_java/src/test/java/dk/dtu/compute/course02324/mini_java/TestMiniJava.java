@@ -1,6 +1,7 @@
 package dk.dtu.compute.course02324.mini_java;
 
 import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.profiling.MemoryAccounting;
 import dk.dtu.compute.course02324.mini_java.semantics.*;
 
 import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.*;
@@ -11,9 +12,14 @@ import org.junit.jupiter.api.Test;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 /**
@@ -439,4 +445,108 @@ public class TestMiniJava{
         }
     }
 
+    /**
+     * Tests that the type checker rejects exactly the operators which the
+     * operator registry does not support, and that the registry has an
+     * implementation for every supported signature.
+     */
+    @Test
+    public void testOperatorRegistry() {
+        for (Operator operator: Operator.values()) {
+            for (Type type: List.of(INT, FLOAT)) {
+                Expression operand = INT.equals(type) ? Literal(2) : Literal(2.0f);
+                Expression expression = operator.arity == 1 ?
+                        OperatorExpression(operator, operand) : OperatorExpression(operator, operand, operand);
+                ProgramTypeVisitor checker = new ProgramTypeVisitor();
+                checker.visit(PrintStatement("", expression));
+                boolean supported = OperatorRegistry.supports(operator, type);
+                assertEquals(supported, checker.problems.isEmpty(), operator + " on " + type);
+                if (supported) {
+                    assertEquals(type, OperatorRegistry.resultType(operator, type));
+                    assertNotNull(INT.equals(type) ? OperatorRegistry.intOperation(operator) : OperatorRegistry.floatOperation(operator));
+                }
+            }
+        }
+        assertFalse(OperatorRegistry.supports(MOD, FLOAT));
+        assertEquals(7, OperatorRegistry.apply(PLUS2, INT, 3, 4));
+        assertEquals(1.5f, OperatorRegistry.apply(DIV, FLOAT, 3.0f, 2.0f));
+    }
+
+    /**
+     * Tests that the symbol table interns the variables of a program into dense
+     * ids in the order they occur, and that lookups do not depend on the node.
+     */
+    @Test
+    public void testSymbolTable() {
+        Var i = Var("i");
+        Var otherI = Var("i");
+        Statement statement = Sequence(
+                Declaration(INT, Var("j"), Literal(1)),
+                Declaration(INT, i, Var("j")),
+                PrintStatement("i = ", otherI)
+        );
+        SymbolTable symbols = SymbolTable.of(statement);
+        assertEquals(2, symbols.size());
+        assertEquals(0, symbols.id(Var("j")));
+        assertEquals(1, symbols.id(otherI));
+        assertEquals(symbols.id(i), symbols.id(Var("i")));
+        assertEquals("i", symbols.variable(1).name);
+        assertEquals(-1, symbols.id(Var("k")));
+        // the hash of a variable is computed once, and is the one of its name
+        assertEquals(Objects.hash("i"), otherI.hashCode());
+
+        SymbolTable other = new SymbolTable();
+        assertEquals(0, other.intern(otherI));
+        assertEquals(1, symbols.id(otherI));
+    }
+
+    /**
+     * Tests the accounting of the memory of a program, in which a variable
+     * is shared, and of the tables of its type checker and executor.
+     */
+    @Test
+    public void testMemoryAccounting() {
+        Var i = Var("i");
+        Statement statement = Sequence(
+                Declaration(INT, i, Literal(1)),
+                PrintStatement("i = ", OperatorExpression(PLUS2, i, Literal(2)))
+        );
+        MemoryAccounting accounting = new MemoryAccounting(new MemoryAccounting.Layout(12, 4, 8));
+        MemoryAccounting.Report report = accounting.account(statement);
+        assertEquals(Set.of("Declaration", "IntLiteral", "OperatorExpression", "PrintStatement", "Sequence", "Var"),
+                report.kinds());
+        assertEquals(7, report.count());
+        assertEquals(2, report.count("IntLiteral"));
+        assertEquals(1, report.count("Var"));
+        // a header of 12 bytes, the name and the hash, and the string "i" with its array of one byte
+        assertEquals(24, report.shallowBytes("Var"));
+        assertEquals(24 + 24 + 24, report.retainedBytes("Var"));
+        // the list of two statements stores them in fields
+        assertEquals(16 + 24, report.retainedBytes("Sequence"));
+        assertTrue(report.retainedBytes() > report.shallowBytes());
+        assertTrue(report.toMetrics("minijava_program").contains("minijava_program_count{kind=\"IntLiteral\"} 2"));
+
+        ptv.visit(statement);
+        pev.visit(statement);
+        MemoryAccounting.Report tables = accounting.account(ptv);
+        assertEquals(ptv.typeMapping.size(), tables.count("typeMapping"));
+        assertEquals(1, tables.count("variables"));
+        assertEquals(0, tables.count("problems"));
+        assertTrue(tables.retainedBytes("typeMapping") > tables.shallowBytes("typeMapping"));
+        MemoryAccounting.Report values = accounting.account(pev);
+        assertEquals(pev.values.size(), values.count("values"));
+        assertTrue(values.retainedBytes() > 0);
+        // a small Integer is shared with the cache of the JVM, a large one is not
+        ProgramExecutorVisitor small = new ProgramExecutorVisitor(ptv);
+        small.values.put(Var("i"), 1);
+        ProgramExecutorVisitor large = new ProgramExecutorVisitor(ptv);
+        large.values.put(Var("i"), 100_000);
+        assertEquals(accounting.account(small).retainedBytes() + accounting.layout.shallowSize(Integer.class),
+                accounting.account(large).retainedBytes());
+
+        MemoryAccounting.Layout layout = MemoryAccounting.Layout.current();
+        assertTrue(layout.referenceBytes == 4 || layout.referenceBytes == 8);
+        assertTrue(new MemoryAccounting().account(statement).retainedBytes() > 0);
+    }
+
 }
@@ -0,0 +1,254 @@
+package dk.dtu.compute.course02324.mini_java;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.optimization.*;
+import dk.dtu.compute.course02324.mini_java.semantics.*;
+
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.*;
+import static dk.dtu.compute.course02324.mini_java.model.Operator.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the optimizations, which check that the optimized programs
+ * produce the same output and final values as the original programs.
+ */
+public class TestOptimizations {
+
+    /**
+     * Type checks and executes a program, and returns its output followed by
+     * the values of the variables in the end.
+     */
+    private static String run(Statement statement) {
+        ProgramTypeVisitor ptv = new ProgramTypeVisitor();
+        ptv.visit(statement);
+        assertTrue(ptv.problems.isEmpty(), "Unexpected typing problems: " + ptv.problems);
+        ProgramExecutorVisitor pev = new ProgramExecutorVisitor(ptv);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(output, true));
+        try {
+            pev.visit(statement);
+        } finally {
+            System.setOut(out);
+        }
+        Map<String, Number> values = new TreeMap<>();
+        for (Var var: ptv.variables) {
+            values.put(var.name, pev.values.get(var));
+        }
+        return output + values.toString();
+    }
+
+    private static ProgramTypeVisitor typeCheck(Statement statement) {
+        ProgramTypeVisitor ptv = new ProgramTypeVisitor();
+        ptv.visit(statement);
+        return ptv;
+    }
+
+    /**
+     * Tests that nested loops, which print values, become counted loops and
+     * still produce the same output.
+     */
+    @Test
+    public void testCountedLoops() {
+        Statement statement = Sequence(
+                Declaration(INT, Var("i"), Literal(5)),
+                WhileLoop(
+                        Var("i"),
+                        Sequence(
+                                Declaration(INT, Var("j"), Var("i")),
+                                WhileLoop(
+                                        Var("j"),
+                                        Sequence(
+                                                Assignment(Var("j"), OperatorExpression(MINUS2, Var("j"), Literal(2))),
+                                                PrintStatement(" i: ", Var("i")),
+                                                PrintStatement(" j: ", Var("j"))
+                                        )
+                                ),
+                                Assignment(Var("i"), OperatorExpression(PLUS2, Var("i"), Literal(-1)))
+                        )
+                )
+        );
+
+        Statement optimized = new InductionVariableRewriter(typeCheck(statement), true).rewrite(statement);
+
+        Statement outer = ((Sequence) optimized).statements.get(1);
+        assertInstanceOf(CountedLoop.class, outer);
+        assertInstanceOf(CountedLoop.class, ((Sequence) ((CountedLoop) outer).statement).statements.get(1));
+        assertFalse(outer instanceof ClosedFormLoop);
+        assertEquals(run(statement), run(optimized));
+    }
+
+    /**
+     * Tests that accumulating loops are replaced by closed forms, which compute
+     * the same values, including int overflows.
+     */
+    @Test
+    public void testClosedFormLoops() {
+        int n = 1000000;
+        int i = n;
+        int k = 7;
+        int sum = 0;
+        int count = 0;
+        int diff = 0;
+        while (i >= 0) {
+            sum = sum + i;
+            count = 3 + count;
+            i = i - 3;
+            diff = diff - i;
+            diff = diff + k;
+        }
+
+        Statement statement = Sequence(
+                Declaration(INT, Var("i"), Literal(n)),
+                Declaration(INT, Var("k"), Literal(k)),
+                Declaration(INT, Var("sum"), Literal(0)),
+                Declaration(INT, Var("count"), Literal(0)),
+                Declaration(INT, Var("diff"), Literal(0)),
+                WhileLoop(
+                        Var("i"),
+                        Sequence(
+                                Assignment(Var("sum"), OperatorExpression(PLUS2, Var("sum"), Var("i"))),
+                                Assignment(Var("count"), OperatorExpression(PLUS2, Literal(3), Var("count"))),
+                                Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(3))),
+                                Assignment(Var("diff"), OperatorExpression(MINUS2, Var("diff"), Var("i"))),
+                                Assignment(Var("diff"), OperatorExpression(PLUS2, Var("diff"), Var("k")))
+                        )
+                ),
+                PrintStatement("sum = ", Var("sum"))
+        );
+
+        Statement optimized = new InductionVariableRewriter(typeCheck(statement), true).rewrite(statement);
+
+        assertInstanceOf(ClosedFormLoop.class, ((Sequence) optimized).statements.get(5));
+        String expected = "sum = " + sum + System.lineSeparator() +
+                "{count=" + count + ", diff=" + diff + ", i=" + i + ", k=" + k + ", sum=" + sum + "}";
+        assertEquals(expected, run(statement));
+        assertEquals(expected, run(optimized));
+    }
+
+    /**
+     * Tests that loops with a negative induction variable are not executed,
+     * and that float accumulations are not replaced by closed forms.
+     */
+    @Test
+    public void testLoopsWithoutClosedForm() {
+        Statement statement = Sequence(
+                Declaration(INT, Var("i"), Literal(-4)),
+                Declaration(FLOAT, Var("x"), Literal(0.5f)),
+                WhileLoop(
+                        Var("i"),
+                        Sequence(
+                                Assignment(Var("x"), OperatorExpression(PLUS2, Var("x"), Literal(0.1f))),
+                                Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1)))
+                        )
+                )
+        );
+
+        Statement optimized = new InductionVariableRewriter(typeCheck(statement), true).rewrite(statement);
+
+        Statement loop = ((Sequence) optimized).statements.get(2);
+        assertInstanceOf(CountedLoop.class, loop);
+        assertFalse(loop instanceof ClosedFormLoop);
+        assertEquals(run(statement), run(optimized));
+    }
+
+    /**
+     * Tests that unrolled and peeled loops produce the same output and values,
+     * for known and unknown numbers of iterations, and are valid MiniJava.
+     */
+    @Test
+    public void testUnrolledLoops() {
+        for (int n = -1; n < 12; n++) {
+            Statement statement = Sequence(
+                    Declaration(INT, Var("n"), Literal(n)),
+                    Declaration(INT, Var("k"), Literal(3)),
+                    Declaration(INT, Var("unknown"), Literal(0)),
+                    // after this loop, the value of unknown is not known statically
+                    WhileLoop(
+                            Var("n"),
+                            Sequence(
+                                    Assignment(Var("unknown"), OperatorExpression(PLUS2, Var("unknown"), Literal(2))),
+                                    Assignment(Var("n"), OperatorExpression(MINUS2, Var("n"), Literal(1)))
+                            )
+                    ),
+                    Declaration(INT, Var("i"), Literal(n)),
+                    WhileLoop(
+                            Var("i"),
+                            Sequence(
+                                    PrintStatement("i * k = ", OperatorExpression(MULT, Var("i"), Var("k"))),
+                                    Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(2)))
+                            )
+                    ),
+                    WhileLoop(
+                            Var("unknown"),
+                            Sequence(
+                                    Assignment(Var("unknown"), OperatorExpression(MINUS2, Var("unknown"), Literal(1))),
+                                    PrintStatement("unknown = ", Var("unknown"))
+                            )
+                    )
+            );
+
+            for (int factor = 2; factor <= 4; factor++) {
+                Statement optimized = new LoopUnroller(factor, 20, true).rewrite(statement);
+
+                assertEquals(run(statement), run(optimized), "Unrolling by " + factor + " changed the program for n = " + n);
+                ProgramSerializerVisitor serializer = new ProgramSerializerVisitor();
+                serializer.visit(optimized);
+                assertFalse(serializer.result().isEmpty());
+            }
+        }
+    }
+
+    /**
+     * Tests that all optimization levels produce the same output and values,
+     * that statistics are recorded for each pass, and that a pass introducing
+     * typing problems is detected.
+     */
+    @Test
+    public void testPassManager() {
+        Statement statement = Sequence(
+                Declaration(INT, Var("k"), OperatorExpression(MULT, Literal(2), Literal(3))),
+                Declaration(INT, Var("sum"), Literal(0)),
+                Declaration(INT, Var("i"), OperatorExpression(PLUS2, Var("k"), Literal(4))),
+                WhileLoop(
+                        Var("i"),
+                        Sequence(
+                                Assignment(Var("sum"), OperatorExpression(PLUS2, Var("sum"), Var("k"))),
+                                Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1)))
+                        )
+                ),
+                Declaration(INT, Var("j"), Var("sum")),
+                WhileLoop(
+                        Var("j"),
+                        Sequence(
+                                PrintStatement("j = ", Var("j")),
+                                Assignment(Var("j"), OperatorExpression(MINUS2, Var("j"), Literal(7)))
+                        )
+                )
+        );
+        String expected = run(statement);
+
+        for (OptimizationLevel level: OptimizationLevel.values()) {
+            PassManager passManager = new PassManager(level.pipeline());
+            Statement optimized = passManager.run(statement);
+            assertEquals(expected, run(optimized), "Optimization " + level + " changed the program");
+            assertEquals(level == OptimizationLevel.O0, passManager.statistics().isEmpty());
+            assertEquals(level == OptimizationLevel.O0, optimized == statement);
+        }
+
+        Pass broken = Pass.of("broken", (program, types) ->
+                Sequence(program, Assignment(Var("k"), Literal(1.5f))));
+        PassManager passManager = new PassManager(new Pipeline("broken").add(broken));
+        assertThrows(IllegalStateException.class, () -> passManager.run(statement));
+    }
+
+}
@@ -0,0 +1,76 @@
+package dk.dtu.compute.course02324.mini_java;
+
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.profiling.ProfilerBenchmark;
+import dk.dtu.compute.course02324.mini_java.profiling.SamplingProfiler;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramExecutorVisitor;
+import dk.dtu.compute.course02324.mini_java.semantics.ProgramTypeVisitor;
+
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.*;
+import static dk.dtu.compute.course02324.mini_java.model.Operator.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the sampling profiler.
+ */
+public class TestProfiling {
+
+    private static Statement countdown(int iterations) {
+        return Sequence(
+                Declaration(INT, Var("i"), Literal(iterations)),
+                Declaration(INT, Var("sum"), Literal(0)),
+                WhileLoop(
+                        Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1))),
+                        Assignment(Var("sum"), OperatorExpression(PLUS2, Var("sum"), Var("i")))
+                )
+        );
+    }
+
+    /**
+     * Tests that the samples are charged to the stacks of the statements of
+     * the loop, and that samples taken after the program finished are not
+     * charged to any statement.
+     */
+    @Test
+    public void testSamplingProfiler() throws InterruptedException {
+        Statement program = countdown(500_000);
+        ProgramTypeVisitor ptv = new ProgramTypeVisitor();
+        ptv.visit(program);
+        ProgramExecutorVisitor pev = new ProgramExecutorVisitor(ptv);
+        SamplingProfiler profiler = new SamplingProfiler(program, pev, Duration.ofNanos(50_000));
+        profiler.start();
+        pev.visit(program);
+        assertNull(pev.currentStatement());
+        long idle = profiler.idleSamples();
+        Thread.sleep(20);
+        profiler.stop();
+
+        Map<String, Long> histogram = profiler.histogram();
+        assertFalse(histogram.isEmpty());
+        String loop = SamplingProfiler.ROOT_FRAME + ";WhileLoop(i = i - 1)#2";
+        for (String stack: histogram.keySet()) {
+            assertTrue(stack.startsWith(SamplingProfiler.ROOT_FRAME), stack);
+        }
+        assertTrue(histogram.containsKey(loop + ";Assignment(sum)#3") || histogram.containsKey(loop),
+                histogram.toString());
+        assertTrue(profiler.idleSamples() > idle);
+        assertTrue(profiler.collapsedStacks().lines()
+                .allMatch(line -> line.matches(".* [0-9]+") && histogram.containsKey(line.substring(0, line.lastIndexOf(' ')))));
+    }
+
+    /**
+     * Tests that the benchmark runs the program with and without profiler.
+     */
+    @Test
+    public void testProfilerBenchmark() {
+        ProfilerBenchmark.Result result = ProfilerBenchmark.measure(countdown(20_000), Duration.ofMillis(1), 3);
+        assertTrue(result.plainNanos > 0 && result.profiledNanos > 0, result.toString());
+    }
+
+}
@@ -0,0 +1,153 @@
+package dk.dtu.compute.course02324.mini_java;
+
+import dk.dtu.compute.course02324.mini_java.ir.*;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.semantics.*;
+
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.*;
+import static dk.dtu.compute.course02324.mini_java.model.Operator.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the SSA representation, which check that executing a program in
+ * SSA form, and executing the program translated back from SSA form, have the
+ * same output and final values as executing the original program.
+ */
+public class TestSsaProgram {
+
+    /**
+     * Type checks and executes a program, and returns its output followed by
+     * the values of its original variables (not the temporary ones) in the end.
+     */
+    private static String run(Statement statement) {
+        ProgramTypeVisitor ptv = typeCheck(statement);
+        ProgramExecutorVisitor pev = new ProgramExecutorVisitor(ptv);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(output, true));
+        try {
+            pev.visit(statement);
+        } finally {
+            System.setOut(out);
+        }
+        Map<String, Number> values = new TreeMap<>();
+        for (Var var: ptv.variables) {
+            if (!var.name.contains("$")) {
+                values.put(var.name, pev.values.get(var));
+            }
+        }
+        return output + values.toString();
+    }
+
+    private static String interpret(SsaProgram program) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SsaInterpreter interpreter = new SsaInterpreter(program, new PrintStream(output, true));
+        interpreter.run();
+        Map<String, Number> values = new TreeMap<>();
+        for (Map.Entry<Var, Number> entry: interpreter.variableValues().entrySet()) {
+            values.put(entry.getKey().name, entry.getValue());
+        }
+        return output + values.toString();
+    }
+
+    private static ProgramTypeVisitor typeCheck(Statement statement) {
+        ProgramTypeVisitor ptv = new ProgramTypeVisitor();
+        ptv.visit(statement);
+        assertTrue(ptv.problems.isEmpty(), "Unexpected typing problems: " + ptv.problems);
+        return ptv;
+    }
+
+    private static void assertSameBehaviour(Statement statement) {
+        SsaProgram program = SsaBuilder.build(statement, typeCheck(statement));
+        String expected = run(statement);
+        assertEquals(expected, interpret(program), "SSA program:\n" + program);
+        assertEquals(expected, run(SsaDeconstructor.deconstruct(program)), "SSA program:\n" + program);
+    }
+
+    /**
+     * Tests nested loops, with variables declared in loops and assignments
+     * nested in conditions.
+     */
+    @Test
+    public void testNestedLoops() {
+        Statement statement = Sequence(
+                Declaration(INT, Var("i"), Literal(4)),
+                Declaration(FLOAT, Var("sum"), Literal(0.5f)),
+                WhileLoop(
+                        Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1))),
+                        Sequence(
+                                Declaration(INT, Var("j")),
+                                PrintStatement(" j before: ", Var("j")),
+                                Assignment(Var("j"), Var("i")),
+                                WhileLoop(
+                                        Var("j"),
+                                        Sequence(
+                                                Assignment(Var("sum"), OperatorExpression(MULT, Var("sum"), Literal(1.5f))),
+                                                Assignment(Var("j"), OperatorExpression(MINUS2, Var("j"), Literal(2)))
+                                        )
+                                ),
+                                PrintStatement(" sum: ", Var("sum"))
+                        )
+                ),
+                PrintStatement(" i: ", Var("i"))
+        );
+        assertSameBehaviour(statement);
+    }
+
+    /**
+     * Tests a loop whose variables are swapped in each iteration, so that the
+     * values of the phis depend on each other, and a variable without value.
+     */
+    @Test
+    public void testSwappedVariables() {
+        Statement statement = Sequence(
+                Declaration(INT, Var("a"), Literal(1)),
+                Declaration(INT, Var("b"), Literal(2)),
+                Declaration(INT, Var("t")),
+                Declaration(INT, Var("n"), Literal(5)),
+                Declaration(INT, Var("unused")),
+                PrintStatement(" unused: ", Var("unused")),
+                WhileLoop(
+                        Var("n"),
+                        Sequence(
+                                Assignment(Var("t"), Var("a")),
+                                Assignment(Var("a"), Var("b")),
+                                Assignment(Var("b"), OperatorExpression(PLUS2, Var("t"), Var("b"))),
+                                Assignment(Var("n"), OperatorExpression(MINUS2, Var("n"), Literal(1))),
+                                PrintStatement(" b: ", Var("b"))
+                        )
+                )
+        );
+        assertSameBehaviour(statement);
+
+        SsaProgram program = SsaBuilder.build(statement, typeCheck(statement));
+        assertEquals(4, program.blockCount(), "Expected an entry, header, body and exit block:\n" + program);
+        assertTrue(program.dump().contains("phi"));
+    }
+
+    /**
+     * Tests that using a variable without value fails in the same way in the
+     * SSA interpreter as in the executor.
+     */
+    @Test
+    public void testUndefinedValue() {
+        Statement statement = Sequence(
+                Declaration(INT, Var("i")),
+                PrintStatement(" i: ", OperatorExpression(PLUS2, Var("i"), Literal(1)))
+        );
+        SsaProgram program = SsaBuilder.build(statement, typeCheck(statement));
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> new SsaInterpreter(program, new PrintStream(new ByteArrayOutputStream())).run());
+        assertEquals("Value of subexpression does not exist", exception.getMessage());
+    }
+
+}
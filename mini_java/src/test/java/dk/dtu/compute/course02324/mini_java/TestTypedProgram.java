@@ -0,0 +1,819 @@
+package dk.dtu.compute.course02324.mini_java;
+
+import dk.dtu.compute.course02324.mini_java.analysis.IndependentStatements;
+import dk.dtu.compute.course02324.mini_java.model.*;
+import dk.dtu.compute.course02324.mini_java.optimization.InductionVariableRewriter;
+import dk.dtu.compute.course02324.mini_java.profiling.OneShotBenchmark;
+import dk.dtu.compute.course02324.mini_java.profiling.QuickeningBenchmark;
+import dk.dtu.compute.course02324.mini_java.profiling.VariableStoreBenchmark;
+import dk.dtu.compute.course02324.mini_java.semantics.*;
+import dk.dtu.compute.course02324.mini_java.typed.*;
+
+import static dk.dtu.compute.course02324.mini_java.utils.Shortcuts.*;
+import static dk.dtu.compute.course02324.mini_java.model.Operator.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that executing the typed tree of a program has the same output and
+ * final values as executing the program with the executor.
+ */
+public class TestTypedProgram {
+
+    private static ProgramTypeVisitor typeCheck(Statement statement) {
+        ProgramTypeVisitor ptv = new ProgramTypeVisitor();
+        ptv.visit(statement);
+        assertTrue(ptv.problems.isEmpty(), "Unexpected typing problems: " + ptv.problems);
+        return ptv;
+    }
+
+    private static String execute(Statement statement) {
+        ProgramTypeVisitor ptv = typeCheck(statement);
+        ProgramExecutorVisitor pev = new ProgramExecutorVisitor(ptv);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(output, true));
+        try {
+            pev.visit(statement);
+        } finally {
+            System.setOut(out);
+        }
+        Map<String, Number> values = new TreeMap<>();
+        for (Var var: ptv.variables) {
+            values.put(var.name, pev.values.get(var));
+        }
+        return output + values.toString();
+    }
+
+    private static String executeTyped(Statement statement) {
+        return executeTyped(typeCheck(statement).lower(statement));
+    }
+
+    private static String executeTyped(TypedProgram program) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Frame frame = program.run(new PrintStream(output, true));
+        Map<String, Number> values = new TreeMap<>();
+        for (Map.Entry<Var, Number> entry: program.values(frame.variables).entrySet()) {
+            values.put(entry.getKey().name, entry.getValue());
+        }
+        return output + values.toString();
+    }
+
+    /**
+     * Tests a program with nested loops, assignments in conditions, floats,
+     * and variables without value.
+     */
+    @Test
+    public void testLoopsAndUndefinedValues() {
+        Statement statement = Sequence(
+                Declaration(INT, Var("i"), Literal(4)),
+                Declaration(INT, Var("undefined")),
+                Declaration(INT, Var("copy"), Var("undefined")),
+                Declaration(FLOAT, Var("x"), Literal(1.5f)),
+                PrintStatement("undefined = ", Assignment(Var("copy"), Var("undefined"))),
+                WhileLoop(
+                        Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1))),
+                        Sequence(
+                                Assignment(Var("x"), OperatorExpression(DIV, Var("x"), OperatorExpression(MINUS1, Literal(2.0f)))),
+                                PrintStatement("x = ", Var("x")),
+                                PrintStatement("i % 3 = ", OperatorExpression(MOD, Var("i"), Literal(3)))
+                        )
+                ),
+                WhileLoop(Var("undefined"), PrintStatement("never", Literal(0))),
+                WhileLoop(Var("i"), Assignment(Var("x"), OperatorExpression(MINUS2, Var("x"), Literal(1.0f))))
+        );
+        assertEquals(execute(statement), executeTyped(statement));
+        assertSame(INT, typeCheck(statement).lower(statement).typeMapping().get(Var("i")));
+    }
+
+    /**
+     * Tests that counted and closed-form loops are executed in the same way by
+     * the typed tree.
+     */
+    @Test
+    public void testCountedLoops() {
+        Statement statement = Sequence(
+                Declaration(INT, Var("i"), Literal(100)),
+                Declaration(INT, Var("sum"), Literal(0)),
+                WhileLoop(
+                        Var("i"),
+                        Sequence(
+                                Assignment(Var("sum"), OperatorExpression(PLUS2, Var("sum"), Var("i"))),
+                                Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(3)))
+                        )
+                ),
+                Declaration(INT, Var("j"), Literal(5)),
+                WhileLoop(
+                        Var("j"),
+                        Sequence(
+                                PrintStatement("j = ", Var("j")),
+                                Assignment(Var("j"), OperatorExpression(MINUS2, Var("j"), Literal(2)))
+                        )
+                )
+        );
+        Statement optimized = new InductionVariableRewriter(typeCheck(statement), true).rewrite(statement);
+        assertInstanceOf(ClosedFormLoop.class, ((Sequence) optimized).statements.get(2));
+        assertInstanceOf(CountedLoop.class, ((Sequence) optimized).statements.get(4));
+        assertEquals(execute(statement), executeTyped(optimized));
+    }
+
+    /**
+     * Tests that using a variable without value in an operator fails in the
+     * same way as in the executor, and that ill-typed programs are not lowered.
+     */
+    @Test
+    public void testErrors() {
+        Statement undefined = Sequence(
+                Declaration(INT, Var("i")),
+                PrintStatement("i + 1 = ", OperatorExpression(PLUS2, Var("i"), Literal(1)))
+        );
+        TypedProgram program = typeCheck(undefined).lower(undefined);
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> program.run(new PrintStream(new ByteArrayOutputStream())));
+        assertEquals("Value of subexpression does not exist", exception.getMessage());
+
+        Statement illTyped = Declaration(INT, Var("i"), Literal(1.0f));
+        ProgramTypeVisitor ptv = new ProgramTypeVisitor();
+        ptv.visit(illTyped);
+        assertThrows(IllegalArgumentException.class, () -> ptv.lower(illTyped));
+    }
+
+    /**
+     * Tests that checking and lowering in one pass reports the same problems
+     * as the type checker, refuses ill-typed programs, and executes well-typed
+     * programs in the same way.
+     */
+    @Test
+    public void testFusedLowering() {
+        Statement wellTyped = Sequence(
+                Declaration(INT, Var("i"), Literal(3)),
+                Declaration(FLOAT, Var("x"), Literal(0.5f)),
+                Declaration(INT, Var("undefined")),
+                PrintStatement("undefined = ", Var("undefined")),
+                WhileLoop(
+                        Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1))),
+                        Assignment(Var("x"), OperatorExpression(MULT, Var("x"), Literal(3.0f)))
+                ),
+                PrintStatement("x = ", Var("x"))
+        );
+        List<Statement> illTyped = List.of(
+                Sequence(
+                        Declaration(INT, Var("i")),
+                        Declaration(INT, Var("j"),
+                                Assignment(Var("i"), OperatorExpression(PLUS2, Literal(2), Assignment(Var("i"), Literal(3.0f)))))
+                ),
+                Sequence(
+                        Declaration(FLOAT, Var("x"), Literal(1.0f)),
+                        Declaration(FLOAT, Var("x"), Literal(2.0f)),
+                        WhileLoop(Var("x"), PrintStatement("x % x = ", OperatorExpression(MOD, Var("x"), Var("x")))),
+                        WhileLoop(Var("y"), Assignment(Var("z"), Literal(1)))
+                ),
+                Sequence(
+                        PrintStatement("-u = ", OperatorExpression(MINUS1, Var("u"))),
+                        Declaration(INT, Var("u"), OperatorExpression(PLUS2, Literal(1), Literal(1.0f)))
+                )
+        );
+
+        for (Statement statement: illTyped) {
+            ProgramTypeVisitor ptv = new ProgramTypeVisitor();
+            ptv.visit(statement);
+            FusedLowering lowering = new FusedLowering();
+            assertNull(lowering.lower(statement));
+            assertFalse(lowering.problems.isEmpty());
+            assertEquals(ptv.problems, lowering.problems);
+        }
+
+        FusedLowering lowering = new FusedLowering();
+        TypedProgram program = lowering.lower(wellTyped);
+        assertNotNull(program);
+        assertTrue(lowering.problems.isEmpty());
+        assertSame(FLOAT, program.typeMapping().get(Var("x")));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Frame frame = program.run(new PrintStream(output, true));
+        Map<String, Number> values = new TreeMap<>();
+        program.values(frame.variables).forEach((var, value) -> values.put(var.name, value));
+        assertEquals(execute(wellTyped), output + values.toString());
+
+        OneShotBenchmark.Result result = OneShotBenchmark.measure(wellTyped, 10);
+        assertTrue(result.twoPassNanos >= 0 && result.fusedNanos >= 0);
+    }
+
+    private static Statement countDown(String counter, String sum, int from) {
+        return Sequence(
+                Declaration(INT, Var(counter), Literal(from)),
+                Declaration(INT, Var(sum), Literal(0)),
+                WhileLoop(
+                        Var(counter),
+                        Sequence(
+                                Assignment(Var(sum), OperatorExpression(PLUS2, Var(sum), Var(counter))),
+                                PrintStatement(counter + " = ", Var(counter)),
+                                Assignment(Var(counter), OperatorExpression(MINUS2, Var(counter), Literal(1)))
+                        )
+                )
+        );
+    }
+
+    /**
+     * Tests that the independent statements of a sequence are executed
+     * concurrently with the same output and values as sequentially, also if
+     * one of the statements fails.
+     */
+    @Test
+    public void testParallelSequence() {
+        Statement statement = Sequence(
+                countDown("i", "a", 50),
+                countDown("j", "b", 40),
+                Declaration(INT, Var("c"), OperatorExpression(PLUS2, Var("a"), Literal(1))),
+                countDown("k", "d", 30),
+                PrintStatement("c = ", Var("c"))
+        );
+        List<int[]> groups = IndependentStatements.partition((Sequence) statement);
+        assertEquals(3, groups.size());
+        assertArrayEquals(new int[] {0, 2, 4}, groups.get(0));
+        assertArrayEquals(new int[] {1}, groups.get(1));
+        assertArrayEquals(new int[] {3}, groups.get(2));
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            TypedProgram program = typeCheck(statement).lower(statement).parallel(pool);
+            assertInstanceOf(ParallelSequence.class, program.statement);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            Frame frame = program.run(new PrintStream(output, true));
+            Map<String, Number> values = new TreeMap<>();
+            program.values(frame.variables).forEach((var, value) -> values.put(var.name, value));
+            assertEquals(execute(statement), output + values.toString());
+
+            Statement failing = Sequence(
+                    countDown("i", "a", 5),
+                    Declaration(INT, Var("zero"), Literal(0)),
+                    PrintStatement("1 / zero = ", OperatorExpression(DIV, Literal(1), Var("zero"))),
+                    countDown("j", "b", 5)
+            );
+            TypedProgram failingProgram = typeCheck(failing).lower(failing).parallel(pool);
+            assertInstanceOf(ParallelSequence.class, failingProgram.statement);
+            ByteArrayOutputStream failingOutput = new ByteArrayOutputStream();
+            assertThrows(ArithmeticException.class, () -> failingProgram.run(new PrintStream(failingOutput, true)));
+            assertTrue(failingOutput.toString().endsWith("i = 0" + System.lineSeparator()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Statement reduction(Expression term, Statement extra) {
+        return Sequence(
+                Declaration(INT, Var("n"), Literal(10000)),
+                Declaration(INT, Var("sum"), Literal(0)),
+                Declaration(INT, Var("product"), Literal(1)),
+                Declaration(FLOAT, Var("x"), Literal(0.0f)),
+                WhileLoop(
+                        Var("n"),
+                        Sequence(
+                                Assignment(Var("sum"), OperatorExpression(PLUS2, Var("sum"), term)),
+                                Assignment(Var("product"), OperatorExpression(MULT,
+                                        OperatorExpression(PLUS2, OperatorExpression(MOD, Var("n"), Literal(7)), Literal(1)),
+                                        Var("product"))),
+                                Assignment(Var("n"), OperatorExpression(MINUS2, Var("n"), Literal(1))),
+                                extra
+                        )
+                )
+        );
+    }
+
+    private static boolean hasParallelLoop(TypedProgram program) {
+        return ((TypedSequence) program.statement).statements().get(4) instanceof ParallelReductionLoop;
+    }
+
+    /**
+     * Tests that loops with associative accumulations are executed in parallel
+     * with the same results as sequentially, and that loops with float
+     * accumulations (unless relaxed) or print statements are not.
+     */
+    @Test
+    public void testParallelReduction() {
+        Expression square = OperatorExpression(MULT, Var("n"), Var("n"));
+        Statement statement = reduction(square, Sequence());
+        Statement floats = reduction(square,
+                Assignment(Var("x"), OperatorExpression(PLUS2, Var("x"), Literal(0.5f))));
+        Statement printing = reduction(square, PrintStatement("n = ", Var("n")));
+        Statement failing = reduction(OperatorExpression(DIV, Literal(100000), OperatorExpression(MINUS2, Var("n"), Literal(5000))), Sequence());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TypedProgram program = LoopParallelizer.parallelize(typeCheck(statement).lower(statement), pool, false, 16);
+            assertTrue(hasParallelLoop(program));
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            Frame frame = program.run(new PrintStream(output, true));
+            Map<String, Number> values = new TreeMap<>();
+            program.values(frame.variables).forEach((var, value) -> values.put(var.name, value));
+            assertEquals(execute(statement), output + values.toString());
+
+            assertFalse(hasParallelLoop(LoopParallelizer.parallelize(typeCheck(floats).lower(floats), pool, false, 16)));
+            assertTrue(hasParallelLoop(LoopParallelizer.parallelize(typeCheck(floats).lower(floats), pool, true, 16)));
+            assertFalse(hasParallelLoop(LoopParallelizer.parallelize(typeCheck(printing).lower(printing), pool, true, 16)));
+
+            ProgramTypeVisitor ptv = typeCheck(failing);
+            ProgramExecutorVisitor pev = new ProgramExecutorVisitor(ptv);
+            assertThrows(ArithmeticException.class, () -> pev.visit(failing));
+            TypedProgram failingProgram = LoopParallelizer.parallelize(ptv.lower(failing), pool, false, 16);
+            assertTrue(hasParallelLoop(failingProgram));
+            VariableStore store = failingProgram.newStore();
+            assertThrows(ArithmeticException.class,
+                    () -> failingProgram.execute(new Frame(store, new PrintStream(new ByteArrayOutputStream()))));
+            for (Map.Entry<Var, Number> entry: failingProgram.values(store).entrySet()) {
+                assertEquals(pev.values.get(entry.getKey()), entry.getValue(), entry.getKey().name);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Creates the top-level statement with the given number of a program of
+     * unbounded length: the first statements declare the variables, then the
+     * statements alternately add to the variables and print them.
+     */
+    private static Statement streamed(int number) {
+        return switch (number) {
+            case 0 -> Declaration(INT, Var("sum"), Literal(0));
+            case 1 -> Declaration(FLOAT, Var("x"));
+            case 2 -> Declaration(INT, Var("i"), Literal(3));
+            default -> number % 2 == 1 ?
+                    Assignment(Var("sum"), OperatorExpression(PLUS2, Var("sum"), Literal(number))) :
+                    Sequence(
+                            Assignment(Var("x"), Literal(number / 4.0f)),
+                            WhileLoop(
+                                    Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1))),
+                                    PrintStatement("sum = ", Var("sum"))
+                            ),
+                            Assignment(Var("i"), Literal(number % 3))
+                    );
+        };
+    }
+
+    private static Iterator<Statement> streamed(int from, int to) {
+        return new Iterator<>() {
+
+            private int next = from;
+
+            @Override
+            public boolean hasNext() {
+                return next < to;
+            }
+
+            @Override
+            public Statement next() {
+                return streamed(next++);
+            }
+        };
+    }
+
+    private static String executeStreaming(StreamingExecutor executor, ByteArrayOutputStream output) {
+        Map<String, Number> values = new TreeMap<>();
+        for (Map.Entry<Var, Number> entry: executor.values().entrySet()) {
+            values.put(entry.getKey().name, entry.getValue());
+        }
+        return output + values.toString();
+    }
+
+    /**
+     * Tests that executing a program one top-level statement at a time, from
+     * an iterator and from a binary stream, has the same output and final
+     * values as executing the whole program, and that the execution stops
+     * before the first statement with problems.
+     */
+    @Test
+    public void testStreamingExecution() throws IOException, InterruptedException {
+        int count = 300;
+        Statement[] statements = new Statement[count];
+        for (int i = 0; i < count; i++) {
+            statements[i] = streamed(i);
+        }
+        String expected = execute(Sequence(statements));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        StreamingExecutor executor = new StreamingExecutor(new PrintStream(output, true));
+        assertTrue(executor.run(streamed(0, count)));
+        assertEquals(expected, executeStreaming(executor, output));
+        assertEquals(count, executor.executed());
+        assertEquals(3, executor.variableCount());
+        assertTrue(executor.problems().isEmpty());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryProgramWriter writer = new BinaryProgramWriter(bytes);
+        for (Statement statement: statements) {
+            writer.write(statement);
+        }
+        writer.flush();
+        output = new ByteArrayOutputStream();
+        executor = new StreamingExecutor(new PrintStream(output, true));
+        assertTrue(executor.run(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(expected, executeStreaming(executor, output));
+
+        Iterator<Statement> read = BinaryProgramReader.statements(new ByteArrayInputStream(bytes.toByteArray()));
+        for (Statement statement: statements) {
+            ProgramSerializerVisitor original = new ProgramSerializerVisitor();
+            original.visit(statement);
+            ProgramSerializerVisitor copy = new ProgramSerializerVisitor();
+            copy.visit(read.next());
+            assertEquals(original.result(), copy.result());
+        }
+        assertFalse(read.hasNext());
+
+        // a long program, which is never held in memory as a whole, and of which
+        // the executor keeps no variable nodes once their statements are executed
+        executor = new StreamingExecutor(new PrintStream(OutputStream.nullOutputStream()));
+        List<WeakReference<Var>> executedVariables = new ArrayList<>();
+        for (int number = 0; number < 200_000; number++) {
+            Statement statement = streamed(number);
+            if (number == 1001) {
+                Assignment assignment = (Assignment) statement;
+                executedVariables.add(new WeakReference<>(assignment.variable));
+                executedVariables.add(new WeakReference<>((Var) ((OperatorExpression) assignment.expression).operands.get(0)));
+            }
+            assertTrue(executor.execute(statement));
+        }
+        assertEquals(200_000, executor.executed());
+        assertEquals(3, executor.variableCount());
+        for (int attempt = 0; attempt < 100 && executedVariables.stream().anyMatch(reference -> reference.get() != null); attempt++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue(executedVariables.stream().allMatch(reference -> reference.get() == null));
+        assertEquals(3, executor.variableCount());
+
+        output = new ByteArrayOutputStream();
+        executor = new StreamingExecutor(new PrintStream(output, true));
+        Statement illTyped = Assignment(Var("sum"), Var("x"));
+        assertFalse(executor.run(List.of(streamed(0), streamed(1), streamed(2), illTyped, streamed(3)).iterator()));
+        assertEquals(3, executor.executed());
+        assertEquals(List.of("Type mismatch for assignment to variable sum of type int."), executor.problems());
+        assertFalse(executor.execute(streamed(3)));
+        assertEquals(0, executor.values().get(Var("sum")));
+
+        // a sequence, which claims more statements than the stream has bytes, fails without allocating them
+        bytes = new ByteArrayOutputStream();
+        writer = new BinaryProgramWriter(bytes);
+        writer.write(Sequence(PrintStatement("i = ", Literal(1))));
+        writer.flush();
+        byte[] sequence = bytes.toByteArray();
+        sequence[5] = 0x7F; // the size follows the magic number and the tag
+        assertThrows(IOException.class, () -> new BinaryProgramReader(new ByteArrayInputStream(sequence)).read());
+
+        // a print statement must have an expression
+        bytes = new ByteArrayOutputStream();
+        writer = new BinaryProgramWriter(bytes);
+        writer.write(PrintStatement("", Literal(1)));
+        writer.flush();
+        byte[] print = bytes.toByteArray();
+        print[7] = 0; // the flag of the expression follows the magic number, the tag and the empty prefix
+        assertThrows(IOException.class, () -> new BinaryProgramReader(new ByteArrayInputStream(print)).read());
+    }
+
+    private static String executeTiered(Statement statement, TieredExecutor executor, ProgramTypeVisitor ptv) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(output, true));
+        try {
+            executor.visit(statement);
+        } finally {
+            System.setOut(out);
+        }
+        Map<String, Number> values = new TreeMap<>();
+        for (Var var: ptv.variables) {
+            values.put(var.name, executor.values.get(var));
+        }
+        return output + values.toString();
+    }
+
+    /**
+     * Tests that tiered execution has the same output and final values as the
+     * interpreter, when hot loops are compiled synchronously or in the
+     * background, and that the tier transitions are counted.
+     */
+    @Test
+    public void testTieredExecution() {
+        WhileLoop inner = WhileLoop(
+                Assignment(Var("j"), OperatorExpression(MINUS2, Var("j"), Literal(1))),
+                Sequence(
+                        Assignment(Var("sum"), OperatorExpression(PLUS2, Var("sum"), OperatorExpression(MOD, Var("j"), Literal(7)))),
+                        Assignment(Var("x"), OperatorExpression(MULT, Var("x"), Literal(1.001f)))
+                )
+        );
+        WhileLoop outer = WhileLoop(
+                Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1))),
+                Sequence(
+                        Declaration(INT, Var("j"), Literal(30)),
+                        inner,
+                        PrintStatement("sum = ", Var("sum"))
+                )
+        );
+        Statement statement = Sequence(
+                Declaration(INT, Var("i"), Literal(40)),
+                Declaration(INT, Var("sum"), Literal(0)),
+                Declaration(FLOAT, Var("x"), Literal(1.0f)),
+                outer,
+                PrintStatement("x = ", Var("x"))
+        );
+        String expected = execute(statement);
+
+        ProgramTypeVisitor ptv = typeCheck(statement);
+        TieredExecutor synchronous = new TieredExecutor(ptv, 20, Runnable::run);
+        assertEquals(expected, executeTiered(statement, synchronous, ptv));
+        assertTrue(synchronous.isCompiled(inner));
+        assertTrue(synchronous.isCompiled(outer));
+        assertEquals(2, synchronous.compilationsCompleted());
+        assertEquals(0, synchronous.compilationsFailed());
+        // both loops are replaced in their 20th iteration; the inner loop is entered compiled afterwards
+        assertEquals(2, synchronous.osrTransitions());
+        assertEquals(19, synchronous.compiledEntries());
+        assertEquals(20 + 20, synchronous.backEdges(), synchronous.toString());
+
+        ProgramTypeVisitor interpreted = typeCheck(statement);
+        TieredExecutor never = new TieredExecutor(interpreted, Integer.MAX_VALUE, Runnable::run);
+        assertEquals(expected, executeTiered(statement, never, interpreted));
+        assertEquals(0, never.compilationsRequested());
+        assertEquals(0, never.osrTransitions());
+
+        ProgramTypeVisitor background = typeCheck(statement);
+        TieredExecutor tiered = new TieredExecutor(background, 10, ForkJoinPool.commonPool());
+        assertEquals(expected, executeTiered(statement, tiered, background));
+        assertTrue(tiered.compilationsRequested() >= 1);
+    }
+
+    /**
+     * Tests that the quickened typed tree has the same output and final values
+     * as the plain one, that the idioms are rewritten (also in conditions and
+     * nested loops, but not for floats), and that the benchmark of the
+     * patterns runs.
+     */
+    @Test
+    public void testQuickening() {
+        Statement statement = Sequence(
+                Declaration(INT, Var("i"), Literal(3)),
+                Declaration(INT, Var("undefined")),
+                Declaration(INT, Var("sum"), Literal(0)),
+                Declaration(FLOAT, Var("x"), Literal(0.5f)),
+                PrintStatement("undefined = ", Var("undefined")),
+                WhileLoop(
+                        Var("i"),
+                        Sequence(
+                                Declaration(INT, Var("j"), Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1)))),
+                                WhileLoop(
+                                        Assignment(Var("j"), OperatorExpression(MINUS2, Var("j"), Literal(1))),
+                                        Sequence(
+                                                Assignment(Var("sum"), OperatorExpression(PLUS2, Literal(2), Var("sum"))),
+                                                Assignment(Var("x"), OperatorExpression(PLUS2, Var("x"), Literal(1.5f))),
+                                                PrintStatement("sum = ", Var("sum"))
+                                        )
+                                ),
+                                PrintStatement("x = ", Var("x"))
+                        )
+                ),
+                PrintStatement("i - 1 = ", OperatorExpression(MINUS2, Var("i"), Literal(1)))
+        );
+        TypedProgram program = typeCheck(statement).lower(statement);
+        Quickening quickening = new Quickening();
+        TypedProgram quickened = quickening.quicken(program);
+        assertEquals(execute(statement), executeTyped(quickened));
+        assertEquals(executeTyped(program), executeTyped(program.quickened()));
+        assertEquals(Map.of("add-constant", 3, "print-variable", 3, "variable-loop", 1), quickening.rewrites);
+        assertInstanceOf(QuickVarLoop.class, ((TypedSequence) quickened.statement).statements().get(5));
+
+        Statement undefined = Sequence(
+                Declaration(INT, Var("i")),
+                Assignment(Var("i"), OperatorExpression(PLUS2, Var("i"), Literal(1)))
+        );
+        TypedProgram failing = typeCheck(undefined).lower(undefined).quickened();
+        RuntimeException e = assertThrows(RuntimeException.class, () -> failing.run(System.out));
+        assertEquals("Value of subexpression does not exist", e.getMessage());
+
+        Map<String, QuickeningBenchmark.Result> results = QuickeningBenchmark.measure(1000, 3);
+        assertEquals(List.of("add-constant", "print-variable", "variable-loop"), List.copyOf(results.keySet()));
+        for (QuickeningBenchmark.Result result: results.values()) {
+            assertTrue(result.plainNanos > 0 && result.quickenedNanos > 0, result.toString());
+        }
+    }
+
+    /**
+     * Tests that a program compiled into a Java class has the same output and
+     * final values as the executor, including undefined values, nested
+     * assignments and the precedence of operators, that it fails in the same
+     * way, and that it can be written to a directory and loaded again.
+     */
+    @Test
+    public void testJavaBackend(@TempDir Path directory) throws IOException {
+        Statement statement = Sequence(
+                Declaration(INT, Var("i"), Literal(-3)),
+                Declaration(INT, Var("undefined")),
+                Declaration(INT, Var("copy"), Literal(7)),
+                Declaration(FLOAT, Var("x"), Literal(-0.25f)),
+                Assignment(Var("copy"), Var("undefined")),
+                PrintStatement("copy = \"", Assignment(Var("i"), Assignment(Var("copy"), Var("undefined")))),
+                Assignment(Var("i"), Literal(10)),
+                WhileLoop(
+                        Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), OperatorExpression(MINUS2, Literal(3), Literal(2)))),
+                        Sequence(
+                                Assignment(Var("x"), OperatorExpression(MULT, Var("x"), OperatorExpression(PLUS2, Literal(1.5f), Literal(1e-3f)))),
+                                PrintStatement("- (i + 2) * 3 = ", OperatorExpression(MULT,
+                                        OperatorExpression(MINUS1, OperatorExpression(PLUS2, Var("i"), Literal(2))), Literal(3))),
+                                PrintStatement("i % 4 / 2 = ", OperatorExpression(DIV,
+                                        OperatorExpression(MOD, Var("i"), Literal(4)), Assignment(Var("copy"), Literal(2))))
+                        )
+                ),
+                PrintStatement("x = ", Var("x"))
+        );
+        String expected = execute(statement);
+
+        ProgramTypeVisitor ptv = typeCheck(statement);
+        CompiledProgram compiled = JavaBackend.compile(statement, ptv);
+        assertEquals(JavaBackend.DEFAULT_CLASS_NAME, compiled.className);
+        assertTrue(compiled.source.contains("public static void run("), compiled.source);
+        assertEquals(expected, executeTyped(compiled.program()));
+
+        compiled.writeTo(directory);
+        CompiledProgram loaded = JavaBackend.load(directory, JavaBackend.DEFAULT_CLASS_NAME, ptv.lower(statement));
+        assertEquals(compiled.source, loaded.source);
+        assertEquals(expected, executeTyped(loaded.program()));
+
+        Statement failing = Sequence(
+                Declaration(INT, Var("i")),
+                PrintStatement("i = ", Var("i")),
+                Declaration(INT, Var("j"), OperatorExpression(PLUS2, Var("i"), Literal(1)))
+        );
+        TypedProgram program = JavaBackend.compile(failing, typeCheck(failing).lower(failing), "test.Failing").program();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        RuntimeException e = assertThrows(RuntimeException.class, () -> program.run(new PrintStream(output, true)));
+        assertEquals("Value of subexpression does not exist", e.getMessage());
+        assertEquals("i = null" + System.lineSeparator(), output.toString());
+
+        Statement division = Sequence(
+                Declaration(INT, Var("i"), Literal(5)),
+                Declaration(INT, Var("j"), OperatorExpression(DIV, Var("i"), Literal(0)))
+        );
+        TypedProgram divide = JavaBackend.compile(division, typeCheck(division)).program();
+        assertThrows(ArithmeticException.class, () -> divide.run(System.out));
+
+        // a program, which is too large for a single method, is split into methods
+        int variables = JavaSourceGenerator.MAX_LOCAL_SLOTS + 200;
+        List<Statement> declarations = new ArrayList<>();
+        List<Statement> updates = new ArrayList<>();
+        declarations.add(Declaration(INT, Var("i"), Literal(3)));
+        for (int k = 0; k < variables; k++) {
+            declarations.add(Declaration(k % 2 == 0 ? INT : FLOAT, Var("v" + k), k % 2 == 0 ? Literal(k) : Literal(k / 2.0f)));
+            updates.add(Assignment(Var("v" + k), OperatorExpression(PLUS2, Var("v" + k), Var("v" + (k < 2 ? k : k - 2)))));
+        }
+        updates.add(PrintStatement("v1 = ", Var("v1")));
+        updates.add(Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1))));
+        declarations.add(WhileLoop(Var("i"), Sequence(updates.toArray(new Statement[0]))));
+        declarations.add(PrintStatement("last = ", Var("v" + (variables - 1))));
+        Statement large = Sequence(declarations.toArray(new Statement[0]));
+        CompiledProgram split = JavaBackend.compile(large, typeCheck(large));
+        assertTrue(split.source.contains("private void part0()"));
+        assertTrue(split.source.contains("private void load1("));
+        assertEquals(execute(large), executeTyped(split.program()));
+    }
+
+    private static Statement countdown(int from) {
+        return Sequence(
+                Declaration(INT, Var("i"), Literal(from)),
+                Declaration(FLOAT, Var("x"), Literal(0.5f)),
+                WhileLoop(
+                        Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1))),
+                        Sequence(
+                                Assignment(Var("x"), OperatorExpression(MULT, Var("x"), Literal(2.0f))),
+                                PrintStatement("i = ", Var("i"))
+                        )
+                )
+        );
+    }
+
+    /**
+     * Tests that compiled programs are found in the code cache after it was
+     * reopened, with the same results, that a damaged record at the end of
+     * the file is ignored and overwritten, and that the file is compacted
+     * when it grows beyond its maximum size.
+     */
+    @Test
+    public void testCodeCache(@TempDir Path directory) throws IOException {
+        Statement statement = countdown(3);
+        String expected = execute(statement);
+        Path file;
+        try (CodeCache cache = CodeCache.open(directory, 1 << 20)) {
+            assertEquals(expected, executeTyped(cache.compile(statement).program()));
+            assertEquals(1, cache.misses());
+            assertEquals(1, cache.writes());
+            file = cache.dataFile();
+        }
+
+        // a crash while writing the next record
+        long size = Files.size(file);
+        Files.write(file, new byte[] {0x4D, 0x4A, 0x43, 0x52, 0, 0, 1}, StandardOpenOption.APPEND);
+
+        try (CodeCache cache = CodeCache.open(directory, 1 << 20)) {
+            CompiledProgram cached = cache.get(statement);
+            assertNotNull(cached);
+            assertEquals(1, cache.hits());
+            assertEquals(expected, executeTyped(cached.program()));
+            assertEquals(List.of(Var("i"), Var("x")), cached.program().variables());
+            assertNull(cache.get(countdown(4)));
+
+            cache.compile(countdown(4));
+            assertEquals(2, cache.size());
+            assertEquals(2 * (size - 8) + 8, Files.size(file));
+        }
+
+        long recordSize = size - 8;
+        try (CodeCache cache = CodeCache.open(directory, 8 + 3 * recordSize + recordSize / 2)) {
+            for (int from = 5; from < 10; from++) {
+                cache.compile(countdown(from));
+                assertTrue(Files.size(cache.dataFile()) <= 8 + 3 * recordSize + recordSize / 2);
+            }
+            assertTrue(cache.compactions() > 0);
+            assertNotEquals(file, cache.dataFile());
+            assertNotNull(cache.get(countdown(9)));
+            assertNull(cache.get(countdown(3)));
+            assertEquals(execute(countdown(9)), executeTyped(cache.get(countdown(9)).program()));
+        }
+
+        // a program, which would not survive a compaction, is compiled but not cached
+        try (CodeCache cache = CodeCache.open(directory.resolve("small"), 8 + recordSize)) {
+            assertEquals(expected, executeTyped(cache.compile(statement).program()));
+            assertEquals(1, cache.rejected());
+            assertEquals(0, cache.writes());
+            assertNull(cache.get(statement));
+        }
+    }
+
+    /**
+     * Tests that a program executed with a store outside of the heap has the
+     * same output and final values as with a store on the heap, that
+     * snapshots are independent and on the heap, and that a closed store and
+     * slots out of range can not be used.
+     */
+    @Test
+    public void testOffHeapStore() {
+        Statement statement = Sequence(
+                Declaration(INT, Var("i"), Literal(9)),
+                Declaration(INT, Var("undefined")),
+                Declaration(FLOAT, Var("x"), Literal(-0.5f)),
+                WhileLoop(
+                        Assignment(Var("i"), OperatorExpression(MINUS2, Var("i"), Literal(1))),
+                        Sequence(
+                                Assignment(Var("x"), OperatorExpression(MULT, Var("x"), Literal(1.5f))),
+                                PrintStatement("x = ", Var("x"))
+                        )
+                ),
+                PrintStatement("undefined = ", Var("undefined"))
+        );
+        TypedProgram program = typeCheck(statement).lower(statement);
+        ByteArrayOutputStream heapOutput = new ByteArrayOutputStream();
+        Frame heap = program.run(new PrintStream(heapOutput, true));
+
+        ByteArrayOutputStream offHeapOutput = new ByteArrayOutputStream();
+        OffHeapVariableStore store = program.newOffHeapStore();
+        program.execute(new Frame(store, new PrintStream(offHeapOutput, true)));
+        assertEquals(heapOutput.toString(), offHeapOutput.toString());
+        assertEquals(program.values(heap.variables), program.values(store));
+        assertEquals(4 * 3 + 1, store.byteSize());
+
+        VariableStore snapshot = store.snapshot();
+        assertInstanceOf(HeapVariableStore.class, snapshot);
+        store.setFloat(program.slot(Var("x")), 2.5f);
+        store.copy(program.slot(Var("undefined")), program.slot(Var("i")));
+        assertFalse(store.isDefined(program.slot(Var("i"))));
+        assertEquals(program.values(heap.variables), program.values(snapshot));
+        assertEquals(2.5f, store.getFloat(program.slot(Var("x"))));
+
+        store.close();
+        assertThrows(IndexOutOfBoundsException.class, () -> store.getInt(0));
+
+        // the slot of the value must be in range, also where the buffer has the flags
+        OffHeapVariableStore large = new OffHeapVariableStore(100);
+        assertThrows(IndexOutOfBoundsException.class, () -> large.getInt(100));
+        assertThrows(IndexOutOfBoundsException.class, () -> large.setFloat(-1, 1.0f));
+        assertThrows(IndexOutOfBoundsException.class, () -> large.isDefined(100));
+
+        Map<String, VariableStoreBenchmark.Result> results = VariableStoreBenchmark.measure(1000, 1);
+        assertEquals(List.of("boxed", "heap", "off-heap"), List.copyOf(results.keySet()));
+        assertEquals(0, results.get("heap").offHeapBytes);
+        assertEquals(4 * 1000 + 125, results.get("off-heap").offHeapBytes);
+        assertEquals(0, results.get("heap").unreleasedBytes);
+        assertTrue(results.get("off-heap").unreleasedBytes <= results.get("off-heap").offHeapBytes);
+    }
+
+}